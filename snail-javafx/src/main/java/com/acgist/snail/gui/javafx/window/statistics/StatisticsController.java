@@ -17,6 +17,7 @@ import com.acgist.snail.context.SystemStatistics;
 import com.acgist.snail.gui.javafx.Controller;
 import com.acgist.snail.gui.javafx.Tooltips;
 import com.acgist.snail.net.torrent.TorrentManager;
+import com.acgist.snail.net.torrent.bootstrap.PeerConnectManager;
 import com.acgist.snail.net.torrent.dht.bootstrap.NodeManager;
 import com.acgist.snail.net.torrent.peer.bootstrap.PeerManager;
 import com.acgist.snail.net.torrent.tracker.bootstrap.TrackerClient;
@@ -274,6 +275,7 @@ public final class StatisticsController extends Controller implements Initializa
 			this.buildSystemText("外网IP", SystemConfig.getExternalIpAddress()),
 			this.buildSystemText("外网端口", SystemConfig.getTorrentPortExt()),
 			this.buildSystemText("内网穿透", NatContext.getInstance().type()),
+			this.buildSystemText("Peer连接", PeerConnectManager.getInstance().connectSize() + "/" + SystemConfig.getPeerGlobalSize()),
 			this.buildSystemText("软件版本", SystemConfig.getVersion()),
 			this.buildSystemText("系统名称", System.getProperty("os.name")),
 			this.buildSystemText("系统版本", System.getProperty("os.version")),
@@ -377,8 +379,9 @@ public final class StatisticsController extends Controller implements Initializa
 		final PieChart pieChart = new PieChart(pieChartData);
 		pieChart.setTitle(
 			String.format(
-				"总量：%d 可用：%d 下载：%d 上传：%d",
-				peers.size(), availableCount.get(), downloadCount.get(), uploadCount.get()
+				"总量：%d 可用：%d 下载：%d 上传：%d 分配：%d",
+				peers.size(), availableCount.get(), downloadCount.get(), uploadCount.get(),
+				PeerConnectManager.getInstance().allocation(infoHashHex)
 			)
 		);
 		// 设置提示信息
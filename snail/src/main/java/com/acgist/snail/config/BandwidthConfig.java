@@ -0,0 +1,400 @@
+package com.acgist.snail.config;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.acgist.snail.pojo.entity.ConfigEntity;
+import com.acgist.snail.protocol.Protocol;
+import com.acgist.snail.repository.impl.ConfigRepository;
+
+/**
+ * <p>带宽配置</p>
+ * <p>系统带宽按照带宽类型权重分配，带宽类型可以设置最小速度（保证带宽）和最大速度。</p>
+ * <p>带宽类型速度按照任务权重分配给任务，任务带宽类型和权重保存在数据库。</p>
+ * <p>速度单位：KB/s；速度为零表示不限速。</p>
+ * 
+ * @author acgist
+ */
+public final class BandwidthConfig extends PropertiesConfig {
+	
+	private static final Logger LOGGER = LoggerFactory.getLogger(BandwidthConfig.class);
+	
+	/**
+	 * <p>单例对象</p>
+	 */
+	private static final BandwidthConfig INSTANCE = new BandwidthConfig();
+	
+	/**
+	 * <p>获取单例对象</p>
+	 * 
+	 * @return 单例对象
+	 */
+	public static final BandwidthConfig getInstance() {
+		return INSTANCE;
+	}
+	
+	/**
+	 * <p>带宽类型</p>
+	 * 
+	 * @author acgist
+	 */
+	public enum Type {
+		
+		/** BT */
+		BT("bt"),
+		/** HTTP */
+		HTTP("http"),
+		/** FTP */
+		FTP("ftp"),
+		/** HLS */
+		HLS("hls"),
+		/**
+		 * <p>控制流量：DHT、Tracker等等</p>
+		 * <p>控制流量不会等待（不会限速），但是消耗系统令牌，其他带宽类型按照剩余带宽分配。</p>
+		 */
+		CONTROL("control");
+		
+		/**
+		 * <p>配置名称</p>
+		 */
+		private final String value;
+		
+		/**
+		 * @param value 配置名称
+		 */
+		private Type(String value) {
+			this.value = value;
+		}
+		
+		/**
+		 * <p>获取配置名称</p>
+		 * 
+		 * @return 配置名称
+		 */
+		public String value() {
+			return this.value;
+		}
+		
+		/**
+		 * <p>通过协议类型获取带宽类型</p>
+		 * <p>没有匹配带宽类型默认使用：{@link #HTTP}</p>
+		 * 
+		 * @param type 协议类型
+		 * 
+		 * @return 带宽类型
+		 */
+		public static final Type of(Protocol.Type type) {
+			if(type == null) {
+				return HTTP;
+			}
+			switch (type) {
+			case MAGNET:
+			case TORRENT:
+				return BT;
+			case FTP:
+				return FTP;
+			case HLS:
+				return HLS;
+			default:
+				return HTTP;
+			}
+		}
+		
+	}
+	
+	/**
+	 * <p>带宽类型配置</p>
+	 * 
+	 * @author acgist
+	 */
+	public static final class Bandwidth {
+		
+		/**
+		 * <p>权重</p>
+		 */
+		private final int weight;
+		/**
+		 * <p>最小速度（B/s）</p>
+		 */
+		private final int min;
+		/**
+		 * <p>最大速度（B/s）</p>
+		 */
+		private final int max;
+		
+		/**
+		 * @param weight 权重
+		 * @param min 最小速度（B/s）
+		 * @param max 最大速度（B/s）
+		 */
+		private Bandwidth(int weight, int min, int max) {
+			this.weight = weight;
+			this.min = min;
+			this.max = max;
+		}
+		
+		/**
+		 * <p>新建带宽配置</p>
+		 * 
+		 * @param weight 权重
+		 * @param min 最小速度（B/s）
+		 * @param max 最大速度（B/s）：0-不限速
+		 * 
+		 * @return 带宽配置
+		 */
+		public static final Bandwidth newInstance(int weight, int min, int max) {
+			return new Bandwidth(Math.max(DEFAULT_WEIGHT, weight), Math.max(0, min), Math.max(0, max));
+		}
+		
+		/**
+		 * <p>获取权重</p>
+		 * 
+		 * @return 权重
+		 */
+		public int weight() {
+			return this.weight;
+		}
+		
+		/**
+		 * <p>获取最小速度（B/s）</p>
+		 * 
+		 * @return 最小速度
+		 */
+		public int min() {
+			return this.min;
+		}
+		
+		/**
+		 * <p>获取最大速度（B/s）</p>
+		 * 
+		 * @return 最大速度：0-不限速
+		 */
+		public int max() {
+			return this.max;
+		}
+		
+		@Override
+		public String toString() {
+			return this.weight + "-" + this.min + "-" + this.max;
+		}
+		
+	}
+	
+	/**
+	 * <p>任务带宽配置</p>
+	 * 
+	 * @author acgist
+	 */
+	public static final class TaskBandwidth {
+		
+		/**
+		 * <p>带宽类型</p>
+		 */
+		private final Type type;
+		/**
+		 * <p>任务权重</p>
+		 */
+		private final int weight;
+		
+		/**
+		 * @param type 带宽类型
+		 * @param weight 任务权重
+		 */
+		private TaskBandwidth(Type type, int weight) {
+			this.type = type;
+			this.weight = weight;
+		}
+		
+		/**
+		 * <p>获取带宽类型</p>
+		 * 
+		 * @return 带宽类型
+		 */
+		public Type type() {
+			return this.type;
+		}
+		
+		/**
+		 * <p>获取任务权重</p>
+		 * 
+		 * @return 任务权重
+		 */
+		public int weight() {
+			return this.weight;
+		}
+		
+		@Override
+		public String toString() {
+			return this.type + "-" + this.weight;
+		}
+		
+	}
+	
+	/**
+	 * <p>配置文件：{@value}</p>
+	 */
+	private static final String BANDWIDTH_CONFIG = "/config/bandwidth.properties";
+	/**
+	 * <p>默认权重：{@value}</p>
+	 */
+	public static final int DEFAULT_WEIGHT = 1;
+	/**
+	 * <p>任务带宽类型配置名称前缀：{@value}</p>
+	 * <p>配置名称：前缀 + 任务ID</p>
+	 */
+	private static final String TASK_TYPE_PREFIX = "acgist.bandwidth.task.type.";
+	/**
+	 * <p>任务权重配置名称前缀：{@value}</p>
+	 * <p>配置名称：前缀 + 任务ID</p>
+	 */
+	private static final String TASK_WEIGHT_PREFIX = "acgist.bandwidth.task.weight.";
+	
+	static {
+		LOGGER.debug("初始化带宽配置：{}", BANDWIDTH_CONFIG);
+		INSTANCE.init();
+		INSTANCE.logger();
+		INSTANCE.release();
+	}
+	
+	/**
+	 * <p>系统上传速度（B/s）</p>
+	 */
+	private int uploadBufferByte;
+	/**
+	 * <p>系统下载速度（B/s）</p>
+	 */
+	private int downloadBufferByte;
+	/**
+	 * <p>带宽类型配置</p>
+	 */
+	private final Map<Type, Bandwidth> bandwidths = new EnumMap<>(Type.class);
+	
+	private BandwidthConfig() {
+		super(BANDWIDTH_CONFIG);
+	}
+	
+	/**
+	 * <p>初始化配置</p>
+	 */
+	private void init() {
+		if(!this.hasProperties()) {
+			// 没有配置：不限速
+			for (Type type : Type.values()) {
+				this.bandwidths.put(type, new Bandwidth(DEFAULT_WEIGHT, 0, 0));
+			}
+			return;
+		}
+		this.uploadBufferByte = this.getInteger("acgist.bandwidth.upload", 0) * SystemConfig.ONE_KB;
+		this.downloadBufferByte = this.getInteger("acgist.bandwidth.download", 0) * SystemConfig.ONE_KB;
+		for (Type type : Type.values()) {
+			final String prefix = "acgist.bandwidth." + type.value();
+			final int weight = this.getInteger(prefix + ".weight", DEFAULT_WEIGHT);
+			final int min = this.getInteger(prefix + ".min", 0) * SystemConfig.ONE_KB;
+			final int max = this.getInteger(prefix + ".max", 0) * SystemConfig.ONE_KB;
+			this.bandwidths.put(type, new Bandwidth(Math.max(DEFAULT_WEIGHT, weight), min, max));
+		}
+	}
+	
+	/**
+	 * <p>日志</p>
+	 */
+	private void logger() {
+		LOGGER.debug("系统上传速度（B/s）：{}", this.uploadBufferByte);
+		LOGGER.debug("系统下载速度（B/s）：{}", this.downloadBufferByte);
+		this.bandwidths.forEach((type, bandwidth) -> LOGGER.debug("带宽类型（权重-最小速度-最大速度）：{}-{}", type, bandwidth));
+	}
+	
+	/**
+	 * <p>获取系统上传速度（B/s）</p>
+	 * 
+	 * @return 系统上传速度：0-不限速
+	 */
+	public static final int getUploadBufferByte() {
+		return INSTANCE.uploadBufferByte;
+	}
+	
+	/**
+	 * <p>获取系统下载速度（B/s）</p>
+	 * 
+	 * @return 系统下载速度：0-不限速
+	 */
+	public static final int getDownloadBufferByte() {
+		return INSTANCE.downloadBufferByte;
+	}
+	
+	/**
+	 * <p>获取带宽类型配置</p>
+	 * 
+	 * @param type 带宽类型
+	 * 
+	 * @return 带宽类型配置
+	 */
+	public static final Bandwidth getBandwidth(Type type) {
+		return INSTANCE.bandwidths.get(type);
+	}
+	
+	/**
+	 * <p>获取任务带宽配置</p>
+	 * <p>没有配置：按照协议类型选择带宽类型、使用默认权重</p>
+	 * 
+	 * @param id 任务ID
+	 * @param protocolType 协议类型
+	 * 
+	 * @return 任务带宽配置
+	 */
+	public static final TaskBandwidth getTaskBandwidth(String id, Protocol.Type protocolType) {
+		Type type = Type.of(protocolType);
+		int weight = DEFAULT_WEIGHT;
+		if(id != null) {
+			final ConfigRepository configRepository = new ConfigRepository();
+			ConfigEntity entity = null;
+			entity = configRepository.findName(TASK_TYPE_PREFIX + id);
+			final String typeValue = INSTANCE.getString(entity, null);
+			for (Type value : Type.values()) {
+				if(value.value().equals(typeValue)) {
+					type = value;
+				}
+			}
+			entity = configRepository.findName(TASK_WEIGHT_PREFIX + id);
+			weight = INSTANCE.getInteger(entity, weight);
+		}
+		return new TaskBandwidth(type, Math.max(DEFAULT_WEIGHT, weight));
+	}
+	
+	/**
+	 * <p>设置任务带宽配置</p>
+	 * 
+	 * @param id 任务ID
+	 * @param type 带宽类型
+	 * @param weight 任务权重
+	 * 
+	 * @return 任务带宽配置
+	 */
+	public static final TaskBandwidth setTaskBandwidth(String id, Type type, int weight) {
+		final TaskBandwidth taskBandwidth = new TaskBandwidth(type, Math.max(DEFAULT_WEIGHT, weight));
+		if(id != null) {
+			final ConfigRepository configRepository = new ConfigRepository();
+			configRepository.merge(TASK_TYPE_PREFIX + id, taskBandwidth.type.value());
+			configRepository.merge(TASK_WEIGHT_PREFIX + id, String.valueOf(taskBandwidth.weight));
+		}
+		return taskBandwidth;
+	}
+	
+	/**
+	 * <p>删除任务带宽配置</p>
+	 * 
+	 * @param id 任务ID
+	 */
+	public static final void removeTaskBandwidth(String id) {
+		if(id == null) {
+			return;
+		}
+		final ConfigRepository configRepository = new ConfigRepository();
+		configRepository.deleteName(TASK_TYPE_PREFIX + id);
+		configRepository.deleteName(TASK_WEIGHT_PREFIX + id);
+	}
+	
+}
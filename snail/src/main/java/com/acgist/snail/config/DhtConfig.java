@@ -169,13 +169,26 @@ public final class DhtConfig extends PropertiesConfig {
 	 */
 	public static final int MAX_NODE_SIZE = 1024;
 	/**
-	 * <p>DHT请求清理周期（分钟）：{@value}</p>
+	 * <p>DHT节点桶刷新周期（分钟）：{@value}</p>
 	 */
-	public static final int DHT_REQUEST_CLEAN_INTERVAL = 10;
+	public static final int DHT_BUCKET_REFRESH_INTERVAL = 5;
+	/**
+	 * <p>DHT Token密钥轮换周期（分钟）：{@value}</p>
+	 */
+	public static final int DHT_SECRET_ROTATE_INTERVAL = 5;
+	/**
+	 * <p>DHT Peer存储清理周期（分钟）：{@value}</p>
+	 */
+	public static final int DHT_PEER_CLEAN_INTERVAL = 5;
 	/**
 	 * <p>DHT响应超时：{@value}</p>
 	 */
 	public static final int DHT_TIMEOUT = SystemConfig.RECEIVE_TIMEOUT_MILLIS;
+	/**
+	 * <p>DHT迭代查找超时：{@value}</p>
+	 * <p>超时后正在查询的节点标记失败并且结束查找</p>
+	 */
+	public static final int DHT_LOOKUP_TIMEOUT = 6 * DHT_TIMEOUT;
 	
 	static {
 		LOGGER.debug("初始化DHT节点配置：{}", DHT_CONFIG);
@@ -48,6 +48,16 @@ public final class PeerConfig extends PropertiesConfig {
 	 * <p>Peer最大连接失败次数：{@value}</p>
 	 */
 	public static final int MAX_FAIL_TIMES = 3;
+	/**
+	 * <p>Peer未完成请求最大数量：{@value}</p>
+	 * <p>扩展协议握手通告（reqq），上传请求队列超过数量拒绝请求。</p>
+	 */
+	public static final int MAX_REQUEST_SIZE = 128;
+	/**
+	 * <p>Peer连接失败缓存时间（毫秒）：{@value}</p>
+	 * <p>连接失败后等待缓存时间乘以失败次数才能再次连接</p>
+	 */
+	public static final int DIAL_FAIL_CACHE_TIME = 60 * 1000;
 	/**
 	 * <p>PeerId长度：{@value}</p>
 	 */
@@ -127,6 +137,18 @@ public final class PeerConfig extends PropertiesConfig {
 	 * <p>Peer状态：下载</p>
 	 */
 	public static final byte STATUS_DOWNLOAD = 1 << 0;
+	/**
+	 * <p>Peer连接方式：未知</p>
+	 */
+	public static final byte DIAL_NONE = 0;
+	/**
+	 * <p>Peer连接方式：TCP</p>
+	 */
+	public static final byte DIAL_TCP = 1;
+	/**
+	 * <p>Peer连接方式：UTP</p>
+	 */
+	public static final byte DIAL_UTP = 2;
 	/**
 	 * <p>pex flags：{@value}</p>
 	 * <p>偏爱加密：0x01</p>
@@ -376,7 +398,13 @@ public final class PeerConfig extends PropertiesConfig {
 		/**
 		 * <p>holepunch</p>
 		 */
-		HOLEPUNCH((byte) (1 << 5));
+		HOLEPUNCH((byte) (1 << 5)),
+		/**
+		 * <p>历史Peer</p>
+		 * 
+		 * @see PeerHistoryConfig
+		 */
+		HISTORY((byte) (1 << 6));
 		
 		/**
 		 * <p>来源标识</p>
@@ -401,12 +429,12 @@ public final class PeerConfig extends PropertiesConfig {
 		
 		/**
 		 * <p>判断是否优先使用</p>
-		 * <p>以下来源优先使用：{@link #PEX}、{@link #LSD}、{@link #CONNECT}</p>
+		 * <p>以下来源优先使用：{@link #PEX}、{@link #LSD}、{@link #CONNECT}、{@link #HISTORY}</p>
 		 * 
 		 * @return 是否优先使用
 		 */
 		public boolean preference() {
-			return this == PEX || this == LSD || this == CONNECT;
+			return this == PEX || this == LSD || this == CONNECT || this == HISTORY;
 		}
 		
 	}
@@ -0,0 +1,135 @@
+package com.acgist.snail.config;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.acgist.snail.utils.FileUtils;
+import com.acgist.snail.utils.StringUtils;
+
+/**
+ * <p>历史Peer配置</p>
+ * <p>任务释放时记录优质Peer，重新开始下载时优先连接。</p>
+ * 
+ * @author acgist
+ */
+public final class PeerHistoryConfig extends PropertiesConfig {
+	
+	private static final Logger LOGGER = LoggerFactory.getLogger(PeerHistoryConfig.class);
+	
+	/**
+	 * <p>单例对象</p>
+	 */
+	private static final PeerHistoryConfig INSTANCE = new PeerHistoryConfig();
+	
+	/**
+	 * <p>获取单例对象</p>
+	 * 
+	 * @return 单例对象
+	 */
+	public static final PeerHistoryConfig getInstance() {
+		return INSTANCE;
+	}
+	
+	/**
+	 * <p>配置文件：{@value}</p>
+	 */
+	private static final String PEER_HISTORY_CONFIG = "/config/bt.peer.properties";
+	/**
+	 * <p>Peer分隔符：{@value}</p>
+	 */
+	private static final String SEPARATOR = ",";
+	/**
+	 * <p>单个任务历史Peer最大保存数量：{@value}</p>
+	 */
+	public static final int MAX_PEER_SIZE = 50;
+	
+	static {
+		LOGGER.debug("初始化历史Peer配置：{}", PEER_HISTORY_CONFIG);
+		INSTANCE.init();
+		INSTANCE.release();
+	}
+	
+	/**
+	 * <p>历史Peer</p>
+	 * <p>InfoHashHex=host:port,host:port</p>
+	 */
+	private final Map<String, String> peers = new ConcurrentHashMap<>();
+	
+	private PeerHistoryConfig() {
+		super(PEER_HISTORY_CONFIG);
+	}
+	
+	/**
+	 * <p>初始化配置</p>
+	 */
+	private void init() {
+		if(!this.hasProperties()) {
+			return;
+		}
+		this.properties.entrySet().forEach(entry -> {
+			final String infoHashHex = (String) entry.getKey();
+			final String addresses = (String) entry.getValue();
+			if(StringUtils.isNotEmpty(infoHashHex) && StringUtils.isNotEmpty(addresses)) {
+				this.peers.put(infoHashHex, addresses);
+			} else {
+				LOGGER.warn("历史Peer注册失败：{}-{}", infoHashHex, addresses);
+			}
+		});
+	}
+	
+	/**
+	 * <p>获取任务历史Peer</p>
+	 * 
+	 * @param infoHashHex InfoHashHex
+	 * 
+	 * @return 历史Peer（host:port）
+	 */
+	public List<String> peers(String infoHashHex) {
+		final String addresses = this.peers.get(infoHashHex);
+		if(StringUtils.isEmpty(addresses)) {
+			return List.of();
+		}
+		return Arrays.asList(addresses.split(SEPARATOR));
+	}
+	
+	/**
+	 * <p>设置任务历史Peer</p>
+	 * <p>超过{@linkplain #MAX_PEER_SIZE 最大保存数量}的Peer直接丢弃</p>
+	 * 
+	 * @param infoHashHex InfoHashHex
+	 * @param addresses 历史Peer（host:port）：按照优先级排序
+	 */
+	public void peers(String infoHashHex, List<String> addresses) {
+		if(addresses == null || addresses.isEmpty()) {
+			return;
+		}
+		this.peers.put(infoHashHex, addresses.stream()
+			.limit(MAX_PEER_SIZE)
+			.collect(Collectors.joining(SEPARATOR))
+		);
+	}
+	
+	/**
+	 * <p>删除任务历史Peer</p>
+	 * 
+	 * @param infoHashHex InfoHashHex
+	 */
+	public void remove(String infoHashHex) {
+		this.peers.remove(infoHashHex);
+	}
+	
+	/**
+	 * <p>保存历史Peer配置</p>
+	 */
+	public void persistent() {
+		LOGGER.debug("保存历史Peer配置");
+		this.persistent(Map.copyOf(this.peers), FileUtils.userDirFile(PEER_HISTORY_CONFIG));
+	}
+	
+}
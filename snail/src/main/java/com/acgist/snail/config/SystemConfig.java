@@ -16,6 +16,12 @@ public final class SystemConfig extends PropertiesConfig {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(SystemConfig.class);
 	
+	/**
+	 * <p>用户工作目录</p>
+	 * <p>注意：必须在单例对象之前初始化（本类初始化时会使用）</p>
+	 */
+	private static final String USER_DIR = System.getProperty("user.dir");
+	
 	/**
 	 * <p>单例对象</p>
 	 */
@@ -89,6 +95,14 @@ public final class SystemConfig extends PropertiesConfig {
 	 * <p>IP和端口占用字节大小：{@value}</p>
 	 */
 	public static final int IP_PORT_LENGTH = 6;
+	/**
+	 * <p>IPv6地址占用字节大小：{@value}</p>
+	 */
+	public static final int IPV6_LENGTH = 16;
+	/**
+	 * <p>IPv6和端口占用字节大小：{@value}</p>
+	 */
+	public static final int IPV6_PORT_LENGTH = IPV6_LENGTH + 2;
 	/**
 	 * <p>TCP消息缓冲大小：{@value}</p>
 	 * <p>大小和Piece交换Slice大小一样</p>
@@ -186,11 +200,6 @@ public final class SystemConfig extends PropertiesConfig {
 	 * <p>换行分隔符（兼容）：{@value}</p>
 	 */
 	public static final String LINE_SEPARATOR_COMPAT = "\r\n";
-	/**
-	 * <p>用户工作目录</p>
-	 * <p>注意：初始化为常量（不能使用类变量：本类初始化时会使用）</p>
-	 */
-	private static final String USER_DIR = System.getProperty("user.dir");
 	
 	static {
 		LOGGER.debug("初始化系统配置：{}", SYSTEM_CONFIG);
@@ -282,6 +291,18 @@ public final class SystemConfig extends PropertiesConfig {
 	 * <p>单个任务Peer数量（同时下载）</p>
 	 */
 	private int peerSize;
+	/**
+	 * <p>单个任务Peer存档数量</p>
+	 */
+	private int peerStorageSize;
+	/**
+	 * <p>单个任务同时连接Peer数量</p>
+	 */
+	private int peerConnectSize;
+	/**
+	 * <p>系统Peer连接数量（所有任务）</p>
+	 */
+	private int peerGlobalSize;
 	/**
 	 * <p>单个任务Tracker数量</p>
 	 */
@@ -294,6 +315,11 @@ public final class SystemConfig extends PropertiesConfig {
 	 * <p>HLS下载线程数量</p>
 	 */
 	private int hlsThreadSize;
+	/**
+	 * <p>TCP线程数量（客户端、服务端共享）</p>
+	 * <p>小于等于零时使用CPU核心数量</p>
+	 */
+	private int tcpThreadSize;
 	/**
 	 * <p>DHT执行周期（秒）</p>
 	 */
@@ -351,9 +377,13 @@ public final class SystemConfig extends PropertiesConfig {
 		this.servicePort = this.getInteger("acgist.service.port", 16888);
 		this.torrentPort = this.getInteger("acgist.torrent.port", 18888);
 		this.peerSize = this.getInteger("acgist.peer.size", 20);
+		this.peerStorageSize = this.getInteger("acgist.peer.storage.size", 1000);
+		this.peerConnectSize = this.getInteger("acgist.peer.connect.size", 10);
+		this.peerGlobalSize = this.getInteger("acgist.peer.global.size", 200);
 		this.trackerSize = this.getInteger("acgist.tracker.size", 50);
 		this.pieceRepeatSize = this.getInteger("acgist.piece.repeat.size", 8);
 		this.hlsThreadSize = this.getInteger("acgist.hls.thread.size", 10);
+		this.tcpThreadSize = this.getInteger("acgist.tcp.thread.size", 0);
 		this.dhtInterval = this.getInteger("acgist.dht.interval", 120);
 		this.pexInterval = this.getInteger("acgist.pex.interval", 120);
 		this.lsdInterval = this.getInteger("acgist.lsd.interval", 120);
@@ -381,9 +411,13 @@ public final class SystemConfig extends PropertiesConfig {
 		LOGGER.debug("系统服务端口（本地服务：启动检测）：{}", this.servicePort);
 		LOGGER.debug("BT服务端口（本地端口：Peer、DHT、UTP、STUN）：{}", this.torrentPort);
 		LOGGER.debug("单个任务Peer数量（同时下载）：{}", this.peerSize);
+		LOGGER.debug("单个任务Peer存档数量：{}", this.peerStorageSize);
+		LOGGER.debug("单个任务同时连接Peer数量：{}", this.peerConnectSize);
+		LOGGER.debug("系统Peer连接数量（所有任务）：{}", this.peerGlobalSize);
 		LOGGER.debug("单个任务Tracker数量：{}", this.trackerSize);
 		LOGGER.debug("任务即将完成时可以重复下载的Piece数量：{}", this.pieceRepeatSize);
 		LOGGER.debug("HLS下载线程数量：{}", this.hlsThreadSize);
+		LOGGER.debug("TCP线程数量（客户端、服务端共享）：{}", this.tcpThreadSize);
 		LOGGER.debug("DHT执行周期（秒）：{}", this.dhtInterval);
 		LOGGER.debug("PEX执行周期（秒）：{}", this.pexInterval);
 		LOGGER.debug("本地发现执行周期（秒）：{}", this.lsdInterval);
@@ -551,6 +585,33 @@ public final class SystemConfig extends PropertiesConfig {
 		return INSTANCE.peerSize;
 	}
 	
+	/**
+	 * <p>获取单个任务Peer存档数量</p>
+	 * 
+	 * @return 单个任务Peer存档数量
+	 */
+	public static final int getPeerStorageSize() {
+		return INSTANCE.peerStorageSize;
+	}
+	
+	/**
+	 * <p>获取单个任务同时连接Peer数量</p>
+	 * 
+	 * @return 单个任务同时连接Peer数量
+	 */
+	public static final int getPeerConnectSize() {
+		return INSTANCE.peerConnectSize;
+	}
+	
+	/**
+	 * <p>获取系统Peer连接数量（所有任务）</p>
+	 * 
+	 * @return 系统Peer连接数量（所有任务）
+	 */
+	public static final int getPeerGlobalSize() {
+		return INSTANCE.peerGlobalSize;
+	}
+	
 	/**
 	 * <p>获取单个任务Tracker数量</p>
 	 * 
@@ -577,6 +638,19 @@ public final class SystemConfig extends PropertiesConfig {
 	public static final int getHlsThreadSize() {
 		return INSTANCE.hlsThreadSize;
 	}
+	
+	/**
+	 * <p>获取TCP线程数量（客户端、服务端共享）</p>
+	 * <p>没有配置时使用CPU核心数量</p>
+	 * 
+	 * @return TCP线程数量
+	 */
+	public static final int getTcpThreadSize() {
+		if(INSTANCE.tcpThreadSize <= 0) {
+			return Runtime.getRuntime().availableProcessors();
+		}
+		return INSTANCE.tcpThreadSize;
+	}
 
 	/**
 	 * <p>获取DHT执行周期（秒）</p>
@@ -89,20 +89,46 @@ public final class UtpConfig {
 	 * <p>扩展</p>
 	 */
 	public static final byte EXTENSION = 0;
+	/**
+	 * <p>扩展：选择确认（Selective ACK）</p>
+	 */
+	public static final byte EXTENSION_SACK = 1;
+	/**
+	 * <p>选择确认最大长度：{@value}</p>
+	 * <p>长度必须是4的倍数</p>
+	 */
+	public static final int SACK_MAX_LENGTH = 32;
 	/**
 	 * <p>UTP最大包长度：{@value}</p>
 	 * <p>UDP最大包长度：1500 - 20(IP头) - 8(UDP头) = 1472</p>
 	 * <p>UTP最大包长度：1472 - 20(UTP扩展消息头) = 1452</p>
 	 */
 	public static final int UTP_PACKET_MAX_LENGTH = 1452;
+	/**
+	 * <p>UTP最小包长度：{@value}</p>
+	 * <p>IPv4最小重组长度：576 - 20(IP头) - 8(UDP头) - 20(UTP头) = 528</p>
+	 * <p>数据包大小探测开始长度</p>
+	 */
+	public static final int UTP_PACKET_MIN_LENGTH = 528;
+	/**
+	 * <p>UTP消息合并等待时间（毫秒）：{@value}</p>
+	 * <p>存在未确认数据时小消息等待合并发送</p>
+	 */
+	public static final int COALESCE_DELAY = 10;
 	/**
 	 * <p>默认窗口大小：{@value}</p>
 	 */
 	public static final int WND_SIZE = SystemConfig.ONE_MB;
 	/**
 	 * <p>最大发送次数：{@value}</p>
+	 * <p>超过最大发送次数连接视为断开</p>
+	 */
+	public static final byte MAX_PUSH_TIMES = 6;
+	/**
+	 * <p>最大半连接数量：{@value}</p>
+	 * <p>服务端收到握手消息但是没有收到数据消息的连接</p>
 	 */
-	public static final byte MAX_PUSH_TIMES = 3;
+	public static final int MAX_HALF_OPEN = 64;
 	/**
 	 * <p>快速重传发送ACK次数：{@value}</p>
 	 */
@@ -0,0 +1,369 @@
+package com.acgist.snail.context;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.acgist.snail.config.BandwidthConfig;
+import com.acgist.snail.config.BandwidthConfig.Bandwidth;
+import com.acgist.snail.config.BandwidthConfig.TaskBandwidth;
+import com.acgist.snail.config.BandwidthConfig.Type;
+import com.acgist.snail.config.DownloadConfig;
+import com.acgist.snail.config.SystemConfig;
+import com.acgist.snail.downloader.DownloaderManager;
+import com.acgist.snail.pojo.IStatisticsSession;
+import com.acgist.snail.pojo.ITaskSession;
+import com.acgist.snail.pojo.session.LimitSession;
+import com.acgist.snail.pojo.session.StatisticsSession;
+
+/**
+ * <p>带宽上下文</p>
+ * <p>限速层级：系统 - 任务 - Peer，每个层级都是令牌桶，等待时间取所有层级最大等待时间。</p>
+ * <p>两级加权公平分配：系统速度按照带宽类型权重分配给带宽类型，带宽类型速度按照任务权重分配给任务。</p>
+ * <p>每级分配都保证最小速度，不超过最大速度，空闲的剩余带宽分配给其他带宽类型（任务）。</p>
+ * <p>需要的速度通过实际速度估算：实际速度的{@value #DEMAND_SCALE}倍（预留增长空间）</p>
+ * <p>空闲带宽类型（任务）使用按照权重计算的速度：开始传输时不会等待重新分配（系统令牌桶保证不会超过系统速度）</p>
+ * <p>控制流量（DHT、Tracker）不会等待，但是计入系统令牌桶和控制流量速度。</p>
+ * 
+ * @author acgist
+ */
+public final class BandwidthContext {
+	
+	private static final Logger LOGGER = LoggerFactory.getLogger(BandwidthContext.class);
+	
+	private static final BandwidthContext INSTANCE = new BandwidthContext();
+	
+	public static final BandwidthContext getInstance() {
+		return INSTANCE;
+	}
+	
+	/**
+	 * <p>重新分配周期（秒）：{@value}</p>
+	 */
+	private static final int REBALANCE_INTERVAL = 1;
+	/**
+	 * <p>需要速度倍数：{@value}</p>
+	 */
+	private static final int DEMAND_SCALE = 2;
+	/**
+	 * <p>最小分配速度（B/s）：{@value}</p>
+	 * <p>系统限速时分配速度不能为零（零表示不限速）</p>
+	 */
+	private static final long MIN_ALLOCATION = SystemConfig.ONE_KB;
+	
+	/**
+	 * <p>控制流量统计信息</p>
+	 */
+	private final IStatisticsSession controlStatistics;
+	/**
+	 * <p>带宽类型上传速度分配（B/s）</p>
+	 */
+	private volatile Map<Type, Long> uploadAllocations;
+	/**
+	 * <p>带宽类型下载速度分配（B/s）</p>
+	 */
+	private volatile Map<Type, Long> downloadAllocations;
+	/**
+	 * <p>任务上传速度分配（B/s）</p>
+	 * <p>每次重新分配替换：删除的任务不会残留</p>
+	 */
+	private volatile Map<ITaskSession, Long> taskUploadAllocations;
+	/**
+	 * <p>任务下载速度分配（B/s）</p>
+	 * <p>每次重新分配替换：删除的任务不会残留</p>
+	 */
+	private volatile Map<ITaskSession, Long> taskDownloadAllocations;
+	
+	private BandwidthContext() {
+		this.controlStatistics = new StatisticsSession(false, SystemStatistics.getInstance().statistics());
+		this.uploadAllocations = Map.of();
+		this.downloadAllocations = Map.of();
+		this.taskUploadAllocations = Map.of();
+		this.taskDownloadAllocations = Map.of();
+	}
+	
+	/**
+	 * <p>注册定时分配任务</p>
+	 */
+	public void register() {
+		LOGGER.debug("注册带宽上下文：定时任务");
+		SystemThreadContext.timerFixedDelay(
+			REBALANCE_INTERVAL,
+			REBALANCE_INTERVAL,
+			TimeUnit.SECONDS,
+			() -> this.rebalance()
+		);
+	}
+	
+	/**
+	 * <p>获取控制流量统计信息</p>
+	 * <p>控制流量不会限速：不用等待返回的等待时间</p>
+	 * 
+	 * @return 控制流量统计信息
+	 */
+	public IStatisticsSession controlStatistics() {
+		return this.controlStatistics;
+	}
+	
+	/**
+	 * <p>新建任务统计信息</p>
+	 * <p>任务限速使用任务速度分配，上级统计信息：系统统计信息</p>
+	 * 
+	 * @param taskSession 任务信息
+	 * 
+	 * @return 任务统计信息
+	 */
+	public IStatisticsSession newTaskStatistics(ITaskSession taskSession) {
+		return new StatisticsSession(
+			new LimitSession(() -> this.uploadAllocation(taskSession)),
+			new LimitSession(() -> this.downloadAllocation(taskSession)),
+			SystemStatistics.getInstance().statistics()
+		);
+	}
+	
+	/**
+	 * <p>获取带宽类型上传速度分配（B/s）</p>
+	 * 
+	 * @param type 带宽类型
+	 * 
+	 * @return 上传速度分配：0-不限速
+	 */
+	public long uploadAllocation(Type type) {
+		return this.uploadAllocations.getOrDefault(type, 0L);
+	}
+	
+	/**
+	 * <p>获取带宽类型下载速度分配（B/s）</p>
+	 * 
+	 * @param type 带宽类型
+	 * 
+	 * @return 下载速度分配：0-不限速
+	 */
+	public long downloadAllocation(Type type) {
+		return this.downloadAllocations.getOrDefault(type, 0L);
+	}
+	
+	/**
+	 * <p>获取任务上传速度分配（B/s）</p>
+	 * <p>没有分配（新建任务）：任务速度和带宽类型速度较小值</p>
+	 * 
+	 * @param taskSession 任务信息
+	 * 
+	 * @return 上传速度分配：0-不限速
+	 */
+	public long uploadAllocation(ITaskSession taskSession) {
+		final Long allocation = this.taskUploadAllocations.get(taskSession);
+		if(allocation != null) {
+			return allocation;
+		}
+		return minLimit(DownloadConfig.getUploadBufferByte(), this.uploadAllocation(taskSession.bandwidth().type()));
+	}
+	
+	/**
+	 * <p>获取任务下载速度分配（B/s）</p>
+	 * <p>没有分配（新建任务）：任务速度和带宽类型速度较小值</p>
+	 * 
+	 * @param taskSession 任务信息
+	 * 
+	 * @return 下载速度分配：0-不限速
+	 */
+	public long downloadAllocation(ITaskSession taskSession) {
+		final Long allocation = this.taskDownloadAllocations.get(taskSession);
+		if(allocation != null) {
+			return allocation;
+		}
+		return minLimit(DownloadConfig.getDownloadBufferByte(), this.downloadAllocation(taskSession.bandwidth().type()));
+	}
+	
+	/**
+	 * <p>重新分配带宽类型和任务速度</p>
+	 */
+	public void rebalance() {
+		final List<ITaskSession> tasks = DownloaderManager.getInstance().allTask();
+		final Map<ITaskSession, Long> taskUploadAllocations = new HashMap<>();
+		final Map<ITaskSession, Long> taskDownloadAllocations = new HashMap<>();
+		final Map<Type, Long> uploadAllocations = this.allocate(
+			BandwidthConfig.getUploadBufferByte(),
+			DownloadConfig.getUploadBufferByte(),
+			tasks,
+			IStatisticsSession::uploadSpeed,
+			taskUploadAllocations
+		);
+		final Map<Type, Long> downloadAllocations = this.allocate(
+			BandwidthConfig.getDownloadBufferByte(),
+			DownloadConfig.getDownloadBufferByte(),
+			tasks,
+			IStatisticsSession::downloadSpeed,
+			taskDownloadAllocations
+		);
+		this.uploadAllocations = uploadAllocations;
+		this.downloadAllocations = downloadAllocations;
+		this.taskUploadAllocations = taskUploadAllocations;
+		this.taskDownloadAllocations = taskDownloadAllocations;
+		if(LOGGER.isDebugEnabled()) {
+			LOGGER.debug("带宽分配（上传、下载）：{}-{}", uploadAllocations, downloadAllocations);
+		}
+	}
+	
+	/**
+	 * <p>分配带宽类型和任务速度</p>
+	 * 
+	 * @param total 系统速度
+	 * @param taskMax 任务最大速度
+	 * @param tasks 任务列表
+	 * @param speedFunction 实际速度
+	 * @param taskAllocations 任务速度分配
+	 * 
+	 * @return 带宽类型速度分配
+	 */
+	private Map<Type, Long> allocate(
+		long total, long taskMax, List<ITaskSession> tasks,
+		ToLongFunction<IStatisticsSession> speedFunction, Map<ITaskSession, Long> taskAllocations
+	) {
+		final Map<Type, Bandwidth> bandwidths = new EnumMap<>(Type.class);
+		final Map<Type, Long> speeds = new EnumMap<>(Type.class);
+		for (Type type : Type.values()) {
+			bandwidths.put(type, BandwidthConfig.getBandwidth(type));
+		}
+		speeds.put(Type.CONTROL, speedFunction.applyAsLong(this.controlStatistics));
+		final Map<Type, Map<ITaskSession, Bandwidth>> taskBandwidths = new EnumMap<>(Type.class);
+		final Map<ITaskSession, Long> taskSpeeds = new HashMap<>();
+		for (ITaskSession task : tasks) {
+			final TaskBandwidth taskBandwidth = task.bandwidth();
+			final long speed = speedFunction.applyAsLong(task.statistics());
+			taskBandwidths
+				.computeIfAbsent(taskBandwidth.type(), key -> new LinkedHashMap<>())
+				.put(task, Bandwidth.newInstance(taskBandwidth.weight(), 0, (int) taskMax));
+			taskSpeeds.put(task, speed);
+			speeds.merge(taskBandwidth.type(), speed, Long::sum);
+		}
+		final Map<Type, Long> allocations = new EnumMap<>(allocate(total, bandwidths, speeds));
+		taskBandwidths.forEach((type, value) -> taskAllocations.putAll(allocate(allocations.get(type), value, taskSpeeds)));
+		return allocations;
+	}
+	
+	/**
+	 * <p>加权公平分配速度</p>
+	 * <p>保证最小速度，然后按照权重分配剩余速度：需要速度小于分配速度时剩余速度重新分配。</p>
+	 * 
+	 * @param <K> 分配对象类型
+	 * 
+	 * @param total 总速度：0-不限速
+	 * @param bandwidths 分配对象带宽配置
+	 * @param speeds 分配对象实际速度
+	 * 
+	 * @return 速度分配
+	 */
+	static <K> Map<K, Long> allocate(long total, Map<K, Bandwidth> bandwidths, Map<K, Long> speeds) {
+		final Map<K, Long> allocations = new LinkedHashMap<>();
+		if(total <= 0L) {
+			// 不限速：只限制最大速度
+			bandwidths.forEach((key, bandwidth) -> allocations.put(key, (long) bandwidth.max()));
+			return allocations;
+		}
+		long remaining = total;
+		int weightSum = 0;
+		final Map<K, Long> demands = new HashMap<>();
+		final List<K> pending = new ArrayList<>();
+		for (Map.Entry<K, Bandwidth> entry : bandwidths.entrySet()) {
+			final K key = entry.getKey();
+			final Bandwidth bandwidth = entry.getValue();
+			weightSum += bandwidth.weight();
+			// 保证最小速度
+			remaining -= bandwidth.min();
+			final long speed = speeds.getOrDefault(key, 0L);
+			if(speed > 0L) {
+				final long demand = limitMax(bandwidth, speed * DEMAND_SCALE);
+				if(demand > bandwidth.min()) {
+					demands.put(key, demand - bandwidth.min());
+					pending.add(key);
+				} else {
+					allocations.put(key, (long) bandwidth.min());
+				}
+			}
+		}
+		remaining = Math.max(0L, remaining);
+		// 空闲：按照权重计算速度
+		for (Map.Entry<K, Bandwidth> entry : bandwidths.entrySet()) {
+			final K key = entry.getKey();
+			if(demands.containsKey(key) || allocations.containsKey(key)) {
+				continue;
+			}
+			final Bandwidth bandwidth = entry.getValue();
+			final long share = remaining * bandwidth.weight() / weightSum;
+			allocations.put(key, limitMax(bandwidth, bandwidth.min() + share));
+		}
+		// 传输中：按照权重分配剩余速度，需要速度小于分配速度时剩余速度重新分配。
+		boolean satisfied = true;
+		while(satisfied && !pending.isEmpty()) {
+			satisfied = false;
+			final int pendingWeightSum = pending.stream().mapToInt(key -> bandwidths.get(key).weight()).sum();
+			final var iterator = pending.iterator();
+			while(iterator.hasNext()) {
+				final K key = iterator.next();
+				final Bandwidth bandwidth = bandwidths.get(key);
+				final long demand = demands.get(key);
+				final long share = remaining * bandwidth.weight() / pendingWeightSum;
+				if(demand <= share) {
+					allocations.put(key, bandwidth.min() + demand);
+					remaining -= demand;
+					iterator.remove();
+					satisfied = true;
+					break;
+				}
+			}
+		}
+		if(!pending.isEmpty()) {
+			final int pendingWeightSum = pending.stream().mapToInt(key -> bandwidths.get(key).weight()).sum();
+			for (K key : pending) {
+				final Bandwidth bandwidth = bandwidths.get(key);
+				final long share = remaining * bandwidth.weight() / pendingWeightSum;
+				allocations.put(key, limitMax(bandwidth, bandwidth.min() + share));
+			}
+		}
+		allocations.replaceAll((key, value) -> Math.max(MIN_ALLOCATION, value));
+		return allocations;
+	}
+	
+	/**
+	 * <p>限制最大速度</p>
+	 * 
+	 * @param bandwidth 带宽配置
+	 * @param value 速度
+	 * 
+	 * @return 速度
+	 */
+	private static final long limitMax(Bandwidth bandwidth, long value) {
+		if(bandwidth.max() > 0) {
+			return Math.min(bandwidth.max(), value);
+		}
+		return value;
+	}
+	
+	/**
+	 * <p>获取较小限速</p>
+	 * 
+	 * @param source 限速：0-不限速
+	 * @param target 限速：0-不限速
+	 * 
+	 * @return 较小限速：0-不限速
+	 */
+	private static final long minLimit(long source, long target) {
+		if(source <= 0L) {
+			return target;
+		}
+		if(target <= 0L) {
+			return source;
+		}
+		return Math.min(source, target);
+	}
+	
+}
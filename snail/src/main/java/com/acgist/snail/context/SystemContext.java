@@ -6,6 +6,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.acgist.snail.config.DhtConfig;
+import com.acgist.snail.config.PeerHistoryConfig;
 import com.acgist.snail.config.SystemConfig;
 import com.acgist.snail.config.TrackerConfig;
 import com.acgist.snail.context.exception.NetException;
@@ -22,12 +23,12 @@ import com.acgist.snail.context.initializer.impl.TrackerInitializer;
 import com.acgist.snail.downloader.DownloaderManager;
 import com.acgist.snail.format.JSON;
 import com.acgist.snail.gui.GuiManager;
-import com.acgist.snail.net.TcpClient;
 import com.acgist.snail.net.TcpServer;
 import com.acgist.snail.net.UdpServer;
 import com.acgist.snail.net.application.ApplicationClient;
 import com.acgist.snail.net.application.ApplicationServer;
 import com.acgist.snail.net.http.HTTPClient;
+import com.acgist.snail.net.torrent.TorrentAcceptHandler;
 import com.acgist.snail.net.torrent.TorrentServer;
 import com.acgist.snail.net.torrent.lsd.LocalServiceDiscoveryServer;
 import com.acgist.snail.net.torrent.peer.PeerServer;
@@ -190,15 +191,16 @@ public final class SystemContext {
 				PeerServer.getInstance().close();
 				TrackerServer.getInstance().close();
 				TorrentServer.getInstance().close();
+				TorrentAcceptHandler.getInstance().shutdown();
 				ApplicationServer.getInstance().close();
 				LocalServiceDiscoveryServer.getInstance().close();
-				TcpClient.shutdown();
 				TcpServer.shutdown();
 				UdpServer.shutdown();
 				UtpRequestQueue.getInstance().shutdown();
 				DatabaseManager.getInstance().shutdown();
 				DhtConfig.getInstance().persistent();
 				TrackerConfig.getInstance().persistent();
+				PeerHistoryConfig.getInstance().persistent();
 				GuiManager.getInstance().exit();
 				SystemThreadContext.shutdown();
 				LOGGER.info("系统已关闭");
@@ -1,13 +1,15 @@
 package com.acgist.snail.context;
 
+import com.acgist.snail.config.BandwidthConfig;
 import com.acgist.snail.pojo.IStatisticsSession;
 import com.acgist.snail.pojo.IStatisticsSessionGetter;
+import com.acgist.snail.pojo.session.LimitSession;
 import com.acgist.snail.pojo.session.StatisticsSession;
 
 /**
  * <p>系统统计</p>
  * <p>系统统计：累计下载、累计上传、速度采样</p>
- * <p>当前系统限制单个任务的速度，如果想要限制整个软件的速度，可以打开{@linkplain #statistics 系统全局统计}限速。</p>
+ * <p>系统全局统计限速：{@linkplain BandwidthConfig#getUploadBufferByte() 系统上传速度}、{@linkplain BandwidthConfig#getDownloadBufferByte() 系统下载速度}</p>
  * 
  * @author acgist
  */
@@ -25,7 +27,11 @@ public final class SystemStatistics implements IStatisticsSessionGetter {
 	private IStatisticsSession statistics;
 	
 	private SystemStatistics() {
-		this.statistics = new StatisticsSession();
+		this.statistics = new StatisticsSession(
+			new LimitSession(BandwidthConfig::getUploadBufferByte),
+			new LimitSession(BandwidthConfig::getDownloadBufferByte),
+			null
+		);
 	}
 	
 	@Override
@@ -1,7 +1,10 @@
 package com.acgist.snail.context;
 
+import java.io.IOException;
 import java.nio.channels.AsynchronousChannelGroup;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
@@ -41,12 +44,12 @@ public final class SystemThreadContext {
 	public static final String SNAIL_THREAD_UTP_QUEUE = SNAIL_THREAD + "-UTP-Queue";
 	/** 下载器线程 */
 	public static final String SNAIL_THREAD_DOWNLOADER = SNAIL_THREAD + "-Downloader";
-	/** TCP客户端线程 */
-	public static final String SNAIL_THREAD_TCP_CLIENT = SNAIL_THREAD + "-TCP-Client";
-	/** TCP服务端线程 */
-	public static final String SNAIL_THREAD_TCP_SERVER = SNAIL_THREAD + "-TCP-Server";
+	/** TCP线程（客户端、服务端共享） */
+	public static final String SNAIL_THREAD_TCP = SNAIL_THREAD + "-TCP";
 	/** UDP服务端线程 */
 	public static final String SNAIL_THREAD_UDP_SERVER = SNAIL_THREAD + "-UDP-Server";
+	/** UDP消息处理线程 */
+	public static final String SNAIL_THREAD_UDP_HANDLER = SNAIL_THREAD + "-UDP-Handler";
 	/** HTTP客户端线程 */
 	public static final String SNAIL_THREAD_HTTP_CLIENT = SNAIL_THREAD + "-HTTP-Client";
 	
@@ -165,6 +168,29 @@ public final class SystemThreadContext {
 		);
 	}
 	
+	/**
+	 * <p>创建工作窃取线程池</p>
+	 * <p>使用FIFO模式：适合事件处理任务（任务不会合并）</p>
+	 * 
+	 * @param parallelism 线程数量
+	 * @param name 线程池名称
+	 * 
+	 * @return 线程池
+	 */
+	public static final ExecutorService newWorkStealingExecutor(int parallelism, String name) {
+		return new ForkJoinPool(
+			parallelism,
+			pool -> {
+				final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+				thread.setName(name);
+				thread.setDaemon(true); // 守护线程
+				return thread;
+			},
+			null,
+			true
+		);
+	}
+	
 	/**
 	 * <p>创建定时线程池</p>
 	 * 
@@ -180,6 +206,24 @@ public final class SystemThreadContext {
 		);
 	}
 	
+	/**
+	 * <p>创建固定大小异步通道线程池</p>
+	 * <p>线程数量固定：防止大量连接时创建过多线程</p>
+	 * 
+	 * @param size 线程数量
+	 * @param name 线程池名称
+	 * 
+	 * @return 异步通道线程池
+	 * 
+	 * @throws IOException IO异常
+	 */
+	public static final AsynchronousChannelGroup newChannelGroup(int size, String name) throws IOException {
+		return AsynchronousChannelGroup.withFixedThreadPool(
+			size,
+			SystemThreadContext.newThreadFactory(name)
+		);
+	}
+	
 	/**
 	 * <p>创建线程池工厂</p>
 	 * 
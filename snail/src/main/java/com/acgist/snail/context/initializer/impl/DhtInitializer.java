@@ -6,6 +6,7 @@ import org.slf4j.LoggerFactory;
 import com.acgist.snail.context.initializer.Initializer;
 import com.acgist.snail.net.torrent.dht.bootstrap.DhtManager;
 import com.acgist.snail.net.torrent.dht.bootstrap.NodeManager;
+import com.acgist.snail.net.torrent.dht.bootstrap.PeerStore;
 
 /**
  * <p>初始化DHT</p>
@@ -28,6 +29,7 @@ public final class DhtInitializer extends Initializer {
 		LOGGER.info("初始化DHT");
 		DhtManager.getInstance().register();
 		NodeManager.getInstance().register();
+		PeerStore.getInstance().register();
 	}
 
 }
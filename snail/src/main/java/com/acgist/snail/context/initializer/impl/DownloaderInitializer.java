@@ -5,6 +5,7 @@ import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.acgist.snail.context.BandwidthContext;
 import com.acgist.snail.context.exception.DownloadException;
 import com.acgist.snail.context.initializer.Initializer;
 import com.acgist.snail.downloader.DownloaderManager;
@@ -33,6 +34,7 @@ public final class DownloaderInitializer extends Initializer {
 	@Override
 	protected void init() {
 		LOGGER.info("初始化下载器");
+		BandwidthContext.getInstance().register();
 		final TaskRepository repository = new TaskRepository();
 		final List<TaskEntity> list = repository.findAll();
 		if(CollectionUtils.isNotEmpty(list)) {
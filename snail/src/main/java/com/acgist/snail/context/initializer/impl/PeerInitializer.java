@@ -4,6 +4,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.acgist.snail.context.initializer.Initializer;
+import com.acgist.snail.net.torrent.bootstrap.PeerConnectManager;
+import com.acgist.snail.net.torrent.crypt.MSEKeyPairPool;
 import com.acgist.snail.net.torrent.peer.PeerServer;
 
 /**
@@ -26,6 +28,8 @@ public final class PeerInitializer extends Initializer {
 	protected void init() {
 		LOGGER.info("初始化Peer");
 		PeerServer.getInstance().listen();
+		PeerConnectManager.getInstance().register();
+		MSEKeyPairPool.getInstance().register();
 	}
 
 }
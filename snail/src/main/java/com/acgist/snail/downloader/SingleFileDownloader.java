@@ -13,6 +13,7 @@ import com.acgist.snail.context.exception.DownloadException;
 import com.acgist.snail.context.exception.NetException;
 import com.acgist.snail.pojo.ITaskSession;
 import com.acgist.snail.pojo.session.StreamSession;
+import com.acgist.snail.utils.ThreadUtils;
 
 /**
  * <p>单文件任务下载器</p>
@@ -72,7 +73,11 @@ public abstract class SingleFileDownloader extends Downloader {
 				this.output.write(bytes, 0, length);
 				this.streamSession.heartbeat();
 				this.statistics.download(length);
-				this.statistics.downloadLimit(length);
+				// 独立下载线程：直接休眠等待
+				final long wait = this.statistics.downloadLimit(length);
+				if(wait > 0L) {
+					ThreadUtils.sleep(wait);
+				}
 			}
 		} catch (Exception e) {
 			throw new DownloadException("数据流操作失败", e);
@@ -1,5 +1,6 @@
 package com.acgist.snail.downloader;
 
+import com.acgist.snail.config.PeerHistoryConfig;
 import com.acgist.snail.context.exception.DownloadException;
 import com.acgist.snail.context.exception.NetException;
 import com.acgist.snail.net.torrent.TorrentManager;
@@ -42,6 +43,7 @@ public abstract class TorrentSessionDownloader extends MultifileDownloader {
 		if(this.torrentSession != null) {
 			final String infoHashHex = this.torrentSession.infoHashHex();
 			PeerManager.getInstance().remove(infoHashHex); // 删除Peer信息
+			PeerHistoryConfig.getInstance().remove(infoHashHex); // 删除历史Peer信息
 			TorrentManager.getInstance().remove(infoHashHex); // 删除种子信息
 		}
 		super.delete();
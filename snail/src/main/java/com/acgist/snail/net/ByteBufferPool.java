@@ -0,0 +1,99 @@
+package com.acgist.snail.net;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>直接内存缓冲池</p>
+ * <p>复用固定大小的直接内存缓冲，减少网络读取时的内存分配和JDK内部的内存拷贝。</p>
+ * 
+ * @author acgist
+ */
+public final class ByteBufferPool {
+
+	/**
+	 * <p>缓冲大小</p>
+	 */
+	private final int capacity;
+	/**
+	 * <p>最大缓存数量</p>
+	 * <p>超过最大缓存数量的缓冲归还时直接丢弃</p>
+	 */
+	private final int maxSize;
+	/**
+	 * <p>当前缓存数量</p>
+	 */
+	private final AtomicInteger size;
+	/**
+	 * <p>缓冲队列</p>
+	 */
+	private final Queue<ByteBuffer> buffers;
+	
+	/**
+	 * @param capacity 缓冲大小
+	 * @param maxSize 最大缓存数量
+	 */
+	private ByteBufferPool(int capacity, int maxSize) {
+		this.capacity = capacity;
+		this.maxSize = maxSize;
+		this.size = new AtomicInteger(0);
+		this.buffers = new ConcurrentLinkedQueue<>();
+	}
+	
+	/**
+	 * <p>创建缓冲池</p>
+	 * 
+	 * @param capacity 缓冲大小
+	 * @param maxSize 最大缓存数量
+	 * 
+	 * @return 缓冲池
+	 */
+	public static final ByteBufferPool newInstance(int capacity, int maxSize) {
+		return new ByteBufferPool(capacity, maxSize);
+	}
+	
+	/**
+	 * <p>获取缓冲</p>
+	 * <p>缓冲池没有缓冲时新建缓冲</p>
+	 * 
+	 * @return 缓冲（写模式）
+	 */
+	public ByteBuffer borrow() {
+		final ByteBuffer buffer = this.buffers.poll();
+		if(buffer == null) {
+			return ByteBuffer.allocateDirect(this.capacity);
+		}
+		this.size.decrementAndGet();
+		return buffer;
+	}
+	
+	/**
+	 * <p>归还缓冲</p>
+	 * <p>归还后不能继续使用缓冲</p>
+	 * 
+	 * @param buffer 缓冲
+	 */
+	public void giveBack(ByteBuffer buffer) {
+		if(buffer == null || !buffer.isDirect() || buffer.capacity() != this.capacity) {
+			return;
+		}
+		if(this.size.incrementAndGet() > this.maxSize) {
+			this.size.decrementAndGet();
+			return;
+		}
+		buffer.clear();
+		this.buffers.offer(buffer);
+	}
+	
+	/**
+	 * <p>获取当前缓存数量</p>
+	 * 
+	 * @return 当前缓存数量
+	 */
+	public int size() {
+		return this.size.get();
+	}
+	
+}
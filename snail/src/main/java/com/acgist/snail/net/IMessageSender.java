@@ -26,6 +26,26 @@ public interface IMessageSender {
 	 */
 	boolean available();
 	
+	/**
+	 * <p>可写状态</p>
+	 * <p>发送队列积压过多数据时不可写，发送方应该减少发送数据（背压）。</p>
+	 * 
+	 * @return true-可写；false-不可写；
+	 */
+	default boolean writable() {
+		return true;
+	}
+	
+	/**
+	 * <p>延迟接收消息（限速）</p>
+	 * <p>本次消息处理完成后等待指定时间再读取后续消息，不会阻塞线程。</p>
+	 * <p>默认不支持延迟接收</p>
+	 * 
+	 * @param delay 等待时间（毫秒）
+	 */
+	default void delayReceive(long delay) {
+	}
+	
 	/**
 	 * <p>消息发送</p>
 	 * 
@@ -76,7 +96,7 @@ public interface IMessageSender {
 	 * <p>所有其他消息发送均使用此方法发送</p>
 	 * 
 	 * @param buffer 消息内容
-	 * @param timeout 超时时间
+	 * @param timeout 超时时间（秒）：{@link #TIMEOUT_NONE}-没有超时时间
 	 * 
 	 * @throws NetException 网络异常
 	 */
@@ -2,10 +2,12 @@ package com.acgist.snail.net;
 
 import java.io.IOException;
 import java.net.StandardSocketOptions;
-import java.nio.channels.AsynchronousChannelGroup;
 import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.CompletionHandler;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
@@ -25,21 +27,6 @@ public abstract class TcpClient<T extends TcpMessageHandler> extends ClientMessa
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(TcpClient.class);
 	
-	/**
-	 * <p>客户端线程池</p>
-	 */
-	private static final AsynchronousChannelGroup GROUP;
-	
-	static {
-		AsynchronousChannelGroup group = null;
-		try {
-			group = AsynchronousChannelGroup.withThreadPool(SystemThreadContext.newCacheExecutor(SystemThreadContext.SNAIL_THREAD_TCP_CLIENT));
-		} catch (Exception e) {
-			LOGGER.error("启动TCP Client Group异常", e);
-		}
-		GROUP = group;
-	}
-	
 	/**
 	 * <p>客户端名称</p>
 	 */
@@ -81,7 +68,7 @@ public abstract class TcpClient<T extends TcpMessageHandler> extends ClientMessa
 		boolean ok = true;
 		AsynchronousSocketChannel socket = null;
 		try {
-			socket = AsynchronousSocketChannel.open(GROUP);
+			socket = AsynchronousSocketChannel.open(TcpServer.GROUP);
 			// TODO：参数调优：TCP_NODELAY
 //			socket.setOption(StandardSocketOptions.TCP_NODELAY, true);
 			socket.setOption(StandardSocketOptions.SO_REUSEADDR, true);
@@ -107,18 +94,63 @@ public abstract class TcpClient<T extends TcpMessageHandler> extends ClientMessa
 		return ok;
 	}
 	
+	/**
+	 * <p>异步连接服务端</p>
+	 * <p>连接过程不会阻塞线程，连接成功返回true，连接失败或者超时返回false。</p>
+	 * <p>取消连接（{@link CompletableFuture#cancel(boolean)}）时关闭通道</p>
+	 * 
+	 * @param host 服务端地址
+	 * @param port 服务端端口
+	 * 
+	 * @return 连接状态
+	 */
+	protected CompletableFuture<Boolean> connectAsync(final String host, final int port) {
+		final CompletableFuture<Boolean> future = new CompletableFuture<>();
+		final AsynchronousSocketChannel socket;
+		try {
+			socket = AsynchronousSocketChannel.open(TcpServer.GROUP);
+			socket.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+			socket.setOption(StandardSocketOptions.SO_KEEPALIVE, true);
+		} catch (IOException e) {
+			LOGGER.error("TCP客户端连接异常：{}-{}", host, port, e);
+			this.handler.close();
+			future.complete(false);
+			return future;
+		}
+		// 超时
+		final ScheduledFuture<?> timeout = SystemThreadContext.timer(this.timeout, TimeUnit.SECONDS, () -> future.complete(false));
+		future.whenComplete((ok, e) -> {
+			SystemThreadContext.shutdown(timeout);
+			if(!Boolean.TRUE.equals(ok)) {
+				// 连接失败、超时、取消
+				IoUtils.close(socket);
+				this.handler.close();
+			}
+		});
+		socket.connect(NetUtils.buildSocketAddress(host, port), future, new CompletionHandler<Void, CompletableFuture<Boolean>>() {
+			@Override
+			public void completed(Void result, CompletableFuture<Boolean> future) {
+				if(future.isDone()) {
+					// 已经超时或者取消
+					IoUtils.close(socket);
+					return;
+				}
+				TcpClient.this.handler.handle(socket);
+				future.complete(true);
+			}
+			@Override
+			public void failed(Throwable throwable, CompletableFuture<Boolean> future) {
+				LOGGER.debug("TCP客户端连接失败：{}-{}", host, port, throwable);
+				future.complete(false);
+			}
+		});
+		return future;
+	}
+	
 	@Override
 	public void close() {
 		LOGGER.debug("关闭TCP Client：{}", this.name);
 		super.close();
 	}
 
-	/**
-	 * <p>关闭TCP Client线程池</p>
-	 */
-	public static final void shutdown() {
-		LOGGER.info("关闭TCP Client线程池");
-		SystemThreadContext.shutdown(GROUP);
-	}
-
 }
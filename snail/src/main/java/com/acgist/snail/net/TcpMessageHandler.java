@@ -5,15 +5,16 @@ import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.channels.AsynchronousSocketChannel;
 import java.nio.channels.CompletionHandler;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
+import java.nio.channels.InterruptedByTimeoutException;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.acgist.snail.config.SystemConfig;
+import com.acgist.snail.context.SystemThreadContext;
 import com.acgist.snail.context.exception.NetException;
 import com.acgist.snail.net.codec.IMessageCodec;
 import com.acgist.snail.utils.IoUtils;
@@ -28,10 +29,66 @@ public abstract class TcpMessageHandler implements CompletionHandler<Integer, By
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(TcpMessageHandler.class);
 	
+	/**
+	 * <p>读取缓冲池最大缓存数量：{@value}</p>
+	 */
+	private static final int BUFFER_POOL_SIZE = 1024;
+	/**
+	 * <p>读取缓冲池</p>
+	 * <p>所有连接共享</p>
+	 */
+	private static final ByteBufferPool BUFFER_POOL = ByteBufferPool.newInstance(SystemConfig.TCP_BUFFER_LENGTH, BUFFER_POOL_SIZE);
+	/**
+	 * <p>发送队列高水位（字节）：{@value}</p>
+	 * <p>发送队列数据大小超过高水位时{@linkplain #writable() 不可写}</p>
+	 */
+	private static final int WRITE_HIGH_WATER_MARK = 64 * SystemConfig.TCP_BUFFER_LENGTH;
+	/**
+	 * <p>单次合并写入最大消息数量：{@value}</p>
+	 */
+	private static final int MAX_GATHERING_SIZE = 64;
+	/**
+	 * <p>默认写入超时时间（秒）：{@value}</p>
+	 * <p>没有设置超时时间的消息使用默认写入超时时间，超时关闭连接。</p>
+	 */
+	private static final int WRITE_TIMEOUT = SystemConfig.DOWNLOAD_TIMEOUT;
+	/**
+	 * <p>关闭等待时间（秒）：{@value}</p>
+	 * <p>关闭时发送队列还有数据等待发送完成，超时强制关闭。</p>
+	 */
+	private static final int CLOSE_TIMEOUT = SystemConfig.CONNECT_TIMEOUT;
+	
 	/**
 	 * <p>是否关闭</p>
 	 */
 	private volatile boolean close = false;
+	/**
+	 * <p>读取缓冲</p>
+	 * <p>每次读取复用缓冲，消息轮询结束后归还缓冲池。</p>
+	 */
+	private ByteBuffer readBuffer;
+	/**
+	 * <p>发送队列</p>
+	 * <p>消息由写入完成回调依次合并写入</p>
+	 */
+	private final Deque<WriteMessage> writeQueue = new ArrayDeque<>();
+	/**
+	 * <p>发送队列数据大小（字节）</p>
+	 */
+	private long writeQueueSize = 0L;
+	/**
+	 * <p>是否正在写入</p>
+	 */
+	private boolean writing = false;
+	/**
+	 * <p>写入完成回调</p>
+	 */
+	private final CompletionHandler<Long, ByteBuffer[]> writeHandler = new WriteHandler();
+	/**
+	 * <p>延迟读取时间（毫秒）</p>
+	 * <p>限速时设置：本次消息处理完成后延迟读取后续消息</p>
+	 */
+	private volatile long receiveDelay = 0L;
 	/**
 	 * <p>Socket</p>
 	 */
@@ -45,6 +102,7 @@ public abstract class TcpMessageHandler implements CompletionHandler<Integer, By
 	 * {@inheritDoc}
 	 * 
 	 * <p>使用消息处理器处理消息，如果没有实现消息处理器，请重写该方法。</p>
+	 * <p>注意：读取缓冲会被复用，处理消息时需要读取（拷贝）所有数据，不能保存缓冲引用。</p>
 	 */
 	@Override
 	public void onReceive(ByteBuffer buffer) throws NetException {
@@ -62,6 +120,7 @@ public abstract class TcpMessageHandler implements CompletionHandler<Integer, By
 	 */
 	public void handle(AsynchronousSocketChannel socket) {
 		this.socket = socket;
+		this.readBuffer = BUFFER_POOL.borrow();
 		this.loopMessage();
 	}
 	
@@ -71,35 +130,90 @@ public abstract class TcpMessageHandler implements CompletionHandler<Integer, By
 		return !this.close && this.socket != null && this.socket.isOpen();
 	}
 	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>消息放入发送队列后立即返回，不会阻塞等待发送完成。</p>
+	 * <p>超时时间（秒）：从放入发送队列开始计算，超时没有发送完成关闭连接；没有超时时间使用{@linkplain #WRITE_TIMEOUT 默认写入超时时间}。</p>
+	 * <p>注意：消息放入发送队列后不能修改</p>
+	 */
 	@Override
 	public void send(ByteBuffer buffer, int timeout) throws NetException {
 		this.check(buffer);
-		synchronized (this.socket) {
-			try {
-				final Future<Integer> future = this.socket.write(buffer);
-				/*
-				 * 阻塞线程：等待发送完成，防止多线程同时写导致WritePendingException。
-				 * 超时时间：超时异常会导致数据并没有发送完成而释放了锁，从而引起一连串的WritePendingException异常。
-				 * 建议：除了第一条消息（连接）以外的所有消息都不要使用超时时间。
-				 */
-				int size = 0;
-				if(timeout <= TIMEOUT_NONE) {
-					size = future.get();
-				} else {
-					size = future.get(timeout, TimeUnit.SECONDS);
+		synchronized (this.writeQueue) {
+			this.writeQueue.offer(new WriteMessage(buffer, timeout));
+			this.writeQueueSize += buffer.remaining();
+			if(this.writing) {
+				return;
+			}
+			this.writing = true;
+		}
+		this.write();
+	}
+	
+	/**
+	 * <p>判断是否可写</p>
+	 * <p>发送队列数据大小没有超过高水位</p>
+	 * 
+	 * @return true-可写；false-不可写；
+	 */
+	@Override
+	public boolean writable() {
+		synchronized (this.writeQueue) {
+			return this.writeQueueSize < WRITE_HIGH_WATER_MARK;
+		}
+	}
+	
+	/**
+	 * <p>合并写入发送队列中的消息</p>
+	 * <p>发送队列为空时结束写入，如果已经关闭同时关闭通道。</p>
+	 */
+	private void write() {
+		final ByteBuffer[] buffers;
+		final long now = System.currentTimeMillis();
+		long timeout = TimeUnit.SECONDS.toMillis(WRITE_TIMEOUT);
+		synchronized (this.writeQueue) {
+			if(this.writeQueue.isEmpty()) {
+				this.writing = false;
+				if(this.close) {
+					IoUtils.close(this.socket);
 				}
-				if(size <= 0) {
-					LOGGER.warn("TCP消息发送失败：{}", size);
+				return;
+			}
+			buffers = new ByteBuffer[Math.min(MAX_GATHERING_SIZE, this.writeQueue.size())];
+			final var iterator = this.writeQueue.iterator();
+			for (int index = 0; index < buffers.length; index++) {
+				final WriteMessage message = iterator.next();
+				buffers[index] = message.buffer;
+				// 合并写入超时时间：所有消息最小剩余超时时间
+				if(message.deadline > 0L) {
+					timeout = Math.min(timeout, message.deadline - now);
 				}
-			} catch (InterruptedException e) {
-				Thread.currentThread().interrupt();
-				throw new NetException(e);
-			} catch (TimeoutException | ExecutionException e) {
-				throw new NetException(e);
 			}
 		}
+		if(timeout <= 0L) {
+			this.writeHandler.failed(new InterruptedByTimeoutException(), buffers);
+			return;
+		}
+		try {
+			this.socket.write(buffers, 0, buffers.length, timeout, TimeUnit.MILLISECONDS, buffers, this.writeHandler);
+		} catch (Exception e) {
+			this.writeHandler.failed(e, buffers);
+		}
 	}
-
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>多次设置使用最大等待时间</p>
+	 */
+	@Override
+	public void delayReceive(long delay) {
+		if(delay > this.receiveDelay) {
+			this.receiveDelay = delay;
+		}
+	}
+	
 	@Override
 	public InetSocketAddress remoteSocketAddress() {
 		try {
@@ -110,9 +224,21 @@ public abstract class TcpMessageHandler implements CompletionHandler<Integer, By
 		return null;
 	}
 	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>发送队列还有数据时等待发送完成后关闭，超过{@linkplain #CLOSE_TIMEOUT 关闭等待时间}强制关闭。</p>
+	 * <p>读取缓冲在消息轮询结束后归还缓冲池（防止归还时还有读取操作）</p>
+	 */
 	@Override
 	public void close() {
 		this.close = true;
+		synchronized (this.writeQueue) {
+			if(this.writing) {
+				SystemThreadContext.timer(CLOSE_TIMEOUT, TimeUnit.SECONDS, () -> IoUtils.close(this.socket));
+				return;
+			}
+		}
 		IoUtils.close(this.socket);
 	}
 	
@@ -129,26 +255,123 @@ public abstract class TcpMessageHandler implements CompletionHandler<Integer, By
 				this.onReceive(buffer);
 			} catch (NetException e) {
 				LOGGER.error("TCP消息接收异常", e);
+			} finally {
+				// 消息处理器已经读取（拷贝）所有数据
+				buffer.clear();
 			}
 		}
-		this.loopMessage();
+		final long delay = this.receiveDelay;
+		if(delay > 0L) {
+			// 限速：延迟读取（不能阻塞线程）
+			this.receiveDelay = 0L;
+			SystemThreadContext.timer(delay, TimeUnit.MILLISECONDS, this::loopMessage);
+		} else {
+			this.loopMessage();
+		}
 	}
 	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>读取失败：关闭通道（和发送失败一样处理）</p>
+	 */
 	@Override
 	public void failed(Throwable throwable, ByteBuffer buffer) {
 		LOGGER.error("TCP消息处理异常", throwable);
+		this.close = true;
+		IoUtils.close(this.socket);
+		this.releaseBuffer();
 	}
 	
 	/**
 	 * <p>消息轮询</p>
 	 */
 	private void loopMessage() {
-		if(this.available()) {
-			final ByteBuffer buffer = ByteBuffer.allocate(SystemConfig.TCP_BUFFER_LENGTH);
+		final ByteBuffer buffer = this.readBuffer;
+		if(this.available() && buffer != null) {
 			this.socket.read(buffer, buffer, this);
 		} else {
 			LOGGER.debug("TCP消息代理退出消息轮询");
+			this.releaseBuffer();
+		}
+	}
+	
+	/**
+	 * <p>归还读取缓冲</p>
+	 */
+	private void releaseBuffer() {
+		final ByteBuffer buffer;
+		synchronized (this) {
+			buffer = this.readBuffer;
+			this.readBuffer = null;
+		}
+		BUFFER_POOL.giveBack(buffer);
+	}
+
+	/**
+	 * <p>发送消息</p>
+	 * 
+	 * @author acgist
+	 */
+	private static final class WriteMessage {
+		
+		/**
+		 * <p>消息内容</p>
+		 */
+		private final ByteBuffer buffer;
+		/**
+		 * <p>超时时间（毫秒时间戳）</p>
+		 * <p>0-没有超时时间</p>
+		 */
+		private final long deadline;
+		
+		/**
+		 * @param buffer 消息内容
+		 * @param timeout 超时时间（秒）
+		 */
+		private WriteMessage(ByteBuffer buffer, int timeout) {
+			this.buffer = buffer;
+			if(timeout > 0) {
+				this.deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(timeout);
+			} else {
+				this.deadline = 0L;
+			}
+		}
+		
+	}
+	
+	/**
+	 * <p>写入完成回调</p>
+	 * 
+	 * @author acgist
+	 */
+	private final class WriteHandler implements CompletionHandler<Long, ByteBuffer[]> {
+		
+		@Override
+		public void completed(Long result, ByteBuffer[] buffers) {
+			synchronized (TcpMessageHandler.this.writeQueue) {
+				final var writeQueue = TcpMessageHandler.this.writeQueue;
+				// 移除已经发送完成的消息：没有发送完成的消息下次继续发送
+				while(!writeQueue.isEmpty() && !writeQueue.peek().buffer.hasRemaining()) {
+					writeQueue.poll();
+				}
+				TcpMessageHandler.this.writeQueueSize -= result;
+			}
+			TcpMessageHandler.this.write();
+		}
+		
+		@Override
+		public void failed(Throwable throwable, ByteBuffer[] buffers) {
+			LOGGER.error("TCP消息发送异常", throwable);
+			synchronized (TcpMessageHandler.this.writeQueue) {
+				TcpMessageHandler.this.writeQueue.clear();
+				TcpMessageHandler.this.writeQueueSize = 0L;
+				TcpMessageHandler.this.writing = false;
+			}
+			TcpMessageHandler.this.close = true;
+			IoUtils.close(TcpMessageHandler.this.socket);
 		}
+		
 	}
 
 }
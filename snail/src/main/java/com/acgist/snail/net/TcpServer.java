@@ -6,6 +6,7 @@ import java.nio.channels.AsynchronousServerSocketChannel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.acgist.snail.config.SystemConfig;
 import com.acgist.snail.context.SystemThreadContext;
 import com.acgist.snail.utils.IoUtils;
 import com.acgist.snail.utils.NetUtils;
@@ -20,16 +21,20 @@ public abstract class TcpServer<T extends TcpMessageHandler> {
 	private static final Logger LOGGER = LoggerFactory.getLogger(TcpServer.class);
 	
 	/**
-	 * <p>服务端线程池</p>
+	 * <p>TCP线程池（客户端、服务端共享）</p>
+	 * <p>固定线程数量：{@linkplain SystemConfig#getTcpThreadSize() TCP线程数量}</p>
+	 * <p>注意：消息处理不能阻塞线程（磁盘读写、限速等待等等），阻塞任务需要提交其他线程池执行。</p>
 	 */
-	private static final AsynchronousChannelGroup GROUP;
+	static final AsynchronousChannelGroup GROUP;
 	
 	static {
 		AsynchronousChannelGroup group = null;
+		final int size = SystemConfig.getTcpThreadSize();
 		try {
-			group = AsynchronousChannelGroup.withThreadPool(SystemThreadContext.newCacheExecutor(SystemThreadContext.SNAIL_THREAD_TCP_SERVER));
+			LOGGER.debug("启动TCP Group：{}", size);
+			group = SystemThreadContext.newChannelGroup(size, SystemThreadContext.SNAIL_THREAD_TCP);
 		} catch (Exception e) {
-			LOGGER.error("启动TCP Server Group异常");
+			LOGGER.error("启动TCP Group异常", e);
 		}
 		GROUP = group;
 	}
@@ -112,10 +117,10 @@ public abstract class TcpServer<T extends TcpMessageHandler> {
 	}
 	
 	/**
-	 * <p>关闭TCP Server线程池</p>
+	 * <p>关闭TCP线程池（客户端、服务端共享）</p>
 	 */
 	public static final void shutdown() {
-		LOGGER.info("关闭TCP Server线程池");
+		LOGGER.info("关闭TCP线程池");
 		SystemThreadContext.shutdown(GROUP);
 	}
 	
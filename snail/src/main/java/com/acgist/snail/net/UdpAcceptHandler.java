@@ -16,6 +16,21 @@ public abstract class UdpAcceptHandler {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(UdpAcceptHandler.class);
 
+	/**
+	 * <p>接收数据包</p>
+	 * <p>默认接收线程直接处理：处理完成后归还缓冲</p>
+	 * <p>处理耗时的消息接收代理可以重写方法放入{@link UdpPacketQueue}异步处理</p>
+	 * 
+	 * @param packet 数据包
+	 */
+	public void receive(UdpPacket packet) {
+		try {
+			this.handle(packet.channel(), packet.buffer(), packet.socketAddress());
+		} finally {
+			packet.release();
+		}
+	}
+	
 	/**
 	 * <p>消息代理</p>
 	 * <p>使用消息代理处理消息</p>
@@ -26,6 +41,10 @@ public abstract class UdpAcceptHandler {
 	 */
 	public void handle(DatagramChannel channel, ByteBuffer buffer, InetSocketAddress socketAddress) {
 		final UdpMessageHandler handler = this.messageHandler(buffer, socketAddress);
+		if(handler == null) {
+			// 丢弃消息
+			return;
+		}
 		try {
 			handler.handle(channel, socketAddress); // 设置代理
 			if(handler.available()) {
@@ -42,7 +61,7 @@ public abstract class UdpAcceptHandler {
 	 * @param buffer 消息
 	 * @param socketAddress 地址
 	 * 
-	 * @return 消息代理
+	 * @return 消息代理：{@code null}-丢弃消息
 	 */
 	public abstract UdpMessageHandler messageHandler(ByteBuffer buffer, InetSocketAddress socketAddress);
 	
@@ -11,6 +11,7 @@ import org.slf4j.LoggerFactory;
 
 import com.acgist.snail.context.exception.NetException;
 import com.acgist.snail.net.codec.IMessageCodec;
+import com.acgist.snail.pojo.IStatisticsSession;
 
 /**
  * <p>UDP消息代理</p>
@@ -39,6 +40,11 @@ public abstract class UdpMessageHandler implements IMessageSender, IMessageRecei
 	 * <p>消息处理器</p>
 	 */
 	protected IMessageCodec<ByteBuffer> messageCodec;
+	/**
+	 * <p>统计信息</p>
+	 * <p>只统计流量不会限速：UDP消息不会等待</p>
+	 */
+	protected IStatisticsSession statistics;
 	
 	/**
 	 * {@inheritDoc}
@@ -95,6 +101,17 @@ public abstract class UdpMessageHandler implements IMessageSender, IMessageRecei
 		this.close = true;
 	}
 	
+	/**
+	 * <p>统计接收消息</p>
+	 * 
+	 * @param buffer 消息（读模式）
+	 */
+	protected final void receive(ByteBuffer buffer) {
+		if(this.statistics != null) {
+			this.statistics.downloadLimit(buffer.remaining());
+		}
+	}
+	
 	/**
 	 * <p>发送消息</p>
 	 * <p>不允许重写，请直接重写{@link #send(ByteBuffer, int)}方法。</p>
@@ -111,6 +128,8 @@ public abstract class UdpMessageHandler implements IMessageSender, IMessageRecei
 			final int size = this.channel.send(buffer, socketAddress);
 			if(size <= 0) {
 				LOGGER.warn("UDP消息发送失败：{}-{}", socketAddress, size);
+			} else if(this.statistics != null) {
+				this.statistics.uploadLimit(size);
 			}
 		} catch (IOException e) {
 			throw new NetException(e);
@@ -0,0 +1,96 @@
+package com.acgist.snail.net;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * <p>UDP数据包</p>
+ * <p>消息缓冲来自缓冲池：处理完成后必须{@linkplain #release() 归还缓冲}</p>
+ * 
+ * @author acgist
+ */
+public final class UdpPacket {
+	
+	/**
+	 * <p>UDP通道</p>
+	 */
+	private final DatagramChannel channel;
+	/**
+	 * <p>消息（写模式）</p>
+	 */
+	private final ByteBuffer buffer;
+	/**
+	 * <p>地址</p>
+	 */
+	private final InetSocketAddress socketAddress;
+	/**
+	 * <p>缓冲池</p>
+	 */
+	private final ByteBufferPool bufferPool;
+	
+	/**
+	 * @param channel UDP通道
+	 * @param buffer 消息
+	 * @param socketAddress 地址
+	 * @param bufferPool 缓冲池
+	 */
+	private UdpPacket(DatagramChannel channel, ByteBuffer buffer, InetSocketAddress socketAddress, ByteBufferPool bufferPool) {
+		this.channel = channel;
+		this.buffer = buffer;
+		this.socketAddress = socketAddress;
+		this.bufferPool = bufferPool;
+	}
+	
+	/**
+	 * <p>创建UDP数据包</p>
+	 * 
+	 * @param channel UDP通道
+	 * @param buffer 消息
+	 * @param socketAddress 地址
+	 * @param bufferPool 缓冲池
+	 * 
+	 * @return UDP数据包
+	 */
+	public static final UdpPacket newInstance(DatagramChannel channel, ByteBuffer buffer, InetSocketAddress socketAddress, ByteBufferPool bufferPool) {
+		return new UdpPacket(channel, buffer, socketAddress, bufferPool);
+	}
+	
+	/**
+	 * <p>获取UDP通道</p>
+	 * 
+	 * @return UDP通道
+	 */
+	public DatagramChannel channel() {
+		return this.channel;
+	}
+	
+	/**
+	 * <p>获取消息</p>
+	 * 
+	 * @return 消息
+	 */
+	public ByteBuffer buffer() {
+		return this.buffer;
+	}
+	
+	/**
+	 * <p>获取地址</p>
+	 * 
+	 * @return 地址
+	 */
+	public InetSocketAddress socketAddress() {
+		return this.socketAddress;
+	}
+	
+	/**
+	 * <p>归还缓冲</p>
+	 * <p>归还后不能继续使用消息</p>
+	 */
+	public void release() {
+		if(this.bufferPool != null) {
+			this.bufferPool.giveBack(this.buffer);
+		}
+	}
+	
+}
@@ -0,0 +1,161 @@
+package com.acgist.snail.net;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.acgist.snail.context.SystemThreadContext;
+
+/**
+ * <p>UDP数据包处理队列</p>
+ * <p>接收线程只负责读取数据包并放入队列，处理线程处理数据包：解析消息不会阻塞接收线程。</p>
+ * <p>队列长度固定：队列已满时直接丢弃数据包（UDP协议允许丢包）并记录丢弃数量</p>
+ * <p>每个队列只有一个处理线程：同一个队列的数据包顺序处理</p>
+ * 
+ * @author acgist
+ */
+public final class UdpPacketQueue {
+	
+	private static final Logger LOGGER = LoggerFactory.getLogger(UdpPacketQueue.class);
+	
+	/**
+	 * <p>队列名称</p>
+	 */
+	private final String name;
+	/**
+	 * <p>数据包队列</p>
+	 */
+	private final BlockingQueue<UdpPacket> packets;
+	/**
+	 * <p>数据包处理</p>
+	 */
+	private final Consumer<UdpPacket> consumer;
+	/**
+	 * <p>处理线程</p>
+	 */
+	private final ExecutorService executor;
+	/**
+	 * <p>处理数量</p>
+	 */
+	private final LongAdder count;
+	/**
+	 * <p>丢弃数量</p>
+	 */
+	private final LongAdder dropped;
+	
+	/**
+	 * @param name 队列名称
+	 * @param capacity 队列长度
+	 * @param consumer 数据包处理
+	 */
+	private UdpPacketQueue(String name, int capacity, Consumer<UdpPacket> consumer) {
+		this.name = name;
+		this.packets = new ArrayBlockingQueue<>(capacity);
+		this.consumer = consumer;
+		this.executor = SystemThreadContext.newExecutor(1, 1, 1, 60, name);
+		this.count = new LongAdder();
+		this.dropped = new LongAdder();
+		this.executor.submit(this::execute);
+	}
+	
+	/**
+	 * <p>创建UDP数据包处理队列</p>
+	 * 
+	 * @param name 队列名称
+	 * @param capacity 队列长度
+	 * @param consumer 数据包处理
+	 * 
+	 * @return UDP数据包处理队列
+	 */
+	public static final UdpPacketQueue newInstance(String name, int capacity, Consumer<UdpPacket> consumer) {
+		return new UdpPacketQueue(name, capacity, consumer);
+	}
+	
+	/**
+	 * <p>添加数据包</p>
+	 * <p>队列已满：丢弃数据包并归还缓冲</p>
+	 * 
+	 * @param packet 数据包
+	 * 
+	 * @return 是否添加成功
+	 */
+	public boolean offer(UdpPacket packet) {
+		if(this.packets.offer(packet)) {
+			return true;
+		}
+		this.dropped.increment();
+		packet.release();
+		LOGGER.debug("UDP数据包队列已满（丢弃数据包）：{}", this.name);
+		return false;
+	}
+	
+	/**
+	 * <p>处理数据包</p>
+	 */
+	private void execute() {
+		UdpPacket packet;
+		while(!this.executor.isShutdown()) {
+			try {
+				packet = this.packets.take();
+			} catch (InterruptedException e) {
+				LOGGER.debug("UDP数据包队列等待异常：{}", this.name, e);
+				Thread.currentThread().interrupt();
+				break;
+			}
+			try {
+				this.consumer.accept(packet);
+			} catch (Exception e) {
+				LOGGER.error("UDP数据包处理异常：{}", this.name, e);
+			} finally {
+				packet.release();
+				this.count.increment();
+			}
+		}
+	}
+	
+	/**
+	 * <p>获取等待处理数量</p>
+	 * 
+	 * @return 等待处理数量
+	 */
+	public int size() {
+		return this.packets.size();
+	}
+	
+	/**
+	 * <p>获取处理数量</p>
+	 * 
+	 * @return 处理数量
+	 */
+	public long count() {
+		return this.count.sum();
+	}
+	
+	/**
+	 * <p>获取丢弃数量</p>
+	 * 
+	 * @return 丢弃数量
+	 */
+	public long dropped() {
+		return this.dropped.sum();
+	}
+	
+	/**
+	 * <p>关闭处理线程</p>
+	 * <p>没有处理的数据包归还缓冲</p>
+	 */
+	public void shutdown() {
+		LOGGER.debug("关闭UDP数据包队列：{}", this.name);
+		SystemThreadContext.shutdownNow(this.executor);
+		UdpPacket packet;
+		while((packet = this.packets.poll()) != null) {
+			packet.release();
+		}
+	}
+	
+}
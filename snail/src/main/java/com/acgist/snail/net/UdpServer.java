@@ -36,6 +36,20 @@ public abstract class UdpServer<T extends UdpAcceptHandler> implements IUdpChann
 	 * <p>UDP服务端消息处理器线程</p>
 	 */
 	private static final ExecutorService EXECUTOR;
+	/**
+	 * <p>读取缓冲池最大缓存数量：{@value}</p>
+	 */
+	private static final int BUFFER_POOL_SIZE = 1024;
+	/**
+	 * <p>读取缓冲池</p>
+	 * <p>所有服务端共享：数据包处理完成后归还</p>
+	 */
+	private static final ByteBufferPool BUFFER_POOL = ByteBufferPool.newInstance(SystemConfig.UDP_BUFFER_LENGTH, BUFFER_POOL_SIZE);
+	/**
+	 * <p>每次选择最多读取数据包数量：{@value}</p>
+	 * <p>一次选择读取多个数据包减少选择次数，限制数量防止其他通道等待。</p>
+	 */
+	private static final int DRAIN_SIZE = 64;
 	
 	static {
 		EXECUTOR = SystemThreadContext.newCacheExecutor(SystemThreadContext.SNAIL_THREAD_UDP_SERVER);
@@ -224,12 +238,7 @@ public abstract class UdpServer<T extends UdpAcceptHandler> implements IUdpChann
 					final SelectionKey selectionKey = iterator.next();
 					iterator.remove(); // 移除已经取出来的信息
 					if (selectionKey.isValid() && selectionKey.isReadable()) {
-						final ByteBuffer buffer = ByteBuffer.allocate(SystemConfig.UDP_BUFFER_LENGTH);
-						// 服务器多例：获取不同通道
-						// final DatagramChannel channel = (DatagramChannel) selectionKey.channel();
-						// 服务端单例：客户端通道=服务端通道
-						final InetSocketAddress socketAddress = (InetSocketAddress) this.channel.receive(buffer);
-						this.handler.handle(this.channel, buffer, socketAddress);
+						this.drain();
 					}
 				}
 			}
@@ -238,6 +247,35 @@ public abstract class UdpServer<T extends UdpAcceptHandler> implements IUdpChann
 		}
 	}
 	
+	/**
+	 * <p>读取数据包</p>
+	 * <p>非阻塞通道：读取所有已经到达的数据包（最多{@value #DRAIN_SIZE}个）</p>
+	 * 
+	 * @throws IOException IO异常
+	 */
+	private void drain() throws IOException {
+		ByteBuffer buffer;
+		InetSocketAddress socketAddress;
+		for (int index = 0; index < DRAIN_SIZE; index++) {
+			buffer = BUFFER_POOL.borrow();
+			try {
+				// 服务器多例：获取不同通道
+				// final DatagramChannel channel = (DatagramChannel) selectionKey.channel();
+				// 服务端单例：客户端通道=服务端通道
+				socketAddress = (InetSocketAddress) this.channel.receive(buffer);
+			} catch (IOException e) {
+				BUFFER_POOL.giveBack(buffer);
+				throw e;
+			}
+			if(socketAddress == null) {
+				// 没有数据包
+				BUFFER_POOL.giveBack(buffer);
+				break;
+			}
+			this.handler.receive(UdpPacket.newInstance(this.channel, buffer, socketAddress, BUFFER_POOL));
+		}
+	}
+	
 	/**
 	 * <p>获取UDP通道</p>
 	 * 
@@ -55,6 +55,12 @@ public final class PeerCryptMessageCodec extends MessageCodec<ByteBuffer, ByteBu
 		}
 	}
 
+	/**
+	 * <p>消息编码（加密）</p>
+	 * <p>加密握手没有完成时消息进入等待队列，握手完成后由加密握手代理发送，不会阻塞发送线程。</p>
+	 * 
+	 * @return 加密消息：null-消息等待加密握手完成（不能发送）
+	 */
 	@Override
 	public ByteBuffer encode(ByteBuffer buffer) {
 		if(this.mseCryptHandshakeHandler.complete()) { // 握手完成
@@ -64,8 +70,9 @@ public final class PeerCryptMessageCodec extends MessageCodec<ByteBuffer, ByteBu
 			final boolean encrypt = this.mseCryptHandshakeHandler.needEncrypt() && CryptConfig.STRATEGY.crypt();
 			if(encrypt) { // 需要加密
 				this.mseCryptHandshakeHandler.handshake(); // 握手
-				this.mseCryptHandshakeHandler.lockHandshake(); // 握手加锁
-				this.mseCryptHandshakeHandler.encrypt(buffer); // 加密消息
+				if(!this.mseCryptHandshakeHandler.encryptOrPending(buffer)) {
+					return null;
+				}
 			} else { // 不需要加密：使用明文完成握手
 				this.mseCryptHandshakeHandler.plaintext();
 			}
@@ -2,15 +2,19 @@ package com.acgist.snail.net.codec.impl;
 
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
+import java.util.function.BooleanSupplier;
 
 import com.acgist.snail.config.PeerConfig;
 import com.acgist.snail.context.exception.NetException;
 import com.acgist.snail.context.exception.PacketSizeException;
+import com.acgist.snail.net.codec.IMessageCodec;
 import com.acgist.snail.net.codec.MessageCodec;
 import com.acgist.snail.net.torrent.peer.bootstrap.PeerSubMessageHandler;
 
 /**
  * <p>Peer消息处理器：拆包</p>
+ * <p>完整消息直接使用接收缓冲切片（不拷贝数据），只有跨越多次读取的消息才会缓存拼接。</p>
+ * <p>注意：消息切片共享接收缓冲，后续处理器不能保存消息引用。</p>
  * 
  * TODO：握手消息匹配协议名称
  * 
@@ -30,81 +34,123 @@ public final class PeerUnpackMessageCodec extends MessageCodec<ByteBuffer, ByteB
 	private ByteBuffer buffer;
 	/**
 	 * <p>消息长度</p>
+	 * <p>处理消息长度没有接收完整的情况</p>
 	 */
 	private final ByteBuffer lengthStick;
 	/**
-	 * <p>Peer消息代理</p>
+	 * <p>是否已经握手</p>
 	 */
-	private final PeerSubMessageHandler peerSubMessageHandler;
+	private final BooleanSupplier handshake;
+	/**
+	 * <p>心跳消息处理</p>
+	 */
+	private final Runnable keepAlive;
 	
 	/**
 	 * @param peerSubMessageHandler Peer消息代理
 	 */
 	public PeerUnpackMessageCodec(PeerSubMessageHandler peerSubMessageHandler) {
-		super(peerSubMessageHandler);
+		this(peerSubMessageHandler, peerSubMessageHandler::handshake, peerSubMessageHandler::keepAlive);
+	}
+	
+	/**
+	 * @param messageCodec 下一个消息处理器
+	 * @param handshake 是否已经握手
+	 * @param keepAlive 心跳消息处理
+	 */
+	PeerUnpackMessageCodec(IMessageCodec<ByteBuffer> messageCodec, BooleanSupplier handshake, Runnable keepAlive) {
+		super(messageCodec);
 		this.lengthStick = ByteBuffer.allocate(INT_BYTE_LENGTH);
-		this.peerSubMessageHandler = peerSubMessageHandler;
+		this.handshake = handshake;
+		this.keepAlive = keepAlive;
 	}
 	
 	@Override
 	public void doDecode(ByteBuffer buffer, InetSocketAddress address) throws NetException {
 		// buffer.flip(); // 此处不需要调用此方法，解密时已经调用。
-		int length = 0; // 消息数据长度
-		while(true) {
-			if(this.buffer == null) {
-				if(this.peerSubMessageHandler.handshake()) {
-					for (int index = 0; index < buffer.limit() && buffer.hasRemaining(); index++) {
-						this.lengthStick.put(buffer.get());
-						if(this.lengthStick.position() == INT_BYTE_LENGTH) {
-							break;
-						}
-					}
-					if(this.lengthStick.position() == INT_BYTE_LENGTH) {
-						this.lengthStick.flip();
-						length = this.lengthStick.getInt();
-						this.lengthStick.compact();
-					} else { // 消息长度读取不完整跳出
-						break;
-					}
-				} else { // 握手消息长度
-					length = PeerConfig.HANDSHAKE_LENGTH;
+		while(buffer.hasRemaining()) {
+			if(this.buffer != null) {
+				// 上次消息没有读取完成：拼接剩余消息数据
+				this.fill(buffer);
+				if(this.buffer.hasRemaining()) {
+					// 消息没有接收完整：等待后续数据
+					break;
 				}
-				// 心跳消息
-				if(length <= 0) {
-					this.peerSubMessageHandler.keepAlive();
-					if(buffer.hasRemaining()) { // 还有消息：继续处理
-						continue;
-					} else { // 没有消息：跳出循环
-						break;
-					}
-				}
-				PacketSizeException.verify(length);
-				this.buffer = ByteBuffer.allocate(length);
-			} else {
-				// 上次消息没有读取完成：计算剩余消息数据长度
-				length = this.buffer.capacity() - this.buffer.position();
-			}
-			final int remaining = buffer.remaining();
-			if(remaining > length) { // 包含一条完整消息：处理完成后继续读取
-				final byte[] bytes = new byte[length];
-				buffer.get(bytes);
-				this.buffer.put(bytes);
-				this.doNext(this.buffer, address);
+				final ByteBuffer message = this.buffer;
 				this.buffer = null;
-			} else if(remaining == length) { // 刚好一条完整消息：处理完成后跳出循环
-				final byte[] bytes = new byte[length];
-				buffer.get(bytes);
-				this.buffer.put(bytes);
-				this.doNext(this.buffer, address);
-				this.buffer = null;
-				break;
-			} else if(remaining < length) { // 不是一条完整消息：跳出循环等待后续数据
-				final byte[] bytes = new byte[remaining];
-				buffer.get(bytes);
-				this.buffer.put(bytes);
+				this.doNext(message, address);
+				continue;
+			}
+			final int length = this.readLength(buffer);
+			if(length < 0) {
+				// 消息长度读取不完整：等待后续数据
 				break;
 			}
+			// 心跳消息
+			if(length == 0) {
+				this.keepAlive.run();
+				continue;
+			}
+			if(buffer.remaining() >= length) {
+				// 完整消息：直接切片
+				final int position = buffer.position();
+				final ByteBuffer message = buffer.slice();
+				// 设置写模式：后续处理器调用flip
+				message.limit(length).position(length);
+				buffer.position(position + length);
+				this.doNext(message, address);
+			} else {
+				// 不是一条完整消息：缓存等待后续数据
+				this.buffer = ByteBuffer.allocate(length);
+				this.fill(buffer);
+			}
+		}
+	}
+	
+	/**
+	 * <p>读取消息长度</p>
+	 * <p>没有握手时使用握手消息长度</p>
+	 * 
+	 * @param buffer 消息
+	 * 
+	 * @return 消息长度：-1-长度读取不完整
+	 * 
+	 * @throws PacketSizeException 网络包大小异常
+	 */
+	private int readLength(ByteBuffer buffer) throws PacketSizeException {
+		if(!this.handshake.getAsBoolean()) {
+			// 握手消息长度
+			return PeerConfig.HANDSHAKE_LENGTH;
 		}
+		final int length;
+		if(this.lengthStick.position() == 0 && buffer.remaining() >= INT_BYTE_LENGTH) {
+			length = buffer.getInt();
+		} else {
+			while(buffer.hasRemaining() && this.lengthStick.hasRemaining()) {
+				this.lengthStick.put(buffer.get());
+			}
+			if(this.lengthStick.hasRemaining()) {
+				return -1;
+			}
+			this.lengthStick.flip();
+			length = this.lengthStick.getInt();
+			this.lengthStick.clear();
+		}
+		PacketSizeException.verify(length);
+		return length;
+	}
+	
+	/**
+	 * <p>拼接消息数据</p>
+	 * 
+	 * @param buffer 消息
+	 */
+	private void fill(ByteBuffer buffer) {
+		final int length = Math.min(this.buffer.remaining(), buffer.remaining());
+		final int limit = buffer.limit();
+		buffer.limit(buffer.position() + length);
+		this.buffer.put(buffer);
+		buffer.limit(limit);
 	}
 
 }
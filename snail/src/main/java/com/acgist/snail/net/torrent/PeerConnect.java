@@ -1,5 +1,6 @@
 package com.acgist.snail.net.torrent;
 
+import java.nio.ByteBuffer;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -7,6 +8,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.acgist.snail.config.SystemConfig;
+import com.acgist.snail.net.torrent.peer.bootstrap.PeerExchangeLog;
 import com.acgist.snail.net.torrent.peer.bootstrap.PeerSubMessageHandler;
 import com.acgist.snail.pojo.IStatisticsSession;
 import com.acgist.snail.pojo.bean.TorrentPiece;
@@ -101,8 +103,9 @@ public abstract class PeerConnect {
 	protected final PeerConnectSession peerConnectSession;
 	/**
 	 * <p>Peer消息代理</p>
+	 * <p>同时使用TCP和UTP连接时替换为连接成功的Peer消息代理</p>
 	 */
-	protected final PeerSubMessageHandler peerSubMessageHandler;
+	protected volatile PeerSubMessageHandler peerSubMessageHandler;
 	
 	/**
 	 * <p>Peer连接</p>
@@ -149,19 +152,19 @@ public abstract class PeerConnect {
 	/**
 	 * <p>发送have消息</p>
 	 * 
-	 * @param index Piece索引
+	 * @param indexes Piece索引
 	 */
-	public final void have(int index) {
-		this.peerSubMessageHandler.have(index);
+	public final void have(int ... indexes) {
+		this.peerSubMessageHandler.have(indexes);
 	}
 	
 	/**
 	 * <p>发送pex消息</p>
 	 * 
-	 * @param bytes Pex消息
+	 * @param exchangeLog PEX变化记录
 	 */
-	public final void pex(byte[] bytes) {
-		this.peerSubMessageHandler.pex(bytes);
+	public final void pex(PeerExchangeLog exchangeLog) {
+		this.peerSubMessageHandler.pex(exchangeLog);
 	}
 	
 	/**
@@ -203,11 +206,13 @@ public abstract class PeerConnect {
 	 * <p>Peer上传计分</p>
 	 * 
 	 * @param buffer 上传大小
+	 * 
+	 * @return 限速等待时间（毫秒）
 	 */
-	public final void uploadMark(int buffer) {
+	public final long uploadMark(int buffer) {
 		this.peerConnectSession.upload(buffer);
 		this.statisticsSession.upload(buffer);
-		this.statisticsSession.uploadLimit(buffer);
+		return this.statisticsSession.uploadLimit(buffer);
 	}
 	
 	/**
@@ -223,10 +228,12 @@ public abstract class PeerConnect {
 	 * <p>Peer下载计分</p>
 	 * 
 	 * @param buffer 下载大小
+	 * 
+	 * @return 限速等待时间（毫秒）
 	 */
-	public final void downloadMark(int buffer) {
+	public final long downloadMark(int buffer) {
 		this.peerConnectSession.download(buffer);
-		this.statisticsSession.downloadLimit(buffer);
+		return this.statisticsSession.downloadLimit(buffer);
 	}
 	
 	/**
@@ -257,11 +264,11 @@ public abstract class PeerConnect {
 	 * 
 	 * @param index Piece索引
 	 * @param begin Piece偏移
-	 * @param bytes Piece数据
+	 * @param buffer Piece数据
 	 */
-	public final void piece(int index, int begin, byte[] bytes) {
+	public final void piece(int index, int begin, ByteBuffer buffer) {
 		// 数据不完整抛弃当前Piece：重新选择下载Piece
-		if(bytes == null || this.downloadPiece == null) {
+		if(buffer == null || this.downloadPiece == null) {
 			return;
 		}
 		if(index != this.downloadPiece.getIndex()) {
@@ -270,7 +277,7 @@ public abstract class PeerConnect {
 		}
 		// 释放slice锁
 		this.unlockSlice();
-		final boolean complete = this.downloadPiece.write(begin, bytes);
+		final boolean complete = this.downloadPiece.write(begin, buffer);
 		// 下载完成：释放完成锁
 		if(complete) {
 			this.unlockComplete();
@@ -4,8 +4,11 @@ import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 
 import com.acgist.snail.config.StunConfig;
+import com.acgist.snail.context.SystemThreadContext;
 import com.acgist.snail.net.UdpAcceptHandler;
 import com.acgist.snail.net.UdpMessageHandler;
+import com.acgist.snail.net.UdpPacket;
+import com.acgist.snail.net.UdpPacketQueue;
 import com.acgist.snail.net.stun.StunMessageHandler;
 import com.acgist.snail.net.torrent.dht.DhtMessageHandler;
 import com.acgist.snail.net.torrent.utp.bootstrap.UtpService;
@@ -14,6 +17,8 @@ import com.acgist.snail.net.torrent.utp.bootstrap.UtpService;
  * <p>Torrent（UTP、DHT、STUN）消息接收器</p>
  * <p>DHT和STUN消息都使用头一个字符验证：STUN需要进一步验证MagicCookie</p>
  * <p>如果不是DHT和STUN消息则属于UTP消息</p>
+ * <p>接收线程只读取数据包：按照消息类型放入不同队列处理，DHT查询、STUN响应不会阻塞UTP数据。</p>
+ * <p>UTP消息按照地址分区处理：同一个地址的数据包顺序处理</p>
  * 
  * @author acgist
  */
@@ -37,8 +42,31 @@ public final class TorrentAcceptHandler extends UdpAcceptHandler {
 	 * <p>STUN消息开头字符：响应</p>
 	 */
 	private static final byte STUN_HEADER_RECV = 0x01;
+	/**
+	 * <p>DHT队列长度：{@value}</p>
+	 */
+	private static final int DHT_QUEUE_SIZE = 1024;
+	/**
+	 * <p>STUN队列长度：{@value}</p>
+	 */
+	private static final int STUN_QUEUE_SIZE = 64;
+	/**
+	 * <p>UTP分区队列长度：{@value}</p>
+	 */
+	private static final int UTP_QUEUE_SIZE = 1024;
+	/**
+	 * <p>UTP最小分区数量：{@value}</p>
+	 */
+	private static final int MIN_UTP_PARTITION_SIZE = 2;
 	
 	private TorrentAcceptHandler() {
+		this.dhtQueue = UdpPacketQueue.newInstance(SystemThreadContext.SNAIL_THREAD_UDP_HANDLER + "-DHT", DHT_QUEUE_SIZE, this::handle);
+		this.stunQueue = UdpPacketQueue.newInstance(SystemThreadContext.SNAIL_THREAD_UDP_HANDLER + "-STUN", STUN_QUEUE_SIZE, this::handle);
+		final int partitionSize = Math.max(MIN_UTP_PARTITION_SIZE, Runtime.getRuntime().availableProcessors());
+		this.utpQueues = new UdpPacketQueue[partitionSize];
+		for (int index = 0; index < partitionSize; index++) {
+			this.utpQueues[index] = UdpPacketQueue.newInstance(SystemThreadContext.SNAIL_THREAD_UDP_HANDLER + "-UTP", UTP_QUEUE_SIZE, this::handle);
+		}
 	}
 	
 	/**
@@ -53,6 +81,99 @@ public final class TorrentAcceptHandler extends UdpAcceptHandler {
 	 * <p>STUN消息代理</p>
 	 */
 	private final StunMessageHandler stunMessageHandler = new StunMessageHandler();
+	/**
+	 * <p>DHT队列</p>
+	 * <p>DHT消息代理不是线程安全：单线程处理</p>
+	 */
+	private final UdpPacketQueue dhtQueue;
+	/**
+	 * <p>STUN队列</p>
+	 * <p>STUN消息代理不是线程安全：单线程处理</p>
+	 */
+	private final UdpPacketQueue stunQueue;
+	/**
+	 * <p>UTP分区队列</p>
+	 */
+	private final UdpPacketQueue[] utpQueues;
+	
+	@Override
+	public void receive(UdpPacket packet) {
+		final ByteBuffer buffer = packet.buffer();
+		if(buffer.position() <= 0) {
+			packet.release();
+			return;
+		}
+		final byte header = buffer.get(0);
+		if(DHT_HEADER == header) {
+			this.dhtQueue.offer(packet);
+		} else if(this.stun(header, buffer)) {
+			this.stunQueue.offer(packet);
+		} else {
+			final int hash = packet.socketAddress().hashCode();
+			this.utpQueues[((hash ^ (hash >>> 16)) & 0x7FFFFFFF) % this.utpQueues.length].offer(packet);
+		}
+	}
+	
+	/**
+	 * <p>处理数据包</p>
+	 * 
+	 * @param packet 数据包
+	 */
+	private void handle(UdpPacket packet) {
+		this.handle(packet.channel(), packet.buffer(), packet.socketAddress());
+	}
+	
+	/**
+	 * <p>判断是否是STUN消息</p>
+	 * 
+	 * @param header 开头字符
+	 * @param buffer 消息
+	 * 
+	 * @return 是否是STUN消息
+	 */
+	private boolean stun(byte header, ByteBuffer buffer) {
+		return
+			(STUN_HEADER_SEND == header || STUN_HEADER_RECV == header) &&
+			buffer.position() >= 8 &&
+			buffer.getInt(4) == StunConfig.MAGIC_COOKIE;
+	}
+	
+	/**
+	 * <p>获取等待处理数量</p>
+	 * 
+	 * @return 等待处理数量
+	 */
+	public int size() {
+		int size = this.dhtQueue.size() + this.stunQueue.size();
+		for (UdpPacketQueue queue : this.utpQueues) {
+			size += queue.size();
+		}
+		return size;
+	}
+	
+	/**
+	 * <p>获取丢弃数量</p>
+	 * 
+	 * @return 丢弃数量
+	 */
+	public long dropped() {
+		long dropped = this.dhtQueue.dropped() + this.stunQueue.dropped();
+		for (UdpPacketQueue queue : this.utpQueues) {
+			dropped += queue.dropped();
+		}
+		return dropped;
+	}
+	
+	/**
+	 * <p>关闭处理队列</p>
+	 */
+	public void shutdown() {
+		this.dhtQueue.shutdown();
+		this.stunQueue.shutdown();
+		for (UdpPacketQueue queue : this.utpQueues) {
+			queue.shutdown();
+		}
+	}
 	
 	@Override
 	public UdpMessageHandler messageHandler(ByteBuffer buffer, InetSocketAddress socketAddress) {
@@ -60,16 +181,11 @@ public final class TorrentAcceptHandler extends UdpAcceptHandler {
 		final byte header = buffer.get(0);
 		if(DHT_HEADER == header) { // DHT
 			return this.dhtMessageHandler;
-		} else if(STUN_HEADER_SEND == header || STUN_HEADER_RECV == header) { // STUN
-			final int magicCookie = buffer.getInt(4);
-			// 验证：MAGIC_COOKIE
-			if(magicCookie == StunConfig.MAGIC_COOKIE) {
-				return this.stunMessageHandler;
-			}
+		} else if(this.stun(header, buffer)) { // STUN：验证MAGIC_COOKIE
+			return this.stunMessageHandler;
 		}
 		// UTP
-		final short connectionId = buffer.getShort(2); // 连接ID
-		return this.utpService.get(connectionId, socketAddress);
+		return this.utpService.get(buffer, socketAddress);
 	}
 	
 }
@@ -3,11 +3,15 @@ package com.acgist.snail.net.torrent.bootstrap;
 import java.net.InetSocketAddress;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.acgist.snail.net.torrent.dht.DhtClient;
+import com.acgist.snail.config.DhtConfig;
+import com.acgist.snail.net.torrent.dht.bootstrap.DhtLookup;
 import com.acgist.snail.net.torrent.dht.bootstrap.NodeManager;
 import com.acgist.snail.pojo.bean.InfoHash;
 import com.acgist.snail.pojo.session.NodeSession;
@@ -17,7 +21,8 @@ import com.acgist.snail.utils.NetUtils;
 
 /**
  * <p>DHT定时任务</p>
- * <p>定时使用系统最近的DHT节点和{@link #peerNodes}查询Peer</p>
+ * <p>定时使用系统最近的DHT节点和{@link #peerNodes}{@linkplain DhtLookup 迭代查找}Peer</p>
+ * <p>上次查找没有完成时不会开始新的查找</p>
  * 
  * @author acgist
  */
@@ -34,6 +39,10 @@ public final class DhtLauncher implements Runnable {
 	 * <p>如果连接的Peer支持DHT，将该Peer放入到队列，下次查询时使用同时加入到系统节点。</p>
 	 */
 	private final List<InetSocketAddress> peerNodes = new ArrayList<>();
+	/**
+	 * <p>迭代查找</p>
+	 */
+	private DhtLookup lookup;
 	
 	/**
 	 * @param torrentSession BT任务信息
@@ -63,8 +72,6 @@ public final class DhtLauncher implements Runnable {
 		}
 		try {
 			this.joinSystemNodes(nodes);
-			final var list = this.pick(nodes);
-			this.findPeers(list);
 		} catch (Exception e) {
 			LOGGER.error("执行DHT定时任务异常", e);
 		}
@@ -84,54 +91,51 @@ public final class DhtLauncher implements Runnable {
 
 	/**
 	 * <p>将客户端节点队列中的DHT节点加入系统节点</p>
+	 * <p>不会阻塞：所有节点响应或者超时后使用可用节点迭代查找Peer</p>
 	 * 
 	 * @param peerNodes 客户端节点队列
 	 */
 	private void joinSystemNodes(List<InetSocketAddress> peerNodes) {
-		if(CollectionUtils.isNotEmpty(peerNodes)) {
-			peerNodes.forEach(
-				address -> NodeManager.getInstance().newNodeSession(address.getHostString(), address.getPort())
-			);
-		}
-	}
-	
-	/**
-	 * <p>挑选DHT节点</p>
-	 * 
-	 * @param peerNodes 客户端节点队列
-	 * 
-	 * @return DHT节点
-	 */
-	private List<InetSocketAddress> pick(List<InetSocketAddress> peerNodes) {
-		final List<InetSocketAddress> nodes = new ArrayList<>();
-		// 客户端节点
-		if(CollectionUtils.isNotEmpty(peerNodes)) {
-			nodes.addAll(peerNodes);
+		if(CollectionUtils.isEmpty(peerNodes)) {
+			this.findPeers(List.of());
+			return;
 		}
-		// 系统节点
-		final var systemNodes = NodeManager.getInstance().findNode(this.infoHash.infoHash());
-		if(CollectionUtils.isNotEmpty(systemNodes)) {
-			for (NodeSession node : systemNodes) {
-				nodes.add(NetUtils.buildSocketAddress(node.getHost(), node.getPort()));
-			}
+		final List<CompletableFuture<NodeSession>> futures = new ArrayList<>(peerNodes.size());
+		for (InetSocketAddress address : peerNodes) {
+			futures.add(
+				NodeManager.getInstance().newNodeSession(address.getHostString(), address.getPort())
+					.exceptionally(e -> {
+						// 异常节点视为没有响应
+						LOGGER.error("DHT节点加入系统异常：{}", address, e);
+						return null;
+					})
+			);
 		}
-		return nodes;
+		CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).thenRun(() -> {
+			final List<NodeSession> nodes = futures.stream()
+				.map(CompletableFuture::join)
+				.filter(Objects::nonNull)
+				.collect(Collectors.toList());
+			this.findPeers(nodes);
+		}).exceptionally(e -> {
+			LOGGER.error("DHT迭代查找Peer异常", e);
+			return null;
+		});
 	}
 	
 	/**
-	 * <p>使用DHT节点查询Peer</p>
+	 * <p>迭代查找Peer</p>
+	 * <p>初始节点：系统最近的节点和客户端节点</p>
 	 * 
-	 * @param list DHT节点
+	 * @param peerNodes 客户端节点
 	 */
-	private void findPeers(List<InetSocketAddress> list) {
-		if(CollectionUtils.isEmpty(list)) {
-			LOGGER.debug("DHT定时任务没有节点可用");
+	private synchronized void findPeers(List<NodeSession> peerNodes) {
+		if(this.lookup != null && !this.lookup.done()) {
+			LOGGER.debug("DHT迭代查找没有完成");
 			return;
 		}
-		final byte[] infoHash = this.infoHash.infoHash();
-		for (InetSocketAddress socketAddress : list) {
-			DhtClient.newInstance(socketAddress).getPeers(infoHash);
-		}
+		this.lookup = DhtLookup.newInstance(DhtConfig.QType.GET_PEERS, this.infoHash.infoHash());
+		this.lookup.lookup(peerNodes);
 	}
 	
 }
@@ -0,0 +1,283 @@
+package com.acgist.snail.net.torrent.bootstrap;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.acgist.snail.config.SystemConfig;
+import com.acgist.snail.context.SystemThreadContext;
+import com.acgist.snail.net.torrent.TorrentManager;
+import com.acgist.snail.pojo.session.TorrentSession;
+
+/**
+ * <p>Peer连接管理器</p>
+ * <p>所有任务共享{@linkplain SystemConfig#getPeerGlobalSize() 系统Peer连接数量}，按照任务权重分配连接数量。</p>
+ * <dl>
+ * 	<dt>任务权重</dt>
+ * 	<dd>下载中：{@value #WEIGHT_DOWNLOAD}</dd>
+ * 	<dd>下载停滞（两次分配之间没有下载数据）：{@value #WEIGHT_STALL}</dd>
+ * 	<dd>只上传：{@value #WEIGHT_UPLOAD}</dd>
+ * </dl>
+ * <p>任务需要的连接数量小于分配数量时，剩余连接数量分配给其他任务。</p>
+ * <p>所有任务分配数量总和不超过系统Peer连接数量，任务PeerDownloader和PeerUploader数量总和不超过任务分配数量。</p>
+ * 
+ * @author acgist
+ */
+public final class PeerConnectManager {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(PeerConnectManager.class);
+
+	private static final PeerConnectManager INSTANCE = new PeerConnectManager();
+
+	public static final PeerConnectManager getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * <p>任务权重：下载中</p>
+	 */
+	private static final int WEIGHT_DOWNLOAD = 4;
+	/**
+	 * <p>任务权重：下载停滞</p>
+	 */
+	private static final int WEIGHT_STALL = 2;
+	/**
+	 * <p>任务权重：只上传</p>
+	 */
+	private static final int WEIGHT_UPLOAD = 1;
+	/**
+	 * <p>单个任务最小分配数量：{@value}</p>
+	 */
+	private static final int MIN_ALLOCATION = 2;
+	/**
+	 * <p>重新分配周期（秒）：{@value}</p>
+	 */
+	private static final int REBALANCE_INTERVAL = 10;
+
+	/**
+	 * <p>任务分配数量</p>
+	 * <p>InfoHashHex=分配数量</p>
+	 */
+	private final Map<String, Integer> allocations;
+	/**
+	 * <p>上次分配时任务已下载大小（判断下载停滞）</p>
+	 * <p>InfoHashHex=已下载大小</p>
+	 */
+	private final Map<String, Long> downloadSizes;
+
+	private PeerConnectManager() {
+		this.allocations = new ConcurrentHashMap<>();
+		this.downloadSizes = new HashMap<>();
+	}
+
+	/**
+	 * <p>注册定时分配任务</p>
+	 */
+	public void register() {
+		LOGGER.debug("注册Peer连接管理器：定时任务");
+		SystemThreadContext.timerFixedDelay(
+			REBALANCE_INTERVAL,
+			REBALANCE_INTERVAL,
+			TimeUnit.SECONDS,
+			() -> this.rebalance()
+		);
+	}
+
+	/**
+	 * <p>获取任务分配数量（下载、上传）</p>
+	 * <p>任务还没有分配时使用临时分配数量（{@value #MIN_ALLOCATION}），等待下次定时分配。</p>
+	 * <p>注意：不能立即重新分配，否者会重置其他任务下载停滞采样。</p>
+	 * 
+	 * @param infoHashHex InfoHashHex
+	 * 
+	 * @return 分配数量
+	 */
+	public int allocation(String infoHashHex) {
+		return this.allocations.getOrDefault(infoHashHex, MIN_ALLOCATION);
+	}
+
+	/**
+	 * <p>获取所有任务分配数量拷贝</p>
+	 * 
+	 * @return 任务分配数量
+	 */
+	public Map<String, Integer> allocations() {
+		return new HashMap<>(this.allocations);
+	}
+
+	/**
+	 * <p>获取当前所有任务Peer连接数量（下载、上传）</p>
+	 * 
+	 * @return Peer连接数量
+	 */
+	public int connectSize() {
+		return TorrentManager.getInstance().allTorrentSession().stream()
+			.mapToInt(TorrentSession::connectSize)
+			.sum();
+	}
+
+	/**
+	 * <p>获取任务PeerDownloader最大数量</p>
+	 * <p>不超过{@linkplain SystemConfig#getPeerSize() 单个任务Peer数量}</p>
+	 * 
+	 * @param torrentSession BT任务信息
+	 * 
+	 * @return PeerDownloader最大数量
+	 * 
+	 * @see #peerDownloaderSize(int, int)
+	 */
+	public int peerDownloaderSize(TorrentSession torrentSession) {
+		final int allocation = this.allocation(torrentSession.infoHashHex());
+		return Math.min(SystemConfig.getPeerSize(), peerDownloaderSize(allocation, torrentSession.peerUploaderSize()));
+	}
+
+	/**
+	 * <p>获取任务PeerUploader最大数量</p>
+	 * <p>不超过{@linkplain SystemConfig#getPeerSize() 单个任务Peer数量}</p>
+	 * 
+	 * @param torrentSession BT任务信息
+	 * 
+	 * @return PeerUploader最大数量
+	 * 
+	 * @see #peerUploaderSize(int, int)
+	 */
+	public int peerUploaderSize(TorrentSession torrentSession) {
+		final int allocation = this.allocation(torrentSession.infoHashHex());
+		return Math.min(SystemConfig.getPeerSize(), peerUploaderSize(allocation, torrentSession.peerDownloaderSize()));
+	}
+	
+	/**
+	 * <p>计算PeerDownloader最大数量</p>
+	 * <p>PeerUploader保留一半分配数量（向下取整）：分配数量扣除PeerUploader数量，PeerUploader数量超过保留数量时只扣除保留数量。</p>
+	 * <p>两边数量都不超过各自最大数量时，数量总和不超过分配数量。</p>
+	 * 
+	 * @param allocation 分配数量
+	 * @param peerUploaderSize PeerUploader数量
+	 * 
+	 * @return PeerDownloader最大数量
+	 */
+	static int peerDownloaderSize(int allocation, int peerUploaderSize) {
+		return allocation - Math.min(peerUploaderSize, allocation / 2);
+	}
+	
+	/**
+	 * <p>计算PeerUploader最大数量</p>
+	 * <p>PeerDownloader保留剩余分配数量：分配数量扣除PeerDownloader数量，PeerDownloader数量超过保留数量时只扣除保留数量。</p>
+	 * 
+	 * @param allocation 分配数量
+	 * @param peerDownloaderSize PeerDownloader数量
+	 * 
+	 * @return PeerUploader最大数量
+	 * 
+	 * @see #peerDownloaderSize(int, int)
+	 */
+	static int peerUploaderSize(int allocation, int peerDownloaderSize) {
+		return allocation - Math.min(peerDownloaderSize, allocation - allocation / 2);
+	}
+	
+	/**
+	 * <p>重新分配连接数量</p>
+	 * <p>按照权重分配，任务需要的连接数量小于分配数量时使用需要的数量，剩余数量继续分配给其他任务。</p>
+	 */
+	public synchronized void rebalance() {
+		final List<String> infoHashHexs = new ArrayList<>();
+		final Map<String, Integer> weights = new HashMap<>();
+		final Map<String, Integer> demands = new HashMap<>();
+		final Map<String, Long> downloadSizes = new HashMap<>();
+		for (TorrentSession session : TorrentManager.getInstance().allTorrentSession()) {
+			final String infoHashHex = session.infoHashHex();
+			if(session.downloadable()) {
+				final long downloadSize = session.statistics().downloadSize();
+				downloadSizes.put(infoHashHex, downloadSize);
+				weights.put(infoHashHex, downloadWeight(this.downloadSizes.get(infoHashHex), downloadSize));
+				// 下载、上传
+				demands.put(infoHashHex, SystemConfig.getPeerSize() * 2);
+			} else if(session.uploadable()) {
+				weights.put(infoHashHex, WEIGHT_UPLOAD);
+				demands.put(infoHashHex, SystemConfig.getPeerSize());
+			} else {
+				continue;
+			}
+			infoHashHexs.add(infoHashHex);
+		}
+		this.downloadSizes.clear();
+		this.downloadSizes.putAll(downloadSizes);
+		final Map<String, Integer> allocations = allocate(infoHashHexs, weights, demands, SystemConfig.getPeerGlobalSize());
+		this.allocations.keySet().retainAll(allocations.keySet());
+		this.allocations.putAll(allocations);
+		if(LOGGER.isDebugEnabled()) {
+			LOGGER.debug("Peer连接分配：{}-{}", this.connectSize(), allocations);
+		}
+	}
+	
+	/**
+	 * <p>获取下载任务权重</p>
+	 * <p>已下载大小和上次分配时相同：下载停滞；第一次分配：下载中。</p>
+	 * 
+	 * @param lastDownloadSize 上次分配时已下载大小（没有采样：null）
+	 * @param downloadSize 已下载大小
+	 * 
+	 * @return 任务权重
+	 */
+	static int downloadWeight(Long lastDownloadSize, long downloadSize) {
+		if(lastDownloadSize != null && lastDownloadSize.longValue() == downloadSize) {
+			return WEIGHT_STALL;
+		}
+		return WEIGHT_DOWNLOAD;
+	}
+	
+	/**
+	 * <p>分配连接数量</p>
+	 * <p>需要的连接数量小于权重分配数量的任务使用需要的数量，其他任务优先保留最小分配数量，剩余数量按照权重分配。</p>
+	 * <p>分配数量总和不超过连接总数：连接总数不足最小分配数量时平均分配</p>
+	 * 
+	 * @param infoHashHexs 任务列表
+	 * @param weights 任务权重
+	 * @param demands 任务需要的连接数量
+	 * @param total 连接总数
+	 * 
+	 * @return 任务分配数量
+	 */
+	static Map<String, Integer> allocate(List<String> infoHashHexs, Map<String, Integer> weights, Map<String, Integer> demands, int total) {
+		int remaining = total;
+		final Map<String, Integer> allocations = new HashMap<>();
+		final List<String> pending = new ArrayList<>(infoHashHexs);
+		boolean satisfied = true;
+		while(satisfied && !pending.isEmpty()) {
+			satisfied = false;
+			final int weightSum = pending.stream().mapToInt(weights::get).sum();
+			final var iterator = pending.iterator();
+			while(iterator.hasNext()) {
+				final String infoHashHex = iterator.next();
+				final int demand = demands.get(infoHashHex);
+				final long share = (long) remaining * weights.get(infoHashHex) / weightSum;
+				// 需要的连接数量小于分配数量：剩余数量重新分配
+				if(demand <= share) {
+					allocations.put(infoHashHex, demand);
+					remaining -= demand;
+					iterator.remove();
+					satisfied = true;
+					break;
+				}
+			}
+		}
+		if(!pending.isEmpty()) {
+			final int weightSum = pending.stream().mapToInt(weights::get).sum();
+			// 优先保留最小分配数量
+			final int base = Math.min(MIN_ALLOCATION, remaining / pending.size());
+			remaining -= base * pending.size();
+			for (String infoHashHex : pending) {
+				final int share = (int) ((long) remaining * weights.get(infoHashHex) / weightSum);
+				allocations.put(infoHashHex, base + share);
+			}
+		}
+		return allocations;
+	}
+
+}
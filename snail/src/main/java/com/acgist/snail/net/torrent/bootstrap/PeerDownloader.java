@@ -1,5 +1,8 @@
 package com.acgist.snail.net.torrent.bootstrap;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -48,7 +51,27 @@ public final class PeerDownloader extends PeerConnect {
 	 * @return 是否握手成功
 	 */
 	public boolean handshake() {
-		final boolean ok = this.connect();
+		return this.handshake(this.connectAsync().join());
+	}
+	
+	/**
+	 * <p>异步握手</p>
+	 * <p>建立连接时不会阻塞线程，连接成功后使用BT任务线程池发送握手。</p>
+	 * 
+	 * @return 是否握手成功
+	 */
+	public CompletableFuture<Boolean> handshakeAsync() {
+		return this.connectAsync().thenApplyAsync(this::handshake, this.torrentSession::submit);
+	}
+	
+	/**
+	 * <p>发送握手</p>
+	 * 
+	 * @param ok 是否连接成功
+	 * 
+	 * @return 是否握手成功
+	 */
+	private boolean handshake(boolean ok) {
 		if(ok) {
 			this.peerSubMessageHandler.handshake(this); // 发送握手消息
 		} else {
@@ -61,31 +84,141 @@ public final class PeerDownloader extends PeerConnect {
 	/**
 	 * <p>建立连接</p>
 	 * <p>优先直接使用TCP/UTP进行连接，如果连接失败使用holepunch协议重连。</p>
+	 * <dl>
+	 * 	<dt>连接方式</dt>
+	 * 	<dd>已经记录连接方式：直接使用记录的连接方式</dd>
+	 * 	<dd>支持UTP：同时使用TCP和UTP连接，使用先连接成功的连接，关闭另外一个连接。</dd>
+	 * 	<dd>其他：使用TCP连接</dd>
+	 * </dl>
 	 * 
 	 * @return 是否连接成功
 	 */
-	private boolean connect() {
-		if(this.peerSession.utp()) {
-			LOGGER.debug("Peer连接（uTP）：{}-{}", this.peerSession.host(), this.peerSession.port());
-			final UtpClient utpClient = UtpClient.newInstance(this.peerSession, this.peerSubMessageHandler);
-			final boolean utpOk = utpClient.connect();
+	private CompletableFuture<Boolean> connectAsync() {
+		final byte dial = this.peerSession.dial();
+		if(dial == PeerConfig.DIAL_UTP) {
+			return this.utpConnectAsync();
+		} else if(dial == PeerConfig.DIAL_TCP) {
+			return this.tcpConnectAsync();
+		} else if(this.peerSession.utp()) {
+			return this.raceConnectAsync();
+		} else {
+			return this.tcpConnectAsync();
+		}
+	}
+	
+	/**
+	 * <p>使用TCP连接</p>
+	 * 
+	 * @return 是否连接成功
+	 */
+	private CompletableFuture<Boolean> tcpConnectAsync() {
+		LOGGER.debug("Peer连接（TCP）：{}-{}", this.peerSession.host(), this.peerSession.port());
+		final PeerClient peerClient = PeerClient.newInstance(this.peerSession, this.peerSubMessageHandler);
+		return peerClient.connectAsync().thenCompose(tcpOk -> {
+			if(tcpOk) {
+				this.peerSession.dial(PeerConfig.DIAL_TCP);
+				return CompletableFuture.completedFuture(tcpOk);
+			} else {
+				return this.holepunchConnectAsync(true); // 需要使用UTP重试
+			}
+		});
+	}
+	
+	/**
+	 * <p>使用UTP连接</p>
+	 * 
+	 * @return 是否连接成功
+	 */
+	private CompletableFuture<Boolean> utpConnectAsync() {
+		LOGGER.debug("Peer连接（uTP）：{}-{}", this.peerSession.host(), this.peerSession.port());
+		final UtpClient utpClient = UtpClient.newInstance(this.peerSession, this.peerSubMessageHandler);
+		return utpClient.connectAsync().thenCompose(utpOk -> {
 			if(utpOk) {
-				return utpOk;
+				this.peerSession.dial(PeerConfig.DIAL_UTP);
+				return CompletableFuture.completedFuture(utpOk);
 			} else {
-				return this.holepunchConnect(false); // 不需要再使用UTP重试
+				return this.holepunchConnectAsync(false); // 不需要再使用UTP重试
 			}
-		} else {
-			LOGGER.debug("Peer连接（TCP）：{}-{}", this.peerSession.host(), this.peerSession.port());
-			final PeerClient peerClient = PeerClient.newInstance(this.peerSession, this.peerSubMessageHandler);
-			final boolean tcpOk = peerClient.connect();
-			if(tcpOk) {
-				return tcpOk;
+		});
+	}
+	
+	/**
+	 * <p>同时使用TCP和UTP连接</p>
+	 * <p>TCP和UTP分别使用独立的Peer消息代理，使用先连接成功的连接，取消或者关闭另外一个连接，记录连接方式。</p>
+	 * 
+	 * @return 是否连接成功
+	 */
+	private CompletableFuture<Boolean> raceConnectAsync() {
+		LOGGER.debug("Peer连接（TCP/uTP）：{}-{}", this.peerSession.host(), this.peerSession.port());
+		final CompletableFuture<Boolean> future = new CompletableFuture<>();
+		final AtomicInteger failCount = new AtomicInteger(0);
+		final PeerSubMessageHandler tcpMessageHandler = PeerSubMessageHandler.newInstance(this.peerSession, this.torrentSession);
+		final PeerSubMessageHandler utpMessageHandler = PeerSubMessageHandler.newInstance(this.peerSession, this.torrentSession);
+		final PeerClient peerClient = PeerClient.newInstance(this.peerSession, tcpMessageHandler);
+		final UtpClient utpClient = UtpClient.newInstance(this.peerSession, utpMessageHandler);
+		final CompletableFuture<Boolean> tcpFuture = peerClient.connectAsync();
+		final CompletableFuture<Boolean> utpFuture = utpClient.connectAsync();
+		tcpFuture.whenComplete((ok, e) -> {
+			if(Boolean.TRUE.equals(ok)) {
+				synchronized (future) {
+					if(!future.isDone()) {
+						LOGGER.debug("Peer连接（TCP/uTP）：TCP连接成功");
+						// 先设置Peer消息代理再通知连接成功
+						this.peerSubMessageHandler = tcpMessageHandler;
+						this.peerSession.dial(PeerConfig.DIAL_TCP);
+						future.complete(true);
+						if(!utpFuture.cancel(false)) {
+							utpClient.close();
+						}
+						return;
+					}
+				}
+				peerClient.close();
+			} else if(failCount.incrementAndGet() >= 2) {
+				future.complete(false);
+			}
+		});
+		utpFuture.whenComplete((ok, e) -> {
+			if(Boolean.TRUE.equals(ok)) {
+				synchronized (future) {
+					if(!future.isDone()) {
+						LOGGER.debug("Peer连接（TCP/uTP）：UTP连接成功");
+						// 先设置Peer消息代理再通知连接成功
+						this.peerSubMessageHandler = utpMessageHandler;
+						this.peerSession.dial(PeerConfig.DIAL_UTP);
+						future.complete(true);
+						if(!tcpFuture.cancel(false)) {
+							peerClient.close();
+						}
+						return;
+					}
+				}
+				utpClient.close();
+			} else if(failCount.incrementAndGet() >= 2) {
+				future.complete(false);
+			}
+		});
+		return future.thenCompose(ok -> {
+			if(ok) {
+				return CompletableFuture.completedFuture(ok);
 			} else {
-				return this.holepunchConnect(true); // 需要使用UTP重试
+				return this.holepunchConnectAsync(false); // 已经使用UTP连接
 			}
-		}
+		});
 	}
-
+	
+	/**
+	 * <p>使用holepunch协议连接</p>
+	 * <p>holepunch协议需要等待中继响应，所以使用BT任务线程池执行。</p>
+	 * 
+	 * @param utpRetry 是否可以使用UTP重试
+	 * 
+	 * @return 是否连接成功
+	 */
+	private CompletableFuture<Boolean> holepunchConnectAsync(boolean utpRetry) {
+		return CompletableFuture.supplyAsync(() -> this.holepunchConnect(utpRetry), this.torrentSession::submit);
+	}
+	
 	/**
 	 * <p>使用holepunch协议连接</p>
 	 * <p>如果Peer不可以直接连接使用holepunch协议连接，如果连接失败并且可以使用UTP重试时再使用UTP重试连接。</p>
@@ -127,6 +260,7 @@ public final class PeerDownloader extends PeerConnect {
 			final UtpClient utpClient = UtpClient.newInstance(this.peerSession, this.peerSubMessageHandler);
 			final boolean utpOk = utpClient.connect();
 			if(utpOk) {
+				this.peerSession.dial(PeerConfig.DIAL_UTP);
 				this.peerSession.flags(PeerConfig.PEX_UTP); // UTP
 				this.peerSession.flags(PeerConfig.PEX_OUTGO); // 直接连接
 				return utpOk;
@@ -4,6 +4,7 @@ import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,11 +32,6 @@ public final class PeerDownloaderGroup {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(PeerDownloaderGroup.class);
 	
-	/**
-	 * <p>同时创建PeerDownloader数量：{@value}</p>
-	 * <p>如果TorrentSession线程池是固定线程池，请不要超过线程池大小。</p>
-	 */
-	private static final int BUILD_SIZE = 3;
 	/**
 	 * <p>单次创建PeerDownloader最大数量：{@value}</p>
 	 * <p>包含失败次数</p>
@@ -52,8 +48,13 @@ public final class PeerDownloaderGroup {
 	private final AtomicBoolean build = new AtomicBoolean(false);
 	/**
 	 * <p>创建PeerDownloader信号量</p>
+	 * <p>信号量数量：{@linkplain SystemConfig#getPeerConnectSize() 同时连接Peer数量}</p>
 	 */
-	private final Semaphore buildSemaphore = new Semaphore(BUILD_SIZE);
+	private final Semaphore buildSemaphore = new Semaphore(0);
+	/**
+	 * <p>正在连接的Peer数量</p>
+	 */
+	private final AtomicInteger connecting = new AtomicInteger(0);
 	/**
 	 * <p>PeerDownloader队列</p>
 	 */
@@ -138,6 +139,7 @@ public final class PeerDownloaderGroup {
 	
 	/**
 	 * <p>创建PeerDownloader列表</p>
+	 * <p>连接过程异步执行，同时连接数量不超过{@linkplain SystemConfig#getPeerConnectSize() 同时连接Peer数量}。</p>
 	 * <p>创建数量达到最大Peer连接数量或者创建次数超过{@link #MAX_BUILD_SIZE}时退出创建</p>
 	 */
 	private void buildPeerDownloaders() {
@@ -145,23 +147,26 @@ public final class PeerDownloaderGroup {
 		int size = 0;
 		this.build.set(true); // 重置创建状态
 		this.buildSemaphore.drainPermits(); // 重置信号量
-		this.buildSemaphore.release(BUILD_SIZE);
+		this.buildSemaphore.release(Math.max(0, SystemConfig.getPeerConnectSize() - this.connecting.get()));
 		while(this.build.get()) {
 			this.acquire(); // 获取信号量
 			if(!this.build.get()) { // 再次判断状态
 				LOGGER.debug("不能继续创建PeerDownloader：退出循环");
 				break;
 			}
-			this.torrentSession.submit(() -> {
-				boolean ok = true; // 是否继续创建
-				try {
-					ok = this.buildPeerDownloader();
-				} catch (Exception e) {
-					LOGGER.error("创建PeerDownloader异常", e);
-				} finally {
-					this.release(ok); // 释放信号量
+			if(!this.taskSession.download()) {
+				break;
+			}
+			// 正在连接的Peer可能全部连接成功：等待连接结果
+			if(this.peerDownloaders.size() + this.connecting.get() >= this.maxSize()) {
+				if(this.connecting.get() <= 0) {
+					break;
 				}
-			});
+				continue;
+			}
+			if(!this.buildPeerDownloader()) {
+				break;
+			}
 			if(++size >= MAX_BUILD_SIZE) {
 				LOGGER.debug("超过PeerDownloader单次最大创建数量：退出循环");
 				break;
@@ -171,39 +176,43 @@ public final class PeerDownloaderGroup {
 	
 	/**
 	 * <p>创建PeerDownloader</p>
-	 * <p>从Peer队列尾部拿出一个Peer创建下载，失败后插入Peer队列头部。</p>
-	 * <dl>
-	 * 	<dt>跳出创建循环条件</dt>
-	 * 	<dd>任务不处于下载状态</dd>
-	 * 	<dd>下载队列的Peer数量大于等于配置的最大数量</dd>
-	 * 	<dd>不能查找到更多的Peer</dd>
-	 * </dl>
+	 * <p>从Peer队列挑选一个Peer异步连接，连接成功后加入下载队列，失败后放回Peer队列（劣质Peer）。</p>
+	 * <p>连接完成后释放信号量</p>
 	 * 
-	 * @return 创建状态：true-继续；false-停止；
+	 * @return 是否继续创建：true-继续；false-停止（没有可用Peer）；
 	 */
 	private boolean buildPeerDownloader() {
-		if(!this.taskSession.download()) {
-			return false;
-		}
-		if(this.peerDownloaders.size() >= SystemConfig.getPeerSize()) {
-			return false;
-		}
 		final PeerSession peerSession = PeerManager.getInstance().pick(this.torrentSession.infoHashHex());
-		if(peerSession != null) {
-			final PeerDownloader peerDownloader = PeerDownloader.newInstance(peerSession, this.torrentSession);
-			final boolean ok = peerDownloader.handshake();
-			if(ok) {
-				peerSession.status(PeerConfig.STATUS_DOWNLOAD);
-				this.offer(peerDownloader);
-			} else {
-				// 失败后需要放回队列
-				PeerManager.getInstance().inferior(this.torrentSession.infoHashHex(), peerSession);
-			}
-			return true;
-		} else {
+		if(peerSession == null) {
 			LOGGER.debug("没有可用Peer进行下载");
 			return false;
 		}
+		this.connecting.incrementAndGet();
+		final PeerDownloader peerDownloader = PeerDownloader.newInstance(peerSession, this.torrentSession);
+		peerDownloader.handshakeAsync().whenComplete((ok, e) -> {
+			try {
+				if(e != null) {
+					LOGGER.error("创建PeerDownloader异常", e);
+				}
+				if(Boolean.TRUE.equals(ok)) {
+					if(this.taskSession.download()) {
+						peerSession.status(PeerConfig.STATUS_DOWNLOAD);
+						this.offer(peerDownloader);
+					} else {
+						// 任务已经暂停：释放连接
+						SystemThreadContext.submit(() -> peerDownloader.release());
+						PeerManager.getInstance().preference(this.torrentSession.infoHashHex(), peerSession);
+					}
+				} else {
+					// 失败后需要放回队列
+					PeerManager.getInstance().inferior(this.torrentSession.infoHashHex(), peerSession);
+				}
+			} finally {
+				this.connecting.decrementAndGet();
+				this.buildSemaphore.release(); // 释放信号量
+			}
+		});
+		return true;
 	}
 	
 	/**
@@ -252,14 +261,40 @@ public final class PeerDownloaderGroup {
 			}
 		}
 		if(minDownloader != null) {
-			// 如果当前Peer连接数量小于系统配置最大数量不剔除
-			if(this.peerDownloaders.size() < SystemConfig.getPeerSize()) {
+			// 如果当前Peer连接数量小于分配数量不剔除
+			if(this.peerDownloaders.size() < this.maxSize()) {
 				this.offer(minDownloader);
 			} else {
 				LOGGER.debug("剔除劣质PeerDownloader（最低评分）");
 				this.inferiorPeerDownloader(minDownloader);
 			}
 		}
+		// 分配数量减少：剔除超过数量的PeerDownloader
+		final int maxSize = this.maxSize();
+		while(this.peerDownloaders.size() > maxSize) {
+			LOGGER.debug("剔除劣质PeerDownloader（超过分配数量）");
+			this.inferiorPeerDownloader(this.peerDownloaders.poll());
+		}
+	}
+	
+	/**
+	 * <p>获取PeerDownloader数量</p>
+	 * 
+	 * @return PeerDownloader数量
+	 */
+	public int size() {
+		return this.peerDownloaders.size();
+	}
+	
+	/**
+	 * <p>获取PeerDownloader最大数量</p>
+	 * 
+	 * @return PeerDownloader最大数量
+	 * 
+	 * @see PeerConnectManager#peerDownloaderSize(TorrentSession)
+	 */
+	private int maxSize() {
+		return PeerConnectManager.getInstance().peerDownloaderSize(this.torrentSession);
 	}
 	
 	/**
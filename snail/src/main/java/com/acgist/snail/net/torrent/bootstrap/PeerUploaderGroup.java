@@ -7,7 +7,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.acgist.snail.config.PeerConfig;
-import com.acgist.snail.config.SystemConfig;
 import com.acgist.snail.context.SystemThreadContext;
 import com.acgist.snail.net.torrent.peer.bootstrap.PeerSubMessageHandler;
 import com.acgist.snail.pojo.session.PeerSession;
@@ -103,7 +102,7 @@ public final class PeerUploaderGroup {
 		if(peerSession != null && peerSession.downloading()) {
 			return true;
 		} else {
-			return this.peerUploaders.size() < SystemConfig.getPeerSize();
+			return this.peerUploaders.size() < this.maxSize();
 		}
 	}
 	
@@ -149,7 +148,7 @@ public final class PeerUploaderGroup {
 		long downloadMark;
 		PeerUploader tmpUploader;
 		final int size = this.peerUploaders.size();
-		final int maxSize = SystemConfig.getPeerSize();
+		final int maxSize = this.maxSize();
 		while(index++ < size) {
 			tmpUploader = this.peerUploaders.poll();
 			if(tmpUploader == null) {
@@ -191,6 +190,26 @@ public final class PeerUploaderGroup {
 		}
 	}
 	
+	/**
+	 * <p>获取PeerUploader数量</p>
+	 * 
+	 * @return PeerUploader数量
+	 */
+	public int size() {
+		return this.peerUploaders.size();
+	}
+	
+	/**
+	 * <p>获取PeerUploader最大数量</p>
+	 * 
+	 * @return PeerUploader最大数量
+	 * 
+	 * @see PeerConnectManager#peerUploaderSize(TorrentSession)
+	 */
+	private int maxSize() {
+		return PeerConnectManager.getInstance().peerUploaderSize(this.torrentSession);
+	}
+	
 	/**
 	 * <p>PeerUploader加入队列</p>
 	 * 
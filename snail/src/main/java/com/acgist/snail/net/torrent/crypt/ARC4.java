@@ -0,0 +1,115 @@
+package com.acgist.snail.net.torrent.crypt;
+
+import java.nio.ByteBuffer;
+
+/**
+ * <p>ARC4流加密</p>
+ * <p>直接在原始数据上异或密钥流（原地加解密），不会创建中间数组。</p>
+ * <p>加密和解密操作相同</p>
+ * <p>注意：线程不安全，同一个密钥流加解密顺序必须和数据发送（接收）顺序一致。</p>
+ * 
+ * @author acgist
+ */
+public final class ARC4 {
+	
+	/**
+	 * <p>状态长度：{@value}</p>
+	 */
+	private static final int STATE_LENGTH = 256;
+	
+	/**
+	 * <p>状态</p>
+	 */
+	private final int[] state = new int[STATE_LENGTH];
+	/**
+	 * <p>索引：i</p>
+	 */
+	private int x;
+	/**
+	 * <p>索引：j</p>
+	 */
+	private int y;
+	
+	/**
+	 * @param key 密钥
+	 */
+	private ARC4(byte[] key) {
+		final int length = key.length;
+		for (int index = 0; index < STATE_LENGTH; index++) {
+			this.state[index] = index;
+		}
+		int temp;
+		for (int index = 0, jndex = 0; index < STATE_LENGTH; index++) {
+			jndex = (jndex + this.state[index] + (key[index % length] & 0xFF)) & 0xFF;
+			temp = this.state[index];
+			this.state[index] = this.state[jndex];
+			this.state[jndex] = temp;
+		}
+	}
+	
+	/**
+	 * <p>创建ARC4流加密</p>
+	 * 
+	 * @param key 密钥
+	 * @param skip 丢弃密钥流长度
+	 * 
+	 * @return ARC4流加密
+	 */
+	public static final ARC4 newInstance(byte[] key, int skip) {
+		final ARC4 arc4 = new ARC4(key);
+		for (int index = 0; index < skip; index++) {
+			arc4.next();
+		}
+		return arc4;
+	}
+	
+	/**
+	 * <p>加解密数据</p>
+	 * <p>使用绝对位置读写：不改变buffer读取和写入状态</p>
+	 * 
+	 * @param buffer 数据
+	 * @param offset 开始位置
+	 * @param length 数据长度
+	 */
+	public void crypt(ByteBuffer buffer, int offset, int length) {
+		if(buffer.hasArray()) {
+			this.crypt(buffer.array(), buffer.arrayOffset() + offset, length);
+		} else {
+			final int end = offset + length;
+			for (int index = offset; index < end; index++) {
+				buffer.put(index, (byte) (buffer.get(index) ^ this.next()));
+			}
+		}
+	}
+	
+	/**
+	 * <p>加解密数据</p>
+	 * 
+	 * @param bytes 数据
+	 * @param offset 开始偏移
+	 * @param length 数据长度
+	 */
+	public void crypt(byte[] bytes, int offset, int length) {
+		final int end = offset + length;
+		for (int index = offset; index < end; index++) {
+			bytes[index] ^= this.next();
+		}
+	}
+	
+	/**
+	 * <p>获取下一个密钥</p>
+	 * 
+	 * @return 密钥
+	 */
+	private int next() {
+		final int[] state = this.state;
+		this.x = (this.x + 1) & 0xFF;
+		final int sx = state[this.x];
+		this.y = (this.y + sx) & 0xFF;
+		final int sy = state[this.y];
+		state[this.x] = sy;
+		state[this.y] = sx;
+		return state[(sx + sy) & 0xFF];
+	}
+	
+}
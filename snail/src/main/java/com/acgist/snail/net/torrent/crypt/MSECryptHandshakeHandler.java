@@ -5,7 +5,12 @@ import java.nio.ByteBuffer;
 import java.security.InvalidKeyException;
 import java.security.KeyPair;
 import java.security.MessageDigest;
+import java.util.LinkedList;
+import java.util.Queue;
 import java.util.Random;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -15,6 +20,7 @@ import com.acgist.snail.config.CryptConfig.CryptAlgo;
 import com.acgist.snail.config.CryptConfig.Strategy;
 import com.acgist.snail.config.PeerConfig;
 import com.acgist.snail.config.SystemConfig;
+import com.acgist.snail.context.SystemThreadContext;
 import com.acgist.snail.context.exception.NetException;
 import com.acgist.snail.context.exception.PacketSizeException;
 import com.acgist.snail.net.codec.impl.PeerUnpackMessageCodec;
@@ -48,6 +54,7 @@ import com.acgist.snail.utils.StringUtils;
  * 5 A->B: ENCRYPT2(Payload Stream)
  * </pre>
  * <p>SKEY：InfoHash</p>
+ * <p>握手不会阻塞发送线程：握手没有完成时加密消息进入等待队列，握手完成（或者超时使用明文）后按照顺序发送。</p>
  * 
  * @author acgist
  */
@@ -64,6 +71,11 @@ public final class MSECryptHandshakeHandler {
 	 * <p>不能超过{@link PeerSubMessageHandler#HANDSHAKE_TIMEOUT}</p>
 	 */
 	private static final int HANDSHAKE_TIMEOUT = PeerSubMessageHandler.HANDSHAKE_TIMEOUT * SystemConfig.ONE_SECOND_MILLIS;
+	/**
+	 * <p>填充随机数</p>
+	 * <p>随机数线程安全：所有握手共用</p>
+	 */
+	private static final Random RANDOM = NumberUtils.random();
 	
 	/**
 	 * <p>加密握手步骤</p>
@@ -108,18 +120,26 @@ public final class MSECryptHandshakeHandler {
 	 */
 	private volatile boolean complete = false;
 	/**
-	 * <p>加密握手锁</p>
+	 * <p>是否开始握手</p>
+	 */
+	private final AtomicBoolean handshake = new AtomicBoolean(false);
+	/**
+	 * <p>等待握手完成的加密消息</p>
 	 */
-	private final Object handshakeLock = new Object();
+	private final Queue<ByteBuffer> pendings = new LinkedList<>();
+	/**
+	 * <p>握手超时定时任务</p>
+	 */
+	private ScheduledFuture<?> timeout;
 	/**
 	 * <p>加密套件</p>
 	 */
 	private MSECipher cipher;
 	/**
-	 * <p>临时加密套件</p>
-	 * <p>VC数据查找时使用，加密握手完成后释放。</p>
+	 * <p>加密VC数据</p>
+	 * <p>VC数据查找时使用，只计算一次（加解密套件是有状态的流加密），加密握手完成后释放。</p>
 	 */
-	private MSECipher cipherVC;
+	private byte[] vcMatch;
 	/**
 	 * <p>密钥对</p>
 	 */
@@ -154,9 +174,7 @@ public final class MSECryptHandshakeHandler {
 	 * @param peerSubMessageHandler Peer消息代理
 	 */
 	private MSECryptHandshakeHandler(PeerUnpackMessageCodec peerUnpackMessageCodec, PeerSubMessageHandler peerSubMessageHandler) {
-		final MSEKeyPairBuilder mseKeyPairBuilder = MSEKeyPairBuilder.newInstance();
 		this.buffer = ByteBuffer.allocate(BUFFER_LENGTH);
-		this.keyPair = mseKeyPairBuilder.buildKeyPair();
 		this.peerSubMessageHandler = peerSubMessageHandler;
 		this.peerUnpackMessageCodec = peerUnpackMessageCodec;
 	}
@@ -191,10 +209,16 @@ public final class MSECryptHandshakeHandler {
 	
 	/**
 	 * <p>发送握手消息</p>
+	 * <p>已经开始握手（发送或者接收握手消息）时忽略</p>
 	 */
 	public void handshake() {
-		this.step = Step.SEND_PUBLIC_KEY;
-		this.sendPublicKey();
+		final ByteBuffer buffer = this.buffer;
+		if(buffer != null && this.handshake.compareAndSet(false, true)) {
+			synchronized (buffer) {
+				this.step = Step.SEND_PUBLIC_KEY;
+				this.sendPublicKey();
+			}
+		}
 	}
 
 	/**
@@ -212,6 +236,7 @@ public final class MSECryptHandshakeHandler {
 				LOGGER.debug("加密握手（跳过）：收到Peer握手消息");
 				return;
 			}
+			this.handshake.set(true);
 			synchronized (this.buffer) {
 				switch (this.step) {
 				case SEND_PUBLIC_KEY:
@@ -287,38 +312,65 @@ public final class MSECryptHandshakeHandler {
 	}
 	
 	/**
-	 * <p>添加加密握手锁</p>
+	 * <p>加密消息</p>
+	 * <p>握手没有完成时消息进入等待队列，握手完成后按照顺序加密发送。</p>
+	 * <p>握手超时使用明文发送</p>
+	 * 
+	 * @param buffer 数据
+	 * 
+	 * @return true-消息已经加密（直接发送）；false-消息等待握手完成；
 	 */
-	public void lockHandshake() {
-		if(!this.complete) {
-			// 加锁
-			synchronized (this.handshakeLock) {
-				if(!this.complete) {
-					try {
-						this.handshakeLock.wait(HANDSHAKE_TIMEOUT);
-					} catch (InterruptedException e) {
-						LOGGER.debug("线程等待异常", e);
-						Thread.currentThread().interrupt();
-					}
+	public boolean encryptOrPending(ByteBuffer buffer) {
+		synchronized (this.pendings) {
+			if(!this.complete) {
+				if(this.timeout == null) {
+					this.timeout = SystemThreadContext.timer(HANDSHAKE_TIMEOUT, TimeUnit.MILLISECONDS, this::handshakeTimeout);
 				}
+				this.pendings.add(buffer);
+				return false;
 			}
 		}
-		// 加密没有完成设置明文
+		this.encrypt(buffer);
+		return true;
+	}
+	
+	/**
+	 * <p>握手超时：使用明文</p>
+	 */
+	private void handshakeTimeout() {
 		if(!this.complete) {
-			LOGGER.debug("加密握手失败：使用明文");
+			LOGGER.debug("加密握手失败（超时）：使用明文");
 			this.plaintext();
 		}
 	}
 	
 	/**
-	 * <p>释放加密握手锁</p>
+	 * <p>发送等待握手完成的加密消息</p>
+	 * <p>调用时必须持有等待队列锁并且没有设置握手完成：保证等待消息先于后续消息加密发送</p>
 	 */
-	private void unlockHandshake() {
-		synchronized (this.handshakeLock) {
-			this.handshakeLock.notifyAll();
+	private void flushPendings() {
+		SystemThreadContext.shutdown(this.timeout);
+		this.timeout = null;
+		ByteBuffer buffer;
+		while((buffer = this.pendings.poll()) != null) {
+			this.encrypt(buffer);
+			this.peerSubMessageHandler.send(buffer);
 		}
 	}
 
+	/**
+	 * <p>获取密钥对</p>
+	 * <p>开始握手时从密钥对池获取：明文连接不会消耗密钥对</p>
+	 * 
+	 * @return 密钥对
+	 */
+	private KeyPair keyPair() {
+		if(this.keyPair == null) {
+			this.keyPair = MSEKeyPairPool.getInstance().keyPair();
+		}
+		return this.keyPair;
+	}
+	
 	/**
 	 * <p>发送公钥</p>
 	 * <pre>
@@ -328,7 +380,7 @@ public final class MSECryptHandshakeHandler {
 	 */
 	private void sendPublicKey() {
 		LOGGER.debug("加密握手（发送公钥）步骤：{}", this.step);
-		final byte[] publicKey = this.keyPair.getPublic().getEncoded();
+		final byte[] publicKey = this.keyPair().getPublic().getEncoded();
 		final byte[] padding = this.buildPadding(CryptConfig.PADDING_MAX_LENGTH);
 		final ByteBuffer buffer = ByteBuffer.allocate(publicKey.length + padding.length);
 		buffer.put(publicKey);
@@ -364,7 +416,7 @@ public final class MSECryptHandshakeHandler {
 		final BigInteger publicKey = NumberUtils.decodeBigInteger(this.buffer, CryptConfig.PUBLIC_KEY_LENGTH);
 		this.buffer.compact();
 		try {
-			this.dhSecret = MSEKeyPairBuilder.buildDHSecret(publicKey, this.keyPair.getPrivate());
+			this.dhSecret = MSEKeyPairBuilder.buildDHSecret(publicKey, this.keyPair().getPrivate());
 		} catch (InvalidKeyException e) {
 			throw new NetException("获取密钥失败", e);
 		}
@@ -397,7 +449,7 @@ public final class MSECryptHandshakeHandler {
 		final byte[] dhSecretBytes = NumberUtils.encodeBigInteger(this.dhSecret, CryptConfig.PUBLIC_KEY_LENGTH);
 		final InfoHash infoHash = torrentSession.infoHash();
 		this.cipher = MSECipher.newSender(dhSecretBytes, infoHash);
-		this.cipherVC = MSECipher.newSender(dhSecretBytes, infoHash);
+		this.vcMatch = MSECipher.newSender(dhSecretBytes, infoHash).decrypt(CryptConfig.VC);
 		ByteBuffer buffer = ByteBuffer.allocate(40); // 20 + 20
 		final MessageDigest digest = DigestUtils.sha1();
 //		HASH('req1', S)
@@ -563,8 +615,7 @@ public final class MSECryptHandshakeHandler {
 	 */
 	private void receiveConfirm() throws NetException {
 		LOGGER.debug("加密握手（接收确认加密协议）步骤：{}", this.step);
-		final byte[] vcMatch = this.cipherVC.decrypt(CryptConfig.VC);
-		if(!this.match(vcMatch)) {
+		if(!this.match(this.vcMatch)) {
 			return;
 		}
 		if(this.buffer.position() < CONFIRM_MIN_LENGTH) {
@@ -653,11 +704,8 @@ public final class MSECryptHandshakeHandler {
 	 * @return 填充数据
 	 */
 	private byte[] buildPadding(int maxLength) {
-		final Random random = NumberUtils.random();
-		final byte[] padding = new byte[random.nextInt(maxLength + 1)];
-		for (int index = 0; index < padding.length; index++) {
-			padding[index] = (byte) random.nextInt(SystemConfig.UNSIGNED_BYTE_MAX);
-		}
+		final byte[] padding = new byte[RANDOM.nextInt(maxLength + 1)];
+		RANDOM.nextBytes(padding);
 		return padding;
 	}
 	
@@ -669,8 +717,7 @@ public final class MSECryptHandshakeHandler {
 	 * @return 填充数据
 	 */
 	private byte[] buildZeroPadding(int maxLength) {
-		final Random random = NumberUtils.random();
-		return new byte[random.nextInt(maxLength + 1)];
+		return new byte[RANDOM.nextInt(maxLength + 1)];
 	}
 	
 	/**
@@ -740,20 +787,27 @@ public final class MSECryptHandshakeHandler {
 	
 	/**
 	 * <p>设置握手完成</p>
+	 * <p>先加密发送等待消息再设置握手完成：握手完成后消息直接加密（不会获取等待队列锁），如果先设置握手完成，直接加密的消息可能先于等待消息使用密钥流。</p>
+	 * <p>已经完成时忽略：防止明文超时覆盖加密结果</p>
 	 * 
 	 * @param complete 是否完成
 	 * @param crypt 是否加密
 	 */
 	private void complete(boolean complete, boolean crypt) {
-		this.complete = complete;
-		this.crypt = crypt;
+		synchronized (this.pendings) {
+			if(this.complete) {
+				return;
+			}
+			this.crypt = crypt;
+			this.flushPendings();
+			this.complete = complete;
+		}
 		this.buffer = null;
 		this.keyPair = null;
 		this.strategy = null;
 		this.dhSecret = null;
-		this.cipherVC = null;
+		this.vcMatch = null;
 		this.msePaddingSync = null;
-		this.unlockHandshake();
 	}
 
 }
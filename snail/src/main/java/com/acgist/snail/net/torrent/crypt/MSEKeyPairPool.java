@@ -0,0 +1,115 @@
+package com.acgist.snail.net.torrent.crypt;
+
+import java.security.KeyPair;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.acgist.snail.context.SystemThreadContext;
+
+/**
+ * <p>MSE密钥对池</p>
+ * <p>预先计算密钥对（模幂运算消耗CPU），加密握手时直接获取，减少大量连接时握手消耗。</p>
+ * <p>密钥对只会使用一次，数量低于最低水位时使用系统线程池异步补充。</p>
+ * <p>密钥对池为空时同步创建密钥对</p>
+ * 
+ * @author acgist
+ */
+public final class MSEKeyPairPool {
+	
+	private static final Logger LOGGER = LoggerFactory.getLogger(MSEKeyPairPool.class);
+	
+	private static final MSEKeyPairPool INSTANCE = new MSEKeyPairPool();
+	
+	public static final MSEKeyPairPool getInstance() {
+		return INSTANCE;
+	}
+	
+	/**
+	 * <p>密钥对池大小：{@value}</p>
+	 */
+	private static final int POOL_SIZE = 64;
+	/**
+	 * <p>最低水位：{@value}</p>
+	 * <p>低于最低水位开始补充</p>
+	 */
+	private static final int LOW_WATER_MARK = POOL_SIZE / 2;
+	
+	/**
+	 * <p>密钥对</p>
+	 */
+	private final BlockingQueue<KeyPair> keyPairs;
+	/**
+	 * <p>是否正在补充</p>
+	 */
+	private final AtomicBoolean filling;
+	/**
+	 * <p>MSE密钥对Builder</p>
+	 */
+	private final MSEKeyPairBuilder mseKeyPairBuilder;
+	
+	private MSEKeyPairPool() {
+		this.keyPairs = new ArrayBlockingQueue<>(POOL_SIZE);
+		this.filling = new AtomicBoolean(false);
+		this.mseKeyPairBuilder = MSEKeyPairBuilder.newInstance();
+	}
+	
+	/**
+	 * <p>预热密钥对池</p>
+	 */
+	public void register() {
+		LOGGER.debug("注册MSE密钥对池：预先计算密钥对");
+		this.fill();
+	}
+	
+	/**
+	 * <p>获取密钥对</p>
+	 * 
+	 * @return 密钥对
+	 */
+	public KeyPair keyPair() {
+		final KeyPair keyPair = this.keyPairs.poll();
+		if(this.keyPairs.size() < LOW_WATER_MARK) {
+			this.fill();
+		}
+		if(keyPair == null) {
+			LOGGER.debug("MSE密钥对池为空：同步创建密钥对");
+			return this.mseKeyPairBuilder.buildKeyPair();
+		}
+		return keyPair;
+	}
+	
+	/**
+	 * <p>获取可用密钥对数量</p>
+	 * 
+	 * @return 可用密钥对数量
+	 */
+	public int size() {
+		return this.keyPairs.size();
+	}
+	
+	/**
+	 * <p>异步补充密钥对</p>
+	 */
+	private void fill() {
+		if(this.filling.compareAndSet(false, true)) {
+			SystemThreadContext.submit(() -> {
+				try {
+					while(this.keyPairs.remainingCapacity() > 0) {
+						if(!this.keyPairs.offer(this.mseKeyPairBuilder.buildKeyPair())) {
+							break;
+						}
+					}
+				} catch (Exception e) {
+					LOGGER.error("补充MSE密钥对异常", e);
+				} finally {
+					this.filling.set(false);
+				}
+			});
+		}
+	}
+	
+}
@@ -1,10 +1,12 @@
 package com.acgist.snail.net.torrent.dht;
 
 import java.net.InetSocketAddress;
+import java.util.concurrent.CompletableFuture;
 
 import com.acgist.snail.config.SystemConfig;
 import com.acgist.snail.net.UdpClient;
 import com.acgist.snail.net.torrent.TorrentServer;
+import com.acgist.snail.net.torrent.dht.bootstrap.DhtRequest;
 import com.acgist.snail.pojo.bean.InfoHash;
 import com.acgist.snail.pojo.session.NodeSession;
 import com.acgist.snail.utils.NetUtils;
@@ -57,13 +59,23 @@ public final class DhtClient extends UdpClient<DhtMessageHandler> {
 	
 	/**
 	 * <p>Ping</p>
+	 * <p>不会阻塞：响应或者超时后完成</p>
 	 * 
-	 * @return 节点
+	 * @return 节点：{@code null}-没有响应
 	 */
-	public NodeSession ping() {
+	public CompletableFuture<NodeSession> ping() {
 		return this.handler.ping(this.socketAddress);
 	}
 	
+	/**
+	 * <p>发送请求</p>
+	 * 
+	 * @param request 请求
+	 */
+	public void request(DhtRequest request) {
+		this.handler.request(this.socketAddress, request);
+	}
+	
 	/**
 	 * <p>查询节点</p>
 	 * 
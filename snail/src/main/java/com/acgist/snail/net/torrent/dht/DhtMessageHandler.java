@@ -2,6 +2,7 @@ package com.acgist.snail.net.torrent.dht;
 
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Function;
 
 import org.slf4j.Logger;
@@ -9,10 +10,10 @@ import org.slf4j.LoggerFactory;
 
 import com.acgist.snail.config.DhtConfig;
 import com.acgist.snail.config.DhtConfig.ErrorCode;
+import com.acgist.snail.context.BandwidthContext;
 import com.acgist.snail.context.exception.NetException;
 import com.acgist.snail.format.BEncodeDecoder;
 import com.acgist.snail.net.UdpMessageHandler;
-import com.acgist.snail.net.torrent.TorrentManager;
 import com.acgist.snail.net.torrent.dht.bootstrap.DhtManager;
 import com.acgist.snail.net.torrent.dht.bootstrap.DhtRequest;
 import com.acgist.snail.net.torrent.dht.bootstrap.DhtResponse;
@@ -24,7 +25,6 @@ import com.acgist.snail.net.torrent.dht.bootstrap.request.PingRequest;
 import com.acgist.snail.net.torrent.dht.bootstrap.response.FindNodeResponse;
 import com.acgist.snail.net.torrent.dht.bootstrap.response.GetPeersResponse;
 import com.acgist.snail.pojo.session.NodeSession;
-import com.acgist.snail.pojo.session.TorrentSession;
 import com.acgist.snail.utils.StringUtils;
 
 /**
@@ -45,9 +45,15 @@ public final class DhtMessageHandler extends UdpMessageHandler {
 		return response != null && response.success();
 	};
 	
+	public DhtMessageHandler() {
+		// 控制流量
+		this.statistics = BandwidthContext.getInstance().controlStatistics();
+	}
+	
 	@Override
 	public void onReceive(ByteBuffer buffer, InetSocketAddress socketAddress) throws NetException {
 		buffer.flip();
+		this.receive(buffer);
 		final var decoder = BEncodeDecoder.newInstance(buffer);
 		decoder.nextMap();
 		if(decoder.isEmpty()) {
@@ -114,6 +120,23 @@ public final class DhtMessageHandler extends UdpMessageHandler {
 			LOGGER.warn("处理DHT响应失败：没有对应的请求");
 			return;
 		}
+		try {
+			this.onResponse(request, response);
+		} catch (Exception e) {
+			LOGGER.error("处理DHT响应异常：{}", request.getQ(), e);
+		} finally {
+			// 处理完成设置响应：Peer和节点已经加入系统（所有情况都要设置响应：防止迭代查找等待）
+			request.complete(response);
+		}
+	}
+	
+	/**
+	 * <p>处理响应</p>
+	 * 
+	 * @param request 请求
+	 * @param response 响应
+	 */
+	private void onResponse(final DhtRequest request, final DhtResponse response) {
 		if(request.getQ() == null) {
 			LOGGER.warn("处理DHT响应失败（类型不支持）：{}", request.getQ());
 			return;
@@ -125,7 +148,7 @@ public final class DhtMessageHandler extends UdpMessageHandler {
 		}
 		switch (request.getQ()) {
 		case PING:
-			this.ping(request, response);
+			// 节点通过Ping请求响应加入系统
 			break;
 		case FIND_NODE:
 			this.findNode(request, response);
@@ -142,28 +165,38 @@ public final class DhtMessageHandler extends UdpMessageHandler {
 		}
 	}
 	
+	/**
+	 * <p>发送请求</p>
+	 * <p>响应通过{@linkplain DhtRequest#future() 请求响应}处理</p>
+	 * 
+	 * @param socketAddress 地址
+	 * @param request 请求
+	 */
+	public void request(InetSocketAddress socketAddress, DhtRequest request) {
+		LOGGER.debug("发送DHT请求：{}", request.getQ());
+		this.pushMessage(request, socketAddress);
+	}
+	
 	/**
 	 * <p>发送请求：ping</p>
-	 * <p>检测节点是否可达，该方法同步阻塞，收到响应后添加系统节点。</p>
+	 * <p>检测节点是否可达，收到响应后添加系统节点。</p>
 	 * 
 	 * @param socketAddress 地址
 	 * 
-	 * @return 节点信息
+	 * @return 节点信息：{@code null}-没有响应
 	 */
-	public NodeSession ping(InetSocketAddress socketAddress) {
+	public CompletableFuture<NodeSession> ping(InetSocketAddress socketAddress) {
 		LOGGER.debug("发送DHT请求：ping");
 		final PingRequest request = PingRequest.newRequest();
-		this.pushMessage(request, socketAddress);
-		request.lockResponse();
-		final DhtResponse response = request.getResponse();
-		if(RESPONSE_SUCCESS.apply(response)) {
-			final NodeSession nodeSession = NodeManager.getInstance().newNodeSession(response.getNodeId(), socketAddress.getHostString(), socketAddress.getPort());
-			NodeManager.getInstance().sortNodes();
-			return nodeSession;
-		} else {
+		final CompletableFuture<NodeSession> future = request.future().thenApply(response -> {
+			if(RESPONSE_SUCCESS.apply(response)) {
+				return NodeManager.getInstance().newNodeSession(response.getNodeId(), socketAddress.getHostString(), socketAddress.getPort());
+			}
 			LOGGER.warn("发送Ping请求失败：{}-{}", socketAddress, response);
-		}
-		return null;
+			return null;
+		});
+		this.pushMessage(request, socketAddress);
+		return future;
 	}
 
 	/**
@@ -177,16 +210,6 @@ public final class DhtMessageHandler extends UdpMessageHandler {
 		return PingRequest.execute(request);
 	}
 
-	/**
-	 * <p>处理响应：ping</p>
-	 * 
-	 * @param request 请求
-	 * @param response 响应
-	 */
-	private void ping(DhtRequest request, DhtResponse response) {
-		request.unlockResponse();
-	}
-	
 	/**
 	 * <p>发送请求：findNode</p>
 	 * 
@@ -245,7 +268,7 @@ public final class DhtMessageHandler extends UdpMessageHandler {
 
 	/**
 	 * <p>处理响应：getPeers</p>
-	 * <p>处理完成后如果也在下载同一个BT任务发送声明消息</p>
+	 * <p>声明消息：{@linkplain com.acgist.snail.net.torrent.dht.bootstrap.DhtLookup 迭代查找}完成后向最近的节点发送</p>
 	 * 
 	 * @param request 请求
 	 * @param response 响应
@@ -262,14 +285,6 @@ public final class DhtMessageHandler extends UdpMessageHandler {
 		if(getPeersResponse.hasNodes()) {
 			getPeersResponse.getNodes();
 		}
-		// 发送声明消息
-		final byte[] token = getPeersResponse.getToken();
-		if(token != null) {
-			final TorrentSession torrentSession = TorrentManager.getInstance().torrentSession(infoHashHex);
-			if(torrentSession != null && torrentSession.uploadable()) {
-				this.announcePeer(request.getSocketAddress(), token, infoHash);
-			}
-		}
 	}
 	
 	/**
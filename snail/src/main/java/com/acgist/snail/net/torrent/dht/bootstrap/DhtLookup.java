@@ -0,0 +1,450 @@
+package com.acgist.snail.net.torrent.dht.bootstrap;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.acgist.snail.config.DhtConfig;
+import com.acgist.snail.context.SystemThreadContext;
+import com.acgist.snail.net.torrent.TorrentManager;
+import com.acgist.snail.net.torrent.dht.DhtClient;
+import com.acgist.snail.net.torrent.dht.DhtMessageHandler;
+import com.acgist.snail.net.torrent.dht.bootstrap.request.FindNodeRequest;
+import com.acgist.snail.net.torrent.dht.bootstrap.request.GetPeersRequest;
+import com.acgist.snail.net.torrent.dht.bootstrap.response.FindNodeResponse;
+import com.acgist.snail.net.torrent.dht.bootstrap.response.GetPeersResponse;
+import com.acgist.snail.pojo.session.NodeSession;
+import com.acgist.snail.pojo.session.TorrentSession;
+import com.acgist.snail.utils.ArrayUtils;
+import com.acgist.snail.utils.CollectionUtils;
+import com.acgist.snail.utils.StringUtils;
+
+/**
+ * <p>DHT迭代查找</p>
+ * <p>协议链接：http://www.bittorrent.org/beps/bep_0005.html</p>
+ * <p>候选节点按照和目标的异或距离排序：每次向最近的没有查询的节点并发发送{@linkplain #alpha α}个请求，响应中的节点加入候选节点继续查找。</p>
+ * <p>最近的{@value #K}个节点全部响应后查找完成：查找Peer完成后使用响应Token向最近的节点发送声明消息</p>
+ * <p>查找超过{@linkplain DhtConfig#DHT_LOOKUP_TIMEOUT 超时时间}没有完成时强制结束</p>
+ * 
+ * @author acgist
+ */
+public final class DhtLookup {
+	
+	private static final Logger LOGGER = LoggerFactory.getLogger(DhtLookup.class);
+	
+	/**
+	 * <p>最近节点数量（K）：{@value}</p>
+	 */
+	public static final int K = NodeBucket.BUCKET_SIZE;
+	/**
+	 * <p>最小并发数量：{@value}</p>
+	 */
+	public static final int MIN_ALPHA = 3;
+	/**
+	 * <p>最大并发数量：{@value}</p>
+	 */
+	public static final int MAX_ALPHA = 8;
+	/**
+	 * <p>候选节点最大数量：{@value}</p>
+	 * <p>超过最大数量删除最远节点</p>
+	 */
+	private static final int MAX_CANDIDATE_SIZE = K * MAX_ALPHA;
+	
+	/**
+	 * <p>候选节点状态</p>
+	 * 
+	 * @author acgist
+	 */
+	public enum Status {
+		
+		/** 等待查询 */
+		WAITING,
+		/** 正在查询 */
+		QUERYING,
+		/** 已经响应 */
+		RESPONDED,
+		/** 查询失败 */
+		FAILED;
+	
+	}
+	
+	/**
+	 * <p>候选节点</p>
+	 * 
+	 * @author acgist
+	 */
+	private static final class Candidate {
+		
+		/**
+		 * <p>节点</p>
+		 */
+		private final NodeSession node;
+		/**
+		 * <p>异或距离</p>
+		 */
+		private final byte[] distance;
+		/**
+		 * <p>状态</p>
+		 */
+		private Status status;
+		/**
+		 * <p>Token：声明Peer使用</p>
+		 */
+		private byte[] token;
+		
+		/**
+		 * @param node 节点
+		 * @param target 目标
+		 */
+		private Candidate(NodeSession node, byte[] target) {
+			this.node = node;
+			this.distance = ArrayUtils.xor(node.getId(), target);
+			this.status = Status.WAITING;
+		}
+	
+	}
+	
+	/**
+	 * <p>查找类型：{@link DhtConfig.QType#FIND_NODE}、{@link DhtConfig.QType#GET_PEERS}</p>
+	 */
+	private final DhtConfig.QType type;
+	/**
+	 * <p>目标：NodeId或者InfoHash</p>
+	 */
+	private final byte[] target;
+	/**
+	 * <p>并发数量（α）</p>
+	 */
+	private final int alpha;
+	/**
+	 * <p>候选节点：按照异或距离排序</p>
+	 */
+	private final List<Candidate> candidates;
+	/**
+	 * <p>已经加入的节点ID</p>
+	 * <p>防止删除的远节点再次加入</p>
+	 */
+	private final Set<String> nodeIds;
+	/**
+	 * <p>正在查询数量</p>
+	 */
+	private int querying;
+	/**
+	 * <p>请求数量</p>
+	 */
+	private int requestCount;
+	/**
+	 * <p>是否完成</p>
+	 */
+	private volatile boolean done;
+	/**
+	 * <p>开始时间（毫秒）</p>
+	 */
+	private long startTime;
+	/**
+	 * <p>超时定时任务</p>
+	 */
+	private ScheduledFuture<?> timeoutFuture;
+	
+	/**
+	 * @param type 查找类型
+	 * @param target 目标
+	 * @param alpha 并发数量
+	 */
+	private DhtLookup(DhtConfig.QType type, byte[] target, int alpha) {
+		this.type = type;
+		this.target = target;
+		this.alpha = Math.min(MAX_ALPHA, Math.max(MIN_ALPHA, alpha));
+		this.candidates = new ArrayList<>();
+		this.nodeIds = new HashSet<>();
+	}
+	
+	/**
+	 * <p>创建迭代查找</p>
+	 * 
+	 * @param type 查找类型
+	 * @param target 目标
+	 * 
+	 * @return 迭代查找
+	 */
+	public static final DhtLookup newInstance(DhtConfig.QType type, byte[] target) {
+		return newInstance(type, target, MIN_ALPHA);
+	}
+	
+	/**
+	 * <p>创建迭代查找</p>
+	 * 
+	 * @param type 查找类型
+	 * @param target 目标
+	 * @param alpha 并发数量：{@value #MIN_ALPHA}~{@value #MAX_ALPHA}
+	 * 
+	 * @return 迭代查找
+	 */
+	public static final DhtLookup newInstance(DhtConfig.QType type, byte[] target, int alpha) {
+		if(type != DhtConfig.QType.FIND_NODE && type != DhtConfig.QType.GET_PEERS) {
+			throw new IllegalArgumentException("查找类型错误：" + type);
+		}
+		return new DhtLookup(type, target, alpha);
+	}
+	
+	/**
+	 * <p>开始查找</p>
+	 * <p>使用系统最近的节点和指定节点作为初始候选节点</p>
+	 * 
+	 * @param nodes 指定节点
+	 */
+	public void lookup(List<NodeSession> nodes) {
+		synchronized (this) {
+			this.startTime = System.currentTimeMillis();
+			this.put(NodeManager.getInstance().findNode(this.target));
+			this.put(nodes);
+			this.timeoutFuture = SystemThreadContext.timer(DhtConfig.DHT_LOOKUP_TIMEOUT, TimeUnit.MILLISECONDS, this::timeout);
+		}
+		LOGGER.debug("开始DHT迭代查找：{}-{}", this.type, StringUtils.hex(this.target));
+		this.next();
+	}
+	
+	/**
+	 * <p>添加候选节点</p>
+	 * 
+	 * @param nodes 节点
+	 */
+	private void put(List<NodeSession> nodes) {
+		if(CollectionUtils.isEmpty(nodes)) {
+			return;
+		}
+		for (NodeSession node : nodes) {
+			if(node.getId() == null || node.getId().length != this.target.length) {
+				continue;
+			}
+			if(!this.nodeIds.add(StringUtils.hex(node.getId()))) {
+				continue;
+			}
+			final Candidate candidate = new Candidate(node, this.target);
+			int index = 0;
+			final int size = this.candidates.size();
+			// 候选节点数量很少：直接顺序查找插入位置
+			while(index < size && ArrayUtils.compareUnsigned(this.candidates.get(index).distance, candidate.distance) <= 0) {
+				index++;
+			}
+			if(index >= MAX_CANDIDATE_SIZE) {
+				continue;
+			}
+			this.candidates.add(index, candidate);
+			if(this.candidates.size() > MAX_CANDIDATE_SIZE) {
+				this.removeFarthest();
+			}
+		}
+	}
+	
+	/**
+	 * <p>删除最远的候选节点</p>
+	 * <p>正在查询的节点不会删除</p>
+	 */
+	private void removeFarthest() {
+		for (int index = this.candidates.size() - 1; index >= 0; index--) {
+			if(this.candidates.get(index).status != Status.QUERYING) {
+				this.candidates.remove(index);
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * <p>发送查询</p>
+	 * <p>向最近的{@value #K}个节点中没有查询的节点发送请求，直到正在查询数量达到并发数量。</p>
+	 * <p>最近的{@value #K}个节点全部响应或者没有可以查询的节点时查找完成</p>
+	 */
+	private void next() {
+		boolean finish = false;
+		final List<Candidate> queries = new ArrayList<>();
+		synchronized (this) {
+			if(this.done) {
+				return;
+			}
+			int count = 0;
+			boolean waiting = false;
+			for (Candidate candidate : this.candidates) {
+				if(count >= K) {
+					break;
+				}
+				if(candidate.status == Status.FAILED) {
+					continue;
+				}
+				count++;
+				if(candidate.status == Status.WAITING) {
+					if(this.querying + queries.size() < this.alpha) {
+						candidate.status = Status.QUERYING;
+						queries.add(candidate);
+					} else {
+						waiting = true;
+					}
+				}
+			}
+			this.querying += queries.size();
+			this.requestCount += queries.size();
+			if(queries.isEmpty() && !waiting && this.querying == 0) {
+				this.done = true;
+				finish = true;
+			}
+		}
+		if(finish) {
+			this.finish();
+			return;
+		}
+		queries.forEach(this::query);
+	}
+	
+	/**
+	 * <p>查询节点</p>
+	 * 
+	 * @param candidate 候选节点
+	 */
+	private void query(Candidate candidate) {
+		final DhtRequest request;
+		if(this.type == DhtConfig.QType.GET_PEERS) {
+			request = GetPeersRequest.newRequest(this.target);
+		} else {
+			request = FindNodeRequest.newRequest(this.target);
+		}
+		request.future().thenAccept(response -> this.response(candidate, response));
+		DhtClient.newInstance(candidate.node.getHost(), candidate.node.getPort()).request(request);
+	}
+	
+	/**
+	 * <p>处理响应</p>
+	 * 
+	 * @param candidate 候选节点
+	 * @param response 响应：{@code null}-超时
+	 */
+	private void response(Candidate candidate, DhtResponse response) {
+		synchronized (this) {
+			if(candidate.status != Status.QUERYING) {
+				return;
+			}
+			this.querying--;
+			candidate.status = Status.FAILED;
+			if(DhtMessageHandler.RESPONSE_SUCCESS.apply(response)) {
+				try {
+					if(this.type == DhtConfig.QType.GET_PEERS) {
+						final GetPeersResponse getPeersResponse = GetPeersResponse.newInstance(response);
+						candidate.token = getPeersResponse.getToken();
+						if(getPeersResponse.hasNodes()) {
+							this.put(getPeersResponse.getNodes());
+						}
+					} else {
+						this.put(FindNodeResponse.newInstance(response).getNodes());
+					}
+					candidate.status = Status.RESPONDED;
+				} catch (Exception e) {
+					LOGGER.error("DHT迭代查找处理响应异常", e);
+				}
+			}
+		}
+		this.next();
+	}
+	
+	/**
+	 * <p>查找超时</p>
+	 * <p>正在查询的节点标记失败：超时以后收到的响应直接忽略</p>
+	 */
+	void timeout() {
+		synchronized (this) {
+			if(this.done) {
+				return;
+			}
+			this.done = true;
+			this.querying = 0;
+			this.candidates.stream()
+				.filter(candidate -> candidate.status == Status.QUERYING)
+				.forEach(candidate -> candidate.status = Status.FAILED);
+		}
+		LOGGER.debug("DHT迭代查找超时：{}-{}", this.type, StringUtils.hex(this.target));
+		this.finish();
+	}
+	
+	/**
+	 * <p>查找完成</p>
+	 * <p>查找Peer：BT任务可以上传时使用Token向最近的节点发送声明消息</p>
+	 */
+	private void finish() {
+		synchronized (this) {
+			if(this.timeoutFuture != null) {
+				this.timeoutFuture.cancel(false);
+			}
+		}
+		final List<Candidate> closest = this.closestCandidates();
+		LOGGER.debug(
+			"DHT迭代查找完成：{}-{}，请求数量：{}，响应节点数量：{}，用时：{}",
+			this.type, StringUtils.hex(this.target), this.requestCount, closest.size(), System.currentTimeMillis() - this.startTime
+		);
+		if(this.type != DhtConfig.QType.GET_PEERS) {
+			return;
+		}
+		final TorrentSession torrentSession = TorrentManager.getInstance().torrentSession(StringUtils.hex(this.target));
+		if(torrentSession == null || !torrentSession.uploadable()) {
+			return;
+		}
+		closest.stream()
+			.filter(candidate -> candidate.token != null)
+			.forEach(candidate -> DhtClient.newInstance(candidate.node.getHost(), candidate.node.getPort()).announcePeer(candidate.token, this.target));
+	}
+	
+	/**
+	 * <p>获取最近的已经响应的候选节点</p>
+	 * 
+	 * @return 候选节点
+	 */
+	private List<Candidate> closestCandidates() {
+		synchronized (this) {
+			final List<Candidate> list = new ArrayList<>(K);
+			for (Candidate candidate : this.candidates) {
+				if(list.size() >= K) {
+					break;
+				}
+				if(candidate.status == Status.RESPONDED) {
+					list.add(candidate);
+				}
+			}
+			return list;
+		}
+	}
+	
+	/**
+	 * <p>获取最近的已经响应的节点</p>
+	 * 
+	 * @return 节点
+	 */
+	public List<NodeSession> closest() {
+		final List<NodeSession> list = new ArrayList<>(K);
+		this.closestCandidates().forEach(candidate -> list.add(candidate.node));
+		return list;
+	}
+	
+	/**
+	 * <p>判断是否完成</p>
+	 * 
+	 * @return 是否完成
+	 */
+	public boolean done() {
+		return this.done;
+	}
+	
+	/**
+	 * <p>获取请求数量</p>
+	 * 
+	 * @return 请求数量
+	 */
+	public int requestCount() {
+		synchronized (this) {
+			return this.requestCount;
+		}
+	}
+	
+}
@@ -1,6 +1,7 @@
 package com.acgist.snail.net.torrent.dht.bootstrap;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
@@ -9,11 +10,12 @@ import org.slf4j.LoggerFactory;
 
 import com.acgist.snail.config.DhtConfig;
 import com.acgist.snail.context.SystemThreadContext;
-import com.acgist.snail.utils.ArrayUtils;
 
 /**
  * <p>DHT管理器</p>
  * <p>管理DHT请求</p>
+ * <p>事务表：消息ID（两个字节）直接作为索引，放入、响应都是O(1)。</p>
+ * <p>超时：时间轮（每个刻度{@value #TICK}毫秒）处理到期请求，超时请求使用{@code null}响应完成。</p>
  * 
  * @author acgist
  */
@@ -28,30 +30,67 @@ public final class DhtManager {
 	}
 	
 	/**
-	 * <p>DHT请求列表</p>
+	 * <p>事务表大小：{@value}</p>
+	 * <p>消息ID两个字节</p>
 	 */
-	private final List<DhtRequest> requests;
+	private static final int TABLE_SIZE = 1 << 16;
+	/**
+	 * <p>时间轮刻度（毫秒）：{@value}</p>
+	 */
+	private static final int TICK = 100;
+	/**
+	 * <p>时间轮大小：{@value}</p>
+	 * <p>必须是2的幂：时间轮时间大于超时时间</p>
+	 */
+	private static final int WHEEL_SIZE = 128;
+	/**
+	 * <p>时间轮掩码：{@value}</p>
+	 */
+	private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+	
+	/**
+	 * <p>事务表</p>
+	 * <p>索引：消息ID</p>
+	 */
+	private final DhtRequest[] requests;
+	/**
+	 * <p>时间轮</p>
+	 * <p>响应的请求不会立即删除：到期时发现请求已经不在事务表中再删除</p>
+	 */
+	private final List<List<DhtRequest>> wheel;
+	/**
+	 * <p>已经处理的刻度</p>
+	 * <p>只处理已经完全过去的刻度：保证刻度中所有请求已经到期</p>
+	 */
+	private long tick;
+	/**
+	 * <p>等待响应的请求数量</p>
+	 */
+	private int size;
 	
 	private DhtManager() {
-		this.requests = new LinkedList<>();
+		this.requests = new DhtRequest[TABLE_SIZE];
+		this.wheel = new ArrayList<>(WHEEL_SIZE);
+		for (int index = 0; index < WHEEL_SIZE; index++) {
+			this.wheel.add(new ArrayList<>());
+		}
+		this.tick = System.currentTimeMillis() / TICK - 1;
 	}
 	
 	/**
 	 * <p>注册DHT服务</p>
 	 */
 	public void register() {
-		LOGGER.debug("注册DHT服务：定时任务");
-		SystemThreadContext.timerFixedDelay(
-			DhtConfig.DHT_REQUEST_CLEAN_INTERVAL,
-			DhtConfig.DHT_REQUEST_CLEAN_INTERVAL,
-			TimeUnit.MINUTES,
-			() -> this.timeout() // 处理超时请求
-		);
+		LOGGER.debug("注册DHT服务：时间轮");
+		synchronized (this.requests) {
+			this.tick = System.currentTimeMillis() / TICK - 1;
+		}
+		SystemThreadContext.timerAtFixedRate(TICK, TICK, TimeUnit.MILLISECONDS, () -> this.timeout());
 	}
 	
 	/**
 	 * <p>放入请求</p>
-	 * <p>如果请求列表中有相同ID的请求删除旧请求</p>
+	 * <p>如果事务表中有相同ID的请求删除旧请求</p>
 	 * 
 	 * @param request 请求
 	 */
@@ -59,12 +98,24 @@ public final class DhtManager {
 		if(request == null) {
 			return;
 		}
+		final int index = index(request.getId());
+		if(index < 0) {
+			LOGGER.warn("DHT请求消息ID错误：{}", request);
+			return;
+		}
+		final long deadline = request.getTimestamp() + DhtConfig.DHT_TIMEOUT;
+		final DhtRequest old;
 		synchronized (this.requests) {
-			final DhtRequest old = this.remove(request.getId());
-			if(old != null) {
-				LOGGER.warn("旧DHT请求没有收到响应（删除）");
+			old = this.requests[index];
+			this.requests[index] = request;
+			if(old == null) {
+				this.size++;
 			}
-			this.requests.add(request);
+			this.wheel.get((int) ((deadline / TICK) & WHEEL_MASK)).add(request);
+		}
+		if(old != null) {
+			LOGGER.warn("旧DHT请求没有收到响应（删除）");
+			old.complete(null);
 		}
 	}
 	
@@ -82,53 +133,92 @@ public final class DhtManager {
 		}
 		// 设置节点为可用状态
 		NodeManager.getInstance().available(response.getNodeId());
-		DhtRequest request = null;
+		final int index = index(response.getId());
+		if(index < 0) {
+			return null;
+		}
 		synchronized (this.requests) {
-			request = this.remove(response.getId());
+			final DhtRequest request = this.requests[index];
+			if(request != null) {
+				this.requests[index] = null;
+				this.size--;
+			}
+			return request;
 		}
-		if(request != null) {
-			request.setResponse(response);
+	}
+	
+	/**
+	 * <p>获取等待响应的请求数量</p>
+	 * 
+	 * @return 等待响应的请求数量
+	 */
+	public int size() {
+		synchronized (this.requests) {
+			return this.size;
 		}
-		return request;
 	}
 	
 	/**
 	 * <p>处理DHT超时请求</p>
+	 * <p>处理所有已经到达的刻度：超时请求标记节点失败并使用{@code null}响应完成</p>
 	 */
 	private void timeout() {
-		LOGGER.debug("处理DHT超时请求");
+		final long now = System.currentTimeMillis();
+		final long lastTick = now / TICK - 1;
+		final List<DhtRequest> timeouts = new ArrayList<>();
 		synchronized (this.requests) {
 			DhtRequest request;
-			final long timeout = DhtConfig.DHT_TIMEOUT;
-			final long timestamp = System.currentTimeMillis();
-			final var iterator = this.requests.iterator();
-			while(iterator.hasNext()) {
-				request = iterator.next();
-				if(timestamp - request.getTimestamp() > timeout) {
-					iterator.remove();
+			while(this.tick < lastTick) {
+				this.tick++;
+				final Iterator<DhtRequest> iterator = this.wheel.get((int) (this.tick & WHEEL_MASK)).iterator();
+				while(iterator.hasNext()) {
+					request = iterator.next();
+					final int index = index(request.getId());
+					if(this.requests[index] != request) {
+						// 已经响应或者删除
+						iterator.remove();
+					} else if(now - request.getTimestamp() >= DhtConfig.DHT_TIMEOUT) {
+						iterator.remove();
+						this.requests[index] = null;
+						this.size--;
+						timeouts.add(request);
+					}
 				}
 			}
 		}
+		if(!timeouts.isEmpty()) {
+			LOGGER.debug("处理DHT超时请求：{}", timeouts.size());
+		}
+		for (DhtRequest request : timeouts) {
+			this.fail(request);
+			request.complete(null);
+		}
+	}
+	
+	/**
+	 * <p>标记请求节点没有响应</p>
+	 * 
+	 * @param request 请求
+	 */
+	private void fail(DhtRequest request) {
+		final var socketAddress = request.getSocketAddress();
+		if(socketAddress != null) {
+			NodeManager.getInstance().fail(socketAddress.getHostString(), socketAddress.getPort());
+		}
 	}
 	
 	/**
-	 * <p>移除并返回请求</p>
+	 * <p>获取事务表索引</p>
 	 * 
 	 * @param id 消息ID
 	 * 
-	 * @return 请求
+	 * @return 索引：{@code -1}-消息ID错误
 	 */
-	private DhtRequest remove(byte[] id) {
-		DhtRequest request;
-		final var iterator = this.requests.iterator();
-		while(iterator.hasNext()) {
-			request = iterator.next();
-			if(ArrayUtils.equals(id, request.getId())) {
-				iterator.remove();
-				return request;
-			}
+	private static final int index(byte[] id) {
+		if(id == null || id.length != 2) {
+			return -1;
 		}
-		return null;
+		return ((id[0] & 0xFF) << 8) | (id[1] & 0xFF);
 	}
 
 }
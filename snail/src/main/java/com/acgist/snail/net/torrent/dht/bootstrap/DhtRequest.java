@@ -4,11 +4,9 @@ import java.nio.ByteBuffer;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
 import com.acgist.snail.config.DhtConfig;
 import com.acgist.snail.config.DhtConfig.QType;
 import com.acgist.snail.format.BEncodeDecoder;
@@ -27,8 +25,6 @@ import com.acgist.snail.utils.StringUtils;
  */
 public class DhtRequest extends DhtMessage {
 	
-	private static final Logger LOGGER = LoggerFactory.getLogger(DhtRequest.class);
-
 	/**
 	 * <p>请求类型</p>
 	 * 
@@ -47,8 +43,9 @@ public class DhtRequest extends DhtMessage {
 	private final long timestamp;
 	/**
 	 * <p>响应</p>
+	 * <p>收到响应（包含失败响应）完成，超时使用{@code null}完成。</p>
 	 */
-	private DhtResponse response;
+	private final CompletableFuture<DhtResponse> future;
 	
 	/**
 	 * <p>生成NodeId：创建请求</p>
@@ -73,6 +70,7 @@ public class DhtRequest extends DhtMessage {
 		this.q = q;
 		this.a = a;
 		this.timestamp = System.currentTimeMillis();
+		this.future = new CompletableFuture<>();
 	}
 
 	/**
@@ -123,28 +121,19 @@ public class DhtRequest extends DhtMessage {
 	 * 
 	 * @return 响应
 	 */
-	public DhtResponse getResponse() {
-		return response;
+	public CompletableFuture<DhtResponse> future() {
+		return this.future;
 	}
 
 	/**
 	 * <p>设置响应</p>
 	 * 
-	 * @param response 响应
-	 */
-	public void setResponse(DhtResponse response) {
-		this.response = response;
-	}
-
-	/**
-	 * <p>判断是否已经响应</p>
-	 * 
-	 * @return true-已经响应；false-没有响应；
+	 * @param response 响应：{@code null}-超时
 	 */
-	public boolean hasResponse() {
-		return this.response != null;
+	public void complete(DhtResponse response) {
+		this.future.complete(response);
 	}
-
+	
 	@Override
 	public Object get(String key) {
 		if(this.a == null) {
@@ -198,33 +187,6 @@ public class DhtRequest extends DhtMessage {
 		return buffer.array();
 	}
 	
-	/**
-	 * <p>添加响应锁</p>
-	 */
-	public void lockResponse() {
-		if(!this.hasResponse()) {
-			synchronized (this) {
-				if(!this.hasResponse()) {
-					try {
-						this.wait(DhtConfig.DHT_TIMEOUT);
-					} catch (InterruptedException e) {
-						LOGGER.debug("线程等待异常", e);
-						Thread.currentThread().interrupt();
-					}
-				}
-			}
-		}
-	}
-	
-	/**
-	 * <p>释放响应锁</p>
-	 */
-	public void unlockResponse() {
-		synchronized (this) {
-			this.notifyAll();
-		}
-	}
-	
 	@Override
 	public int hashCode() {
 		return ObjectUtils.hashCode(this.t);
@@ -0,0 +1,257 @@
+package com.acgist.snail.net.torrent.dht.bootstrap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.acgist.snail.pojo.session.NodeSession;
+import com.acgist.snail.utils.ArrayUtils;
+
+/**
+ * <p>DHT节点桶（K-Bucket）</p>
+ * <p>协议链接：http://www.bittorrent.org/beps/bep_0005.html</p>
+ * <p>节点按照最后活跃时间排序（LRU）：头部节点最久没有活跃，尾部节点最近活跃。</p>
+ * <p>节点桶已满时新节点放入替换缓存：节点变为坏节点时使用替换缓存中最近活跃的节点替换</p>
+ * <p>不是线程安全：{@link NodeManager}加锁使用</p>
+ * 
+ * @author acgist
+ */
+public final class NodeBucket {
+	
+	/**
+	 * <p>节点桶大小（K）：{@value}</p>
+	 */
+	public static final int BUCKET_SIZE = 8;
+	/**
+	 * <p>替换缓存大小：{@value}</p>
+	 */
+	public static final int REPLACEMENT_SIZE = 8;
+	
+	/**
+	 * <p>节点列表</p>
+	 */
+	private final List<NodeSession> nodes;
+	/**
+	 * <p>替换缓存</p>
+	 */
+	private final List<NodeSession> replacements;
+	/**
+	 * <p>最后更新时间（毫秒）</p>
+	 * <p>节点加入或者节点活跃时更新：长时间没有更新需要刷新</p>
+	 */
+	private long updateTime;
+	
+	private NodeBucket() {
+		this.nodes = new ArrayList<>(BUCKET_SIZE);
+		this.replacements = new ArrayList<>(REPLACEMENT_SIZE);
+		this.updateTime = System.currentTimeMillis();
+	}
+	
+	/**
+	 * <p>创建节点桶</p>
+	 * 
+	 * @return 节点桶
+	 */
+	public static final NodeBucket newInstance() {
+		return new NodeBucket();
+	}
+	
+	/**
+	 * <p>选择节点（包含替换缓存）</p>
+	 * 
+	 * @param nodeId 节点ID
+	 * 
+	 * @return 节点
+	 */
+	public NodeSession select(byte[] nodeId) {
+		final NodeSession node = select(this.nodes, nodeId);
+		if(node != null) {
+			return node;
+		}
+		return select(this.replacements, nodeId);
+	}
+	
+	/**
+	 * <p>添加节点</p>
+	 * <p>节点已经存在返回已经存在的节点</p>
+	 * <p>节点桶已满：替换坏节点，没有坏节点时放入替换缓存（替换缓存已满时删除最久没有活跃的节点）。</p>
+	 * 
+	 * @param nodeSession 节点
+	 * 
+	 * @return 节点
+	 */
+	public NodeSession put(NodeSession nodeSession) {
+		final NodeSession exist = this.select(nodeSession.getId());
+		if(exist != null) {
+			return exist;
+		}
+		if(this.nodes.size() < BUCKET_SIZE) {
+			this.nodes.add(nodeSession);
+			this.updateTime = System.currentTimeMillis();
+			return nodeSession;
+		}
+		final int badIndex = this.badIndex();
+		if(badIndex >= 0) {
+			this.nodes.remove(badIndex);
+			this.nodes.add(nodeSession);
+			this.updateTime = System.currentTimeMillis();
+			return nodeSession;
+		}
+		if(this.replacements.size() >= REPLACEMENT_SIZE) {
+			this.replacements.remove(0);
+		}
+		this.replacements.add(nodeSession);
+		return nodeSession;
+	}
+	
+	/**
+	 * <p>节点活跃</p>
+	 * <p>节点移动到尾部；替换缓存中的节点活跃时如果节点桶有空位或者坏节点直接替换。</p>
+	 * 
+	 * @param nodeSession 节点
+	 */
+	public void active(NodeSession nodeSession) {
+		nodeSession.active();
+		if(this.nodes.remove(nodeSession)) {
+			this.nodes.add(nodeSession);
+			this.updateTime = System.currentTimeMillis();
+		} else if(this.replacements.remove(nodeSession)) {
+			final int badIndex = this.badIndex();
+			if(this.nodes.size() < BUCKET_SIZE) {
+				this.nodes.add(nodeSession);
+				this.updateTime = System.currentTimeMillis();
+			} else if(badIndex >= 0) {
+				this.nodes.remove(badIndex);
+				this.nodes.add(nodeSession);
+				this.updateTime = System.currentTimeMillis();
+			} else {
+				this.replacements.add(nodeSession);
+			}
+		}
+	}
+	
+	/**
+	 * <p>节点没有响应</p>
+	 * <p>节点变为坏节点：替换缓存不为空时使用最近活跃的节点替换，替换缓存中的坏节点直接删除。</p>
+	 * 
+	 * @param nodeSession 节点
+	 */
+	public void fail(NodeSession nodeSession) {
+		nodeSession.fail();
+		if(!nodeSession.bad()) {
+			return;
+		}
+		if(this.replacements.remove(nodeSession)) {
+			return;
+		}
+		if(!this.replacements.isEmpty() && this.nodes.remove(nodeSession)) {
+			this.nodes.add(this.replacements.remove(this.replacements.size() - 1));
+			this.updateTime = System.currentTimeMillis();
+		}
+	}
+	
+	/**
+	 * <p>获取可以使用的节点</p>
+	 * <p>排除验证中的节点和坏节点</p>
+	 * 
+	 * @param list 节点列表
+	 */
+	public void collect(List<NodeSession> list) {
+		for (NodeSession node : this.nodes) {
+			if(node.getStatus() != NodeSession.Status.VERIFY && !node.bad()) {
+				list.add(node);
+			}
+		}
+	}
+	
+	/**
+	 * <p>获取最久没有活跃的可疑节点</p>
+	 * <p>可疑节点：不是良好节点并且没有正在验证</p>
+	 * 
+	 * @return 可疑节点
+	 */
+	public NodeSession questionable() {
+		for (NodeSession node : this.nodes) {
+			if(!node.good() && node.getStatus() != NodeSession.Status.VERIFY) {
+				return node;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * <p>获取节点列表的拷贝</p>
+	 * 
+	 * @return 节点列表的拷贝
+	 */
+	public List<NodeSession> nodes() {
+		return new ArrayList<>(this.nodes);
+	}
+	
+	/**
+	 * <p>获取节点数量（不含替换缓存）</p>
+	 * 
+	 * @return 节点数量
+	 */
+	public int size() {
+		return this.nodes.size();
+	}
+	
+	/**
+	 * <p>获取替换缓存数量</p>
+	 * 
+	 * @return 替换缓存数量
+	 */
+	public int replacementSize() {
+		return this.replacements.size();
+	}
+	
+	/**
+	 * <p>获取最后更新时间（毫秒）</p>
+	 * 
+	 * @return 最后更新时间
+	 */
+	public long updateTime() {
+		return this.updateTime;
+	}
+	
+	/**
+	 * <p>设置最后更新时间（毫秒）</p>
+	 * 
+	 * @param updateTime 最后更新时间
+	 */
+	public void updateTime(long updateTime) {
+		this.updateTime = updateTime;
+	}
+	
+	/**
+	 * <p>获取最久没有活跃的坏节点索引</p>
+	 * 
+	 * @return 坏节点索引：{@code -1}-没有坏节点
+	 */
+	private int badIndex() {
+		for (int index = 0; index < this.nodes.size(); index++) {
+			if(this.nodes.get(index).bad()) {
+				return index;
+			}
+		}
+		return ArrayUtils.NONE_INDEX;
+	}
+	
+	/**
+	 * <p>选择节点</p>
+	 * 
+	 * @param nodes 节点列表
+	 * @param nodeId 节点ID
+	 * 
+	 * @return 节点
+	 */
+	private static final NodeSession select(List<NodeSession> nodes, byte[] nodeId) {
+		for (NodeSession node : nodes) {
+			if(ArrayUtils.equals(nodeId, node.getId())) {
+				return node;
+			}
+		}
+		return null;
+	}
+	
+}
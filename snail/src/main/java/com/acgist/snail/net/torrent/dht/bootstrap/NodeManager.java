@@ -1,21 +1,24 @@
 package com.acgist.snail.net.torrent.dht.bootstrap;
 
+import java.security.MessageDigest;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
 import java.util.Random;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.acgist.snail.config.DhtConfig;
 import com.acgist.snail.config.SystemConfig;
+import com.acgist.snail.context.SystemThreadContext;
 import com.acgist.snail.net.torrent.dht.DhtClient;
 import com.acgist.snail.pojo.session.NodeSession;
 import com.acgist.snail.utils.ArrayUtils;
+import com.acgist.snail.utils.DigestUtils;
 import com.acgist.snail.utils.MapUtils;
 import com.acgist.snail.utils.NumberUtils;
 import com.acgist.snail.utils.StringUtils;
@@ -24,8 +27,7 @@ import com.acgist.snail.utils.StringUtils;
  * <p>DHT节点管理器</p>
  * <p>协议链接（Kademlia）：https://baike.baidu.com/item/Kademlia</p>
  * <p>BT=DHT、eMule=KAD</p>
- * 
- * TODO：观察是否需要定时清理Node
+ * <p>路由表：按照节点ID和系统NodeId相同前缀长度（位）分为{@value #BUCKET_COUNT}个{@linkplain NodeBucket 节点桶}，节点数量有上限。</p>
  * 
  * @author acgist
  */
@@ -43,45 +45,91 @@ public final class NodeManager {
 	 * <p>Token长度：{@value}</p>
 	 */
 	private static final int TOKEN_LENGTH = 8;
+	/**
+	 * <p>Token密钥长度：{@value}</p>
+	 */
+	private static final int SECRET_LENGTH = 20;
 	/**
 	 * <p>Node查找时返回的Node列表长度：{@value}</p>
 	 */
-	private static final int FIND_NODE_SIZE = 8;
+	private static final int FIND_NODE_SIZE = NodeBucket.BUCKET_SIZE;
 	/**
-	 * <p>Node查找时分片大小：{@value}</p>
+	 * <p>节点桶数量：{@value}</p>
 	 */
-	private static final int FIND_NODE_SLICE_SIZE = 3;
+	private static final int BUCKET_COUNT = DhtConfig.NODE_ID_LENGTH * Byte.SIZE;
 	/**
-	 * <p>Node查找时分片最小列表长度：{@value}</p>
+	 * <p>节点桶刷新时间（毫秒）：{@value}</p>
+	 * <p>节点桶超过时间没有更新需要刷新</p>
 	 */
-	private static final int FIND_NODE_MIN_SLICE_SIZE = FIND_NODE_SIZE * FIND_NODE_SLICE_SIZE;
+	private static final long BUCKET_REFRESH_TIME = NodeSession.GOOD_ACTIVE_TIME;
 	
 	/**
-	 * <p>当前客户端的Token</p>
+	 * <p>Token密钥</p>
+	 * <p>Token=SHA-1(请求IP地址+密钥)前{@value #TOKEN_LENGTH}个字节</p>
 	 */
-	private final byte[] token;
+	private volatile byte[] secret;
+	/**
+	 * <p>上一代Token密钥</p>
+	 * <p>密钥轮换后上一代密钥生成的Token依然有效</p>
+	 */
+	private volatile byte[] oldSecret;
 	/**
 	 * <p>当前客户端的NodeId</p>
 	 */
 	private final byte[] nodeId;
 	/**
-	 * <p>节点列表</p>
+	 * <p>节点桶</p>
+	 * <p>索引：节点ID和系统NodeId相同前缀长度（位）</p>
 	 */
-	private final List<NodeSession> nodes;
+	private final NodeBucket[] buckets;
 	
 	private NodeManager() {
-		this.token = this.buildToken();
+		this.secret = this.buildSecret();
+		this.oldSecret = this.secret;
 		this.nodeId = this.buildNodeId();
-		this.nodes = new ArrayList<>();
+		this.buckets = new NodeBucket[BUCKET_COUNT];
+		for (int index = 0; index < BUCKET_COUNT; index++) {
+			this.buckets[index] = NodeBucket.newInstance();
+		}
 	}
 	
 	/**
-	 * <p>获取系统Token</p>
+	 * <p>获取Token</p>
+	 * <p>Token和请求IP地址绑定：其他IP地址使用无效</p>
+	 * 
+	 * @param host 请求IP地址
+	 * 
+	 * @return Token
+	 */
+	public byte[] token(String host) {
+		return buildToken(host, this.secret);
+	}
+	
+	/**
+	 * <p>验证Token</p>
+	 * <p>当前密钥和上一代密钥生成的Token都有效</p>
+	 * 
+	 * @param host 请求IP地址
+	 * @param token Token
 	 * 
-	 * @return 系统Token
+	 * @return true-有效；false-无效；
 	 */
-	public byte[] token() {
-		return this.token;
+	public boolean verifyToken(String host, byte[] token) {
+		if(token == null || token.length != TOKEN_LENGTH) {
+			return false;
+		}
+		return
+			ArrayUtils.equals(token, buildToken(host, this.secret)) ||
+			ArrayUtils.equals(token, buildToken(host, this.oldSecret));
+	}
+	
+	/**
+	 * <p>轮换Token密钥</p>
+	 */
+	public synchronized void rotateSecret() {
+		LOGGER.debug("轮换Token密钥");
+		this.oldSecret = this.secret;
+		this.secret = this.buildSecret();
 	}
 	
 	/**
@@ -94,20 +142,32 @@ public final class NodeManager {
 	}
 	
 	/**
-	 * <p>生成系统Token</p>
+	 * <p>生成Token密钥</p>
 	 * 
-	 * @return 系统Token
+	 * @return Token密钥
 	 */
-	private byte[] buildToken() {
-		LOGGER.debug("生成系统Token");
-		final byte[] token = new byte[TOKEN_LENGTH];
-		final byte[] tokens = (SystemConfig.LETTER + SystemConfig.LETTER_UPPER + SystemConfig.DIGIT).getBytes();
-		final int length = tokens.length;
-		final Random random = NumberUtils.random();
-		for (int index = 0; index < TOKEN_LENGTH; index++) {
-			token[index] = tokens[random.nextInt(length)];
+	private byte[] buildSecret() {
+		LOGGER.debug("生成Token密钥");
+		final byte[] secret = new byte[SECRET_LENGTH];
+		NumberUtils.random().nextBytes(secret);
+		return secret;
+	}
+	
+	/**
+	 * <p>生成Token</p>
+	 * 
+	 * @param host 请求IP地址
+	 * @param secret Token密钥
+	 * 
+	 * @return Token
+	 */
+	private static final byte[] buildToken(String host, byte[] secret) {
+		final MessageDigest digest = DigestUtils.sha1();
+		if(host != null) {
+			digest.update(host.getBytes());
 		}
-		return token;
+		digest.update(secret);
+		return Arrays.copyOf(digest.digest(), TOKEN_LENGTH);
 	}
 	
 	/**
@@ -127,17 +187,23 @@ public final class NodeManager {
 	
 	/**
 	 * <p>获取所有节点的拷贝</p>
+	 * <p>不含替换缓存</p>
 	 * 
 	 * @return 所有节点的拷贝
 	 */
 	public List<NodeSession> nodes() {
-		synchronized (this.nodes) {
-			return new ArrayList<>(this.nodes);
+		final List<NodeSession> nodes = new ArrayList<>();
+		synchronized (this.buckets) {
+			for (NodeBucket bucket : this.buckets) {
+				nodes.addAll(bucket.nodes());
+			}
 		}
+		return nodes;
 	}
 
 	/**
 	 * <p>注册{@linkplain DhtConfig#nodes() 默认节点}</p>
+	 * <p>注册节点桶刷新定时任务和Token密钥轮换定时任务</p>
 	 */
 	public void register() {
 		final var nodes = DhtConfig.getInstance().nodes();
@@ -155,32 +221,47 @@ public final class NodeManager {
 					LOGGER.warn("节点格式错误：{}-{}", nodeId, address);
 				}
 			});
-			this.sortNodes(); // 排序
 		}
+		LOGGER.debug("注册DHT节点桶刷新定时任务");
+		SystemThreadContext.timerFixedDelay(
+			DhtConfig.DHT_BUCKET_REFRESH_INTERVAL,
+			DhtConfig.DHT_BUCKET_REFRESH_INTERVAL,
+			TimeUnit.MINUTES,
+			() -> this.refresh()
+		);
+		LOGGER.debug("注册DHT Token密钥轮换定时任务");
+		SystemThreadContext.timerFixedDelay(
+			DhtConfig.DHT_SECRET_ROTATE_INTERVAL,
+			DhtConfig.DHT_SECRET_ROTATE_INTERVAL,
+			TimeUnit.MINUTES,
+			() -> this.rotateSecret()
+		);
 	}
 	
 	/**
 	 * <p>添加DHT节点</p>
 	 * <p>先验证状态，通过验证后加入系统节点列表，设置为可用状态。</p>
+	 * <p>不会阻塞：响应或者超时后完成</p>
 	 * 
 	 * @param host 地址
 	 * @param port 端口
 	 * 
-	 * @return DHT节点
+	 * @return DHT节点：{@code null}-没有响应
 	 */
-	public NodeSession newNodeSession(String host, Integer port) {
+	public CompletableFuture<NodeSession> newNodeSession(String host, Integer port) {
 		final DhtClient client = DhtClient.newInstance(host, port);
-		final NodeSession nodeSession = client.ping();
-		if(nodeSession != null) {
-			nodeSession.setStatus(NodeSession.Status.AVAILABLE); // 标记可用
-		}
-		return nodeSession;
+		return client.ping().thenApply(nodeSession -> {
+			if(nodeSession != null) {
+				this.available(nodeSession.getId()); // 标记可用
+			}
+			return nodeSession;
+		});
 	}
 	
 	/**
 	 * <p>添加DHT节点</p>
 	 * <p>加入时不验证状态，使用时才验证。</p>
-	 * <p>添加完成后需要调用{@link #sortNodes()}进行排序</p>
+	 * <p>节点桶已满时节点放入替换缓存</p>
 	 * 
 	 * @param nodeId 节点ID
 	 * @param host 地址
@@ -189,28 +270,21 @@ public final class NodeManager {
 	 * @return DHT节点
 	 */
 	public NodeSession newNodeSession(byte[] nodeId, String host, Integer port) {
-		synchronized (this.nodes) {
-			NodeSession nodeSession = this.select(nodeId);
-			if(nodeSession == null) {
-				nodeSession = NodeSession.newInstance(nodeId, host, port);
-				if(nodeSession.getId().length == DhtConfig.NODE_ID_LENGTH) {
-					if(LOGGER.isDebugEnabled()) {
-						LOGGER.debug("添加Node：{}-{}-{}", StringUtils.hex(nodeId), nodeSession.getHost(), nodeSession.getPort());
-					}
-					this.nodes.add(nodeSession);
-				}
-			}
+		final NodeSession nodeSession = NodeSession.newInstance(nodeId, host, port);
+		if(nodeId == null || nodeId.length != DhtConfig.NODE_ID_LENGTH) {
 			return nodeSession;
 		}
-	}
-
-	/**
-	 * <p>排序节点</p>
-	 * <p>{@linkplain #newNodeSession(byte[], String, Integer) 添加DHT节点}后进行排序，添加大量节点时可以在添加完成后一次性排序。</p>
-	 */
-	public void sortNodes() {
-		synchronized (this.nodes) {
-			Collections.sort(this.nodes);
+		final int index = this.index(nodeId);
+		if(index >= BUCKET_COUNT) {
+			// 系统节点
+			return nodeSession;
+		}
+		synchronized (this.buckets) {
+			final NodeSession session = this.buckets[index].put(nodeSession);
+			if(session == nodeSession && LOGGER.isDebugEnabled()) {
+				LOGGER.debug("添加Node：{}-{}-{}", StringUtils.hex(nodeId), nodeSession.getHost(), nodeSession.getPort());
+			}
+			return session;
 		}
 	}
 	
@@ -227,145 +301,190 @@ public final class NodeManager {
 	
 	/**
 	 * <p>查找节点列表</p>
+	 * <p>查找最接近目标的{@value #FIND_NODE_SIZE}个节点（异或距离）</p>
+	 * <p>节点桶索引等于目标和系统NodeId相同前缀长度（index）：</p>
+	 * <p>index节点桶距离最近，大于index的节点桶距离相同前缀长度都是index，小于index的节点桶索引越小距离越远。</p>
+	 * <p>按照距离顺序获取节点桶直到节点数量足够，然后排序选择。</p>
+	 * <p>不会修改节点状态：响应远程查询也会查找节点，只有发送请求（验证）时才能修改为验证状态。</p>
 	 * 
 	 * @param target InfoHash或者NodeId
 	 * 
 	 * @return 节点列表
-	 * 
-	 * TODO：缓存结果（使用WeakReference）
 	 */
 	public List<NodeSession> findNode(byte[] target) {
-		List<NodeSession> nodes; // 筛选节点的副本
-		synchronized (this.nodes) {
-			nodes = this.nodes.stream()
-				// 排除正在验证中的节点
-				.filter(node -> node.getStatus() != NodeSession.Status.VERIFY)
-				.collect(Collectors.toList());
+		if(target == null || target.length != DhtConfig.NODE_ID_LENGTH) {
+			return List.of();
+		}
+		final int index = this.index(target);
+		final List<NodeSession> nodes = new ArrayList<>();
+		synchronized (this.buckets) {
+			if(index < BUCKET_COUNT) {
+				this.buckets[index].collect(nodes);
+			}
+			if(nodes.size() < FIND_NODE_SIZE) {
+				for (int jndex = index + 1; jndex < BUCKET_COUNT; jndex++) {
+					this.buckets[jndex].collect(nodes);
+				}
+			}
+			for (int jndex = Math.min(index, BUCKET_COUNT) - 1; jndex >= 0 && nodes.size() < FIND_NODE_SIZE; jndex--) {
+				this.buckets[jndex].collect(nodes);
+			}
+			nodes.sort(this.distanceComparator(target));
+			return new ArrayList<>(nodes.subList(0, Math.min(FIND_NODE_SIZE, nodes.size())));
 		}
-		return this.findNode(nodes, target, 0, nodes.size());
 	}
-
+	
 	/**
-	 * <p>查找节点列表</p>
-	 * <p>查找时节点列表组成一个环形结构并{@linkplain #FIND_NODE_SLICE_SIZE 分片}，然后在所有分片中选出最接近目标的片段，然后使用该片段继续查找直到找到最小片段为止。</p>
-	 * 
-	 * @param nodes 节点列表
-	 * @param target 目标
-	 * @param begin 开始索引
-	 * @param end 结束索引
+	 * <p>标记节点为可用状态</p>
+	 * <p>节点移动到节点桶尾部</p>
 	 * 
-	 * @return 节点列表
+	 * @param nodeId 节点ID
 	 */
-	private List<NodeSession> findNode(final List<NodeSession> nodes, final byte[] target, final int begin, final int end) {
-		int selectSize; // 当前选择Node的总数量
-		final int nodeSize = nodes.size(); // 当前节点的总数量
-		if(end > begin) { // 顺序
-			selectSize = end - begin;
-		} else { // 接头
-			selectSize = end + nodeSize - begin;
+	public void available(byte[] nodeId) {
+		final NodeBucket bucket = this.bucket(nodeId);
+		if(bucket == null) {
+			return;
 		}
-		if(selectSize < FIND_NODE_MIN_SLICE_SIZE) { // 最小片段选择节点
-			return this.selectNode(nodes, target, begin, end);
-		} else { // 分片
-			// 分片中Node的数量
-			final int sliceSize = selectSize / FIND_NODE_SLICE_SIZE;
-			int sliceA, sliceB, sliceC;
-			// 分割节点下标
-			if(end > begin) { // 顺序
-				sliceA = begin;
-				sliceB = sliceA + sliceSize;
-				sliceC = sliceB + sliceSize;
-			} else { // 接头
-				sliceA = begin;
-				sliceB = (sliceA + sliceSize) % nodeSize;
-				sliceC = (sliceB + sliceSize) % nodeSize;
-			}
-			// 分割节点
-			final var nodeA = nodes.get(sliceA);
-			final var nodeB = nodes.get(sliceB);
-			final var nodeC = nodes.get(sliceC);
-			// 节点不同字节索引
-			final int diffIndexA = ArrayUtils.diffIndex(nodeA.getId(), target);
-			final int diffIndexB = ArrayUtils.diffIndex(nodeB.getId(), target);
-			final int diffIndexC = ArrayUtils.diffIndex(nodeC.getId(), target);
-			// 选择最接近的片段
-			if(diffIndexA > diffIndexB && diffIndexA > diffIndexC) {
-				return this.findNode(nodes, target, sliceC, sliceB);
-			} else if(diffIndexB > diffIndexA && diffIndexB > diffIndexC) {
-				return this.findNode(nodes, target, sliceA, sliceC);
-			} else if(diffIndexC > diffIndexA && diffIndexC > diffIndexB) {
-				return this.findNode(nodes, target, sliceB, sliceA);
-			} else { // 三个值一致时选择节点
-				return this.selectNode(nodes, target, begin, end);
+		synchronized (this.buckets) {
+			final NodeSession node = bucket.select(nodeId);
+			if(node != null) {
+				bucket.active(node);
 			}
 		}
 	}
-
+	
 	/**
-	 * <p>选择节点列表</p>
-	 * <p>排序查找最近的节点</p>
-	 * <p>如果节点处于未知状态则修改为验证状态</p>
-	 * 
-	 * @param nodes 节点列表
-	 * @param target 目标
-	 * @param begin 开始索引
-	 * @param end 结束索引
+	 * <p>标记节点没有响应</p>
+	 * <p>多次没有响应的坏节点会被替换</p>
 	 * 
-	 * @return 节点列表
+	 * @param host 地址
+	 * @param port 端口
 	 */
-	private List<NodeSession> selectNode(final List<NodeSession> nodes, final byte[] target, final int begin, final int end) {
-		Stream<NodeSession> select;
-		if(begin < end) {
-			final int size = end - begin;
-			select = nodes.stream().skip(begin).limit(size);
-		} else {
-			select = Stream.concat(nodes.stream().limit(end), nodes.stream().skip(begin));
+	public void fail(String host, int port) {
+		synchronized (this.buckets) {
+			for (NodeBucket bucket : this.buckets) {
+				for (NodeSession node : bucket.nodes()) {
+					if(node.getPort() == port && node.getHost().equals(host)) {
+						bucket.fail(node);
+						return;
+					}
+				}
+			}
 		}
-		return select
-			.map(node -> Map.entry(ArrayUtils.xor(node.getId(), target), node))
-			.sorted((a, b) -> ArrayUtils.compareUnsigned(a.getKey(), b.getKey()))
-			.map(Map.Entry::getValue)
-			.limit(FIND_NODE_SIZE)
-			.peek(node -> {
-				// 设置状态
-				if(node.getStatus() == NodeSession.Status.UNUSE) {
-					node.setStatus(NodeSession.Status.VERIFY);
+	}
+	
+	/**
+	 * <p>刷新节点桶</p>
+	 * <p>长时间没有更新的节点桶：验证最久没有活跃的可疑节点，{@linkplain DhtLookup 迭代查找}节点桶范围内的随机ID。</p>
+	 */
+	public void refresh() {
+		final long now = System.currentTimeMillis();
+		final List<NodeSession> pings = new ArrayList<>();
+		final List<byte[]> targets = new ArrayList<>();
+		synchronized (this.buckets) {
+			for (int index = 0; index < BUCKET_COUNT; index++) {
+				final NodeBucket bucket = this.buckets[index];
+				if(bucket.size() == 0 || now - bucket.updateTime() < BUCKET_REFRESH_TIME) {
+					continue;
 				}
-			})
-			.collect(Collectors.toList());
+				bucket.updateTime(now);
+				final NodeSession questionable = bucket.questionable();
+				if(questionable != null) {
+					questionable.setStatus(NodeSession.Status.VERIFY);
+					pings.add(questionable);
+				}
+				targets.add(this.randomId(index));
+			}
+		}
+		LOGGER.debug("刷新DHT节点桶：{}-{}", pings.size(), targets.size());
+		// 没有响应：请求超时标记失败
+		pings.forEach(node -> DhtClient.newInstance(node.getHost(), node.getPort()).ping());
+		targets.forEach(target -> DhtLookup.newInstance(DhtConfig.QType.FIND_NODE, target).lookup(List.of()));
 	}
 	
 	/**
-	 * <p>标记节点为可用状态</p>
+	 * <p>获取节点数量（不含替换缓存）</p>
 	 * 
-	 * @param nodeId 节点ID
+	 * @return 节点数量
 	 */
-	public void available(byte[] nodeId) {
-		synchronized (this.nodes) {
-			final NodeSession node = this.select(nodeId);
-			if(node != null) {
-				node.setStatus(NodeSession.Status.AVAILABLE);
+	public int size() {
+		int size = 0;
+		synchronized (this.buckets) {
+			for (NodeBucket bucket : this.buckets) {
+				size += bucket.size();
 			}
 		}
+		return size;
 	}
 	
 	/**
-	 * <p>选择节点</p>
+	 * <p>获取节点桶索引</p>
 	 * 
 	 * @param nodeId 节点ID
 	 * 
-	 * @return 节点
+	 * @return 节点桶索引：{@value #BUCKET_COUNT}-系统NodeId
 	 */
-	private NodeSession select(byte[] nodeId) {
-		if(nodeId == null) {
+	private int index(byte[] nodeId) {
+		return ArrayUtils.prefixLength(this.nodeId, nodeId);
+	}
+	
+	/**
+	 * <p>获取节点桶</p>
+	 * 
+	 * @param nodeId 节点ID
+	 * 
+	 * @return 节点桶
+	 */
+	private NodeBucket bucket(byte[] nodeId) {
+		if(nodeId == null || nodeId.length != DhtConfig.NODE_ID_LENGTH) {
 			return null;
 		}
-		for (NodeSession nodeSession : this.nodes) {
-			if(ArrayUtils.equals(nodeId, nodeSession.getId())) {
-				return nodeSession;
-			}
+		final int index = this.index(nodeId);
+		if(index >= BUCKET_COUNT) {
+			return null;
 		}
-		return null;
+		return this.buckets[index];
+	}
+	
+	/**
+	 * <p>生成节点桶范围内的随机ID</p>
+	 * <p>前index位和系统NodeId相同，第index位不同，后面随机。</p>
+	 * 
+	 * @param index 节点桶索引
+	 * 
+	 * @return 随机ID
+	 */
+	private byte[] randomId(int index) {
+		final byte[] id = ArrayUtils.random(DhtConfig.NODE_ID_LENGTH);
+		final int byteIndex = index / Byte.SIZE;
+		final int bitIndex = index % Byte.SIZE;
+		System.arraycopy(this.nodeId, 0, id, 0, byteIndex);
+		// 高位（bitIndex位）相同
+		final int mask = (0xFF << (Byte.SIZE - bitIndex)) & 0xFF;
+		// 第bitIndex位不同
+		final int flip = 0x80 >>> bitIndex;
+		id[byteIndex] = (byte) ((this.nodeId[byteIndex] & mask) | (~this.nodeId[byteIndex] & flip) | (id[byteIndex] & ~mask & ~flip & 0xFF));
+		return id;
+	}
+	
+	/**
+	 * <p>距离排序</p>
+	 * 
+	 * @param target 目标
+	 * 
+	 * @return 距离排序
+	 */
+	private Comparator<NodeSession> distanceComparator(byte[] target) {
+		return (a, b) -> {
+			for (int index = 0; index < target.length; index++) {
+				final int distanceA = (a.getId()[index] ^ target[index]) & 0xFF;
+				final int distanceB = (b.getId()[index] ^ target[index]) & 0xFF;
+				if(distanceA != distanceB) {
+					return distanceA - distanceB;
+				}
+			}
+			return 0;
+		};
 	}
 	
 }
@@ -0,0 +1,285 @@
+package com.acgist.snail.net.torrent.dht.bootstrap;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.acgist.snail.config.DhtConfig;
+import com.acgist.snail.config.SystemConfig;
+import com.acgist.snail.context.SystemThreadContext;
+import com.acgist.snail.utils.NetUtils;
+import com.acgist.snail.utils.StringUtils;
+
+/**
+ * <p>DHT Peer存储</p>
+ * <p>保存其他节点声明（announce_peer）的Peer：所有InfoHash都会保存，不用本地含有BT任务。</p>
+ * <p>InfoHash和Peer都是按照最近使用排序（LRU），超过数量上限时删除最久没有使用的数据。</p>
+ * <p>Peer超过{@link #PEER_TIMEOUT}没有重新声明视为过期</p>
+ * 
+ * @author acgist
+ */
+public final class PeerStore {
+	
+	private static final Logger LOGGER = LoggerFactory.getLogger(PeerStore.class);
+	
+	private static final PeerStore INSTANCE = new PeerStore();
+	
+	public static final PeerStore getInstance() {
+		return INSTANCE;
+	}
+	
+	/**
+	 * <p>InfoHash最大数量：{@value}</p>
+	 */
+	public static final int MAX_INFO_HASH_SIZE = 4096;
+	/**
+	 * <p>单个InfoHash保存Peer最大数量：{@value}</p>
+	 */
+	public static final int MAX_PEER_SIZE = 128;
+	/**
+	 * <p>Peer最大数量：{@value}</p>
+	 * <p>超过数量删除最久没有使用的InfoHash</p>
+	 */
+	public static final int MAX_TOTAL_PEER_SIZE = 64 * 1024;
+	/**
+	 * <p>Peer过期时间（毫秒）：{@value}</p>
+	 */
+	public static final long PEER_TIMEOUT = 30 * SystemConfig.ONE_MINUTE_MILLIS;
+	
+	/**
+	 * <p>Peer</p>
+	 * <p>InfoHash Hex=Peer（地址:端口=Peer）</p>
+	 */
+	private final LinkedHashMap<String, LinkedHashMap<String, Peer>> peers;
+	/**
+	 * <p>Peer数量</p>
+	 */
+	private int peerSize;
+	
+	private PeerStore() {
+		this.peers = new LinkedHashMap<>(MAX_INFO_HASH_SIZE, 0.75F, true) {
+			
+			private static final long serialVersionUID = 1L;
+			
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, LinkedHashMap<String, Peer>> eldest) {
+				if(this.size() > MAX_INFO_HASH_SIZE) {
+					PeerStore.this.peerSize -= eldest.getValue().size();
+					return true;
+				}
+				return false;
+			}
+		
+		};
+	}
+	
+	/**
+	 * <p>Peer</p>
+	 * 
+	 * @author acgist
+	 */
+	private static final class Peer {
+		
+		/**
+		 * <p>紧凑格式：IP（四个字节）+端口（两个字节）</p>
+		 */
+		private final byte[] value;
+		/**
+		 * <p>声明时间（毫秒）</p>
+		 */
+		private long announceTime;
+		
+		/**
+		 * @param value 紧凑格式
+		 */
+		private Peer(byte[] value) {
+			this.value = value;
+			this.announceTime = System.currentTimeMillis();
+		}
+		
+		/**
+		 * <p>判断是否过期</p>
+		 * 
+		 * @param now 当前时间（毫秒）
+		 * 
+		 * @return true-过期；false-没有过期；
+		 */
+		private boolean expired(long now) {
+			return now - this.announceTime > PEER_TIMEOUT;
+		}
+	
+	}
+	
+	/**
+	 * <p>注册Peer存储清理定时任务</p>
+	 */
+	public void register() {
+		LOGGER.debug("注册DHT Peer存储清理定时任务");
+		SystemThreadContext.timerFixedDelay(
+			DhtConfig.DHT_PEER_CLEAN_INTERVAL,
+			DhtConfig.DHT_PEER_CLEAN_INTERVAL,
+			TimeUnit.MINUTES,
+			() -> this.clean()
+		);
+	}
+	
+	/**
+	 * <p>保存Peer</p>
+	 * <p>Peer已经存在时更新声明时间</p>
+	 * <p>只支持IPv4地址</p>
+	 * 
+	 * @param infoHash InfoHash
+	 * @param host Peer地址
+	 * @param port Peer端口
+	 * 
+	 * @return true-成功；false-失败；
+	 */
+	public boolean announce(byte[] infoHash, String host, int port) {
+		if(infoHash == null || !NetUtils.ipAddress(host)) {
+			return false;
+		}
+		final String infoHashHex = StringUtils.hex(infoHash);
+		final String key = host + ":" + port;
+		synchronized (this.peers) {
+			var list = this.peers.get(infoHashHex);
+			if(list == null) {
+				list = new LinkedHashMap<>(16, 0.75F, true);
+				this.peers.put(infoHashHex, list);
+			}
+			final Peer peer = list.get(key);
+			if(peer != null) {
+				peer.announceTime = System.currentTimeMillis();
+				return true;
+			}
+			final ByteBuffer buffer = ByteBuffer.allocate(SystemConfig.IP_PORT_LENGTH);
+			buffer.putInt(NetUtils.ipToInt(host));
+			buffer.putShort(NetUtils.portToShort(port));
+			list.put(key, new Peer(buffer.array()));
+			this.peerSize++;
+			if(list.size() > MAX_PEER_SIZE) {
+				// 删除最久没有声明的Peer
+				final Iterator<Peer> iterator = list.values().iterator();
+				iterator.next();
+				iterator.remove();
+				this.peerSize--;
+			}
+			this.evict(infoHashHex);
+		}
+		return true;
+	}
+	
+	/**
+	 * <p>获取Peer</p>
+	 * <p>优先返回最近声明的Peer，同时删除过期的Peer。</p>
+	 * 
+	 * @param infoHash InfoHash
+	 * @param size 最大数量
+	 * 
+	 * @return Peer列表（紧凑格式）
+	 */
+	public List<byte[]> peers(byte[] infoHash, int size) {
+		if(infoHash == null || size <= 0) {
+			return List.of();
+		}
+		final String infoHashHex = StringUtils.hex(infoHash);
+		final long now = System.currentTimeMillis();
+		final List<byte[]> values = new ArrayList<>();
+		synchronized (this.peers) {
+			final var list = this.peers.get(infoHashHex);
+			if(list == null) {
+				return List.of();
+			}
+			final Iterator<Peer> iterator = list.values().iterator();
+			while(iterator.hasNext()) {
+				final Peer peer = iterator.next();
+				if(peer.expired(now)) {
+					iterator.remove();
+					this.peerSize--;
+				} else {
+					values.add(peer.value);
+				}
+			}
+			if(list.isEmpty()) {
+				this.peers.remove(infoHashHex);
+			}
+		}
+		// 最近声明的Peer在尾部
+		Collections.reverse(values);
+		if(values.size() > size) {
+			return new ArrayList<>(values.subList(0, size));
+		}
+		return values;
+	}
+	
+	/**
+	 * <p>清理过期Peer</p>
+	 */
+	public void clean() {
+		final long now = System.currentTimeMillis();
+		synchronized (this.peers) {
+			final var iterator = this.peers.values().iterator();
+			while(iterator.hasNext()) {
+				final var list = iterator.next();
+				final var peerIterator = list.values().iterator();
+				while(peerIterator.hasNext()) {
+					if(peerIterator.next().expired(now)) {
+						peerIterator.remove();
+						this.peerSize--;
+					}
+				}
+				if(list.isEmpty()) {
+					iterator.remove();
+				}
+			}
+			LOGGER.debug("清理DHT Peer存储：{}-{}", this.peers.size(), this.peerSize);
+		}
+	}
+	
+	/**
+	 * <p>获取InfoHash数量</p>
+	 * 
+	 * @return InfoHash数量
+	 */
+	public int size() {
+		synchronized (this.peers) {
+			return this.peers.size();
+		}
+	}
+	
+	/**
+	 * <p>获取Peer数量</p>
+	 * 
+	 * @return Peer数量
+	 */
+	public int peerSize() {
+		synchronized (this.peers) {
+			return this.peerSize;
+		}
+	}
+	
+	/**
+	 * <p>Peer数量超过上限时删除最久没有使用的InfoHash</p>
+	 * <p>不会删除当前使用的InfoHash</p>
+	 * 
+	 * @param infoHashHex 当前使用的InfoHash Hex
+	 */
+	private void evict(String infoHashHex) {
+		final var iterator = this.peers.entrySet().iterator();
+		while(this.peerSize > MAX_TOTAL_PEER_SIZE && iterator.hasNext()) {
+			final var entry = iterator.next();
+			if(!entry.getKey().equals(infoHashHex)) {
+				this.peerSize -= entry.getValue().size();
+				iterator.remove();
+			}
+		}
+	}
+	
+}
@@ -10,10 +10,10 @@ import com.acgist.snail.net.torrent.TorrentManager;
 import com.acgist.snail.net.torrent.dht.bootstrap.DhtRequest;
 import com.acgist.snail.net.torrent.dht.bootstrap.DhtResponse;
 import com.acgist.snail.net.torrent.dht.bootstrap.NodeManager;
+import com.acgist.snail.net.torrent.dht.bootstrap.PeerStore;
 import com.acgist.snail.net.torrent.dht.bootstrap.response.AnnouncePeerResponse;
 import com.acgist.snail.net.torrent.peer.bootstrap.PeerManager;
 import com.acgist.snail.pojo.session.TorrentSession;
-import com.acgist.snail.utils.ArrayUtils;
 import com.acgist.snail.utils.StringUtils;
 
 /**
@@ -49,6 +49,7 @@ public final class AnnouncePeerRequest extends DhtRequest {
 	
 	/**
 	 * <p>处理请求</p>
+	 * <p>验证Token后保存Peer：所有InfoHash都会{@linkplain PeerStore 保存}，本地含有BT任务时同时加入BT任务Peer。</p>
 	 * 
 	 * @param request 请求
 	 * 
@@ -56,25 +57,29 @@ public final class AnnouncePeerRequest extends DhtRequest {
 	 */
 	public static final AnnouncePeerResponse execute(DhtRequest request) {
 		final byte[] token = request.getBytes(DhtConfig.KEY_TOKEN);
+		final InetSocketAddress socketAddress = request.getSocketAddress();
+		final String peerHost = socketAddress.getHostString();
 		// 验证Token
-		if(!ArrayUtils.equals(token, NodeManager.getInstance().token())) {
+		if(!NodeManager.getInstance().verifyToken(peerHost, token)) {
 			return AnnouncePeerResponse.newInstance(DhtResponse.buildErrorResponse(request.getT(), ErrorCode.CODE_203.code(), "Token错误"));
 		}
 		final byte[] infoHash = request.getBytes(DhtConfig.KEY_INFO_HASH);
+		// 默认端口
+		Integer peerPort = request.getInteger(DhtConfig.KEY_PORT);
+		final Integer impliedPort = request.getInteger(DhtConfig.KEY_IMPLIED_PORT);
+		// 是否自动配置端口
+		final boolean impliedPortAuto = DhtConfig.IMPLIED_PORT_AUTO.equals(impliedPort);
+		if(impliedPortAuto) {
+			// 自动配置端口
+			peerPort = socketAddress.getPort();
+		}
+		if(infoHash == null || peerPort == null) {
+			return AnnouncePeerResponse.newInstance(DhtResponse.buildErrorResponse(request.getT(), ErrorCode.CODE_203.code(), "参数错误"));
+		}
+		PeerStore.getInstance().announce(infoHash, peerHost, peerPort);
 		final String infoHashHex = StringUtils.hex(infoHash);
 		final TorrentSession torrentSession = TorrentManager.getInstance().torrentSession(infoHashHex);
 		if(torrentSession != null) {
-			// 默认端口
-			Integer peerPort = request.getInteger(DhtConfig.KEY_PORT);
-			final Integer impliedPort = request.getInteger(DhtConfig.KEY_IMPLIED_PORT);
-			final InetSocketAddress socketAddress = request.getSocketAddress();
-			final String peerHost = socketAddress.getHostString();
-			// 是否自动配置端口
-			final boolean impliedPortAuto = DhtConfig.IMPLIED_PORT_AUTO.equals(impliedPort);
-			if(impliedPortAuto) {
-				// 自动配置端口
-				peerPort = socketAddress.getPort();
-			}
 			final var peerSession = PeerManager.getInstance().newPeerSession(
 				infoHashHex,
 				torrentSession.statistics(),
@@ -1,17 +1,20 @@
 package com.acgist.snail.net.torrent.dht.bootstrap.request;
 
 import java.nio.ByteBuffer;
-import java.util.stream.Collectors;
+import java.util.ArrayList;
+import java.util.List;
 
 import com.acgist.snail.config.DhtConfig;
 import com.acgist.snail.config.SystemConfig;
 import com.acgist.snail.net.torrent.TorrentManager;
 import com.acgist.snail.net.torrent.dht.bootstrap.DhtRequest;
 import com.acgist.snail.net.torrent.dht.bootstrap.NodeManager;
+import com.acgist.snail.net.torrent.dht.bootstrap.PeerStore;
 import com.acgist.snail.net.torrent.dht.bootstrap.response.GetPeersResponse;
 import com.acgist.snail.net.torrent.peer.bootstrap.PeerManager;
 import com.acgist.snail.pojo.session.PeerSession;
 import com.acgist.snail.pojo.session.TorrentSession;
+import com.acgist.snail.utils.ArrayUtils;
 import com.acgist.snail.utils.CollectionUtils;
 import com.acgist.snail.utils.NetUtils;
 import com.acgist.snail.utils.StringUtils;
@@ -43,6 +46,7 @@ public final class GetPeersRequest extends DhtRequest {
 	/**
 	 * <p>处理请求</p>
 	 * <p>能够查找到Peer返回Peer，反之返回最近的Node节点。</p>
+	 * <p>Peer来源：本地BT任务已经连接的Peer和{@linkplain PeerStore 其他节点声明的Peer}</p>
 	 * 
 	 * @param request 请求
 	 * 
@@ -53,29 +57,42 @@ public final class GetPeersRequest extends DhtRequest {
 		final byte[] infoHash = request.getBytes(DhtConfig.KEY_INFO_HASH);
 		final String infoHashHex = StringUtils.hex(infoHash);
 		final TorrentSession torrentSession = TorrentManager.getInstance().torrentSession(infoHashHex);
-		boolean needNodes = true;
-		// 查找Peer
+		final List<byte[]> values = new ArrayList<>();
+		// 查找本地Peer
 		if(torrentSession != null) {
-			final ByteBuffer buffer = ByteBuffer.allocate(SystemConfig.IP_PORT_LENGTH);
 			final var list = PeerManager.getInstance().listPeerSession(infoHashHex);
-			if(CollectionUtils.isNotEmpty(list)) { // 返回Peer
-				needNodes = false;
-				final var values = list.stream()
+			if(CollectionUtils.isNotEmpty(list)) {
+				list.stream()
 					.filter(PeerSession::available) // 可用
 					.filter(PeerSession::connected) // 连接
+					.filter(peer -> NetUtils.ipAddress(peer.host())) // IPv4
 					.limit(DhtConfig.GET_PEER_SIZE)
 					.map(peer -> {
+						final ByteBuffer buffer = ByteBuffer.allocate(SystemConfig.IP_PORT_LENGTH);
 						buffer.putInt(NetUtils.ipToInt(peer.host()));
 						buffer.putShort(NetUtils.portToShort(peer.port()));
-						buffer.flip();
 						return buffer.array();
 					})
-					.collect(Collectors.toList());
-				response.put(DhtConfig.KEY_VALUES, values);
+					.forEach(values::add);
 			}
 		}
-		// 没有Peer返回节点
-		if(needNodes) {
+		// 查找声明Peer：去掉已经连接的Peer
+		if(values.size() < DhtConfig.GET_PEER_SIZE) {
+			final List<byte[]> peers = PeerStore.getInstance().peers(infoHash, DhtConfig.GET_PEER_SIZE);
+			for (byte[] peer : peers) {
+				if(values.size() >= DhtConfig.GET_PEER_SIZE) {
+					break;
+				}
+				if(values.stream().noneMatch(value -> ArrayUtils.equals(value, peer))) {
+					values.add(peer);
+				}
+			}
+		}
+		if(!values.isEmpty()) {
+			// 返回Peer
+			response.put(DhtConfig.KEY_VALUES, values);
+		} else {
+			// 没有Peer返回节点
 			final var nodes = NodeManager.getInstance().findNode(infoHash);
 			response.put(DhtConfig.KEY_NODES, serializeNodes(nodes));
 		}
@@ -25,12 +25,14 @@ import com.acgist.snail.utils.NetUtils;
 public final class GetPeersResponse extends DhtResponse {
 
 	/**
-	 * @param t 节点ID
+	 * @param request 请求
 	 */
-	private GetPeersResponse(byte[] t) {
-		super(t);
-		// 设置Token
-		this.put(DhtConfig.KEY_TOKEN, NodeManager.getInstance().token());
+	private GetPeersResponse(DhtRequest request) {
+		super(request.getT());
+		// 设置Token：绑定请求IP地址
+		final var socketAddress = request.getSocketAddress();
+		final String host = socketAddress == null ? null : socketAddress.getHostString();
+		this.put(DhtConfig.KEY_TOKEN, NodeManager.getInstance().token(host));
 	}
 	
 	/**
@@ -59,7 +61,7 @@ public final class GetPeersResponse extends DhtResponse {
 	 * @return 响应
 	 */
 	public static final GetPeersResponse newInstance(DhtRequest request) {
-		return new GetPeersResponse(request.getT());
+		return new GetPeersResponse(request);
 	}
 	
 	/**
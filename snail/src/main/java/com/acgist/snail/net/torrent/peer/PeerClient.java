@@ -1,5 +1,7 @@
 package com.acgist.snail.net.torrent.peer;
 
+import java.util.concurrent.CompletableFuture;
+
 import com.acgist.snail.config.SystemConfig;
 import com.acgist.snail.net.TcpClient;
 import com.acgist.snail.net.torrent.peer.bootstrap.PeerSubMessageHandler;
@@ -47,7 +49,16 @@ public final class PeerClient extends TcpClient<PeerMessageHandler> {
 	public boolean connect() {
 		return this.connect(this.peerSession.host(), this.peerSession.port());
 	}
-
+	
+	/**
+	 * <p>异步连接</p>
+	 * 
+	 * @return 连接状态
+	 */
+	public CompletableFuture<Boolean> connectAsync() {
+		return this.connectAsync(this.peerSession.host(), this.peerSession.port());
+	}
+	
 	/**
 	 * <p>获取Peer信息</p>
 	 * 
@@ -50,8 +50,13 @@ public final class PeerMessageHandler extends TcpMessageHandler implements IMess
 	
 	@Override
 	public void sendEncrypt(ByteBuffer buffer, int timeout) throws NetException {
-		this.peerCryptMessageCodec.encode(buffer);
-		this.send(buffer, timeout);
+		// 流加密：加密顺序必须和发送顺序一致
+		synchronized (this.peerCryptMessageCodec) {
+			// 加密握手没有完成：消息等待握手完成后发送
+			if(this.peerCryptMessageCodec.encode(buffer) != null) {
+				this.send(buffer, timeout);
+			}
+		}
 	}
 
 }
@@ -0,0 +1,210 @@
+package com.acgist.snail.net.torrent.peer.bootstrap;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.acgist.snail.pojo.session.PeerSession;
+
+/**
+ * <p>PEX变化记录</p>
+ * <p>每个BT任务一个变化记录：优质Peer列表每次只对比一次，新增和删除的Peer按照序号记录。</p>
+ * <p>每个连接记录已经发送的序号，每次只读取序号之后的变化。</p>
+ * 
+ * @author acgist
+ */
+public final class PeerExchangeLog {
+	
+	/**
+	 * <p>变化记录最大数量：{@value}</p>
+	 * <p>超过最大数量删除旧的变化记录，没有读取的连接需要全量同步。</p>
+	 */
+	private static final int MAX_CHANGE_SIZE = 1024;
+	
+	/**
+	 * <p>Peer变化</p>
+	 * 
+	 * @author acgist
+	 */
+	public static final class Change {
+		
+		/**
+		 * <p>序号</p>
+		 */
+		private final long sequence;
+		/**
+		 * <p>Peer索引</p>
+		 */
+		private final String key;
+		/**
+		 * <p>Peer信息</p>
+		 */
+		private final PeerSession peerSession;
+		/**
+		 * <p>是否新增：true-新增；false-删除；</p>
+		 */
+		private final boolean added;
+		
+		/**
+		 * @param sequence 序号
+		 * @param key Peer索引
+		 * @param peerSession Peer信息
+		 * @param added 是否新增
+		 */
+		private Change(long sequence, String key, PeerSession peerSession, boolean added) {
+			this.sequence = sequence;
+			this.key = key;
+			this.peerSession = peerSession;
+			this.added = added;
+		}
+		
+		/**
+		 * <p>获取序号</p>
+		 * 
+		 * @return 序号
+		 */
+		public long sequence() {
+			return this.sequence;
+		}
+		
+		/**
+		 * <p>获取Peer索引</p>
+		 * 
+		 * @return Peer索引
+		 */
+		public String key() {
+			return this.key;
+		}
+		
+		/**
+		 * <p>获取Peer信息</p>
+		 * 
+		 * @return Peer信息
+		 */
+		public PeerSession peerSession() {
+			return this.peerSession;
+		}
+		
+		/**
+		 * <p>判断是否新增</p>
+		 * 
+		 * @return true-新增；false-删除；
+		 */
+		public boolean added() {
+			return this.added;
+		}
+	
+	}
+	
+	/**
+	 * <p>最新序号</p>
+	 */
+	private long sequence;
+	/**
+	 * <p>第一条变化记录序号</p>
+	 */
+	private long firstSequence;
+	/**
+	 * <p>当前优质Peer</p>
+	 * <p>Peer索引=Peer</p>
+	 */
+	private final Map<String, PeerSession> peers;
+	/**
+	 * <p>变化记录</p>
+	 */
+	private final List<Change> changes;
+	
+	private PeerExchangeLog() {
+		this.sequence = 0L;
+		this.firstSequence = 1L;
+		this.peers = new LinkedHashMap<>();
+		this.changes = new ArrayList<>();
+	}
+	
+	/**
+	 * <p>创建PEX变化记录</p>
+	 * 
+	 * @return PEX变化记录
+	 */
+	public static final PeerExchangeLog newInstance() {
+		return new PeerExchangeLog();
+	}
+	
+	/**
+	 * <p>更新优质Peer</p>
+	 * <p>对比当前优质Peer记录新增和删除的Peer</p>
+	 * 
+	 * @param optimize 优质Peer列表
+	 */
+	public synchronized void update(List<PeerSession> optimize) {
+		final Map<String, PeerSession> peers = new LinkedHashMap<>();
+		optimize.stream()
+			.filter(session -> session.port() != null)
+			.forEach(session -> peers.putIfAbsent(buildKey(session), session));
+		for (var entry : peers.entrySet()) {
+			if(!this.peers.containsKey(entry.getKey())) {
+				this.changes.add(new Change(++this.sequence, entry.getKey(), entry.getValue(), true));
+			}
+		}
+		for (var entry : this.peers.entrySet()) {
+			if(!peers.containsKey(entry.getKey())) {
+				this.changes.add(new Change(++this.sequence, entry.getKey(), entry.getValue(), false));
+			}
+		}
+		this.peers.clear();
+		this.peers.putAll(peers);
+		if(this.changes.size() > MAX_CHANGE_SIZE) {
+			// 删除一半旧的变化记录
+			final int size = this.changes.size() - MAX_CHANGE_SIZE / 2;
+			this.changes.subList(0, size).clear();
+			this.firstSequence += size;
+		}
+	}
+	
+	/**
+	 * <p>获取最新序号</p>
+	 * 
+	 * @return 最新序号
+	 */
+	public synchronized long sequence() {
+		return this.sequence;
+	}
+	
+	/**
+	 * <p>获取序号之后的变化记录</p>
+	 * 
+	 * @param sequence 已经读取的序号
+	 * 
+	 * @return 变化记录：{@code null}-变化记录已经删除（需要全量同步）
+	 */
+	public synchronized List<Change> changes(long sequence) {
+		if(sequence < this.firstSequence - 1 || sequence > this.sequence) {
+			return null;
+		}
+		final int index = (int) (sequence - this.firstSequence + 1);
+		return new ArrayList<>(this.changes.subList(index, this.changes.size()));
+	}
+	
+	/**
+	 * <p>获取当前优质Peer</p>
+	 * <p>全量同步时和{@link #sequence()}一起调用需要持有变化记录锁</p>
+	 * 
+	 * @return 当前优质Peer：Peer索引=Peer
+	 */
+	public synchronized Map<String, PeerSession> peers() {
+		return new LinkedHashMap<>(this.peers);
+	}
+	
+	/**
+	 * <p>生成Peer索引</p>
+	 * 
+	 * @param peerSession Peer信息
+	 * 
+	 * @return Peer索引
+	 */
+	public static final String buildKey(PeerSession peerSession) {
+		return peerSession.host() + ":" + peerSession.port();
+	}
+	
+}
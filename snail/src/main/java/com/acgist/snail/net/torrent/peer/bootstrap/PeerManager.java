@@ -1,11 +1,16 @@
 package com.acgist.snail.net.torrent.peer.bootstrap;
 
 import java.util.ArrayList;
-import java.util.Deque;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
@@ -13,14 +18,17 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.acgist.snail.config.PeerConfig;
-import com.acgist.snail.net.torrent.peer.bootstrap.extension.PeerExchangeMessageHandler;
+import com.acgist.snail.config.PeerHistoryConfig;
+import com.acgist.snail.config.SystemConfig;
+import com.acgist.snail.context.SystemThreadContext;
 import com.acgist.snail.pojo.IStatisticsSession;
 import com.acgist.snail.pojo.session.PeerSession;
-import com.acgist.snail.utils.CollectionUtils;
+import com.acgist.snail.utils.StringUtils;
 
 /**
  * <p>Peer管理器</p>
- * <p>Peer放入两个队列：{@linkplain #peers 下载队列}、{@linkplain #storagePeers 存档队列}</p>
+ * <p>每个任务使用一个{@linkplain PeerTable Peer列表}：{@linkplain PeerTable#sessions 存档队列}、{@linkplain PeerTable#candidates 下载队列}</p>
+ * <p>存档队列使用地址和端口索引，下载队列按照优先级排序，任务之间不会相互阻塞。</p>
  * 
  * @author acgist
  */
@@ -35,20 +43,30 @@ public final class PeerManager {
 	}
 	
 	/**
-	 * <p>Peer下载队列</p>
-	 * <p>下载时Peer从队列中剔除，当Peer使用结束后重新放回下载队列。</p>
-	 * <p>InfoHashHex=Peer双端队列（尾部优先使用）</p>
+	 * <p>优先级：劣质Peer</p>
 	 */
-	private final Map<String, Deque<PeerSession>> peers;
+	private static final int PRIORITY_INFERIOR = 0;
 	/**
-	 * <p>Peer存档队列</p>
-	 * <p>InfoHashHex=Peer队列</p>
+	 * <p>优先级：普通Peer</p>
 	 */
-	private final Map<String, List<PeerSession>> storagePeers;
+	private static final int PRIORITY_NORMAL = 1;
+	/**
+	 * <p>优先级：优质Peer</p>
+	 */
+	private static final int PRIORITY_PREFERENCE = 2;
+	/**
+	 * <p>have消息合并周期（毫秒）：{@value}</p>
+	 */
+	private static final int HAVE_INTERVAL = 100;
+	
+	/**
+	 * <p>Peer列表</p>
+	 * <p>InfoHashHex=Peer列表</p>
+	 */
+	private final Map<String, PeerTable> tables;
 	
 	private PeerManager() {
-		this.peers = new ConcurrentHashMap<>();
-		this.storagePeers = new ConcurrentHashMap<>();
+		this.tables = new ConcurrentHashMap<>();
 	}
 	
 	/**
@@ -61,10 +79,11 @@ public final class PeerManager {
 	 * @return Peer信息
 	 */
 	public PeerSession findPeerSession(String infoHashHex, String host, Integer port) {
-		final var list = this.list(infoHashHex);
-		synchronized (list) {
-			return this.findPeerSession(list, host, port);
+		final PeerTable table = this.tables.get(infoHashHex);
+		if(table == null) {
+			return null;
 		}
+		return table.sessions.get(buildKey(host, port));
 	}
 	
 	/**
@@ -75,10 +94,11 @@ public final class PeerManager {
 	 * @return Peer存档队列
 	 */
 	public List<PeerSession> listPeerSession(String infoHashHex) {
-		final var list = this.list(infoHashHex);
-		synchronized (list) {
-			return new ArrayList<>(list);
+		final PeerTable table = this.tables.get(infoHashHex);
+		if(table == null) {
+			return new ArrayList<>();
 		}
+		return new ArrayList<>(table.sessions.values());
 	}
 	
 	/**
@@ -89,7 +109,8 @@ public final class PeerManager {
 	 * @return true-找到；false-没有找到；
 	 */
 	public boolean hasPeerSession(String infoHashHex) {
-		return !this.list(infoHashHex).isEmpty();
+		final PeerTable table = this.tables.get(infoHashHex);
+		return table != null && !table.sessions.isEmpty();
 	}
 	
 	/**
@@ -98,16 +119,14 @@ public final class PeerManager {
 	 * @param infoHashHex InfoHashHex
 	 */
 	public void remove(String infoHashHex) {
-		// 删除下载队列
-		this.peers.remove(infoHashHex);
-		// 删除存档队列
-		this.storagePeers.remove(infoHashHex);
+		this.tables.remove(infoHashHex);
 	}
 	
 	/**
 	 * <p>添加Peer</p>
-	 * <p>优先级高的Peer插入尾部优先使用</p>
+	 * <p>优先级高的Peer优先使用</p>
 	 * <p>优先级计算：PEX、本地发现、主动连接</p>
+	 * <p>存档数量超过{@linkplain SystemConfig#getPeerStorageSize() 单个任务Peer存档数量}时淘汰下载队列中优先级最低的Peer</p>
 	 * 
 	 * @param infoHashHex InfoHashHex
 	 * @param parent 任务下载统计
@@ -118,93 +137,216 @@ public final class PeerManager {
 	 * @return PeerSession
 	 */
 	public PeerSession newPeerSession(String infoHashHex, IStatisticsSession parent, String host, Integer port, PeerConfig.Source source) {
-		synchronized (this) {
-			final var list = this.list(infoHashHex); // 存档队列
-			final var deque = this.deque(infoHashHex); // 下载队列
-			synchronized (list) {
-				synchronized (deque) {
-					PeerSession peerSession = this.findPeerSession(list, host, port);
-					if(peerSession == null) {
-						LOGGER.debug("添加PeerSession：{}-{}，来源：{}", host, port, source);
-						peerSession = PeerSession.newInstance(parent, host, port);
-						if(source.preference()) {
-							deque.offerLast(peerSession); // 插入尾部：优先级高
-						} else {
-							deque.offerFirst(peerSession); // 插入头部：优先级低
-						}
-						list.add(peerSession); // 存档
-					}
-					peerSession.source(source); // 设置来源
-					return peerSession;
+		final PeerTable table = this.table(infoHashHex);
+		final String key = buildKey(host, port);
+		PeerSession peerSession = table.sessions.get(key);
+		if(peerSession == null) {
+			final PeerSession newPeerSession = PeerSession.newInstance(parent, host, port);
+			peerSession = table.sessions.putIfAbsent(key, newPeerSession);
+			if(peerSession == null) {
+				LOGGER.debug("添加PeerSession：{}-{}，来源：{}", host, port, source);
+				peerSession = newPeerSession;
+				if(peerSession.available()) {
+					table.offer(peerSession, source.preference() ? PRIORITY_PREFERENCE : PRIORITY_NORMAL);
 				}
+				table.evict();
 			}
 		}
+		peerSession.source(source); // 设置来源
+		return peerSession;
+	}
+	
+	/**
+	 * <p>设置Peer端口</p>
+	 * <p>接入的Peer没有端口，获取端口后重新索引并放入下载队列。</p>
+	 * <p>相同地址的Peer已经存在：没有连接时使用接入的Peer替换，连接中时保留原有索引（不能丢失连接中的Peer）。</p>
+	 * <p>任务已经删除时只设置端口</p>
+	 * 
+	 * @param infoHashHex InfoHashHex
+	 * @param peerSession Peer信息
+	 * @param port 端口
+	 */
+	public void port(String infoHashHex, PeerSession peerSession, Integer port) {
+		final PeerTable table = this.tables.get(infoHashHex);
+		if(table == null) {
+			peerSession.port(port);
+			return;
+		}
+		// 重新索引：加锁防止其他线程重新索引或者淘汰
+		synchronized (table) {
+			final String key = buildKey(peerSession.host(), port);
+			final PeerSession exist = table.sessions.get(key);
+			if(exist == peerSession) {
+				return;
+			}
+			if(exist != null && table.using(exist)) {
+				LOGGER.debug("设置Peer端口：相同地址的Peer连接中（保留原有索引）：{}-{}", peerSession.host(), port);
+				return;
+			}
+			if(exist != null) {
+				// 相同地址的Peer没有连接：使用接入的Peer替换
+				table.discard(exist);
+			}
+			table.sessions.remove(buildKey(peerSession.host(), peerSession.port()), peerSession);
+			peerSession.port(port);
+			table.sessions.put(key, peerSession);
+			if(peerSession.available()) {
+				table.offer(peerSession, PRIORITY_NORMAL);
+			}
+		}
+	}
+	
+	/**
+	 * <p>加载历史Peer</p>
+	 * <p>历史Peer放入下载队列优先使用</p>
+	 * 
+	 * @param infoHashHex InfoHashHex
+	 * @param parent 任务下载统计
+	 */
+	public void restore(String infoHashHex, IStatisticsSession parent) {
+		final var addresses = PeerHistoryConfig.getInstance().peers(infoHashHex);
+		for (String address : addresses) {
+			final int index = address.lastIndexOf(':');
+			if(index <= 0 || index == address.length() - 1) {
+				LOGGER.warn("历史Peer格式错误：{}", address);
+				continue;
+			}
+			final String host = address.substring(0, index);
+			final String port = address.substring(index + 1);
+			if(StringUtils.isNumeric(port)) {
+				this.newPeerSession(infoHashHex, parent, host, Integer.valueOf(port), PeerConfig.Source.HISTORY);
+			} else {
+				LOGGER.warn("历史Peer格式错误：{}", address);
+			}
+		}
+		LOGGER.debug("加载历史Peer数量：{}", addresses.size());
+	}
+	
+	/**
+	 * <p>记录历史Peer</p>
+	 * <p>历史Peer：成功连接或者传输过数据的Peer，按照下载大小、上传大小排序。</p>
+	 * <p>没有满足条件的Peer时保留原有历史Peer</p>
+	 * 
+	 * @param infoHashHex InfoHashHex
+	 */
+	public void history(String infoHashHex) {
+		final PeerTable table = this.tables.get(infoHashHex);
+		if(table == null) {
+			return;
+		}
+		final var addresses = table.sessions.values().stream()
+			.filter(session -> session.port() != null)
+			.filter(session -> session.available())
+			.filter(session -> session.dial() != PeerConfig.DIAL_NONE || session.downloadSize() > 0 || session.uploadSize() > 0)
+			.sorted(Comparator.comparingLong(PeerSession::downloadSize).thenComparingLong(PeerSession::uploadSize).reversed())
+			.limit(PeerHistoryConfig.MAX_PEER_SIZE)
+			.map(session -> buildKey(session.host(), session.port()))
+			.collect(Collectors.toList());
+		LOGGER.debug("记录历史Peer数量：{}", addresses.size());
+		PeerHistoryConfig.getInstance().peers(infoHashHex, addresses);
 	}
 	
 	/**
-	 * <p>添加劣质Peer：插入头部</p>
+	 * <p>添加劣质Peer：优先级最低</p>
 	 * 
 	 * @param infoHashHex InfoHashHex
 	 * @param peerSession Peer信息
 	 */
 	public void inferior(String infoHashHex, PeerSession peerSession) {
-		final var deque = this.deque(infoHashHex);
-		synchronized (deque) {
-			deque.offerFirst(peerSession);
+		final PeerTable table = this.tables.get(infoHashHex);
+		if(table != null) {
+			table.offer(peerSession, PRIORITY_INFERIOR);
 		}
 	}
 	
 	/**
-	 * <p>添加优质Peer：插入尾部</p>
+	 * <p>添加优质Peer：优先级最高</p>
 	 * 
 	 * @param infoHashHex InfoHashHex
 	 * @param peerSession Peer信息
 	 */
 	public void preference(String infoHashHex, PeerSession peerSession) {
-		final var deque = this.deque(infoHashHex);
-		synchronized (deque) {
-			deque.offerLast(peerSession);
+		final PeerTable table = this.tables.get(infoHashHex);
+		if(table != null) {
+			table.offer(peerSession, PRIORITY_PREFERENCE);
 		}
 	}
 	
 	/**
 	 * <p>选择一个可用的Peer</p>
-	 * <p>从下载队列尾部挑选</p>
+	 * <p>从下载队列挑选优先级最高的Peer，不可用的Peer直接移出下载队列，连接失败缓存时间内的Peer跳过。</p>
 	 * 
 	 * @param infoHashHex InfoHashHex
 	 * 
 	 * @return Peer信息
 	 */
 	public PeerSession pick(String infoHashHex) {
-		final var deque = this.deque(infoHashHex);
-		synchronized (deque) {
-			int index = 0;
-			final int size = deque.size();
-			PeerSession peerSession = null;
-			while(true) {
-				if(++index > size) {
-					break;
-				}
-				peerSession = deque.pollLast();
-				// 可用状态
-				if(peerSession.available()) {
-					return peerSession;
-				} else {
-					deque.offerFirst(peerSession);
-				}
-			}
+		final PeerTable table = this.tables.get(infoHashHex);
+		if(table == null) {
 			return null;
 		}
+		return table.pick();
 	}
 	
 	/**
 	 * <p>发送have消息</p>
-	 * <p>只发送给当前连接的Peer</p>
+	 * <p>Piece索引放入待发送队列，{@linkplain #HAVE_INTERVAL 合并周期}内的have消息合并发送。</p>
 	 * 
 	 * @param infoHashHex InfoHashHex
 	 * @param index Piece索引
 	 */
 	public void have(String infoHashHex, int index) {
+		final PeerTable table = this.tables.get(infoHashHex);
+		if(table == null) {
+			return;
+		}
+		synchronized (table.haves) {
+			table.haves.add(index);
+			if(table.haves.size() > 1) {
+				// 已经等待发送
+				return;
+			}
+		}
+		SystemThreadContext.timer(HAVE_INTERVAL, TimeUnit.MILLISECONDS, () -> this.flushHave(infoHashHex));
+	}
+	
+	/**
+	 * <p>获取待发送队列中的have消息</p>
+	 * <p>发送其他消息时合并发送，待发送队列不会清空（定时发送时跳过已经合并发送的Piece）。</p>
+	 * 
+	 * @param infoHashHex InfoHashHex
+	 * 
+	 * @return Piece索引
+	 */
+	int[] haves(String infoHashHex) {
+		final PeerTable table = this.tables.get(infoHashHex);
+		if(table == null) {
+			return new int[0];
+		}
+		synchronized (table.haves) {
+			return table.haves.stream().mapToInt(Integer::intValue).toArray();
+		}
+	}
+	
+	/**
+	 * <p>发送待发送队列中的have消息</p>
+	 * <p>只发送给当前连接的Peer</p>
+	 * 
+	 * @param infoHashHex InfoHashHex
+	 */
+	private void flushHave(String infoHashHex) {
+		final PeerTable table = this.tables.get(infoHashHex);
+		if(table == null) {
+			return;
+		}
+		final int[] indexes;
+		synchronized (table.haves) {
+			indexes = table.haves.stream().mapToInt(Integer::intValue).toArray();
+			table.haves.clear();
+		}
+		if(indexes.length == 0) {
+			return;
+		}
 		final var list = this.listConnectPeerSession(infoHashHex);
 		final AtomicInteger count = new AtomicInteger(0);
 		list.stream()
@@ -212,39 +354,39 @@ public final class PeerManager {
 				final var peerConnect = session.peerConnect();
 				if(peerConnect != null && peerConnect.available()) {
 					count.incrementAndGet();
-					peerConnect.have(index);
+					peerConnect.have(indexes);
 				}
 			});
-		LOGGER.debug("发送have消息，通知Peer数量：{}", count.get());
+		LOGGER.debug("发送have消息，Piece数量：{}，通知Peer数量：{}", indexes.length, count.get());
 	}
 	
 	/**
 	 * <p>发送pex消息</p>
-	 * <p>只发送给当前连接的Peer</p>
+	 * <p>只发送给当前连接的Peer：优质Peer变化写入{@linkplain PeerExchangeLog 变化记录}，每个连接只发送变化的Peer。</p>
 	 * 
 	 * @param infoHashHex InfoHashHex
 	 */
 	public void pex(String infoHashHex) {
+		final PeerTable table = this.tables.get(infoHashHex);
+		if(table == null) {
+			return;
+		}
 		final var list = this.listConnectPeerSession(infoHashHex);
 		// 优质Peer：下载数据
 		final var optimize = list.stream()
 			.filter(session -> session.statistics().downloadSize() > 0)
 			.collect(Collectors.toList());
-		final byte[] message = PeerExchangeMessageHandler.buildMessage(optimize);
-		if(message == null) {
-			LOGGER.debug("发送pex消息失败：消息为空");
-			return;
-		}
+		table.exchangeLog.update(optimize);
 		final AtomicInteger count = new AtomicInteger(0);
 		list.stream()
 			.forEach(session -> {
 				final var peerConnect = session.peerConnect();
 				if(peerConnect != null && peerConnect.available()) {
 					count.incrementAndGet();
-					peerConnect.pex(message);
+					peerConnect.pex(table.exchangeLog);
 				}
 			});
-		LOGGER.debug("发送pex消息，通知Peer数量：{}", count.get());
+		LOGGER.debug("发送pex消息，优质Peer数量：{}，通知Peer数量：{}", optimize.size(), count.get());
 	}
 	
 	/**
@@ -268,29 +410,15 @@ public final class PeerManager {
 	}
 	
 	/**
-	 * <p>获取任务下载队列</p>
+	 * <p>获取任务Peer列表（不存在时创建）</p>
+	 * <p>只有添加Peer时使用：其他操作任务已经删除时不能重新创建</p>
 	 * 
 	 * @param infoHashHex InfoHashHex
 	 * 
-	 * @return 任务下载队列
+	 * @return 任务Peer列表
 	 */
-	private Deque<PeerSession> deque(String infoHashHex) {
-		synchronized (this.peers) {
-			return this.peers.computeIfAbsent(infoHashHex, key -> new LinkedBlockingDeque<>());
-		}
-	}
-
-	/**
-	 * <p>获取任务存档队列</p>
-	 * 
-	 * @param infoHashHex InfoHashHex
-	 * 
-	 * @return 任务存档队列
-	 */
-	private List<PeerSession> list(String infoHashHex) {
-		synchronized (this.storagePeers) {
-			return this.storagePeers.computeIfAbsent(infoHashHex, key -> new ArrayList<>());
-		}
+	private PeerTable table(String infoHashHex) {
+		return this.tables.computeIfAbsent(infoHashHex, key -> new PeerTable());
 	}
 	
 	/**
@@ -302,32 +430,295 @@ public final class PeerManager {
 	 * @return 连接的Peer队列拷贝
 	 */
 	private List<PeerSession> listConnectPeerSession(String infoHashHex) {
-		final var list = this.list(infoHashHex);
-		if(CollectionUtils.isEmpty(list)) {
+		final PeerTable table = this.tables.get(infoHashHex);
+		if(table == null) {
 			return List.of();
 		}
-		synchronized (list) {
-			return list.stream()
-				.filter(session -> session.available())
-				.filter(session -> session.connected())
-				.collect(Collectors.toList());
-		}
+		return table.sessions.values().stream()
+			.filter(session -> session.available())
+			.filter(session -> session.connected())
+			.collect(Collectors.toList());
 	}
 	
 	/**
-	 * <p>查找PeerSession</p>
+	 * <p>生成Peer索引</p>
 	 * 
-	 * @param list Peer队列
 	 * @param host Peer地址
 	 * @param port Peer端口
 	 * 
-	 * @return Peer信息
+	 * @return Peer索引
 	 */
-	private PeerSession findPeerSession(List<PeerSession> list, String host, Integer port) {
-		return list.stream()
-			.filter(peer -> peer.equals(host, port))
-			.findFirst()
-			.orElse(null);
+	private static final String buildKey(String host, Integer port) {
+		return host + ":" + port;
+	}
+	
+	/**
+	 * <p>任务Peer列表</p>
+	 * 
+	 * @author acgist
+	 */
+	private static final class PeerTable {
+		
+		/**
+		 * <p>Peer存档队列</p>
+		 * <p>地址:端口=Peer</p>
+		 */
+		private final Map<String, PeerSession> sessions = new ConcurrentHashMap<>();
+		/**
+		 * <p>Peer下载队列</p>
+		 * <p>下载时Peer从队列中剔除，当Peer使用结束后重新放回下载队列。</p>
+		 * <p>按照优先级排序（尾部优先使用）</p>
+		 */
+		private final TreeSet<PeerCandidate> candidates = new TreeSet<>();
+		/**
+		 * <p>下载队列索引（防止重复放入）</p>
+		 */
+		private final Map<PeerSession, PeerCandidate> candidateIndex = new IdentityHashMap<>();
+		/**
+		 * <p>已经取出的Peer（连接中）</p>
+		 * <p>取出后到放回下载队列之前不会淘汰：握手完成之前Peer没有连接状态</p>
+		 */
+		private final Set<PeerSession> checkouts = Collections.newSetFromMap(new IdentityHashMap<>());
+		/**
+		 * <p>连接失败等待队列</p>
+		 * <p>连接失败缓存时间内的Peer按照可以连接时间排序，到期后放回下载队列。</p>
+		 * <p>延迟删除：下载队列索引不是当前Peer时表示已经重新放入或者删除</p>
+		 */
+		private final PriorityQueue<PeerBackoff> backoffs = new PriorityQueue<>();
+		/**
+		 * <p>have消息待发送队列（Piece索引）</p>
+		 */
+		private final List<Integer> haves = new ArrayList<>();
+		/**
+		 * <p>PEX变化记录</p>
+		 */
+		private final PeerExchangeLog exchangeLog = PeerExchangeLog.newInstance();
+		/**
+		 * <p>放入序号：相同优先级后放入的Peer优先使用</p>
+		 */
+		private long sequence = 0L;
+		
+		/**
+		 * <p>放入下载队列</p>
+		 * <p>已经在下载队列中的Peer更新优先级</p>
+		 * 
+		 * @param peerSession Peer信息
+		 * @param priority 优先级
+		 */
+		private synchronized void offer(PeerSession peerSession, int priority) {
+			this.checkouts.remove(peerSession);
+			if(this.sessions.get(buildKey(peerSession.host(), peerSession.port())) != peerSession) {
+				// 已经淘汰或者替换的Peer不再放入下载队列
+				LOGGER.debug("Peer已经淘汰：{}-{}", peerSession.host(), peerSession.port());
+				return;
+			}
+			final PeerCandidate candidate = new PeerCandidate(peerSession, priority, this.sequence++);
+			final PeerCandidate old = this.candidateIndex.put(peerSession, candidate);
+			if(old != null) {
+				this.candidates.remove(old);
+			}
+			this.queue(candidate, System.currentTimeMillis());
+		}
+		
+		/**
+		 * <p>放入下载队列或者连接失败等待队列</p>
+		 * 
+		 * @param candidate 下载队列Peer
+		 * @param now 当前时间（毫秒）
+		 */
+		private void queue(PeerCandidate candidate, long now) {
+			final long dialTime = candidate.peerSession.dialTime();
+			if(dialTime > now) {
+				this.backoffs.add(new PeerBackoff(candidate, dialTime));
+			} else {
+				this.candidates.add(candidate);
+			}
+		}
+		
+		/**
+		 * <p>到期的连接失败等待Peer放回下载队列</p>
+		 * 
+		 * @param now 当前时间（毫秒）
+		 */
+		private void restoreBackoffs(long now) {
+			PeerBackoff backoff;
+			while((backoff = this.backoffs.peek()) != null && backoff.dialTime <= now) {
+				this.backoffs.poll();
+				if(this.candidateIndex.get(backoff.candidate.peerSession) == backoff.candidate) {
+					// 等待期间可能再次失败：重新计算可以连接时间
+					this.queue(backoff.candidate, now);
+				}
+			}
+		}
+		
+		/**
+		 * <p>选择优先级最高的可用Peer</p>
+		 * <p>不可用的Peer移出下载队列，连接失败缓存时间内的Peer移入连接失败等待队列。</p>
+		 * 
+		 * @return Peer信息
+		 */
+		private synchronized PeerSession pick() {
+			final long now = System.currentTimeMillis();
+			this.restoreBackoffs(now);
+			PeerCandidate candidate;
+			PeerSession peerSession = null;
+			while((candidate = this.candidates.pollLast()) != null) {
+				if(!candidate.peerSession.available()) {
+					this.candidateIndex.remove(candidate.peerSession);
+				} else if(candidate.peerSession.dialTime() > now) {
+					this.queue(candidate, now);
+				} else {
+					this.candidateIndex.remove(candidate.peerSession);
+					this.checkouts.add(candidate.peerSession);
+					peerSession = candidate.peerSession;
+					break;
+				}
+			}
+			return peerSession;
+		}
+		
+		/**
+		 * <p>淘汰劣质Peer</p>
+		 * <p>优先淘汰连接失败等待队列中的Peer，然后淘汰下载队列中优先级最低的Peer，下载队列为空时淘汰存档队列中没有连接的Peer。</p>
+		 * <p>正在上传、下载或者连接中（已经取出）的Peer不会淘汰：所有Peer都在使用时允许超过存档数量</p>
+		 */
+		private synchronized void evict() {
+			final int maxSize = SystemConfig.getPeerStorageSize();
+			// 优先淘汰连接失败的Peer
+			PeerBackoff backoff;
+			while(this.sessions.size() > maxSize && (backoff = this.backoffs.poll()) != null) {
+				if(this.candidateIndex.get(backoff.candidate.peerSession) == backoff.candidate) {
+					this.candidateIndex.remove(backoff.candidate.peerSession);
+					this.remove(backoff.candidate.peerSession);
+				}
+			}
+			PeerCandidate candidate;
+			while(this.sessions.size() > maxSize && (candidate = this.candidates.pollFirst()) != null) {
+				this.candidateIndex.remove(candidate.peerSession);
+				this.remove(candidate.peerSession);
+			}
+			if(this.sessions.size() <= maxSize) {
+				return;
+			}
+			final var iterator = this.sessions.values().iterator();
+			while(this.sessions.size() > maxSize && iterator.hasNext()) {
+				final PeerSession peerSession = iterator.next();
+				if(!this.using(peerSession)) {
+					LOGGER.debug("淘汰PeerSession：{}-{}", peerSession.host(), peerSession.port());
+					iterator.remove();
+				}
+			}
+		}
+		
+		/**
+		 * <p>判断Peer是否使用中</p>
+		 * 
+		 * @param peerSession Peer信息
+		 * 
+		 * @return true-使用中（上传、下载、连接中）；false-没有使用；
+		 */
+		private synchronized boolean using(PeerSession peerSession) {
+			return peerSession.connected() || this.checkouts.contains(peerSession);
+		}
+		
+		/**
+		 * <p>丢弃Peer：删除存档队列和下载队列中的Peer</p>
+		 * 
+		 * @param peerSession Peer信息
+		 */
+		private synchronized void discard(PeerSession peerSession) {
+			final PeerCandidate candidate = this.candidateIndex.remove(peerSession);
+			if(candidate != null) {
+				this.candidates.remove(candidate);
+			}
+			this.remove(peerSession);
+		}
+		
+		/**
+		 * <p>删除存档队列中的Peer</p>
+		 * 
+		 * @param peerSession Peer信息
+		 */
+		private void remove(PeerSession peerSession) {
+			LOGGER.debug("淘汰PeerSession：{}-{}", peerSession.host(), peerSession.port());
+			this.sessions.remove(buildKey(peerSession.host(), peerSession.port()), peerSession);
+		}
+		
 	}
+	
+	/**
+	 * <p>下载队列Peer</p>
+	 * <p>放入时记录优先级，避免Peer状态修改影响排序。</p>
+	 * 
+	 * @author acgist
+	 */
+	private static final class PeerCandidate implements Comparable<PeerCandidate> {
 
+		/**
+		 * <p>Peer信息</p>
+		 */
+		private final PeerSession peerSession;
+		/**
+		 * <p>优先级</p>
+		 */
+		private final int priority;
+		/**
+		 * <p>放入序号</p>
+		 */
+		private final long sequence;
+		
+		/**
+		 * @param peerSession Peer信息
+		 * @param priority 优先级
+		 * @param sequence 放入序号
+		 */
+		private PeerCandidate(PeerSession peerSession, int priority, long sequence) {
+			this.peerSession = peerSession;
+			this.priority = priority;
+			this.sequence = sequence;
+		}
+		
+		@Override
+		public int compareTo(PeerCandidate target) {
+			if(this.priority != target.priority) {
+				return Integer.compare(this.priority, target.priority);
+			}
+			return Long.compare(this.sequence, target.sequence);
+		}
+		
+	}
+	
+	/**
+	 * <p>连接失败等待Peer</p>
+	 * <p>放入时记录可以连接时间，避免失败次数修改影响排序。</p>
+	 * 
+	 * @author acgist
+	 */
+	private static final class PeerBackoff implements Comparable<PeerBackoff> {
+		
+		/**
+		 * <p>下载队列Peer</p>
+		 */
+		private final PeerCandidate candidate;
+		/**
+		 * <p>可以连接时间（毫秒）</p>
+		 */
+		private final long dialTime;
+		
+		/**
+		 * @param candidate 下载队列Peer
+		 * @param dialTime 可以连接时间（毫秒）
+		 */
+		private PeerBackoff(PeerCandidate candidate, long dialTime) {
+			this.candidate = candidate;
+			this.dialTime = dialTime;
+		}
+		
+		@Override
+		public int compareTo(PeerBackoff target) {
+			return Long.compare(this.dialTime, target.dialTime);
+		}
+		
+	}
+	
 }
@@ -3,6 +3,7 @@ package com.acgist.snail.net.torrent.peer.bootstrap;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.util.BitSet;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -67,6 +68,10 @@ public final class PeerSubMessageHandler implements IMessageCodec<ByteBuffer> {
 	 * <p>握手超时时间：{@value}</p>
 	 */
 	public static final int HANDSHAKE_TIMEOUT = SystemConfig.CONNECT_TIMEOUT;
+	/**
+	 * <p>发送队列积压延迟读取时间（毫秒）：{@value}</p>
+	 */
+	private static final long UNWRITABLE_RECEIVE_DELAY = 200L;
 	
 	/**
 	 * <p>是否已经发送握手</p>
@@ -76,6 +81,11 @@ public final class PeerSubMessageHandler implements IMessageCodec<ByteBuffer> {
 	 * <p>是否已经处理握手</p>
 	 */
 	private volatile boolean handshakeRecv = false;
+	/**
+	 * <p>是否已经交换Piece位图</p>
+	 * <p>交换Piece位图之后才能合并发送have消息</p>
+	 */
+	private volatile boolean bitfieldExchanged = false;
 	/**
 	 * <p>是否是服务端</p>
 	 */
@@ -108,6 +118,15 @@ public final class PeerSubMessageHandler implements IMessageCodec<ByteBuffer> {
 	 * <p>DHT扩展消息代理</p>
 	 */
 	private DhtExtensionMessageHandler dhtExtensionMessageHandler;
+	/**
+	 * <p>上传请求队列</p>
+	 */
+	private final PeerUploadRequestQueue uploadRequests = new PeerUploadRequestQueue();
+	/**
+	 * <p>已经合并发送的have消息</p>
+	 * <p>have消息合并周期内随其他消息发送的Piece索引，定时发送时跳过并且清除。</p>
+	 */
+	private final BitSet piggybackHaves = new BitSet();
 	
 	/**
 	 * <p>服务端</p>
@@ -418,6 +437,7 @@ public final class PeerSubMessageHandler implements IMessageCodec<ByteBuffer> {
 		this.extension(); // 发送扩展消息：优先交换扩展
 		this.dht(); // 发送DHT消息
 		this.exchangeBitfield(); // 交换Piece位图
+		this.bitfieldExchanged = true;
 		this.unchoke(); // 解除阻塞
 	}
 
@@ -439,6 +459,8 @@ public final class PeerSubMessageHandler implements IMessageCodec<ByteBuffer> {
 		LOGGER.debug("发送阻塞消息");
 		this.peerConnectSession.amChoked();
 		this.pushMessage(PeerConfig.Type.CHOKE, null);
+		// 阻塞后丢弃上传请求
+		this.clearUploadRequests();
 	}
 
 	/**
@@ -549,10 +571,11 @@ public final class PeerSubMessageHandler implements IMessageCodec<ByteBuffer> {
 	 * <p>格式：len=0005 id=0x04 index</p>
 	 * <p>index：Piece索引</p>
 	 * <p>当客户端下载完成一个Piece时，发送have消息告诉与客户端连接的Peer已经拥有该Piece。</p>
+	 * <p>多个have消息合并一次发送，Peer已经含有的Piece不发送。</p>
 	 * 
-	 * @param index Piece索引
+	 * @param indexes Piece索引
 	 */
-	public void have(int index) {
+	public void have(int ... indexes) {
 		if(!this.torrentSession.uploadable()) {
 			LOGGER.debug("发送have消息：任务不可上传");
 			return;
@@ -561,12 +584,84 @@ public final class PeerSubMessageHandler implements IMessageCodec<ByteBuffer> {
 			LOGGER.debug("发送have消息：Peer只上传不下载");
 			return;
 		}
-		if(this.peerSession.hasPiece(index)) {
-			LOGGER.debug("发送have消息：Peer已经含有该Piece");
+		final ByteBuffer buffer;
+		synchronized (this.piggybackHaves) {
+			buffer = buildHave(this.peerSession, indexes, this.piggybackHaves, false);
+		}
+		if(buffer == null) {
+			LOGGER.debug("发送have消息：Peer已经含有所有Piece");
 			return;
 		}
-		LOGGER.debug("发送have消息：{}", index);
-		this.pushMessage(PeerConfig.Type.HAVE, NumberUtils.intToBytes(index));
+		this.sendEncrypt(buffer);
+	}
+	
+	/**
+	 * <p>获取合并发送的have消息</p>
+	 * <p>发送其他消息时合并发送等待发送的have消息：交换Piece位图之前不能发送</p>
+	 * 
+	 * @return have消息：{@code null}-没有have消息
+	 */
+	private ByteBuffer piggybackHave() {
+		if(
+			!this.bitfieldExchanged ||
+			!this.torrentSession.uploadable() ||
+			this.peerSession.uploadOnly()
+		) {
+			return null;
+		}
+		// 持有锁读取：防止和定时发送交叉导致重复发送
+		synchronized (this.piggybackHaves) {
+			final int[] indexes = PeerManager.getInstance().haves(this.torrentSession.infoHashHex());
+			if(indexes.length == 0) {
+				return null;
+			}
+			return buildHave(this.peerSession, indexes, this.piggybackHaves, true);
+		}
+	}
+	
+	/**
+	 * <p>创建have消息</p>
+	 * <p>所有have消息合并：len=0005 id=0x04 index</p>
+	 * <p>Peer已经含有的Piece（包含做种Peer）和已经合并发送的Piece不发送</p>
+	 * 
+	 * @param peerSession Peer信息
+	 * @param indexes Piece索引
+	 * @param piggybackHaves 已经合并发送的Piece索引
+	 * @param piggyback true-合并发送（记录Piece索引）；false-定时发送（清除Piece索引）；
+	 * 
+	 * @return have消息：{@code null}-没有需要发送的Piece
+	 */
+	static final ByteBuffer buildHave(PeerSession peerSession, int[] indexes, BitSet piggybackHaves, boolean piggyback) {
+		int size = 0;
+		final int[] sendIndexes = new int[indexes.length];
+		for (int index : indexes) {
+			if(piggybackHaves.get(index)) {
+				if(!piggyback) {
+					piggybackHaves.clear(index);
+				}
+				continue;
+			}
+			// Peer已经含有该Piece（包含做种Peer）
+			if(peerSession.hasPiece(index)) {
+				continue;
+			}
+			if(piggyback) {
+				piggybackHaves.set(index);
+			}
+			sendIndexes[size++] = index;
+		}
+		if(size == 0) {
+			return null;
+		}
+		LOGGER.debug("发送have消息：{}", size);
+		final ByteBuffer buffer = ByteBuffer.allocate(size * 9);
+		final byte id = PeerConfig.Type.HAVE.id();
+		for (int index = 0; index < size; index++) {
+			buffer.putInt(5);
+			buffer.put(id);
+			buffer.putInt(sendIndexes[index]);
+		}
+		return buffer;
 	}
 
 	/**
@@ -913,16 +1008,73 @@ public final class PeerSubMessageHandler implements IMessageCodec<ByteBuffer> {
 			this.rejectRequest(index, begin, length);
 			return;
 		}
+		// 发送队列积压：支持Fast扩展的Peer拒绝请求，不支持Fast扩展的Peer延迟读取后续请求（不能丢弃请求）。
+		if(!this.writable()) {
+			LOGGER.debug("处理request消息：发送队列积压");
+			if(this.peerSession.supportFastExtensionProtocol()) {
+				this.rejectRequest(index, begin, length);
+				return;
+			}
+			this.delayReceive(UNWRITABLE_RECEIVE_DELAY);
+		}
 		LOGGER.debug("处理request消息：{}-{}-{}", index, begin, length);
 		if(this.torrentSession.hasPiece(index)) {
+			this.offerUploadRequest(index, begin, length);
+		}
+	}
+	
+	/**
+	 * <p>添加上传请求</p>
+	 * <p>读取数据和上传限速可能阻塞：不能在网络线程执行，没有处理任务时使用BT任务线程池创建处理任务。</p>
+	 * <p>上传请求队列已满：拒绝请求</p>
+	 * 
+	 * @param index Piece索引
+	 * @param begin Piece内偏移
+	 * @param length 数据长度
+	 */
+	private void offerUploadRequest(int index, int begin, int length) {
+		switch (this.uploadRequests.offer(index, begin, length)) {
+		case REJECT:
+			LOGGER.debug("处理request消息：上传请求队列已满");
+			this.rejectRequest(index, begin, length);
+			break;
+		case START:
+			this.torrentSession.submit(this::uploadRequests);
+			break;
+		default:
+			break;
+		}
+	}
+	
+	/**
+	 * <p>处理上传请求队列</p>
+	 * <p>按照请求顺序读取数据发送piece消息，限速延迟发送时等待发送完成后继续处理。</p>
+	 */
+	private void uploadRequests() {
+		PeerUploadRequestQueue.UploadRequest request;
+		while((request = this.uploadRequests.poll()) != null) {
+			if(!this.available()) {
+				this.clearUploadRequests();
+				continue;
+			}
 			try {
-				final byte[] bytes = this.torrentSession.read(index, begin, length);
-				this.piece(index, begin, bytes);
+				final byte[] bytes = this.torrentSession.read(request.index, request.begin, request.length);
+				if(!this.piece(request.index, request.begin, bytes)) {
+					return;
+				}
 			} catch (NetException e) {
 				LOGGER.error("处理request消息异常", e);
 			}
 		}
 	}
+	
+	/**
+	 * <p>清空上传请求队列</p>
+	 * <p>支持Fast扩展的Peer发送拒绝请求</p>
+	 */
+	private void clearUploadRequests() {
+		this.uploadRequests.clear().forEach(request -> this.rejectRequest(request.index, request.begin, request.length));
+	}
 
 	/**
 	 * <p>发送piece消息</p>
@@ -936,23 +1088,34 @@ public final class PeerSubMessageHandler implements IMessageCodec<ByteBuffer> {
 	 * @param index Piece索引
 	 * @param begin Piece内偏移
 	 * @param bytes Piece数据 
+	 * 
+	 * @return true-继续处理上传请求队列；false-延迟发送（发送完成后继续处理上传请求队列）；
 	 */
-	private void piece(int index, int begin, byte[] bytes) {
+	private boolean piece(int index, int begin, byte[] bytes) {
 		if(!this.torrentSession.uploadable()) {
 			LOGGER.debug("发送piece消息：任务不可上传");
-			return;
+			return true;
 		}
 		if(bytes == null) {
 			LOGGER.debug("发送piece消息：数据为空");
-			return;
+			return true;
 		}
 		LOGGER.debug("发送piece消息：{}-{}", index, begin);
-		this.peerConnect.uploadMark(bytes.length);
+		final long delay = this.peerConnect.uploadMark(bytes.length);
 		final ByteBuffer buffer = ByteBuffer.allocate(8 + bytes.length);
 		buffer.putInt(index);
 		buffer.putInt(begin);
 		buffer.put(bytes);
+		if(delay > 0L) {
+			// 限速：延迟发送（不能阻塞线程），后续请求等待发送完成保证顺序。
+			this.torrentSession.timer(delay, TimeUnit.MILLISECONDS, () -> {
+				this.pushMessage(PeerConfig.Type.PIECE, buffer.array());
+				this.torrentSession.submit(this::uploadRequests);
+			});
+			return false;
+		}
 		this.pushMessage(PeerConfig.Type.PIECE, buffer.array());
+		return true;
 	}
 
 	/**
@@ -968,13 +1131,12 @@ public final class PeerSubMessageHandler implements IMessageCodec<ByteBuffer> {
 		final int index = buffer.getInt();
 		final int begin = buffer.getInt();
 		LOGGER.debug("处理piece消息：{}-{}", index, begin);
-		if(buffer.hasRemaining()) {
-			final byte[] bytes = new byte[buffer.remaining()];
-			buffer.get(bytes);
-			if(this.peerConnect != null) {
-				this.peerConnect.downloadMark(bytes.length);
-				this.peerConnect.piece(index, begin, bytes);
-			}
+		if(buffer.hasRemaining() && this.peerConnect != null) {
+			final long delay = this.peerConnect.downloadMark(buffer.remaining());
+			// 直接写入Piece：不用创建中间数组
+			this.peerConnect.piece(index, begin, buffer);
+			// 限速：延迟读取（不能阻塞线程）
+			this.delayReceive(delay);
 		}
 	}
 
@@ -1002,7 +1164,14 @@ public final class PeerSubMessageHandler implements IMessageCodec<ByteBuffer> {
 	 * @param buffer 消息
 	 */
 	private void cancel(ByteBuffer buffer) {
-		LOGGER.debug("处理cancel消息");
+		final int index = buffer.getInt();
+		final int begin = buffer.getInt();
+		final int length = buffer.getInt();
+		LOGGER.debug("处理cancel消息：{}-{}-{}", index, begin, length);
+		// 支持Fast扩展的Peer取消请求时必须响应piece消息或者拒绝请求
+		if(this.uploadRequests.cancel(index, begin, length)) {
+			this.rejectRequest(index, begin, length);
+		}
 	}
 	
 	/**
@@ -1062,12 +1231,12 @@ public final class PeerSubMessageHandler implements IMessageCodec<ByteBuffer> {
 	/**
 	 * <p>发送扩展消息：pex</p>
 	 * 
-	 * @param bytes 消息
+	 * @param exchangeLog PEX变化记录
 	 * 
-	 * @see ExtensionMessageHandler#pex(byte[])
+	 * @see ExtensionMessageHandler#pex(PeerExchangeLog)
 	 */
-	public void pex(byte[] bytes) {
-		this.extensionMessageHandler.pex(bytes);
+	public void pex(PeerExchangeLog exchangeLog) {
+		this.extensionMessageHandler.pex(exchangeLog);
 	}
 	
 	/**
@@ -1104,12 +1273,36 @@ public final class PeerSubMessageHandler implements IMessageCodec<ByteBuffer> {
 	
 	/**
 	 * <p>发送消息</p>
+	 * <p>等待发送的have消息合并到消息之前发送</p>
 	 * 
 	 * @param type 类型
 	 * @param payload 负载
 	 */
 	public void pushMessage(PeerConfig.Type type, byte[] payload) {
-		this.sendEncrypt(this.buildMessage(type, payload));
+		final ByteBuffer message = this.buildMessage(type, payload);
+		final ByteBuffer haves = this.piggybackHave();
+		if(haves == null) {
+			this.sendEncrypt(message);
+		} else {
+			this.sendEncrypt(merge(haves, message));
+		}
+	}
+	
+	/**
+	 * <p>合并消息</p>
+	 * 
+	 * @param first 第一条消息（写模式）
+	 * @param second 第二条消息（写模式）
+	 * 
+	 * @return 合并消息（写模式）
+	 */
+	static final ByteBuffer merge(ByteBuffer first, ByteBuffer second) {
+		first.flip();
+		second.flip();
+		final ByteBuffer buffer = ByteBuffer.allocate(first.remaining() + second.remaining());
+		buffer.put(first);
+		buffer.put(second);
+		return buffer;
 	}
 	
 	/**
@@ -1166,6 +1359,30 @@ public final class PeerSubMessageHandler implements IMessageCodec<ByteBuffer> {
 		return this.messageEncryptSender.available();
 	}
 	
+	/**
+	 * <p>是否可写</p>
+	 * 
+	 * @return true-可写；false-不可写；
+	 * 
+	 * @see IMessageEncryptSender#writable()
+	 */
+	public boolean writable() {
+		return this.messageEncryptSender.writable();
+	}
+	
+	/**
+	 * <p>延迟接收消息（限速）</p>
+	 * 
+	 * @param delay 等待时间（毫秒）
+	 * 
+	 * @see IMessageEncryptSender#delayReceive(long)
+	 */
+	public void delayReceive(long delay) {
+		if(delay > 0L) {
+			this.messageEncryptSender.delayReceive(delay);
+		}
+	}
+	
 	/**
 	 * <p>发送消息</p>
 	 * 
@@ -0,0 +1,153 @@
+package com.acgist.snail.net.torrent.peer.bootstrap;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+
+import com.acgist.snail.config.PeerConfig;
+
+/**
+ * <p>Peer上传请求队列</p>
+ * <p>同一个Peer的请求按照顺序读取发送：不会为每个请求创建线程，piece消息顺序和请求顺序一致。</p>
+ * <p>同一个Peer同时只有一个处理任务：添加请求时没有处理任务返回{@link Offer#START}</p>
+ * 
+ * @author acgist
+ * 
+ * @see PeerConfig#MAX_REQUEST_SIZE
+ */
+final class PeerUploadRequestQueue {
+	
+	/**
+	 * <p>添加请求结果</p>
+	 * 
+	 * @author acgist
+	 */
+	enum Offer {
+		
+		/** 队列已满：拒绝请求 */
+		REJECT,
+		/** 已经加入队列：已有处理任务 */
+		QUEUE,
+		/** 已经加入队列：需要创建处理任务 */
+		START;
+	
+	}
+	
+	/**
+	 * <p>上传请求</p>
+	 * 
+	 * @author acgist
+	 */
+	static final class UploadRequest {
+		
+		/**
+		 * <p>Piece索引</p>
+		 */
+		final int index;
+		/**
+		 * <p>Piece内偏移</p>
+		 */
+		final int begin;
+		/**
+		 * <p>数据长度</p>
+		 */
+		final int length;
+		
+		/**
+		 * @param index Piece索引
+		 * @param begin Piece内偏移
+		 * @param length 数据长度
+		 */
+		private UploadRequest(int index, int begin, int length) {
+			this.index = index;
+			this.begin = begin;
+			this.length = length;
+		}
+	
+	}
+	
+	/**
+	 * <p>上传请求</p>
+	 */
+	private final Queue<UploadRequest> requests = new LinkedList<>();
+	/**
+	 * <p>是否正在处理上传请求队列</p>
+	 */
+	private boolean requesting = false;
+	
+	/**
+	 * <p>添加上传请求</p>
+	 * 
+	 * @param index Piece索引
+	 * @param begin Piece内偏移
+	 * @param length 数据长度
+	 * 
+	 * @return 添加请求结果
+	 */
+	synchronized Offer offer(int index, int begin, int length) {
+		if(this.requests.size() >= PeerConfig.MAX_REQUEST_SIZE) {
+			return Offer.REJECT;
+		}
+		this.requests.offer(new UploadRequest(index, begin, length));
+		if(this.requesting) {
+			return Offer.QUEUE;
+		}
+		this.requesting = true;
+		return Offer.START;
+	}
+	
+	/**
+	 * <p>获取上传请求</p>
+	 * <p>没有上传请求时结束处理任务</p>
+	 * 
+	 * @return 上传请求：{@code null}-没有上传请求（处理任务结束）
+	 */
+	synchronized UploadRequest poll() {
+		final UploadRequest request = this.requests.poll();
+		if(request == null) {
+			this.requesting = false;
+		}
+		return request;
+	}
+	
+	/**
+	 * <p>取消上传请求</p>
+	 * 
+	 * @param index Piece索引
+	 * @param begin Piece内偏移
+	 * @param length 数据长度
+	 * 
+	 * @return 是否删除请求
+	 */
+	synchronized boolean cancel(int index, int begin, int length) {
+		return this.requests.removeIf(request ->
+			request.index == index &&
+			request.begin == begin &&
+			request.length == length
+		);
+	}
+	
+	/**
+	 * <p>清空上传请求</p>
+	 * 
+	 * @return 删除的上传请求
+	 */
+	synchronized List<UploadRequest> clear() {
+		if(this.requests.isEmpty()) {
+			return List.of();
+		}
+		final List<UploadRequest> list = List.copyOf(this.requests);
+		this.requests.clear();
+		return list;
+	}
+	
+	/**
+	 * <p>获取上传请求数量</p>
+	 * 
+	 * @return 上传请求数量
+	 */
+	synchronized int size() {
+		return this.requests.size();
+	}
+	
+}
@@ -17,6 +17,8 @@ import com.acgist.snail.context.exception.PacketSizeException;
 import com.acgist.snail.format.BEncodeDecoder;
 import com.acgist.snail.format.BEncodeEncoder;
 import com.acgist.snail.net.torrent.peer.bootstrap.IExtensionMessageHandler;
+import com.acgist.snail.net.torrent.peer.bootstrap.PeerExchangeLog;
+import com.acgist.snail.net.torrent.peer.bootstrap.PeerManager;
 import com.acgist.snail.net.torrent.peer.bootstrap.PeerSubMessageHandler;
 import com.acgist.snail.pojo.bean.InfoHash;
 import com.acgist.snail.pojo.session.PeerSession;
@@ -53,7 +55,7 @@ public final class ExtensionMessageHandler implements IExtensionMessageHandler {
 	/**
 	 * <p>默认支持未完成请求数量：{@value}</p>
 	 */
-	private static final int DEFAULT_REQQ = 128;
+	private static final int DEFAULT_REQQ = PeerConfig.MAX_REQUEST_SIZE;
 	/**
 	 * <p>扩展协议信息：{@value}</p>
 	 */
@@ -277,7 +279,7 @@ public final class ExtensionMessageHandler implements IExtensionMessageHandler {
 		if(port != null) {
 			final Integer oldPort = this.peerSession.port();
 			if(oldPort == null) {
-				this.peerSession.port(port.intValue());
+				PeerManager.getInstance().port(this.torrentSession.infoHashHex(), this.peerSession, port.intValue());
 			} else if(oldPort.intValue() != port.intValue()) {
 				LOGGER.debug("处理扩展消息-握手（端口不一致）：{}-{}", oldPort, port);
 			}
@@ -328,13 +330,13 @@ public final class ExtensionMessageHandler implements IExtensionMessageHandler {
 	/**
 	 * <p>发送pex消息</p>
 	 * 
-	 * @param bytes 消息
+	 * @param exchangeLog PEX变化记录
 	 * 
-	 * @see PeerExchangeMessageHandler#pex(byte[])
+	 * @see PeerExchangeMessageHandler#pex(PeerExchangeLog)
 	 */
-	public void pex(byte[] bytes) {
+	public void pex(PeerExchangeLog exchangeLog) {
 		if(this.peerExchangeMessageHandler.supportExtensionType()) {
-			this.peerExchangeMessageHandler.pex(bytes);
+			this.peerExchangeMessageHandler.pex(exchangeLog);
 		}
 	}
 	
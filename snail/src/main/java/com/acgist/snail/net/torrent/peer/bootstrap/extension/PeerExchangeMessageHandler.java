@@ -1,7 +1,9 @@
 package com.acgist.snail.net.torrent.peer.bootstrap.extension;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -17,10 +19,10 @@ import com.acgist.snail.context.exception.PacketSizeException;
 import com.acgist.snail.format.BEncodeDecoder;
 import com.acgist.snail.format.BEncodeEncoder;
 import com.acgist.snail.net.torrent.peer.bootstrap.ExtensionTypeMessageHandler;
+import com.acgist.snail.net.torrent.peer.bootstrap.PeerExchangeLog;
 import com.acgist.snail.net.torrent.peer.bootstrap.PeerManager;
 import com.acgist.snail.pojo.session.PeerSession;
 import com.acgist.snail.pojo.session.TorrentSession;
-import com.acgist.snail.utils.CollectionUtils;
 import com.acgist.snail.utils.MapUtils;
 import com.acgist.snail.utils.NetUtils;
 import com.acgist.snail.utils.PeerUtils;
@@ -28,8 +30,7 @@ import com.acgist.snail.utils.PeerUtils;
 /**
  * <p>Peer Exchange (PEX)</p>
  * <p>协议链接：http://www.bittorrent.org/beps/bep_0011.html</p>
- * 
- * TODO：IPv6
+ * <p>每个连接记录已经发送的Peer和{@linkplain PeerExchangeLog 变化记录}序号，每次只发送新增和删除的Peer。</p>
  * 
  * @author acgist
  */
@@ -37,6 +38,12 @@ public final class PeerExchangeMessageHandler extends ExtensionTypeMessageHandle
 	
 	private static final Logger LOGGER = LoggerFactory.getLogger(PeerExchangeMessageHandler.class);
 	
+	/**
+	 * <p>单次消息新增（删除）Peer最大数量：{@value}</p>
+	 * <p>超过最大数量的Peer下次发送</p>
+	 */
+	private static final int MAX_PEX_SIZE = 50;
+	
 	//================IPv4================//
 	/**
 	 * <p>地址：{@value}</p>
@@ -69,6 +76,16 @@ public final class PeerExchangeMessageHandler extends ExtensionTypeMessageHandle
 	 * <p>BT任务信息</p>
 	 */
 	private final TorrentSession torrentSession;
+	/**
+	 * <p>已经发送的Peer</p>
+	 * <p>地址:端口=Peer</p>
+	 */
+	private final Map<String, PeerSession> exchangePeers;
+	/**
+	 * <p>已经发送的变化记录序号</p>
+	 * <p>小于零：需要全量同步</p>
+	 */
+	private long sequence;
 	
 	/**
 	 * @param peerSession Peer信息
@@ -78,6 +95,8 @@ public final class PeerExchangeMessageHandler extends ExtensionTypeMessageHandle
 	private PeerExchangeMessageHandler(PeerSession peerSession, TorrentSession torrentSession, ExtensionMessageHandler extensionMessageHandler) {
 		super(ExtensionType.UT_PEX, peerSession, extensionMessageHandler);
 		this.torrentSession = torrentSession;
+		this.exchangePeers = new HashMap<>();
+		this.sequence = -1L;
 	}
 	
 	/**
@@ -100,22 +119,98 @@ public final class PeerExchangeMessageHandler extends ExtensionTypeMessageHandle
 	
 	/**
 	 * <p>发送消息：pex</p>
+	 * <p>读取已经发送序号之后的变化记录，只发送新增和删除的Peer。</p>
+	 * <p>变化记录已经删除或者没有发送过消息时全量同步</p>
 	 * 
-	 * @param bytes 消息
+	 * @param exchangeLog PEX变化记录
 	 */
-	public void pex(byte[] bytes) {
-		LOGGER.debug("发送pex消息");
-		this.pushMessage(bytes);
+	public void pex(PeerExchangeLog exchangeLog) {
+		final Map<String, PeerSession> added = new LinkedHashMap<>();
+		final Map<String, PeerSession> dropped = new LinkedHashMap<>();
+		synchronized (this.exchangePeers) {
+			final List<PeerExchangeLog.Change> changes = this.sequence < 0 ? null : exchangeLog.changes(this.sequence);
+			if(changes == null) {
+				this.sync(exchangeLog, added, dropped);
+			} else {
+				for (PeerExchangeLog.Change change : changes) {
+					if(added.size() >= MAX_PEX_SIZE || dropped.size() >= MAX_PEX_SIZE) {
+						break;
+					}
+					this.sequence = change.sequence();
+					if(change.peerSession() == this.peerSession) {
+						// 不发送Peer自己
+						continue;
+					}
+					final String key = change.key();
+					if(change.added()) {
+						if(this.exchangePeers.putIfAbsent(key, change.peerSession()) == null && dropped.remove(key) == null) {
+							added.put(key, change.peerSession());
+						}
+					} else {
+						if(this.exchangePeers.remove(key) != null && added.remove(key) == null) {
+							dropped.put(key, change.peerSession());
+						}
+					}
+				}
+			}
+		}
+		if(added.isEmpty() && dropped.isEmpty()) {
+			LOGGER.debug("发送pex消息：没有变化");
+			return;
+		}
+		LOGGER.debug("发送pex消息：{}-{}", added.size(), dropped.size());
+		this.pushMessage(buildMessage(new ArrayList<>(added.values()), new ArrayList<>(dropped.values())));
+	}
+	
+	/**
+	 * <p>全量同步</p>
+	 * <p>对比当前优质Peer和已经发送的Peer，超过单次消息最大数量时下次继续全量同步。</p>
+	 * 
+	 * @param exchangeLog PEX变化记录
+	 * @param added 新增Peer
+	 * @param dropped 删除Peer
+	 */
+	private void sync(PeerExchangeLog exchangeLog, Map<String, PeerSession> added, Map<String, PeerSession> dropped) {
+		final long sequence;
+		final Map<String, PeerSession> peers;
+		synchronized (exchangeLog) {
+			sequence = exchangeLog.sequence();
+			peers = exchangeLog.peers();
+		}
+		peers.values().removeIf(session -> session == this.peerSession);
+		for (var entry : peers.entrySet()) {
+			if(added.size() >= MAX_PEX_SIZE) {
+				break;
+			}
+			if(!this.exchangePeers.containsKey(entry.getKey())) {
+				added.put(entry.getKey(), entry.getValue());
+			}
+		}
+		for (var entry : this.exchangePeers.entrySet()) {
+			if(dropped.size() >= MAX_PEX_SIZE) {
+				break;
+			}
+			if(!peers.containsKey(entry.getKey())) {
+				dropped.put(entry.getKey(), entry.getValue());
+			}
+		}
+		this.exchangePeers.putAll(added);
+		dropped.keySet().forEach(this.exchangePeers::remove);
+		if(added.size() >= MAX_PEX_SIZE || dropped.size() >= MAX_PEX_SIZE) {
+			// 没有同步完成
+			this.sequence = -1L;
+		} else {
+			this.sequence = sequence;
+		}
 	}
 	
 	/**
 	 * <p>处理消息：pex</p>
+	 * <p>删除的Peer没有连接时降低优先级</p>
 	 * 
 	 * @param buffer 消息
 	 * 
 	 * @throws PacketSizeException 网络包异常
-	 * 
-	 * TODO：IPv6
 	 */
 	private void pex(ByteBuffer buffer) throws PacketSizeException {
 		LOGGER.debug("处理pex消息");
@@ -125,59 +220,127 @@ public final class PeerExchangeMessageHandler extends ExtensionTypeMessageHandle
 			LOGGER.warn("处理pex消息错误（格式）：{}", decoder.oddString());
 			return;
 		}
-		final byte[] added = decoder.getBytes(ADDED);
-		final byte[] addedf = decoder.getBytes(ADDEDF);
-		final var peers = PeerUtils.read(added);
-		if(MapUtils.isNotEmpty(peers)) {
-			final AtomicInteger index = new AtomicInteger(0);
-			peers.forEach((host, port) -> {
-				final PeerSession peerSession = PeerManager.getInstance().newPeerSession(
-					this.torrentSession.infoHashHex(),
-					this.torrentSession.statistics(),
-					host,
-					port,
-					PeerConfig.Source.PEX
-				);
-				if(addedf != null && addedf.length > index.get()) {
-					peerSession.flags(addedf[index.getAndIncrement()]);
-				}
-				peerSession.pexSource(this.peerSession); // 设置Pex来源
-			});
+		this.added(PeerUtils.read(decoder.getBytes(ADDED)), decoder.getBytes(ADDEDF));
+		this.added(PeerUtils.readIPv6(decoder.getBytes(ADDED6)), decoder.getBytes(ADDED6F));
+		this.dropped(PeerUtils.read(decoder.getBytes(DROPPED)));
+		this.dropped(PeerUtils.readIPv6(decoder.getBytes(DROPPED6)));
+	}
+	
+	/**
+	 * <p>处理新增Peer</p>
+	 * 
+	 * @param peers 新增Peer
+	 * @param flags Peer属性
+	 */
+	private void added(Map<String, Integer> peers, byte[] flags) {
+		if(MapUtils.isEmpty(peers)) {
+			return;
 		}
+		final AtomicInteger index = new AtomicInteger(0);
+		peers.forEach((host, port) -> {
+			final PeerSession peerSession = PeerManager.getInstance().newPeerSession(
+				this.torrentSession.infoHashHex(),
+				this.torrentSession.statistics(),
+				host,
+				port,
+				PeerConfig.Source.PEX
+			);
+			if(flags != null && flags.length > index.get()) {
+				peerSession.flags(flags[index.getAndIncrement()]);
+			}
+			peerSession.pexSource(this.peerSession); // 设置Pex来源
+		});
+	}
+	
+	/**
+	 * <p>处理删除Peer</p>
+	 * 
+	 * @param peers 删除Peer
+	 */
+	private void dropped(Map<String, Integer> peers) {
+		if(MapUtils.isEmpty(peers)) {
+			return;
+		}
+		final String infoHashHex = this.torrentSession.infoHashHex();
+		peers.forEach((host, port) -> {
+			final PeerSession peerSession = PeerManager.getInstance().findPeerSession(infoHashHex, host, port);
+			if(peerSession != null && !peerSession.connected()) {
+				PeerManager.getInstance().inferior(infoHashHex, peerSession);
+			}
+		});
 	}
 	
 	/**
 	 * <p>创建pex消息</p>
 	 * 
-	 * @param optimize 优质Peer列表
+	 * @param added 新增Peer
+	 * @param dropped 删除Peer
 	 * 
 	 * @return 消息
-	 * 
-	 * TODO：IPv6
 	 */
-	public static final byte[] buildMessage(List<PeerSession> optimize) {
-		if(CollectionUtils.isEmpty(optimize)) {
-			return null;
-		}
-		final int length = SystemConfig.IP_PORT_LENGTH * optimize.size();
-		final ByteBuffer addedBuffer = ByteBuffer.allocate(length);
-		final ByteBuffer addedfBuffer = ByteBuffer.allocate(optimize.size());
-		optimize.stream()
-			.distinct()
-			.forEach(session -> {
-				addedBuffer.putInt(NetUtils.ipToInt(session.host()));
-				addedBuffer.putShort(NetUtils.portToShort(session.port()));
-				addedfBuffer.put(session.flags());
-			});
+	public static final byte[] buildMessage(List<PeerSession> added, List<PeerSession> dropped) {
+		final List<PeerSession> added4 = new ArrayList<>();
+		final List<PeerSession> added6 = new ArrayList<>();
+		final List<PeerSession> dropped4 = new ArrayList<>();
+		final List<PeerSession> dropped6 = new ArrayList<>();
+		added.forEach(session -> (ipv6(session) ? added6 : added4).add(session));
+		dropped.forEach(session -> (ipv6(session) ? dropped6 : dropped4).add(session));
 		final Map<String, Object> data = new HashMap<>(9);
-		final byte[] emptyBytes = new byte[0];
-		data.put(ADDED, addedBuffer.array());
-		data.put(ADDEDF, addedfBuffer.array());
-		data.put(DROPPED, emptyBytes);
-		data.put(ADDED6, emptyBytes);
-		data.put(ADDED6F, emptyBytes);
-		data.put(DROPPED6, emptyBytes);
+		data.put(ADDED, buildAddress(added4, false));
+		data.put(ADDEDF, buildFlags(added4));
+		data.put(DROPPED, buildAddress(dropped4, false));
+		data.put(ADDED6, buildAddress(added6, true));
+		data.put(ADDED6F, buildFlags(added6));
+		data.put(DROPPED6, buildAddress(dropped6, true));
 		return BEncodeEncoder.encodeMap(data);
 	}
+	
+	/**
+	 * <p>创建地址数据</p>
+	 * 
+	 * @param peers Peer列表
+	 * @param ipv6 是否是IPv6
+	 * 
+	 * @return 地址数据
+	 */
+	private static final byte[] buildAddress(List<PeerSession> peers, boolean ipv6) {
+		final int length = ipv6 ? SystemConfig.IPV6_PORT_LENGTH : SystemConfig.IP_PORT_LENGTH;
+		final ByteBuffer buffer = ByteBuffer.allocate(length * peers.size());
+		peers.forEach(session -> {
+			if(ipv6) {
+				buffer.put(NetUtils.bytesToIP(session.host()));
+			} else {
+				buffer.putInt(NetUtils.ipToInt(session.host()));
+			}
+			buffer.putShort(NetUtils.portToShort(session.port()));
+		});
+		return buffer.array();
+	}
+	
+	/**
+	 * <p>创建属性数据</p>
+	 * 
+	 * @param peers Peer列表
+	 * 
+	 * @return 属性数据
+	 */
+	private static final byte[] buildFlags(List<PeerSession> peers) {
+		final byte[] flags = new byte[peers.size()];
+		for (int index = 0; index < flags.length; index++) {
+			flags[index] = peers.get(index).flags();
+		}
+		return flags;
+	}
+	
+	/**
+	 * <p>判断是否是IPv6地址</p>
+	 * 
+	 * @param peerSession Peer信息
+	 * 
+	 * @return 是否是IPv6地址
+	 */
+	private static final boolean ipv6(PeerSession peerSession) {
+		return peerSession.host().indexOf(':') >= 0;
+	}
 
 }
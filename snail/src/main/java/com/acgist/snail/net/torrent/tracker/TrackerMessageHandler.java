@@ -7,6 +7,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.acgist.snail.config.TrackerConfig.Action;
+import com.acgist.snail.context.BandwidthContext;
 import com.acgist.snail.net.UdpMessageHandler;
 import com.acgist.snail.net.torrent.tracker.bootstrap.TrackerManager;
 import com.acgist.snail.pojo.message.AnnounceMessage;
@@ -39,9 +40,15 @@ public final class TrackerMessageHandler extends UdpMessageHandler {
 	 */
 	private static final int ERROR_MIN_LENGTH = 4;
 	
+	public TrackerMessageHandler() {
+		// 控制流量
+		this.statistics = BandwidthContext.getInstance().controlStatistics();
+	}
+	
 	@Override
 	public void onReceive(ByteBuffer buffer, InetSocketAddress socketAddress) {
 		buffer.flip();
+		this.receive(buffer);
 		final int id = buffer.getInt();
 		final var action = Action.of(id);
 		if(action == null) {
@@ -1,5 +1,7 @@
 package com.acgist.snail.net.torrent.utp;
 
+import java.util.concurrent.CompletableFuture;
+
 import com.acgist.snail.net.UdpClient;
 import com.acgist.snail.net.torrent.TorrentServer;
 import com.acgist.snail.net.torrent.peer.bootstrap.PeerSubMessageHandler;
@@ -56,7 +58,16 @@ public final class UtpClient extends UdpClient<UtpMessageHandler> {
 	public boolean connect() {
 		return this.handler.connect();
 	}
-
+	
+	/**
+	 * <p>异步连接</p>
+	 * 
+	 * @return 连接状态
+	 */
+	public CompletableFuture<Boolean> connectAsync() {
+		return this.handler.connectAsync();
+	}
+	
 	/**
 	 * <p>获取Peer信息</p>
 	 * 
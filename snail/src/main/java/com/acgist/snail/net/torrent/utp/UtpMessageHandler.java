@@ -1,9 +1,13 @@
 package com.acgist.snail.net.torrent.utp;
 
-import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -12,12 +16,14 @@ import org.slf4j.LoggerFactory;
 
 import com.acgist.snail.config.SystemConfig;
 import com.acgist.snail.config.UtpConfig;
+import com.acgist.snail.context.SystemThreadContext;
 import com.acgist.snail.context.exception.NetException;
 import com.acgist.snail.net.UdpMessageHandler;
 import com.acgist.snail.net.codec.impl.PeerCryptMessageCodec;
 import com.acgist.snail.net.codec.impl.PeerUnpackMessageCodec;
 import com.acgist.snail.net.torrent.IMessageEncryptSender;
 import com.acgist.snail.net.torrent.peer.bootstrap.PeerSubMessageHandler;
+import com.acgist.snail.net.torrent.utp.bootstrap.UtpMtu;
 import com.acgist.snail.net.torrent.utp.bootstrap.UtpService;
 import com.acgist.snail.net.torrent.utp.bootstrap.UtpWindow;
 import com.acgist.snail.net.torrent.utp.bootstrap.UtpWindowData;
@@ -43,6 +49,7 @@ import com.acgist.snail.utils.DateUtils;
  * | seq_nr                        | ack_nr                        |
  * +---------------+---------------+---------------+---------------+
  * </pre>
+ * <p>丢包处理：选择确认（Selective ACK）、三次重复响应快速重传、超时重传（根据RTT计算超时时间，每个连接一个定时任务）。</p>
  * 
  * @author acgist
  */
@@ -62,6 +69,15 @@ public final class UtpMessageHandler extends UdpMessageHandler implements IMessa
 	 * <p>UTP扩展消息最小长度：{@value}</p>
 	 */
 	private static final int UTP_EXT_MIN_LENGTH = 2;
+	/**
+	 * <p>UTP扩展消息头长度：{@value}</p>
+	 */
+	private static final int UTP_EXT_HEADER_LENGTH = 2;
+	/**
+	 * <p>发送队列高水位（字节）：{@value}</p>
+	 * <p>发送队列数据大小超过高水位时{@linkplain #writable() 不可写}</p>
+	 */
+	private static final int SEND_HIGH_WATER_MARK = 64 * UtpConfig.UTP_PACKET_MAX_LENGTH;
 	
 	/**
 	 * <p>是否连接</p>
@@ -96,6 +112,67 @@ public final class UtpMessageHandler extends UdpMessageHandler implements IMessa
 	 * <p>连接锁</p>
 	 */
 	private final AtomicBoolean connectLock;
+	/**
+	 * <p>是否半连接</p>
+	 * <p>服务端收到握手消息但是没有收到数据消息</p>
+	 */
+	private final AtomicBoolean halfOpen;
+	/**
+	 * <p>创建时间</p>
+	 */
+	private final long createTime;
+	/**
+	 * <p>数据包大小探测</p>
+	 */
+	private final UtpMtu mtu;
+	/**
+	 * <p>合并消息缓存</p>
+	 * <p>发送小消息时如果存在未确认数据：等待合并发送</p>
+	 */
+	private final ByteBuffer coalesceBuffer;
+	/**
+	 * <p>是否含有合并消息</p>
+	 */
+	private volatile boolean coalescing;
+	/**
+	 * <p>合并消息定时任务</p>
+	 */
+	private ScheduledFuture<?> coalesceTimer;
+	/**
+	 * <p>发送队列</p>
+	 * <p>发送窗口已满时数据包放入发送队列，收到响应后按照顺序发送，发送线程不会等待发送窗口。</p>
+	 */
+	private final Deque<byte[]> sendQueue;
+	/**
+	 * <p>发送队列数据大小</p>
+	 */
+	private int sendQueueSize;
+	/**
+	 * <p>超时重传定时任务锁</p>
+	 */
+	private final Object retryLock;
+	/**
+	 * <p>超时重传定时任务</p>
+	 */
+	private ScheduledFuture<?> retryTimer;
+	/**
+	 * <p>延迟接收结束时间（毫秒）</p>
+	 * <p>限速：延迟接收结束之前通告接收窗口大小为零，远程停止发送数据。</p>
+	 */
+	private volatile long receiveDelayTime;
+	/**
+	 * <p>延迟接收定时任务锁</p>
+	 */
+	private final Object receiveDelayLock;
+	/**
+	 * <p>延迟接收定时任务：延迟接收结束时发送窗口更新</p>
+	 */
+	private ScheduledFuture<?> receiveDelayTimer;
+	/**
+	 * <p>异步连接结果</p>
+	 * <p>每次异步连接创建新的连接结果</p>
+	 */
+	private volatile CompletableFuture<Boolean> connectFuture;
 	/**
 	 * <p>Peer消息代理</p>
 	 */
@@ -143,10 +220,18 @@ public final class UtpMessageHandler extends UdpMessageHandler implements IMessa
 		this.recvWindow = UtpWindow.newRecvInstance(this.messageCodec);
 		this.ackLossTimes = new AtomicInteger(0);
 		this.connectLock = new AtomicBoolean(false);
+		this.halfOpen = new AtomicBoolean(server);
+		this.createTime = System.currentTimeMillis();
+		this.mtu = UtpMtu.newInstance();
+		this.coalesceBuffer = ByteBuffer.allocate(UtpConfig.UTP_PACKET_MAX_LENGTH);
+		this.sendQueue = new ArrayDeque<>();
+		this.retryLock = new Object();
+		this.receiveDelayLock = new Object();
 		this.socketAddress = socketAddress;
 		if(server) { // 服务端
 			this.sendId = connectionId;
 			this.recvId = (short) (this.sendId + 1);
+			this.utpService.acquireHalfOpen();
 		} else { // 客户端
 			this.recvId = this.utpService.connectionId();
 			this.sendId = (short) (this.recvId + 1);
@@ -159,10 +244,19 @@ public final class UtpMessageHandler extends UdpMessageHandler implements IMessa
 	 * 
 	 * @return key
 	 */
-	public String key() {
+	public long key() {
 		return this.utpService.buildKey(this.recvId, this.socketAddress);
 	}
 	
+	/**
+	 * <p>判断是否半连接超时</p>
+	 * 
+	 * @return 是否半连接超时
+	 */
+	public boolean halfOpenTimeout() {
+		return this.halfOpen.get() && System.currentTimeMillis() - this.createTime > SystemConfig.CONNECT_TIMEOUT_MILLIS;
+	}
+	
 	@Override
 	public void onReceive(ByteBuffer buffer, InetSocketAddress socketAddress) throws NetException {
 		buffer.flip();
@@ -181,21 +275,31 @@ public final class UtpMessageHandler extends UdpMessageHandler implements IMessa
 		final int wndSize = buffer.getInt(); // 窗口大小
 		final short seqnr = buffer.getShort(); // 请求编号
 		final short acknr = buffer.getShort(); // 响应编号
-		if(extension != 0 && buffer.remaining() >= UTP_EXT_MIN_LENGTH) { // 扩展数据
-			final short extLength = buffer.getShort();
-			if(extLength <= 0 || buffer.remaining() < extLength) {
+		// 扩展数据：next_extension(1) len(1) data(len)
+		byte[] sack = null;
+		byte extType = extension;
+		while(extType != 0) {
+			if(buffer.remaining() < UTP_EXT_MIN_LENGTH) {
+				throw new NetException("处理UTP消息错误（扩展长度）：" + buffer.remaining());
+			}
+			final byte nextExtType = buffer.get();
+			final int extLength = buffer.get() & 0xFF;
+			if(buffer.remaining() < extLength) {
 				throw new NetException("处理UTP消息错误（扩展长度）：" + extLength);
 			}
-			// 扩展信息
 			final byte[] extData = new byte[extLength];
 			buffer.get(extData);
+			if(extType == UtpConfig.EXTENSION_SACK) {
+				sack = extData;
+			}
+			extType = nextExtType;
 		}
 		switch (type) {
 		case DATA:
-			this.data(timestamp, seqnr, acknr, buffer);
+			this.data(timestamp, timestampDifference, seqnr, acknr, wndSize, buffer);
 			break;
 		case STATE:
-			this.state(timestamp, seqnr, acknr, wndSize);
+			this.state(timestamp, timestampDifference, seqnr, acknr, wndSize, sack);
 			break;
 		case FIN:
 			this.fin(timestamp, seqnr, acknr);
@@ -221,14 +325,93 @@ public final class UtpMessageHandler extends UdpMessageHandler implements IMessa
 		this.sendPacket(buffer);
 	}
 	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>UTP不能延迟读取：延迟接收期间通告接收窗口大小为零，延迟接收结束时发送窗口更新。</p>
+	 * <p>多次设置使用最大等待时间</p>
+	 */
+	@Override
+	public void delayReceive(long delay) {
+		if(delay <= 0L) {
+			return;
+		}
+		final long receiveDelayTime = System.currentTimeMillis() + delay;
+		synchronized (this.receiveDelayLock) {
+			if(receiveDelayTime <= this.receiveDelayTime) {
+				return;
+			}
+			this.receiveDelayTime = receiveDelayTime;
+			SystemThreadContext.shutdown(this.receiveDelayTimer);
+			this.receiveDelayTimer = SystemThreadContext.timer(delay, TimeUnit.MILLISECONDS, this::windowUpdate);
+		}
+	}
+	
+	/**
+	 * <p>发送窗口更新</p>
+	 * <p>延迟接收结束：重新通告接收窗口大小，远程继续发送数据。</p>
+	 */
+	private void windowUpdate() {
+		synchronized (this.receiveDelayLock) {
+			this.receiveDelayTimer = null;
+		}
+		if(this.connect && this.available()) {
+			LOGGER.debug("发送窗口更新：{}", this.socketAddress);
+			this.state(this.recvWindow.timestamp(), this.recvWindow.seqnr());
+		}
+	}
+	
+	/**
+	 * <p>取消延迟接收定时任务</p>
+	 */
+	private void cancelReceiveDelayTimer() {
+		synchronized (this.receiveDelayLock) {
+			SystemThreadContext.shutdown(this.receiveDelayTimer);
+			this.receiveDelayTimer = null;
+		}
+	}
+	
+	/**
+	 * <p>获取通告接收窗口大小</p>
+	 * <p>延迟接收（限速）期间返回零</p>
+	 * 
+	 * @return 通告接收窗口大小
+	 */
+	private int wndSize() {
+		if(System.currentTimeMillis() < this.receiveDelayTime) {
+			return 0;
+		}
+		return this.recvWindow.wndSize();
+	}
+	
+	/**
+	 * <p>判断是否可写</p>
+	 * <p>发送队列数据大小没有超过高水位</p>
+	 * 
+	 * @return true-可写；false-不可写；
+	 */
+	@Override
+	public boolean writable() {
+		synchronized (this.sendQueue) {
+			return this.sendQueueSize < SEND_HIGH_WATER_MARK;
+		}
+	}
+	
 	@Override
 	public void sendEncrypt(ByteBuffer buffer, int timeout) throws NetException {
-		this.peerCryptMessageCodec.encode(buffer);
-		this.sendPacket(buffer);
+		// 流加密：加密顺序必须和发送顺序一致
+		synchronized (this.peerCryptMessageCodec) {
+			// 加密握手没有完成：消息等待握手完成后发送
+			if(this.peerCryptMessageCodec.encode(buffer) != null) {
+				this.sendPacket(buffer);
+			}
+		}
 	}
 
 	/**
-	 * <p>UDP拆包</p>
+	 * <p>UDP拆包、合并</p>
+	 * <p>数据包大小使用{@linkplain UtpMtu 探测大小}</p>
+	 * <p>不足一个数据包的消息：没有未确认数据时直接发送，否者等待合并发送（最多等待{@value UtpConfig#COALESCE_DELAY}毫秒）。</p>
 	 * 
 	 * @param buffer 消息
 	 * 
@@ -236,17 +419,108 @@ public final class UtpMessageHandler extends UdpMessageHandler implements IMessa
 	 */
 	private void sendPacket(ByteBuffer buffer) throws NetException {
 		this.check(buffer);
-		byte[] bytes;
-		int remaining;
-		while((remaining = buffer.remaining()) > 0) { // UDP拆包
-			if(remaining > UtpConfig.UTP_PACKET_MAX_LENGTH) {
-				bytes = new byte[UtpConfig.UTP_PACKET_MAX_LENGTH];
-			} else {
-				bytes = new byte[remaining];
+		synchronized (this.coalesceBuffer) {
+			int total;
+			int length;
+			int pending;
+			while(buffer.hasRemaining()) { // UDP拆包
+				pending = this.coalesceBuffer.position();
+				total = pending + buffer.remaining();
+				length = this.mtu.length(total);
+				if(length == total && this.sendWindow.hasUnack()) {
+					// 不足一个数据包：等待合并
+					if(total < this.mtu.length(Integer.MAX_VALUE)) {
+						this.coalesceBuffer.put(buffer);
+						this.coalescing = true;
+						this.coalesceTimer();
+						break;
+					}
+				}
+				this.packet(buffer, Math.max(length, pending));
 			}
-			buffer.get(bytes);
-			final UtpWindowData windowData = this.sendWindow.build(bytes);
-			this.data(windowData);
+		}
+	}
+	
+	/**
+	 * <p>发送合并消息</p>
+	 */
+	private void flush() {
+		synchronized (this.coalesceBuffer) {
+			this.cancelCoalesceTimer();
+			if(this.coalesceBuffer.position() > 0) {
+				this.packet(null, this.coalesceBuffer.position());
+			}
+		}
+		this.drain();
+	}
+	
+	/**
+	 * <p>发送数据包</p>
+	 * <p>合并消息缓存数据 + 消息数据</p>
+	 * <p>数据包放入发送队列：发送窗口已满时等待响应</p>
+	 * <p>调用时必须持有合并消息缓存锁</p>
+	 * 
+	 * @param buffer 消息
+	 * @param length 数据包大小
+	 */
+	private void packet(ByteBuffer buffer, int length) {
+		final byte[] bytes = new byte[length];
+		final int pending = this.coalesceBuffer.position();
+		if(pending > 0) {
+			this.coalesceBuffer.flip();
+			this.coalesceBuffer.get(bytes, 0, pending);
+			this.coalesceBuffer.clear();
+			this.coalescing = false;
+		}
+		if(length > pending) {
+			buffer.get(bytes, pending, length - pending);
+		}
+		synchronized (this.sendQueue) {
+			this.sendQueue.offer(bytes);
+			this.sendQueueSize += length;
+			this.drain();
+		}
+	}
+	
+	/**
+	 * <p>发送队列数据包</p>
+	 * <p>按照顺序发送数据包直到发送窗口已满</p>
+	 */
+	private void drain() {
+		synchronized (this.sendQueue) {
+			byte[] bytes;
+			while((bytes = this.sendQueue.peek()) != null && this.sendWindow.sendable(bytes.length)) {
+				this.sendQueue.poll();
+				this.sendQueueSize -= bytes.length;
+				final UtpWindowData windowData = this.sendWindow.build(bytes);
+				this.mtu.send(windowData.getSeqnr(), bytes.length);
+				this.data(windowData);
+			}
+		}
+	}
+	
+	/**
+	 * <p>设置合并消息定时任务</p>
+	 * <p>定时任务线程不能阻塞：异步发送</p>
+	 */
+	private void coalesceTimer() {
+		if(this.coalesceTimer != null && !this.coalesceTimer.isDone()) {
+			return;
+		}
+		this.coalesceTimer = SystemThreadContext.timer(
+			UtpConfig.COALESCE_DELAY,
+			TimeUnit.MILLISECONDS,
+			() -> SystemThreadContext.submit(this::flush)
+		);
+	}
+	
+	/**
+	 * <p>取消合并消息定时任务</p>
+	 */
+	private void cancelCoalesceTimer() {
+		if(this.coalesceTimer != null) {
+			SystemThreadContext.shutdown(this.coalesceTimer);
+			this.coalesceTimer = null;
 		}
 	}
 	
@@ -267,14 +541,102 @@ public final class UtpMessageHandler extends UdpMessageHandler implements IMessa
 		return this.connect;
 	}
 	
+	/**
+	 * <p>异步连接</p>
+	 * <p>发送握手消息后直接返回，收到响应或者超时后设置连接结果。</p>
+	 * <p>连接失败、超时或者取消（{@link CompletableFuture#cancel(boolean)}）时移除消息代理</p>
+	 * <p>正在连接时返回当前连接结果，已经连接时直接返回成功，上次连接失败时重新连接。</p>
+	 * 
+	 * @return 连接结果
+	 */
+	public CompletableFuture<Boolean> connectAsync() {
+		final CompletableFuture<Boolean> future;
+		synchronized (this.connectLock) {
+			if(this.connectFuture != null && !this.connectFuture.isDone()) {
+				return this.connectFuture;
+			}
+			if(this.connect && this.available()) {
+				return CompletableFuture.completedFuture(true);
+			}
+			if(this.close) {
+				// 上次连接失败：重新添加消息代理
+				this.close = false;
+				this.utpService.put(this);
+			}
+			this.connect = false;
+			this.connectLock.set(false);
+			future = new CompletableFuture<>();
+			this.connectFuture = future;
+		}
+		final ScheduledFuture<?> timeout = SystemThreadContext.timer(
+			SystemConfig.CONNECT_TIMEOUT_MILLIS,
+			TimeUnit.MILLISECONDS,
+			() -> future.complete(false)
+		);
+		future.whenComplete((ok, e) -> {
+			SystemThreadContext.shutdown(timeout);
+			if(!Boolean.TRUE.equals(ok)) {
+				synchronized (this.connectLock) {
+					// 已经重新连接时不能关闭
+					if(this.connectFuture == future) {
+						this.closeAll();
+					}
+				}
+			}
+		});
+		this.syn();
+		return future;
+	}
+	
+	/**
+	 * <p>设置超时重传定时任务</p>
+	 * <p>已经存在定时任务时忽略</p>
+	 */
+	private void retryTimer() {
+		synchronized (this.retryLock) {
+			if(this.retryTimer != null && !this.retryTimer.isDone()) {
+				return;
+			}
+			this.retryTimer = SystemThreadContext.timer(this.sendWindow.timeout(), TimeUnit.MICROSECONDS, this::retry);
+		}
+	}
+	
+	/**
+	 * <p>执行超时重传</p>
+	 * <p>还有未确认数据时继续设置超时重传定时任务</p>
+	 */
+	private void retry() {
+		synchronized (this.retryLock) {
+			this.retryTimer = null;
+		}
+		if(!this.available()) {
+			return;
+		}
+		this.timeoutRetry();
+		if(this.available() && this.sendWindow.hasUnack()) {
+			this.retryTimer();
+		}
+	}
+	
+	/**
+	 * <p>取消超时重传定时任务</p>
+	 */
+	private void cancelRetryTimer() {
+		synchronized (this.retryLock) {
+			SystemThreadContext.shutdown(this.retryTimer);
+			this.retryTimer = null;
+		}
+	}
+	
 	/**
 	 * <p>超时数据包重新发送</p>
 	 * 
 	 * @return true-丢包；false-正常；
 	 */
-	public boolean timeoutRetry() {
+	private boolean timeoutRetry() {
 		final List<UtpWindowData> windowDatas = this.sendWindow.timeoutWindowData();
 		if(CollectionUtils.isNotEmpty(windowDatas)) {
+			this.mtu.timeout(windowDatas);
 			this.data(windowDatas);
 			LOGGER.debug("超时数据包重新发送：{}-{}", this.sendId, windowDatas.size());
 			return true;
@@ -284,6 +646,7 @@ public final class UtpMessageHandler extends UdpMessageHandler implements IMessa
 	
 	/**
 	 * <p>发送数据包</p>
+	 * <p>数据包发送次数超限：连接视为断开（丢弃数据包会导致接收端一直等待）</p>
 	 * 
 	 * @param windowDatas 数据包集合
 	 */
@@ -291,37 +654,37 @@ public final class UtpMessageHandler extends UdpMessageHandler implements IMessa
 		if(CollectionUtils.isEmpty(windowDatas)) {
 			return;
 		}
-		windowDatas.forEach(windowData -> {
-			if(windowData.getPushTimes() > UtpConfig.MAX_PUSH_TIMES) {
-				LOGGER.warn("发送数据包失败（次数超限）：{}-{}", windowData.getSeqnr(), windowData.getPushTimes());
-				this.sendWindow.discard(windowData.getSeqnr());
-			} else {
-				this.data(windowData);
+		for (UtpWindowData windowData : windowDatas) {
+			if(windowData.getPushTimes() >= UtpConfig.MAX_PUSH_TIMES) {
+				LOGGER.debug("发送数据包失败（次数超限）：{}-{}", windowData.getSeqnr(), windowData.getPushTimes());
+				this.resetAndClose();
+				return;
 			}
-		});
+			this.data(windowData);
+		}
 	}
 	
 	/**
 	 * <p>处理数据消息</p>
 	 * <p>发送响应消息响应编号等于最后一次处理的接收请求编号</p>
 	 * 
+	 * <p>数据消息携带的响应编号同样需要处理（不计算重复响应）</p>
+	 * 
 	 * @param timestamp 时间戳
+	 * @param timestampDifference 时间差：单向延迟
 	 * @param seqnr 请求编号
 	 * @param acknr 响应编号
+	 * @param wndSize 窗口大小
 	 * @param buffer 消息
-	 * 
-	 * @throws NetException 网络异常
 	 */
-	private void data(int timestamp, short seqnr, short acknr, ByteBuffer buffer) throws NetException {
-		// TODO：处理acknr
+	private void data(int timestamp, int timestampDifference, short seqnr, short acknr, int wndSize, ByteBuffer buffer) {
 		LOGGER.debug("处理数据消息：{}", seqnr);
-		try {
-			this.recvWindow.receive(timestamp, seqnr, buffer);
-		} catch (IOException e) {
-			throw new NetException(e);
-		} finally {
-			this.state(timestamp, this.recvWindow.seqnr()); // 最后一次处理的接收请求编号
+		this.releaseHalfOpen();
+		if(this.connect) {
+			this.ack(acknr, wndSize, timestampDifference);
 		}
+		this.recvWindow.receive(timestamp, seqnr, buffer);
+		this.state(timestamp, this.recvWindow.seqnr()); // 最后一次处理的接收请求编号
 	}
 	
 	/**
@@ -336,23 +699,27 @@ public final class UtpMessageHandler extends UdpMessageHandler implements IMessa
 		buffer.putShort(this.sendId);
 		buffer.putInt(now); // 更新发送时间
 		buffer.putInt(now - this.recvWindow.timestamp());
-		buffer.putInt(this.recvWindow.wndSize());
+		buffer.putInt(this.wndSize());
 		buffer.putShort(windowData.getSeqnr()); // seqnr
 		buffer.putShort(this.recvWindow.seqnr()); // acknr
 		buffer.put(windowData.getData());
 		this.pushMessage(buffer);
+		this.retryTimer();
 	}
 
 	/**
 	 * <p>处理响应消息</p>
-	 * <p>如果多次返回已处理的数据编号，则视为丢包重新发送最后一个未确认数据包。</p>
+	 * <p>如果{@value UtpConfig#FAST_ACK_RETRY_TIMES}次返回已处理的数据编号，则视为丢包重新发送第一个未确认数据包。</p>
+	 * <p>如果含有选择确认：重新发送选择确认判断丢失的数据包</p>
 	 * 
 	 * @param timestamp 时间戳
+	 * @param timestampDifference 时间差：单向延迟
 	 * @param seqnr 请求编号
 	 * @param acknr 响应编号
 	 * @param wndSize 窗口大小
+	 * @param sack 选择确认
 	 */
-	private void state(int timestamp, short seqnr, short acknr, int wndSize) {
+	private void state(int timestamp, int timestampDifference, short seqnr, short acknr, int wndSize, byte[] sack) {
 		LOGGER.debug("处理响应消息：{}", acknr);
 		if(!this.connect) { // 没有连接
 			this.connect = this.available();
@@ -363,13 +730,25 @@ public final class UtpMessageHandler extends UdpMessageHandler implements IMessa
 			this.unlockConnect();
 		}
 		// 快速重传
-		final boolean loss = this.sendWindow.ack(acknr, wndSize); // 是否可能丢包
+		final boolean loss = this.ack(acknr, wndSize, timestampDifference); // 是否可能丢包
+		if(sack != null) {
+			final List<UtpWindowData> losts = this.sendWindow.sack(acknr, sack);
+			if(!losts.isEmpty()) {
+				LOGGER.debug("UTP消息选择确认重传：{}-{}", acknr, losts.size());
+				losts.forEach(windowData -> this.mtu.loss(windowData.getSeqnr()));
+				this.data(losts);
+			}
+			this.drain();
+		}
 		if(loss) {
-			if(this.ackLossTimes.incrementAndGet() > UtpConfig.FAST_ACK_RETRY_TIMES) {
-				final var packet = this.sendWindow.lastUnack();
+			if(this.ackLossTimes.incrementAndGet() >= UtpConfig.FAST_ACK_RETRY_TIMES) {
+				this.ackLossTimes.set(0);
+				final var packet = this.sendWindow.unack(acknr);
 				if(packet != null) {
 					LOGGER.debug("UTP消息快速重传：{}-{}", acknr, packet.getSeqnr());
-					this.data(packet);
+					this.sendWindow.loss();
+					this.mtu.loss(packet.getSeqnr());
+					this.data(List.of(packet));
 				}
 			}
 		} else {
@@ -377,9 +756,31 @@ public final class UtpMessageHandler extends UdpMessageHandler implements IMessa
 		}
 	}
 	
+	/**
+	 * <p>处理响应编号</p>
+	 * <p>发送窗口更新：发送队列数据包</p>
+	 * <p>没有未确认数据时异步发送合并消息（接收线程不能等待合并消息缓存锁）</p>
+	 * 
+	 * @param acknr 响应编号
+	 * @param wndSize 窗口大小
+	 * @param timestampDifference 时间差：单向延迟
+	 * 
+	 * @return 是否可能丢包
+	 */
+	private boolean ack(short acknr, int wndSize, int timestampDifference) {
+		final boolean loss = this.sendWindow.ack(acknr, wndSize, timestampDifference);
+		this.mtu.ack(acknr);
+		this.drain();
+		if(this.coalescing && !this.sendWindow.hasUnack()) {
+			SystemThreadContext.submit(this::flush);
+		}
+		return loss;
+	}
+	
 	/**
 	 * <p>发送响应消息</p>
 	 * <p>发送此消息不增加seqnr</p>
+	 * <p>接收窗口含有乱序数据时添加选择确认扩展</p>
 	 * 
 	 * @param timestamp 时间戳
 	 * @param acknr 响应编号
@@ -387,13 +788,24 @@ public final class UtpMessageHandler extends UdpMessageHandler implements IMessa
 	private void state(int timestamp, short acknr) {
 		LOGGER.debug("发送响应消息：{}", acknr);
 		final int now = DateUtils.timestampUs();
-		final ByteBuffer buffer = this.buildHeader(UtpConfig.Type.STATE, UTP_HEADER_LENGTH);
+		final byte[] sack = this.recvWindow.sack();
+		final ByteBuffer buffer;
+		if(sack == null) {
+			buffer = this.buildHeader(UtpConfig.Type.STATE, UtpConfig.EXTENSION, UTP_HEADER_LENGTH);
+		} else {
+			buffer = this.buildHeader(UtpConfig.Type.STATE, UtpConfig.EXTENSION_SACK, UTP_HEADER_LENGTH + UTP_EXT_HEADER_LENGTH + sack.length);
+		}
 		buffer.putShort(this.sendId);
 		buffer.putInt(now);
 		buffer.putInt(now - timestamp);
-		buffer.putInt(this.recvWindow.wndSize());
+		buffer.putInt(this.wndSize());
 		buffer.putShort(this.sendWindow.seqnr()); // seqnr
 		buffer.putShort(acknr); // acknr
+		if(sack != null) {
+			buffer.put(UtpConfig.EXTENSION); // next_extension
+			buffer.put((byte) sack.length);
+			buffer.put(sack);
+		}
 		this.pushMessage(buffer);
 	}
 
@@ -500,9 +912,22 @@ public final class UtpMessageHandler extends UdpMessageHandler implements IMessa
 	 * @return 消息
 	 */
 	private ByteBuffer buildHeader(UtpConfig.Type type, int size) {
+		return this.buildHeader(type, UtpConfig.EXTENSION, size);
+	}
+	
+	/**
+	 * <p>设置消息头</p>
+	 * 
+	 * @param type 消息类型
+	 * @param extension 扩展类型
+	 * @param size 消息长度
+	 * 
+	 * @return 消息
+	 */
+	private ByteBuffer buildHeader(UtpConfig.Type type, byte extension, int size) {
 		final ByteBuffer buffer = ByteBuffer.allocate(size);
 		buffer.put(type.typeVersion()); // 消息类型
-		buffer.put(UtpConfig.EXTENSION); // 扩展扩展
+		buffer.put(extension); // 扩展
 		return buffer;
 	}
 	
@@ -545,11 +970,15 @@ public final class UtpMessageHandler extends UdpMessageHandler implements IMessa
 			this.connectLock.set(true);
 			this.connectLock.notifyAll();
 		}
+		final CompletableFuture<Boolean> future = this.connectFuture;
+		if(future != null) {
+			future.complete(this.connect);
+		}
 	}
 	
 	/**
-	 * <p>关闭窗口：释放信号量</p>
-	 * <p>释放信号量才能发送关闭和重置消息，否者可能存在一直等待情况。</p>
+	 * <p>关闭窗口</p>
+	 * <p>关闭后发送队列数据包直接发送：关闭消息在所有数据包之后发送</p>
 	 */
 	private void closeWindow() {
 		this.sendWindow.close();
@@ -560,11 +989,30 @@ public final class UtpMessageHandler extends UdpMessageHandler implements IMessa
 	 * <p>关闭所有资源：关闭窗口、设置连接关闭、移除消息代理</p>
 	 */
 	private void closeAll() {
+		this.cancelRetryTimer();
+		this.cancelReceiveDelayTimer();
+		synchronized (this.coalesceBuffer) {
+			this.cancelCoalesceTimer();
+		}
+		synchronized (this.sendQueue) {
+			this.sendQueue.clear();
+			this.sendQueueSize = 0;
+		}
 		super.close();
 		this.connect = false;
+		this.releaseHalfOpen();
 		this.utpService.remove(this);
 	}
 	
+	/**
+	 * <p>释放半连接</p>
+	 */
+	private void releaseHalfOpen() {
+		if(this.halfOpen.get() && this.halfOpen.compareAndSet(true, false)) {
+			this.utpService.releaseHalfOpen();
+		}
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 * 
@@ -574,6 +1022,7 @@ public final class UtpMessageHandler extends UdpMessageHandler implements IMessa
 	public void close() {
 		LOGGER.debug("关闭UTP");
 		this.closeWindow();
+		this.flush();
 		this.fin();
 		this.closeAll();
 	}
@@ -0,0 +1,180 @@
+package com.acgist.snail.net.torrent.utp.bootstrap;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>UTP连接请求队列</p>
+ * <p>每个接收窗口对应一个连接请求队列：同一个连接的请求顺序处理，不同连接的请求并行处理。</p>
+ * <p>连接请求队列不会绑定线程：有请求时提交到线程池处理，同一时间只会有一个线程处理。</p>
+ * <p>每次最多处理{@value #BATCH_SIZE}个请求然后重新提交：防止一个连接长时间占用线程</p>
+ * 
+ * @author acgist
+ */
+public final class UtpConnectionQueue {
+	
+	private static final Logger LOGGER = LoggerFactory.getLogger(UtpConnectionQueue.class);
+	
+	/**
+	 * <p>每次处理请求数量：{@value}</p>
+	 */
+	private static final int BATCH_SIZE = 64;
+	
+	/**
+	 * <p>请求队列</p>
+	 */
+	private final Queue<UtpRequest> requests;
+	/**
+	 * <p>请求数量</p>
+	 */
+	private final AtomicInteger size;
+	/**
+	 * <p>是否已经提交线程池</p>
+	 */
+	private final AtomicBoolean scheduled;
+	/**
+	 * <p>线程池</p>
+	 */
+	private final ExecutorService executor;
+	/**
+	 * <p>UTP请求队列：统计信息</p>
+	 */
+	private final UtpRequestQueue requestQueue;
+	/**
+	 * <p>处理延迟（纳秒）：指数加权移动平均</p>
+	 */
+	private volatile long latency;
+	/**
+	 * <p>最大处理延迟（纳秒）</p>
+	 */
+	private volatile long maxLatency;
+	
+	/**
+	 * @param executor 线程池
+	 * @param requestQueue UTP请求队列
+	 */
+	private UtpConnectionQueue(ExecutorService executor, UtpRequestQueue requestQueue) {
+		this.requests = new ConcurrentLinkedQueue<>();
+		this.size = new AtomicInteger(0);
+		this.scheduled = new AtomicBoolean(false);
+		this.executor = executor;
+		this.requestQueue = requestQueue;
+	}
+	
+	/**
+	 * <p>创建连接请求队列</p>
+	 * 
+	 * @param executor 线程池
+	 * @param requestQueue UTP请求队列
+	 * 
+	 * @return 连接请求队列
+	 */
+	public static final UtpConnectionQueue newInstance(ExecutorService executor, UtpRequestQueue requestQueue) {
+		return new UtpConnectionQueue(executor, requestQueue);
+	}
+	
+	/**
+	 * <p>添加请求</p>
+	 * 
+	 * @param request 请求
+	 * 
+	 * @return 是否添加成功
+	 */
+	public boolean offer(UtpRequest request) {
+		this.requests.offer(request);
+		this.size.incrementAndGet();
+		this.requestQueue.offer();
+		return this.schedule();
+	}
+	
+	/**
+	 * <p>提交线程池处理</p>
+	 * 
+	 * @return 是否提交成功
+	 */
+	private boolean schedule() {
+		if(this.scheduled.compareAndSet(false, true)) {
+			try {
+				this.executor.execute(this::execute);
+			} catch (RejectedExecutionException e) {
+				this.scheduled.set(false);
+				LOGGER.debug("UTP请求提交线程池失败", e);
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * <p>处理请求</p>
+	 */
+	private void execute() {
+		int count = 0;
+		UtpRequest request;
+		while(count++ < BATCH_SIZE && (request = this.requests.poll()) != null) {
+			this.size.decrementAndGet();
+			try {
+				request.execute();
+			} catch (Exception e) {
+				LOGGER.error("UTP处理请求异常", e);
+			}
+			this.latency(System.nanoTime() - request.createTime());
+		}
+		this.scheduled.set(false);
+		// 释放标记后再次检查：防止添加请求时没有提交线程池
+		if(!this.requests.isEmpty()) {
+			this.schedule();
+		}
+	}
+	
+	/**
+	 * <p>记录处理延迟</p>
+	 * 
+	 * @param costed 处理延迟（纳秒）
+	 */
+	private void latency(long costed) {
+		// 只有一个线程处理：不用同步
+		final long latency = this.latency;
+		this.latency = latency == 0L ? costed : latency + (costed - latency) / 8;
+		if(costed > this.maxLatency) {
+			this.maxLatency = costed;
+		}
+		this.requestQueue.complete(costed);
+	}
+	
+	/**
+	 * <p>获取请求数量</p>
+	 * 
+	 * @return 请求数量
+	 */
+	public int size() {
+		return this.size.get();
+	}
+	
+	/**
+	 * <p>获取处理延迟（微秒）</p>
+	 * <p>请求创建到处理完成时间：指数加权移动平均</p>
+	 * 
+	 * @return 处理延迟
+	 */
+	public long latency() {
+		return this.latency / 1000;
+	}
+	
+	/**
+	 * <p>获取最大处理延迟（微秒）</p>
+	 * 
+	 * @return 最大处理延迟
+	 */
+	public long maxLatency() {
+		return this.maxLatency / 1000;
+	}
+	
+}
@@ -0,0 +1,218 @@
+package com.acgist.snail.net.torrent.utp.bootstrap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.acgist.snail.net.torrent.utp.UtpMessageHandler;
+
+/**
+ * <p>UTP连接表</p>
+ * <p>使用long作为key的开放寻址（线性探测）哈希表：查询不会装箱和创建对象</p>
+ * <p>删除使用向后移动（backward shift）不需要墓碑标记</p>
+ * <p>注意：线程不安全</p>
+ * 
+ * @author acgist
+ */
+public final class UtpConnectionTable {
+	
+	/**
+	 * <p>默认容量：{@value}</p>
+	 * <p>容量必须是2的幂</p>
+	 */
+	private static final int DEFAULT_CAPACITY = 64;
+	
+	/**
+	 * <p>key</p>
+	 */
+	private long[] keys;
+	/**
+	 * <p>UTP消息代理</p>
+	 * <p>{@code null}表示空位</p>
+	 */
+	private UtpMessageHandler[] values;
+	/**
+	 * <p>索引掩码</p>
+	 */
+	private int mask;
+	/**
+	 * <p>数量</p>
+	 */
+	private int size;
+	
+	private UtpConnectionTable() {
+		this.init(DEFAULT_CAPACITY);
+	}
+	
+	/**
+	 * <p>创建UTP连接表</p>
+	 * 
+	 * @return UTP连接表
+	 */
+	public static final UtpConnectionTable newInstance() {
+		return new UtpConnectionTable();
+	}
+	
+	/**
+	 * <p>获取UTP消息代理</p>
+	 * 
+	 * @param key key
+	 * 
+	 * @return UTP消息代理
+	 */
+	public UtpMessageHandler get(long key) {
+		int index = this.index(key);
+		UtpMessageHandler value;
+		while((value = this.values[index]) != null) {
+			if(this.keys[index] == key) {
+				return value;
+			}
+			index = (index + 1) & this.mask;
+		}
+		return null;
+	}
+	
+	/**
+	 * <p>添加UTP消息代理</p>
+	 * 
+	 * @param key key
+	 * @param value UTP消息代理
+	 * 
+	 * @return 旧的UTP消息代理
+	 */
+	public UtpMessageHandler put(long key, UtpMessageHandler value) {
+		int index = this.index(key);
+		UtpMessageHandler old;
+		while((old = this.values[index]) != null) {
+			if(this.keys[index] == key) {
+				this.values[index] = value;
+				return old;
+			}
+			index = (index + 1) & this.mask;
+		}
+		this.keys[index] = key;
+		this.values[index] = value;
+		// 负载因子：0.5
+		if(++this.size * 2 > this.values.length) {
+			this.resize();
+		}
+		return null;
+	}
+	
+	/**
+	 * <p>删除UTP消息代理</p>
+	 * <p>只有key对应的消息代理是指定消息代理时才会删除</p>
+	 * 
+	 * @param key key
+	 * @param value UTP消息代理
+	 * 
+	 * @return 是否删除成功
+	 */
+	public boolean remove(long key, UtpMessageHandler value) {
+		int index = this.index(key);
+		UtpMessageHandler old;
+		while((old = this.values[index]) != null) {
+			if(this.keys[index] == key) {
+				if(old != value) {
+					return false;
+				}
+				this.shift(index);
+				this.size--;
+				return true;
+			}
+			index = (index + 1) & this.mask;
+		}
+		return false;
+	}
+	
+	/**
+	 * <p>获取所有UTP消息代理</p>
+	 * 
+	 * @return 所有UTP消息代理（副本）
+	 */
+	public List<UtpMessageHandler> values() {
+		final List<UtpMessageHandler> list = new ArrayList<>(this.size);
+		for (UtpMessageHandler value : this.values) {
+			if(value != null) {
+				list.add(value);
+			}
+		}
+		return list;
+	}
+	
+	/**
+	 * <p>获取数量</p>
+	 * 
+	 * @return 数量
+	 */
+	public int size() {
+		return this.size;
+	}
+	
+	/**
+	 * <p>删除空位并向前移动后续冲突数据</p>
+	 * 
+	 * @param index 删除索引
+	 */
+	private void shift(int index) {
+		int last = index;
+		int next = index;
+		int slot;
+		while(true) {
+			next = (next + 1) & this.mask;
+			if(this.values[next] == null) {
+				break;
+			}
+			slot = this.index(this.keys[next]);
+			// 理想位置不在(last, next]区间：移动到空位
+			if(last <= next ? (slot <= last || slot > next) : (slot <= last && slot > next)) {
+				this.keys[last] = this.keys[next];
+				this.values[last] = this.values[next];
+				last = next;
+			}
+		}
+		this.values[last] = null;
+	}
+	
+	/**
+	 * <p>扩容：容量加倍</p>
+	 */
+	private void resize() {
+		final long[] oldKeys = this.keys;
+		final UtpMessageHandler[] oldValues = this.values;
+		this.init(oldValues.length * 2);
+		for (int index = 0; index < oldValues.length; index++) {
+			if(oldValues[index] != null) {
+				int slot = this.index(oldKeys[index]);
+				while(this.values[slot] != null) {
+					slot = (slot + 1) & this.mask;
+				}
+				this.keys[slot] = oldKeys[index];
+				this.values[slot] = oldValues[index];
+			}
+		}
+	}
+	
+	/**
+	 * <p>初始化数组</p>
+	 * 
+	 * @param capacity 容量
+	 */
+	private void init(int capacity) {
+		this.keys = new long[capacity];
+		this.values = new UtpMessageHandler[capacity];
+		this.mask = capacity - 1;
+	}
+	
+	/**
+	 * <p>计算索引</p>
+	 * <p>key低位是连接ID和端口：使用乘法散列混合高位</p>
+	 * 
+	 * @param key key
+	 * 
+	 * @return 索引
+	 */
+	private int index(long key) {
+		return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & this.mask;
+	}
+	
+}
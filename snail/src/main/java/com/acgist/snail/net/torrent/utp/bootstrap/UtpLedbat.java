@@ -0,0 +1,299 @@
+package com.acgist.snail.net.torrent.utp.bootstrap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.acgist.snail.config.UtpConfig;
+
+/**
+ * <p>LEDBAT阻塞控制</p>
+ * <p>Low Extra Delay Background Transport</p>
+ * <p>协议链接：http://www.bittorrent.org/beps/bep_0029.html</p>
+ * <p>协议链接：https://tools.ietf.org/html/rfc6817</p>
+ * <p>通过单向延迟（timestamp_difference）计算排队延迟：排队延迟低于目标延迟时增大窗口，高于目标延迟时减小窗口。</p>
+ * <p>基础延迟：最近{@value #BASE_HISTORY}分钟单向延迟最小值（每分钟一个桶）</p>
+ * <p>当前延迟：最近{@value #CURRENT_FILTER}个单向延迟最小值（过滤抖动）</p>
+ * <p>时间戳（微秒）可能溢出：比较时使用差值</p>
+ * <p>注意：线程不安全，调用者负责加锁。</p>
+ * 
+ * @author acgist
+ */
+public final class UtpLedbat {
+	
+	private static final Logger LOGGER = LoggerFactory.getLogger(UtpLedbat.class);
+	
+	/**
+	 * <p>目标延迟（微秒）：{@value}</p>
+	 */
+	private static final int TARGET_DELAY = 100 * 1000;
+	/**
+	 * <p>退出慢启动延迟（微秒）：{@value}</p>
+	 */
+	private static final int SLOW_START_EXIT_DELAY = TARGET_DELAY * 9 / 10;
+	/**
+	 * <p>每个RTT最大增加窗口（字节）：{@value}</p>
+	 */
+	private static final int MAX_CWND_INCREASE = 3000;
+	/**
+	 * <p>数据包大小：{@value}</p>
+	 */
+	private static final int MSS = UtpConfig.UTP_PACKET_MAX_LENGTH;
+	/**
+	 * <p>最小窗口（字节）：{@value}</p>
+	 */
+	private static final int MIN_CWND = MSS;
+	/**
+	 * <p>初始窗口（字节）：{@value}</p>
+	 */
+	private static final int INIT_CWND = 2 * MSS;
+	/**
+	 * <p>最大窗口（字节）：{@value}</p>
+	 */
+	private static final int MAX_CWND = UtpConfig.WND_SIZE;
+	/**
+	 * <p>应用受限时允许窗口超过传输中数据的数据包数量：{@value}</p>
+	 */
+	private static final int ALLOWED_INCREASE = 2;
+	/**
+	 * <p>基础延迟桶数量（分钟）：{@value}</p>
+	 */
+	private static final int BASE_HISTORY = 2;
+	/**
+	 * <p>基础延迟桶时长（微秒）：{@value}</p>
+	 */
+	private static final int BASE_INTERVAL = 60 * 1000 * 1000;
+	/**
+	 * <p>当前延迟样本数量：{@value}</p>
+	 */
+	private static final int CURRENT_FILTER = 4;
+	/**
+	 * <p>最小丢包间隔（微秒）：{@value}</p>
+	 * <p>同一个RTT内多次丢包只减小一次窗口</p>
+	 */
+	private static final int MIN_LOSS_INTERVAL = 100 * 1000;
+	
+	/**
+	 * <p>阻塞窗口（字节）</p>
+	 */
+	private int cwnd;
+	/**
+	 * <p>慢启动阈值（字节）</p>
+	 */
+	private int ssthresh;
+	/**
+	 * <p>是否慢启动</p>
+	 */
+	private boolean slowStart;
+	/**
+	 * <p>基础延迟桶</p>
+	 */
+	private final int[] baseDelays;
+	/**
+	 * <p>当前基础延迟桶开始时间</p>
+	 */
+	private int baseTimestamp;
+	/**
+	 * <p>基础延迟桶数量</p>
+	 */
+	private int baseSize;
+	/**
+	 * <p>当前延迟样本</p>
+	 */
+	private final int[] currentDelays;
+	/**
+	 * <p>当前延迟样本索引</p>
+	 */
+	private int currentIndex;
+	/**
+	 * <p>当前延迟样本数量</p>
+	 */
+	private int currentSize;
+	/**
+	 * <p>排队延迟（微秒）</p>
+	 */
+	private int queueDelay;
+	/**
+	 * <p>最后一次丢包时间</p>
+	 */
+	private int lossTimestamp;
+	/**
+	 * <p>是否丢包（用于第一次丢包判断）</p>
+	 */
+	private boolean loss;
+	
+	private UtpLedbat() {
+		this.cwnd = INIT_CWND;
+		this.ssthresh = MAX_CWND;
+		this.slowStart = true;
+		this.baseDelays = new int[BASE_HISTORY];
+		this.currentDelays = new int[CURRENT_FILTER];
+	}
+	
+	/**
+	 * <p>创建LEDBAT阻塞控制</p>
+	 * 
+	 * @return LEDBAT阻塞控制
+	 */
+	public static final UtpLedbat newInstance() {
+		return new UtpLedbat();
+	}
+	
+	/**
+	 * <p>处理响应</p>
+	 * 
+	 * @param bytesAcked 响应数据大小
+	 * @param flightSize 响应之前传输中的数据大小
+	 * @param delay 单向延迟（timestamp_difference）：0-没有延迟信息
+	 * @param timestamp 当前时间
+	 */
+	public void ack(int bytesAcked, int flightSize, int delay, int timestamp) {
+		if(bytesAcked <= 0) {
+			return;
+		}
+		if(delay != 0) {
+			this.delay(delay, timestamp);
+		}
+		final int cwnd = this.cwnd;
+		final double offTarget = (double) (TARGET_DELAY - this.queueDelay) / TARGET_DELAY;
+		final double windowFactor = (double) Math.min(bytesAcked, cwnd) / Math.max(bytesAcked, cwnd);
+		final int ledbatCwnd = (int) (cwnd + MAX_CWND_INCREASE * offTarget * windowFactor);
+		int nextCwnd;
+		if(this.slowStart) {
+			final int ssCwnd = cwnd + bytesAcked;
+			if(ssCwnd > this.ssthresh) {
+				this.slowStart = false;
+				nextCwnd = ledbatCwnd;
+			} else if(this.queueDelay > SLOW_START_EXIT_DELAY) {
+				this.slowStart = false;
+				this.ssthresh = cwnd;
+				nextCwnd = ledbatCwnd;
+			} else {
+				nextCwnd = Math.max(ssCwnd, ledbatCwnd);
+			}
+		} else {
+			nextCwnd = ledbatCwnd;
+		}
+		if(nextCwnd > cwnd) {
+			// 应用受限：不能无限增大窗口
+			nextCwnd = Math.max(cwnd, Math.min(nextCwnd, flightSize + ALLOWED_INCREASE * MSS));
+		}
+		this.cwnd = this.limit(nextCwnd);
+	}
+	
+	/**
+	 * <p>丢包（快速重传）</p>
+	 * <p>窗口减半、退出慢启动</p>
+	 * 
+	 * @param timestamp 当前时间
+	 * @param rtt 往返时间
+	 */
+	public void loss(int timestamp, int rtt) {
+		if(this.loss && timestamp - this.lossTimestamp < Math.max(rtt, MIN_LOSS_INTERVAL)) {
+			return;
+		}
+		this.loss = true;
+		this.lossTimestamp = timestamp;
+		this.cwnd = this.limit(this.cwnd / 2);
+		this.ssthresh = this.cwnd;
+		this.slowStart = false;
+		LOGGER.debug("UTP丢包窗口大小：{}", this.cwnd);
+	}
+	
+	/**
+	 * <p>超时</p>
+	 * <p>窗口设置最小窗口、重新慢启动</p>
+	 */
+	public void timeout() {
+		this.ssthresh = this.limit(this.cwnd / 2);
+		this.cwnd = MIN_CWND;
+		this.slowStart = true;
+		LOGGER.debug("UTP超时窗口大小：{}", this.cwnd);
+	}
+	
+	/**
+	 * <p>获取阻塞窗口（字节）</p>
+	 * 
+	 * @return 阻塞窗口
+	 */
+	public int cwnd() {
+		return this.cwnd;
+	}
+	
+	/**
+	 * <p>获取排队延迟（微秒）</p>
+	 * 
+	 * @return 排队延迟
+	 */
+	public int queueDelay() {
+		return this.queueDelay;
+	}
+	
+	/**
+	 * <p>判断是否慢启动</p>
+	 * 
+	 * @return 是否慢启动
+	 */
+	public boolean slowStart() {
+		return this.slowStart;
+	}
+	
+	/**
+	 * <p>更新延迟</p>
+	 * 
+	 * @param delay 单向延迟
+	 * @param timestamp 当前时间
+	 */
+	private void delay(int delay, int timestamp) {
+		// 基础延迟
+		if(this.baseSize == 0) {
+			this.baseDelays[0] = delay;
+			this.baseSize = 1;
+			this.baseTimestamp = timestamp;
+		} else if(timestamp - this.baseTimestamp > BASE_INTERVAL) {
+			// 新的基础延迟桶
+			System.arraycopy(this.baseDelays, 0, this.baseDelays, 1, BASE_HISTORY - 1);
+			this.baseDelays[0] = delay;
+			this.baseSize = Math.min(this.baseSize + 1, BASE_HISTORY);
+			this.baseTimestamp = timestamp;
+		} else if(delay - this.baseDelays[0] < 0) {
+			this.baseDelays[0] = delay;
+		}
+		// 当前延迟
+		this.currentDelays[this.currentIndex] = delay;
+		this.currentIndex = (this.currentIndex + 1) % CURRENT_FILTER;
+		this.currentSize = Math.min(this.currentSize + 1, CURRENT_FILTER);
+		final int baseDelay = this.min(this.baseDelays, this.baseSize);
+		final int currentDelay = this.min(this.currentDelays, this.currentSize);
+		this.queueDelay = Math.max(0, currentDelay - baseDelay);
+	}
+	
+	/**
+	 * <p>获取最小延迟</p>
+	 * 
+	 * @param delays 延迟
+	 * @param size 数量
+	 * 
+	 * @return 最小延迟
+	 */
+	private int min(int[] delays, int size) {
+		int min = delays[0];
+		for (int index = 1; index < size; index++) {
+			if(delays[index] - min < 0) {
+				min = delays[index];
+			}
+		}
+		return min;
+	}
+	
+	/**
+	 * <p>限制窗口大小</p>
+	 * 
+	 * @param cwnd 窗口
+	 * 
+	 * @return 窗口
+	 */
+	private int limit(int cwnd) {
+		return Math.min(MAX_CWND, Math.max(MIN_CWND, cwnd));
+	}
+	
+}
@@ -0,0 +1,179 @@
+package com.acgist.snail.net.torrent.utp.bootstrap;
+
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.acgist.snail.config.UtpConfig;
+
+/**
+ * <p>UTP数据包大小探测（Path MTU Discovery）</p>
+ * <p>数据包大小从{@link UtpConfig#UTP_PACKET_MIN_LENGTH}开始，使用二分查找向{@link UtpConfig#UTP_PACKET_MAX_LENGTH}探测。</p>
+ * <p>大于已知可用大小的数据包就是探测包：同一时间只有一个探测包，探测包确认后提高可用大小，探测包丢失后降低上限。</p>
+ * <p>可用大小的数据包多次超时：回退最小数据包大小（路径变化）</p>
+ * <p>查找完成{@value #PROBE_INTERVAL}毫秒后重新向上探测</p>
+ * 
+ * @author acgist
+ */
+public final class UtpMtu {
+	
+	private static final Logger LOGGER = LoggerFactory.getLogger(UtpMtu.class);
+	
+	/**
+	 * <p>查找完成精度（字节）：{@value}</p>
+	 */
+	private static final int SEARCH_STEP = 16;
+	/**
+	 * <p>重新探测时间（毫秒）：{@value}</p>
+	 */
+	private static final long PROBE_INTERVAL = 10L * 60 * 1000;
+	/**
+	 * <p>回退最小数据包大小的发送次数：{@value}</p>
+	 */
+	private static final int FALLBACK_PUSH_TIMES = 3;
+	
+	/**
+	 * <p>可用大小（字节）</p>
+	 */
+	private int floor;
+	/**
+	 * <p>上限（字节）</p>
+	 */
+	private int ceiling;
+	/**
+	 * <p>探测包大小（字节）：0-没有探测包</p>
+	 */
+	private int probeLength;
+	/**
+	 * <p>探测包编号</p>
+	 */
+	private short probeSeqnr;
+	/**
+	 * <p>查找完成时间（毫秒）</p>
+	 */
+	private long searchTime;
+	
+	private UtpMtu() {
+		this.floor = UtpConfig.UTP_PACKET_MIN_LENGTH;
+		this.ceiling = UtpConfig.UTP_PACKET_MAX_LENGTH;
+		this.probeLength = 0;
+	}
+	
+	/**
+	 * <p>创建数据包大小探测</p>
+	 * 
+	 * @return 数据包大小探测
+	 */
+	public static final UtpMtu newInstance() {
+		return new UtpMtu();
+	}
+	
+	/**
+	 * <p>获取数据包大小</p>
+	 * <p>没有探测包并且没有查找完成时返回探测大小，否者返回可用大小。</p>
+	 * 
+	 * @param remaining 剩余数据大小
+	 * 
+	 * @return 数据包大小
+	 */
+	public synchronized int length(int remaining) {
+		if(this.probeLength == 0 && this.ceiling - this.floor <= SEARCH_STEP) {
+			if(this.ceiling < UtpConfig.UTP_PACKET_MAX_LENGTH && System.currentTimeMillis() - this.searchTime > PROBE_INTERVAL) {
+				this.ceiling = UtpConfig.UTP_PACKET_MAX_LENGTH;
+			}
+		}
+		final int length;
+		if(this.probeLength == 0 && this.ceiling - this.floor > SEARCH_STEP) {
+			length = (this.floor + this.ceiling + 1) / 2;
+		} else {
+			length = this.floor;
+		}
+		return Math.min(remaining, length);
+	}
+	
+	/**
+	 * <p>发送数据包</p>
+	 * <p>大于可用大小的数据包作为探测包</p>
+	 * 
+	 * @param seqnr 请求编号
+	 * @param length 数据包大小
+	 */
+	public synchronized void send(short seqnr, int length) {
+		if(this.probeLength == 0 && length > this.floor) {
+			this.probeSeqnr = seqnr;
+			this.probeLength = length;
+			LOGGER.debug("UTP数据包大小探测：{}-{}", seqnr, length);
+		}
+	}
+	
+	/**
+	 * <p>确认数据包</p>
+	 * 
+	 * @param acknr 响应编号
+	 */
+	public synchronized void ack(short acknr) {
+		if(this.probeLength != 0 && (short) (acknr - this.probeSeqnr) >= 0) {
+			this.floor = this.probeLength;
+			this.probeLength = 0;
+			this.searched();
+		}
+	}
+	
+	/**
+	 * <p>丢失数据包</p>
+	 * 
+	 * @param seqnr 请求编号
+	 */
+	public synchronized void loss(short seqnr) {
+		if(this.probeLength != 0 && seqnr == this.probeSeqnr) {
+			this.ceiling = this.probeLength - 1;
+			this.probeLength = 0;
+			this.searched();
+		}
+	}
+	
+	/**
+	 * <p>超时数据包</p>
+	 * <p>探测包超时视为丢失；可用大小数据包多次超时回退最小数据包大小。</p>
+	 * 
+	 * @param windowDatas 超时数据包
+	 */
+	public synchronized void timeout(List<UtpWindowData> windowDatas) {
+		for (UtpWindowData windowData : windowDatas) {
+			if(this.probeLength != 0 && windowData.getSeqnr() == this.probeSeqnr) {
+				this.loss(windowData.getSeqnr());
+			} else if(
+				windowData.getPushTimes() >= FALLBACK_PUSH_TIMES &&
+				windowData.getLength() > UtpConfig.UTP_PACKET_MIN_LENGTH &&
+				windowData.getLength() <= this.floor
+			) {
+				LOGGER.debug("UTP数据包大小回退：{}", windowData.getLength());
+				this.floor = UtpConfig.UTP_PACKET_MIN_LENGTH;
+				this.ceiling = windowData.getLength() - 1;
+				this.probeLength = 0;
+				this.searched();
+			}
+		}
+	}
+	
+	/**
+	 * <p>查找完成记录时间</p>
+	 */
+	private void searched() {
+		if(this.ceiling - this.floor <= SEARCH_STEP) {
+			this.searchTime = System.currentTimeMillis();
+			LOGGER.debug("UTP数据包大小：{}", this.floor);
+		}
+	}
+	
+	/**
+	 * <p>获取可用大小</p>
+	 * 
+	 * @return 可用大小
+	 */
+	public synchronized int floor() {
+		return this.floor;
+	}
+	
+}
@@ -20,6 +20,11 @@ public final class UtpRequest {
 	 * <p>消息处理器</p>
 	 */
 	private final IMessageCodec<ByteBuffer> messageCodec;
+	/**
+	 * <p>创建时间（纳秒）</p>
+	 * <p>计算处理延迟</p>
+	 */
+	private final long createTime;
 	
 	/**
 	 * @param buffer 请求数据
@@ -28,6 +33,7 @@ public final class UtpRequest {
 	private UtpRequest(ByteBuffer buffer, IMessageCodec<ByteBuffer> messageCodec) {
 		this.buffer = buffer;
 		this.messageCodec = messageCodec;
+		this.createTime = System.nanoTime();
 	}
 	
 	/**
@@ -51,4 +57,13 @@ public final class UtpRequest {
 		this.messageCodec.decode(this.buffer);
 	}
 	
+	/**
+	 * <p>获取创建时间（纳秒）</p>
+	 * 
+	 * @return 创建时间
+	 */
+	public long createTime() {
+		return this.createTime;
+	}
+	
 }
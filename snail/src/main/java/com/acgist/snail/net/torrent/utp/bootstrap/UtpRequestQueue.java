@@ -1,21 +1,18 @@
 package com.acgist.snail.net.torrent.utp.bootstrap;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.acgist.snail.context.SystemThreadContext;
-import com.acgist.snail.context.exception.NetException;
 
 /**
  * <p>UTP请求队列</p>
- * <p>请求队列用来异步处理UTP请求，每个接收窗口对应一个请求队列，每个请求队列可以处理多个窗口。</p>
+ * <p>请求队列用来异步处理UTP请求，每个接收窗口对应一个{@linkplain UtpConnectionQueue 连接请求队列}。</p>
+ * <p>连接请求队列共享工作窃取线程池：同一个连接的请求顺序处理，连接不会绑定线程，一个连接处理缓慢不会影响其他连接。</p>
  * 
  * @author acgist
  */
@@ -30,75 +27,94 @@ public final class UtpRequestQueue {
 	}
 	
 	/**
-	 * <p>请求队列数量：{@value}</p>
+	 * <p>最小线程数量：{@value}</p>
+	 * <p>请求处理可能阻塞（磁盘读写）：CPU核心数量较少时保证最小线程数量</p>
 	 */
-	private static final int QUEUE_SIZE = 4;
+	private static final int MIN_THREAD_SIZE = 4;
 	
 	/**
-	 * <p>请求队列索引</p>
-	 * <p>每次获取请求队列后递增，保证UTP连接被均匀分配到请求队列。</p>
+	 * <p>请求处理线程池</p>
+	 * <p>线程数量：CPU核心数量（不小于{@value #MIN_THREAD_SIZE}）</p>
 	 */
-	private final AtomicInteger index = new AtomicInteger(0);
+	private final ExecutorService executor;
 	/**
-	 * <p>请求队列处理线程池</p>
-	 * <p>线程池大小：{@value #QUEUE_SIZE}</p>
+	 * <p>等待处理请求数量</p>
 	 */
-	private final ExecutorService executor;
+	private final AtomicInteger size;
+	/**
+	 * <p>处理请求数量</p>
+	 */
+	private final LongAdder count;
 	/**
-	 * <p>请求队列集合</p>
-	 * <p>集合大小：{@value #QUEUE_SIZE}</p>
+	 * <p>处理请求总延迟（纳秒）</p>
 	 */
-	private final List<BlockingQueue<UtpRequest>> queues;
+	private final LongAdder latency;
 	
 	private UtpRequestQueue() {
-		LOGGER.debug("启动UTP请求队列：{}", QUEUE_SIZE);
-		this.queues = new ArrayList<>(QUEUE_SIZE);
-		this.executor = SystemThreadContext.newExecutor(QUEUE_SIZE, QUEUE_SIZE, 1000, 60, SystemThreadContext.SNAIL_THREAD_UTP_QUEUE);
-		this.buildQueues();
+		final int threadSize = Math.max(MIN_THREAD_SIZE, Runtime.getRuntime().availableProcessors());
+		LOGGER.debug("启动UTP请求队列：{}", threadSize);
+		this.executor = SystemThreadContext.newWorkStealingExecutor(threadSize, SystemThreadContext.SNAIL_THREAD_UTP_QUEUE);
+		this.size = new AtomicInteger(0);
+		this.count = new LongAdder();
+		this.latency = new LongAdder();
 	}
 	
 	/**
-	 * <p>获取请求队列</p>
+	 * <p>创建连接请求队列</p>
 	 * 
-	 * @return 请求队列
+	 * @return 连接请求队列
 	 */
-	public BlockingQueue<UtpRequest> requestQueue() {
-		final int index = this.index.getAndIncrement() % QUEUE_SIZE;
-		return this.queues.get(Math.abs(index));
+	public UtpConnectionQueue newQueue() {
+		return UtpConnectionQueue.newInstance(this.executor, this);
 	}
 	
 	/**
-	 * <p>创建请求队列和处理线程</p>
+	 * <p>添加请求统计</p>
 	 */
-	private void buildQueues() {
-		for (int index = 0; index < QUEUE_SIZE; index++) {
-			final var queue = new LinkedBlockingQueue<UtpRequest>(); // 创建队列
-			this.buildQueueExecute(queue);
-			this.queues.add(queue);
-		}
+	void offer() {
+		this.size.incrementAndGet();
 	}
-
+	
+	/**
+	 * <p>完成请求统计</p>
+	 * 
+	 * @param costed 处理延迟（纳秒）
+	 */
+	void complete(long costed) {
+		this.size.decrementAndGet();
+		this.count.increment();
+		this.latency.add(costed);
+	}
+	
 	/**
-	 * <p>创建请求队列处理线程</p>
+	 * <p>获取等待处理请求数量</p>
 	 * 
-	 * @param queue 请求队列
+	 * @return 等待处理请求数量
 	 */
-	private void buildQueueExecute(BlockingQueue<UtpRequest> queue) {
-		this.executor.submit(() -> {
-			while(true) {
-				try {
-					final var request = queue.take();
-					request.execute();
-				} catch (NetException e) {
-					LOGGER.error("UTP处理请求异常", e);
-				} catch (InterruptedException e) {
-					LOGGER.debug("UTP处理请求异常", e);
-					Thread.currentThread().interrupt();
-				} catch (Exception e) {
-					LOGGER.error("UTP处理请求异常", e);
-				}
-			}
-		});
+	public int size() {
+		return this.size.get();
+	}
+	
+	/**
+	 * <p>获取处理请求数量</p>
+	 * 
+	 * @return 处理请求数量
+	 */
+	public long count() {
+		return this.count.sum();
+	}
+	
+	/**
+	 * <p>获取平均处理延迟（微秒）</p>
+	 * 
+	 * @return 平均处理延迟
+	 */
+	public long latency() {
+		final long count = this.count.sum();
+		if(count == 0L) {
+			return 0L;
+		}
+		return this.latency.sum() / count / 1000;
 	}
 	
 	/**
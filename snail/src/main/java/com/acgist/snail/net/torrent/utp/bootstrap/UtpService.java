@@ -1,14 +1,17 @@
 package com.acgist.snail.net.torrent.utp.bootstrap;
 
+import java.net.Inet4Address;
+import java.net.InetAddress;
 import java.net.InetSocketAddress;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.nio.ByteBuffer;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.acgist.snail.config.UtpConfig;
 import com.acgist.snail.context.SystemThreadContext;
 import com.acgist.snail.net.UdpMessageHandler;
 import com.acgist.snail.net.torrent.utp.UtpMessageHandler;
@@ -16,6 +19,7 @@ import com.acgist.snail.net.torrent.utp.UtpMessageHandler;
 /**
  * <p>UTP Service</p>
  * <p>管理UTP消息代理</p>
+ * <p>只有握手消息才会创建UTP消息代理，其他未知连接消息直接丢弃。</p>
  * 
  * @author acgist
  */
@@ -33,16 +37,24 @@ public final class UtpService {
 	 * <p>UTP超时定时任务执行周期（秒）：{@value}</p>
 	 */
 	private static final int UTP_INTERVAL = 10;
+	/**
+	 * <p>UTP消息最小长度：{@value}</p>
+	 */
+	private static final int UTP_HEADER_MIN_LENGTH = 20;
 	
 	/**
 	 * <p>连接ID</p>
 	 */
 	private int connectionId = 0;
+	/**
+	 * <p>半连接数量</p>
+	 */
+	private final AtomicInteger halfOpen = new AtomicInteger(0);
 	/**
 	 * <p>UTP消息代理</p>
 	 * <p>{@link #buildKey(short, InetSocketAddress)}=消息代理</p>
 	 */
-	private final Map<String, UtpMessageHandler> utpMessageHandlers = new ConcurrentHashMap<>();
+	private final UtpConnectionTable utpMessageHandlers = UtpConnectionTable.newInstance();
 	
 	private UtpService() {
 	}
@@ -74,22 +86,71 @@ public final class UtpService {
 	
 	/**
 	 * <p>获取UTP消息代理</p>
-	 * <p>如果已经存在直接返回，否者创建并返回。</p>
+	 * <p>如果已经存在直接返回，否者如果是握手消息并且半连接数量没有超过限制创建并返回。</p>
 	 * 
-	 * @param connectionId 连接ID
+	 * @param buffer 消息
 	 * @param socketAddress 连接地址
 	 * 
-	 * @return UTP消息代理
+	 * @return UTP消息代理：{@code null}-丢弃消息
 	 */
-	public UdpMessageHandler get(short connectionId, InetSocketAddress socketAddress) {
-		final String key = this.buildKey(connectionId, socketAddress);
-		final UtpMessageHandler utpMessageHandler = this.utpMessageHandlers.get(key);
+	public UdpMessageHandler get(ByteBuffer buffer, InetSocketAddress socketAddress) {
+		if(buffer.position() < UTP_HEADER_MIN_LENGTH) {
+			LOGGER.debug("UTP消息长度错误：{}", buffer.position());
+			return null;
+		}
+		final short connectionId = buffer.getShort(2); // 连接ID
+		final long key = this.buildKey(connectionId, socketAddress);
+		final UtpMessageHandler utpMessageHandler;
+		synchronized (this.utpMessageHandlers) {
+			utpMessageHandler = this.utpMessageHandlers.get(key);
+		}
 		if(utpMessageHandler != null) {
-			return utpMessageHandler;
+			if(
+				socketAddress.getAddress() instanceof Inet4Address ||
+				socketAddress.equals(utpMessageHandler.remoteSocketAddress())
+			) {
+				return utpMessageHandler;
+			}
+			// IPv6地址key冲突
+			LOGGER.debug("UTP消息代理key冲突：{}-{}", socketAddress, connectionId);
+			return null;
+		}
+		if(buffer.get(0) != UtpConfig.Type.SYN.typeVersion()) {
+			LOGGER.debug("UTP消息代理不存在（丢弃消息）：{}-{}", socketAddress, connectionId);
+			return null;
+		}
+		if(this.halfOpen.get() >= UtpConfig.MAX_HALF_OPEN) {
+			LOGGER.debug("UTP半连接数量超过限制：{}", socketAddress);
+			return null;
 		}
 		return new UtpMessageHandler(connectionId, socketAddress);
 	}
 	
+	/**
+	 * <p>添加半连接</p>
+	 * <p>服务端创建时添加</p>
+	 */
+	public void acquireHalfOpen() {
+		this.halfOpen.incrementAndGet();
+	}
+	
+	/**
+	 * <p>释放半连接</p>
+	 * <p>服务端收到数据消息或者关闭时释放</p>
+	 */
+	public void releaseHalfOpen() {
+		this.halfOpen.decrementAndGet();
+	}
+	
+	/**
+	 * <p>获取半连接数量</p>
+	 * 
+	 * @return 半连接数量
+	 */
+	public int halfOpen() {
+		return this.halfOpen.get();
+	}
+	
 	/**
 	 * <p>添加UTP消息代理</p>
 	 * 
@@ -108,46 +169,45 @@ public final class UtpService {
 	 */
 	public void remove(UtpMessageHandler utpMessageHandler) {
 		synchronized (this.utpMessageHandlers) {
-			this.utpMessageHandlers.remove(utpMessageHandler.key());
+			this.utpMessageHandlers.remove(utpMessageHandler.key(), utpMessageHandler);
 		}
 	}
 	
 	/**
 	 * <p>生成UTP消息代理key</p>
-	 * <p>key = 地址 + 端口 + connectionId</p>
+	 * <p>key = 地址（32位） + 端口（16位） + connectionId（16位）</p>
+	 * <p>IPv4地址的hashCode就是地址数值，IPv6地址使用hashCode（获取消息代理时验证地址）。</p>
 	 * 
 	 * @param connectionId 连接ID
 	 * @param socketAddress 请求地址
 	 * 
 	 * @return key
 	 */
-	public String buildKey(short connectionId, InetSocketAddress socketAddress) {
-		return socketAddress.getHostString() + socketAddress.getPort() + connectionId;
+	public long buildKey(short connectionId, InetSocketAddress socketAddress) {
+		final InetAddress address = socketAddress.getAddress();
+		final long host = address == null ? socketAddress.getHostString().hashCode() : address.hashCode();
+		return (host << 32) | ((socketAddress.getPort() & 0xFFFFL) << 16) | (connectionId & 0xFFFFL);
 	}
 	
 	/**
 	 * <p>处理超时UTP消息</p>
-	 * <p>如果消息代理可用：重新发送超时消息</p>
-	 * <p>如果消息代理不可用：关闭消息代理</p>
+	 * <p>如果消息代理不可用或者半连接超时：关闭消息代理</p>
+	 * <p>超时重传由消息代理超时重传定时任务处理：这里重传会导致超时时间重复退避</p>
 	 */
 	private void timeout() {
 		LOGGER.debug("处理超时UTP消息");
+		final List<UtpMessageHandler> handlers;
 		synchronized (this.utpMessageHandlers) {
-			try {
-				this.utpMessageHandlers.values().stream()
-					.filter(handler -> {
-						if(handler.available()) { // 消息代理可用：重试
-							handler.timeoutRetry();
-							return false;
-						} else { // 消息代理不可用：关闭
-							return true;
-						}
-					})
-					.collect(Collectors.toList()) // 转换List再关闭：防止关闭时删除消息代理产生异常
-					.forEach(value -> value.close());
-			} catch (Exception e) {
-				LOGGER.error("处理超时UTP消息异常", e);
+			handlers = this.utpMessageHandlers.values(); // 转换List再关闭：防止关闭时删除消息代理产生异常
+		}
+		try {
+			for (UtpMessageHandler handler : handlers) {
+				if(!handler.available() || handler.halfOpenTimeout()) { // 消息代理不可用：关闭
+					handler.close();
+				}
 			}
+		} catch (Exception e) {
+			LOGGER.error("处理超时UTP消息异常", e);
 		}
 	}
 
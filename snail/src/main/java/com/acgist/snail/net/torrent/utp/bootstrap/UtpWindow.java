@@ -1,16 +1,9 @@
 package com.acgist.snail.net.torrent.utp.bootstrap;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.util.LinkedHashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.Semaphore;
-import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -21,6 +14,8 @@ import com.acgist.snail.utils.DateUtils;
 
 /**
  * <p>UTP滑块窗口</p>
+ * <p>发送窗口：传输中数据大小不能超过阻塞窗口（{@link UtpLedbat}）和接收端剩余窗口，发送前使用{@link #sendable(int)}判断，发送窗口不会阻塞线程。</p>
+ * <p>窗口数据使用环形缓存（索引：seqnr & mask），处理响应只会遍历确认的数据包。</p>
  * 
  * @author acgist
  */
@@ -29,28 +24,45 @@ public final class UtpWindow {
 	private static final Logger LOGGER = LoggerFactory.getLogger(UtpWindow.class);
 
 	/**
-	 * <p>默认最大超时时间（微秒）：{@value}</p>
+	 * <p>最小超时时间（微秒）：{@value}</p>
 	 */
-	private static final int MAX_TIMEOUT = 500 * 1000;
+	private static final int MIN_TIMEOUT = 500 * 1000;
 	/**
-	 * <p>最小窗口大小：{@value}</p>
+	 * <p>默认超时时间（微秒）：{@value}</p>
+	 * <p>没有RTT样本时使用</p>
 	 */
-	private static final int MIN_WND_SIZE = 16;
+	private static final int DEFAULT_TIMEOUT = 1000 * 1000;
 	/**
-	 * <p>最大窗口大小：{@value}</p>
+	 * <p>最大超时时间（微秒）：{@value}</p>
+	 * <p>超时重传指数退避上限</p>
 	 */
-	private static final int MAX_WND_SIZE = 64;
+	private static final int MAX_TIMEOUT = 30 * 1000 * 1000;
 	/**
-	 * <p>获取信号量超时时间（秒）：{@value}</p>
-	 * <p>防止长时间获取不到信号量导致线程阻塞</p>
+	 * <p>选择确认判断丢包数量：{@value}</p>
+	 * <p>数据包之后超过这个数量的数据包已经确认：视为丢包</p>
 	 */
-	private static final int SEMAPHORE_TIMEOUT = 2;
+	private static final int SACK_LOSS_COUNT = 3;
+	/**
+	 * <p>环形缓存大小：{@value}</p>
+	 * <p>必须是2的幂：窗口数据数量不能超过这个值</p>
+	 */
+	private static final int RING_SIZE = 1024;
+	/**
+	 * <p>环形缓存索引掩码：{@value}</p>
+	 */
+	private static final int RING_MASK = RING_SIZE - 1;
 	
 	//================流量控制、阻塞控制================//
 	/**
-	 * <p>当前窗口大小</p>
+	 * <p>接收端剩余窗口大小</p>
+	 * <p>发送端使用</p>
 	 */
-	private volatile int wnd = MIN_WND_SIZE;
+	private volatile int remoteWndSize;
+	/**
+	 * <p>LEDBAT阻塞控制</p>
+	 * <p>发送端使用</p>
+	 */
+	private final UtpLedbat ledbat;
 	//================流量控制、阻塞控制================//
 	
 	//================超时计算================//
@@ -96,23 +108,27 @@ public final class UtpWindow {
 	 * </dl>
 	 */
 	private volatile int timestamp;
+	/**
+	 * <p>发送端：最后确认的seqnr</p>
+	 */
+	private short ackSeqnr;
 	/**
 	 * <dl>
-	 * 	<dt>窗口数据</dt>
+	 * 	<dt>窗口数据（环形缓存）</dt>
 	 * 	<dd>接收端：未处理的数据</dd>
 	 * 	<dd>发送端：未响应的数据</dd>
 	 * </dl>
 	 * <p>数据可能是不连贯的：先收到后发送的数据包</p>
 	 */
-	private final Map<Short, UtpWindowData> wndMap;
+	private final UtpWindowData[] wndDatas;
 	/**
-	 * <p>发送窗口控制信号量</p>
+	 * <p>窗口数据数量</p>
 	 */
-	private final Semaphore semaphore;
+	private int wndDataSize;
 	/**
 	 * <p>UTP窗口请求队列</p>
 	 */
-	private final BlockingQueue<UtpRequest> requests;
+	private final UtpConnectionQueue requests;
 	/**
 	 * <p>消息处理器</p>
 	 */
@@ -134,20 +150,24 @@ public final class UtpWindow {
 	private UtpWindow(IMessageCodec<ByteBuffer> messageCodec) {
 		this.rtt = 0;
 		this.rttVar = 0;
-		this.timeout = MAX_TIMEOUT;
+		this.timeout = DEFAULT_TIMEOUT;
 		this.wndSize = 0;
 		this.seqnr = 1;
+		this.ackSeqnr = 0;
 		this.timestamp = 0;
-		this.wndMap = new LinkedHashMap<>();
-		this.semaphore = new Semaphore(MIN_WND_SIZE);
+		this.wndDatas = new UtpWindowData[RING_SIZE];
+		this.wndDataSize = 0;
+		this.remoteWndSize = UtpConfig.WND_SIZE;
 		if(messageCodec == null) {
 			// 发送窗口对象
+			this.ledbat = UtpLedbat.newInstance();
 			this.requests = null;
 			this.messageCodec = null;
 		} else {
 			// 接收窗口对象
-			// 同一个窗口必须将消息发送到同一个请求队列防止消息出现乱序
-			this.requests = UtpRequestQueue.getInstance().requestQueue();
+			// 每个接收窗口使用独立请求队列：保证消息顺序处理
+			this.ledbat = null;
+			this.requests = UtpRequestQueue.getInstance().newQueue();
 			this.messageCodec = messageCodec;
 		}
 	}
@@ -212,13 +232,13 @@ public final class UtpWindow {
 	/**
 	 * <p>发送数据</p>
 	 * <p>递增seqnr</p>
+	 * <p>不会等待发送窗口：调用前使用{@link #sendable(int)}判断是否可以发送</p>
 	 * 
 	 * @param data 数据
 	 * 
 	 * @return 窗口数据
 	 */
 	public UtpWindowData build(byte[] data) {
-		this.acquire(); // 不能加锁
 		synchronized (this) {
 			this.timestamp = DateUtils.timestampUs();
 			final UtpWindowData windowData = this.storage(this.timestamp, this.seqnr, data);
@@ -229,6 +249,7 @@ public final class UtpWindow {
 
 	/**
 	 * <p>获取超时的数据包</p>
+	 * <p>存在超时数据包时超时时间加倍（指数退避）</p>
 	 * 
 	 * @return 超时的数据包
 	 */
@@ -236,47 +257,159 @@ public final class UtpWindow {
 		synchronized (this) {
 			final int timestamp = DateUtils.timestampUs();
 			final int timeout = this.timeout;
-			return this.wndMap.values().stream()
-				.filter(windowData -> timestamp - windowData.getTimestamp() > timeout)
-				.collect(Collectors.toList());
+			final List<UtpWindowData> list = new ArrayList<>();
+			UtpWindowData windowData;
+			for (short seqnr = (short) (this.ackSeqnr + 1); seqnr != this.seqnr; seqnr++) {
+				windowData = this.get(seqnr);
+				if(windowData != null && timestamp - windowData.getTimestamp() > timeout) {
+					list.add(windowData);
+				}
+			}
+			if(!list.isEmpty()) {
+				this.timeout = Math.min(MAX_TIMEOUT, timeout * 2);
+				if(this.ledbat != null) {
+					this.ledbat.timeout();
+				}
+			}
+			return list;
+		}
+	}
+	
+	/**
+	 * <p>获取超时时间（微秒）</p>
+	 * 
+	 * @return 超时时间
+	 */
+	public int timeout() {
+		return this.timeout;
+	}
+	
+	/**
+	 * <p>判断是否含有未确认数据</p>
+	 * 
+	 * @return 是否含有未确认数据
+	 */
+	public boolean hasUnack() {
+		synchronized (this) {
+			return this.wndDataSize > 0;
 		}
 	}
 	
 	/**
 	 * <p>处理响应</p>
 	 * <p>移除已经响应数据并更新超时时间</p>
-	 * <p>如果响应编号没有处理说明没有丢包，如果响应编号已经处理说明可能发生丢包。</p>
+	 * <p>如果响应编号没有处理说明没有丢包，如果响应编号已经处理并且含有未确认数据说明可能发生丢包。</p>
+	 * <p>重传数据包不计算超时时间（Karn算法）</p>
 	 * 
 	 * @param acknr 响应编号：最后处理编号
 	 * @param wndSize 剩余窗口大小
+	 * @param delay 单向延迟（timestamp_difference）
 	 * 
 	 * @return 是否丢包：true-丢包；false-没有丢包；
 	 */
-	public boolean ack(final short acknr, final int wndSize) {
+	public boolean ack(final short acknr, final int wndSize, final int delay) {
 		synchronized (this) {
-			this.wndSize = wndSize;
-			final int timestamp = DateUtils.timestampUs();
-			final var ackList = this.wndMap.entrySet().stream()
-				.filter(entry -> {
-					// 移除编号小于等于当前响应编号的数据
-					final short diff = (short) (acknr - entry.getKey());
-					return diff >= 0;
-				})
-				.peek(entry -> {
-					this.timeout(timestamp - entry.getValue().getTimestamp()); // 计算超时时间
-				})
-				.map(Entry::getKey)
-				.collect(Collectors.toList());
-			if(ackList.isEmpty()) {
-				return true;
-			} else {
-				ackList.forEach(seqnr -> {
-					this.release(); // 释放信号量
-					this.take(seqnr); // 删除数据
-				});
-				this.wnd();
+			this.remoteWndSize = wndSize;
+			final short diff = (short) (acknr - this.ackSeqnr);
+			if(diff <= 0) {
+				return this.wndDataSize > 0;
+			}
+			if(diff > (short) (this.seqnr - 1 - this.ackSeqnr)) {
+				LOGGER.debug("UTP响应编号错误：{}-{}", acknr, this.seqnr);
 				return false;
 			}
+			final int flightSize = this.wndSize;
+			final int timestamp = DateUtils.timestampUs();
+			UtpWindowData windowData;
+			// 移除编号小于等于当前响应编号的数据
+			for (short seqnr = (short) (this.ackSeqnr + 1); ; seqnr++) {
+				windowData = this.take(seqnr);
+				if(windowData != null && windowData.getPushTimes() == 1) {
+					this.timeout(timestamp - windowData.getTimestamp()); // 计算超时时间
+				}
+				if(seqnr == acknr) {
+					break;
+				}
+			}
+			this.ackSeqnr = acknr;
+			this.ledbat.ack(flightSize - this.wndSize, flightSize, delay, timestamp);
+			LOGGER.debug("UTP阻塞窗口大小：{}", this.ledbat.cwnd());
+			return false;
+		}
+	}
+	
+	/**
+	 * <p>处理选择确认</p>
+	 * <p>移除已经选择确认数据，返回丢失数据包：数据包之后超过{@value #SACK_LOSS_COUNT}个数据包已经确认，并且发送时间超过往返时间。</p>
+	 * <p>位图第一个字节表示[acknr + 2, acknr + 9]，字节最低位表示编号较小的数据包。</p>
+	 * 
+	 * @param acknr 响应编号
+	 * @param sack 选择确认位图
+	 * 
+	 * @return 丢失数据包
+	 */
+	public List<UtpWindowData> sack(final short acknr, final byte[] sack) {
+		synchronized (this) {
+			final int timestamp = DateUtils.timestampUs();
+			final int flightSize = this.wndSize;
+			final int bits = sack.length * 8;
+			int sackCount = 0;
+			for (int index = 0; index < bits; index++) {
+				if((sack[index / 8] & (1 << (index % 8))) != 0) {
+					sackCount++;
+					this.take((short) (acknr + 2 + index));
+				}
+			}
+			final List<UtpWindowData> losts = new ArrayList<>();
+			// acknr + 1：一定没有确认
+			int after = sackCount;
+			for (int index = -1; index < bits && after >= SACK_LOSS_COUNT; index++) {
+				if(index >= 0 && (sack[index / 8] & (1 << (index % 8))) != 0) {
+					after--;
+					continue;
+				}
+				final UtpWindowData windowData = this.get((short) (acknr + 2 + index));
+				if(windowData != null && timestamp - windowData.getTimestamp() > this.rtt) {
+					losts.add(windowData);
+				}
+			}
+			if(flightSize > this.wndSize) {
+				this.ledbat.ack(flightSize - this.wndSize, flightSize, 0, timestamp);
+			}
+			if(!losts.isEmpty()) {
+				this.ledbat.loss(timestamp, this.rtt);
+			}
+			return losts;
+		}
+	}
+	
+	/**
+	 * <p>获取选择确认位图</p>
+	 * <p>接收端使用：标记已经接收但是没有处理的数据包</p>
+	 * 
+	 * @return 选择确认位图：null-没有乱序数据
+	 * 
+	 * @see #sack(short, byte[])
+	 */
+	public byte[] sack() {
+		synchronized (this) {
+			if(this.wndDataSize == 0) {
+				return null;
+			}
+			final byte[] sack = new byte[UtpConfig.SACK_MAX_LENGTH];
+			final int bits = UtpConfig.SACK_MAX_LENGTH * 8;
+			int maxIndex = -1;
+			for (int index = 0; index < bits; index++) {
+				if(this.get((short) (this.seqnr + 2 + index)) != null) {
+					sack[index / 8] |= 1 << (index % 8);
+					maxIndex = index;
+				}
+			}
+			if(maxIndex < 0) {
+				return null;
+			}
+			// 长度必须是4的倍数
+			return Arrays.copyOf(sack, (maxIndex / 32 + 1) * 4);
 		}
 	}
 	
@@ -286,56 +419,74 @@ public final class UtpWindow {
 	 * 	<dd>如果seqnr != 下一个编号：放入缓存</dd>
 	 * 	<dd>如果seqnr == 下一个编号：放入缓存、读取数据、更新seqnr，然后继续获取seqnr直到seqnr != 下一个编号为止，最后合并消息并处理。</dd>
 	 * </dl>
+	 * <p>没有乱序数据时顺序数据直接处理（不放入缓存）</p>
+	 * <p>超出环形缓存的数据直接丢弃：等待重传</p>
 	 * 
 	 * @param timestamp 时间戳
 	 * @param seqnr 请求编号
 	 * @param buffer 请求数据
-	 * 
-	 * @throws IOException IO异常
 	 */
-	public void receive(int timestamp, short seqnr, ByteBuffer buffer) throws IOException {
+	public void receive(int timestamp, short seqnr, ByteBuffer buffer) {
 		synchronized (this) {
-			final short diff = (short) (this.seqnr - seqnr);
-			if(diff >= 0) { // seqnr已被处理
+			final short diff = (short) (seqnr - this.seqnr);
+			if(diff <= 0 || this.get(seqnr) != null) { // seqnr已被处理或者重复数据
 				return;
 			}
-			this.storage(timestamp, seqnr, buffer); // 先保存数据
-			UtpWindowData nextWindowData;
-			short nextSeqnr = this.seqnr;
-			final var output = new ByteArrayOutputStream();
-			while(true) {
-				nextSeqnr = (short) (nextSeqnr + 1); // 下一个请求编号
-				nextWindowData = this.take(nextSeqnr);
-				if(nextWindowData == null) {
-					break;
-				} else {
+			if(diff > RING_SIZE) {
+				LOGGER.debug("UTP数据超出窗口：{}-{}", seqnr, this.seqnr);
+				return;
+			}
+			final ByteBuffer message;
+			if(diff == 1 && this.wndDataSize == 0) {
+				// 顺序数据
+				this.seqnr = seqnr;
+				this.timestamp = timestamp;
+				if(!buffer.hasRemaining()) {
+					return;
+				}
+				message = ByteBuffer.allocate(buffer.remaining());
+				message.put(buffer);
+			} else {
+				this.storage(timestamp, seqnr, buffer); // 先保存数据
+				int length = 0;
+				UtpWindowData nextWindowData;
+				short nextSeqnr = (short) (this.seqnr + 1);
+				while((nextWindowData = this.get(nextSeqnr)) != null) {
+					length += nextWindowData.getLength();
+					nextSeqnr++;
+				}
+				if(nextSeqnr == (short) (this.seqnr + 1)) {
+					// 没有连续数据
+					return;
+				}
+				message = ByteBuffer.allocate(length);
+				while((nextWindowData = this.take((short) (this.seqnr + 1))) != null) {
 					this.seqnr = nextWindowData.getSeqnr();
 					this.timestamp = nextWindowData.getTimestamp();
-					output.write(nextWindowData.getData());
+					message.put(nextWindowData.getData());
+				}
+				if(length == 0) {
+					return;
 				}
-			}
-			final byte[] bytes = output.toByteArray();
-			if(bytes.length == 0) {
-				return;
 			}
 			LOGGER.debug("处理数据消息：{}", this.seqnr);
-			// 同步处理
-//			this.messageCodec.decode(windowData.buffer());
 			// 异步处理
-			if(!this.requests.offer(UtpRequest.newInstance(ByteBuffer.wrap(bytes).compact(), this.messageCodec))) {
+			if(!this.requests.offer(UtpRequest.newInstance(message, this.messageCodec))) {
 				LOGGER.warn("UTP请求插入请求队列失败：{}", this.seqnr);
 			}
 		}
 	}
 	
 	/**
-	 * <p>获取最后一个未确认数据包</p>
+	 * <p>获取第一个未确认数据包</p>
+	 * 
+	 * @param acknr 响应编号
 	 * 
-	 * @return 最后一个未确认数据包
+	 * @return 第一个未确认数据包
 	 */
-	public UtpWindowData lastUnack() {
+	public UtpWindowData unack(short acknr) {
 		synchronized (this) {
-			return this.wndMap.get((short) (this.seqnr + 1));
+			return this.get((short) (acknr + 1));
 		}
 	}
 	
@@ -350,6 +501,31 @@ public final class UtpWindow {
 		}
 	}
 	
+	/**
+	 * <p>丢包（快速重传）</p>
+	 * <p>阻塞窗口减半</p>
+	 */
+	public void loss() {
+		synchronized (this) {
+			this.ledbat.loss(DateUtils.timestampUs(), this.rtt);
+		}
+	}
+	
+	/**
+	 * <p>获取窗口数据</p>
+	 * 
+	 * @param seqnr 请求编号
+	 * 
+	 * @return 窗口数据
+	 */
+	private UtpWindowData get(short seqnr) {
+		final UtpWindowData windowData = this.wndDatas[seqnr & RING_MASK];
+		if(windowData == null || windowData.getSeqnr() != seqnr) {
+			return null;
+		}
+		return windowData;
+	}
+	
 	/**
 	 * <p>取出窗口数据</p>
 	 * <p>取出窗口数据并更新窗口大小</p>
@@ -359,10 +535,12 @@ public final class UtpWindow {
 	 * @return 窗口数据
 	 */
 	private UtpWindowData take(short seqnr) {
-		final UtpWindowData windowData = this.wndMap.remove(seqnr);
+		final UtpWindowData windowData = this.get(seqnr);
 		if(windowData == null) {
 			return windowData;
 		}
+		this.wndDatas[seqnr & RING_MASK] = null;
+		this.wndDataSize--;
 		this.wndSize = this.wndSize - windowData.getLength();
 		return windowData;
 	}
@@ -393,7 +571,13 @@ public final class UtpWindow {
 	 */
 	private UtpWindowData storage(final int timestamp, final short seqnr, byte[] bytes) {
 		final UtpWindowData windowData = UtpWindowData.newInstance(seqnr, timestamp, bytes);
-		this.wndMap.put(seqnr, windowData);
+		final int index = seqnr & RING_MASK;
+		if(this.wndDatas[index] != null) {
+			// 窗口已经关闭：覆盖数据
+			this.take(this.wndDatas[index].getSeqnr());
+		}
+		this.wndDatas[index] = windowData;
+		this.wndDataSize++;
 		this.wndSize = this.wndSize + windowData.getLength();
 		return windowData;
 	}
@@ -406,76 +590,72 @@ public final class UtpWindow {
 	private void timeout(final int packetRtt) {
 		int rtt = this.rtt;
 		int rttVar = this.rttVar;
-		final int delta = rtt - packetRtt;
-		rtt += (packetRtt - rtt) / 8;
-		rttVar += (Math.abs(delta) - rttVar) / 4;
+		if(rtt == 0) {
+			// 第一个样本
+			rtt = packetRtt;
+			rttVar = packetRtt / 2;
+		} else {
+			final int delta = rtt - packetRtt;
+			rtt += (packetRtt - rtt) / 8;
+			rttVar += (Math.abs(delta) - rttVar) / 4;
+		}
 		this.rtt = rtt;
 		this.rttVar = rttVar;
-		this.timeout = Math.max(rtt + rttVar * 4, MAX_TIMEOUT);
+		this.timeout = Math.min(MAX_TIMEOUT, Math.max(rtt + rttVar * 4, MIN_TIMEOUT));
 		LOGGER.debug("UTP超时时间：{}", this.timeout);
 	}
 	
 	/**
-	 * <p>流量控制和阻塞控制</p>
-	 * <p>超时时间等于默认超时时间：窗口{@code +1}</p>
-	 * <p>超时时间大于默认超时时间：窗口{@code /2}</p>
+	 * <p>获取发送窗口大小</p>
+	 * <p>阻塞窗口和接收端剩余窗口最小值</p>
+	 * 
+	 * @return 发送窗口大小
 	 */
-	private void wnd() {
-		int wnd = this.wnd;
-		if(this.timeout <= MAX_TIMEOUT) {
-			if(wnd < MAX_WND_SIZE) {
-				wnd++;
-				this.release();
-			}
-		} else {
-			wnd = wnd / 2;
-			if(wnd < MIN_WND_SIZE) {
-				this.wnd = MIN_WND_SIZE;
-			}
-		}
-		this.wnd = wnd;
-		LOGGER.debug("UTP窗口大小：{}", this.wnd);
+	private int sendWndSize() {
+		return Math.min(this.ledbat.cwnd(), this.remoteWndSize);
 	}
 	
 	/**
-	 * <p>获取信号量</p>
-	 * <p>如果窗口已经关闭：不需要获取信号量</p>
+	 * <p>判断是否可以发送数据</p>
+	 * <p>传输中数据大小加上发送数据大小不能超过发送窗口大小</p>
+	 * <p>没有传输中数据时直接发送：防止窗口小于数据包大小时一直不能发送</p>
+	 * <p>如果窗口已经关闭：直接发送</p>
+	 * <p>如果环形缓存已满：不能发送（不能覆盖未确认数据）</p>
+	 * 
+	 * @param length 发送数据大小
+	 * 
+	 * @return 是否可以发送
 	 */
-	private void acquire() {
-		if(this.close) {
-			return;
-		}
-		try {
-			LOGGER.debug("信号量获取：{}", this.semaphore.availablePermits());
-//			this.semaphore.acquire();
-			final boolean ok = this.semaphore.tryAcquire(SEMAPHORE_TIMEOUT, TimeUnit.SECONDS);
-			if(!ok) {
-				LOGGER.debug("信号量获取失败");
+	public boolean sendable(int length) {
+		synchronized (this) {
+			if(this.close || this.wndDataSize == 0) {
+				return true;
+			}
+			if((short) (this.seqnr - this.ackSeqnr) > RING_SIZE) {
+				return false;
 			}
-		} catch (InterruptedException e) {
-			LOGGER.debug("信号量获取异常", e);
-			Thread.currentThread().interrupt();
+			return this.wndSize + length <= this.sendWndSize();
 		}
 	}
 	
 	/**
-	 * <p>释放信号量</p>
+	 * <p>关闭窗口</p>
+	 * <p>标记关闭：等待发送的数据直接发送</p>
 	 */
-	public void release() {
-		final int available = this.semaphore.availablePermits();
-		LOGGER.debug("信号量释放：{}", available);
-		if(available < this.wnd) {
-			this.semaphore.release();
+	public void close() {
+		synchronized (this) {
+			this.close = true;
 		}
 	}
 	
 	/**
-	 * <p>关闭窗口</p>
-	 * <p>标记关闭、释放信号量</p>
+	 * <p>获取请求队列</p>
+	 * <p>发送窗口没有请求队列</p>
+	 * 
+	 * @return 请求队列
 	 */
-	public void close() {
-		this.close = true;
-		this.release();
+	public UtpConnectionQueue requestQueue() {
+		return this.requests;
 	}
 	
 	/**
@@ -24,17 +24,23 @@ public interface IStatisticsSession {
 	
 	/**
 	 * <p>上传限速</p>
+	 * <p>不会阻塞线程：调用者按照等待时间延迟下次发送</p>
 	 * 
 	 * @param buffer 上传数据大小
+	 * 
+	 * @return 等待时间（毫秒）
 	 */
-	void uploadLimit(int buffer);
+	long uploadLimit(int buffer);
 	
 	/**
 	 * <p>下载限速</p>
+	 * <p>不会阻塞线程：调用者按照等待时间延迟下次读取</p>
 	 * 
 	 * @param buffer 下载数据大小
+	 * 
+	 * @return 等待时间（毫秒）
 	 */
-	void downloadLimit(int buffer);
+	long downloadLimit(int buffer);
 	
 	/**
 	 * <p>获取上传速度</p>
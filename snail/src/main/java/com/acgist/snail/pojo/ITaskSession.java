@@ -4,6 +4,8 @@ import java.io.File;
 import java.util.List;
 import java.util.Map;
 
+import com.acgist.snail.config.BandwidthConfig;
+import com.acgist.snail.config.BandwidthConfig.TaskBandwidth;
 import com.acgist.snail.context.exception.DownloadException;
 import com.acgist.snail.downloader.IDownloader;
 
@@ -149,6 +151,22 @@ public interface ITaskSession extends ITaskSessionTable, ITaskSessionEntity, ITa
 	 * @return 多文件下载任务选择下载文件列表
 	 */
 	List<String> multifileSelected();
+	
+	/**
+	 * <p>获取任务带宽配置</p>
+	 * 
+	 * @return 任务带宽配置
+	 */
+	TaskBandwidth bandwidth();
+	
+	/**
+	 * <p>设置任务带宽配置</p>
+	 * <p>下次重新分配带宽时生效</p>
+	 * 
+	 * @param type 带宽类型
+	 * @param weight 任务权重
+	 */
+	void bandwidth(BandwidthConfig.Type type, int weight);
 
 	/**
 	 * <p>获取已下载大小</p>
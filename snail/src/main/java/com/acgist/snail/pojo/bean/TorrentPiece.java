@@ -1,5 +1,7 @@
 package com.acgist.snail.pojo.bean;
 
+import java.nio.ByteBuffer;
+
 import com.acgist.snail.config.SystemConfig;
 import com.acgist.snail.utils.ArrayUtils;
 import com.acgist.snail.utils.StringUtils;
@@ -198,9 +200,24 @@ public final class TorrentPiece {
 	 * @return true-完成；false-没有完成；
 	 */
 	public boolean write(final int begin, final byte[] bytes) {
+		return this.write(begin, ByteBuffer.wrap(bytes));
+	}
+	
+	/**
+	 * <p>写入Slice数据</p>
+	 * <p>写入后修改{@link #size}</p>
+	 * <p>直接读取缓冲剩余数据，不用创建中间数组。</p>
+	 * 
+	 * @param begin 数据开始位移：整个Piece内偏移
+	 * @param buffer 数据
+	 * 
+	 * @return true-完成；false-没有完成；
+	 */
+	public boolean write(final int begin, final ByteBuffer buffer) {
 		synchronized (this) {
-			System.arraycopy(bytes, 0, this.data, begin - this.begin, bytes.length);
-			this.size += bytes.length;
+			final int length = buffer.remaining();
+			buffer.get(this.data, begin - this.begin, length);
+			this.size += length;
 			return this.complete();
 		}
 	}
@@ -13,6 +13,7 @@ import com.acgist.snail.context.SystemThreadContext;
 import com.acgist.snail.net.hls.HlsClient;
 import com.acgist.snail.pojo.IStatisticsSession;
 import com.acgist.snail.pojo.ITaskSession;
+import com.acgist.snail.utils.ThreadUtils;
 
 /**
  * <p>HSL任务信息</p>
@@ -128,7 +129,11 @@ public final class HlsSession {
 	 */
 	public void download(int buffer) {
 		this.statistics.download(buffer);
-		this.statistics.downloadLimit(buffer);
+		// HLS下载线程：直接休眠等待
+		final long wait = this.statistics.downloadLimit(buffer);
+		if(wait > 0L) {
+			ThreadUtils.sleep(wait);
+		}
 	}
 	
 	/**
@@ -1,6 +1,7 @@
 package com.acgist.snail.pojo.session;
 
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
 
 import com.acgist.snail.config.DownloadConfig;
 import com.acgist.snail.config.SystemConfig;
@@ -8,6 +9,8 @@ import com.acgist.snail.utils.ThreadUtils;
 
 /**
  * <p>限速信息</p>
+ * <p>令牌桶算法：按照限制速度持续生成令牌，消耗数据大小的令牌，令牌不足时返回等待时间（不会阻塞线程）。</p>
+ * <p>令牌允许透支：数据已经读取（发送）只能记账，调用者按照等待时间延迟下次读取（发送）。</p>
  * 
  * @author acgist
  */
@@ -28,72 +31,134 @@ public final class LimitSession {
 	}
 	
 	/**
-	 * <p>限制类型</p>
+	 * <p>令牌桶容量（毫秒）：{@value}</p>
+	 * <p>空闲时最多积累的令牌（突发流量），容量越小限速越平滑。</p>
 	 */
-	private final Type type;
+	private static final long BURST_MILLIS = 200L;
 	/**
-	 * <p>限速采样</p>
+	 * <p>最大等待时间（毫秒）：{@value}</p>
+	 * <p>限制透支令牌数量（修改限速后不会长时间等待）</p>
 	 */
-	private final AtomicLong limitBuffer;
+	private static final long MAX_WAIT_MILLIS = SystemConfig.ONE_SECOND_MILLIS;
 	/**
-	 * <p>限速最后一次采样时间</p>
+	 * <p>一秒（纳秒）</p>
 	 */
-	private volatile long lastLimitTime;
+	private static final long ONE_SECOND_NANOS = TimeUnit.SECONDS.toNanos(1);
 	
 	/**
+	 * <p>限制速度（B/s）</p>
+	 * <p>每次获取：修改限速后立即生效</p>
+	 */
+	private final LongSupplier maxLimitBuffer;
+	/**
+	 * <p>令牌数量（字节）</p>
+	 * <p>负数表示透支</p>
+	 */
+	private long tokens;
+	/**
+	 * <p>最后一次生成令牌时间（纳秒）</p>
+	 */
+	private long lastRefillTime;
+	
+	/**
+	 * <p>任务限速：{@linkplain DownloadConfig#getBuffer() 下载速度（单个）}</p>
+	 * 
 	 * @param type 限制类型
 	 */
 	public LimitSession(Type type) {
-		this.type = type;
-		this.limitBuffer = new AtomicLong(0);
-		this.lastLimitTime = System.currentTimeMillis();
+		this(type == Type.UPLOAD ? DownloadConfig::getUploadBufferByte : DownloadConfig::getDownloadBufferByte);
+	}
+	
+	/**
+	 * @param maxLimitBuffer 限制速度（B/s）：小于等于零不限速
+	 */
+	public LimitSession(LongSupplier maxLimitBuffer) {
+		this(maxLimitBuffer, System.nanoTime());
+	}
+	
+	/**
+	 * @param maxLimitBuffer 限制速度（B/s）：小于等于零不限速
+	 * @param now 当前时间（纳秒）
+	 */
+	LimitSession(LongSupplier maxLimitBuffer, long now) {
+		this.maxLimitBuffer = maxLimitBuffer;
+		this.tokens = 0L;
+		this.lastRefillTime = now;
+	}
+	
+	/**
+	 * <p>消耗令牌</p>
+	 * <p>不会阻塞线程：调用者按照等待时间延迟下次读取（发送）</p>
+	 * 
+	 * @param buffer 数据大小
+	 * 
+	 * @return 等待时间（毫秒）
+	 */
+	public long acquire(long buffer) {
+		return this.acquire(buffer, System.nanoTime());
+	}
+	
+	/**
+	 * <p>消耗令牌</p>
+	 * 
+	 * @param buffer 数据大小
+	 * @param now 当前时间（纳秒）
+	 * 
+	 * @return 等待时间（毫秒）
+	 */
+	long acquire(long buffer, long now) {
+		final long maxLimitBuffer = this.maxLimitBuffer.getAsLong();
+		if(maxLimitBuffer <= 0L) {
+			// 没有限速
+			return 0L;
+		}
+		synchronized (this) {
+			this.refill(maxLimitBuffer, now);
+			this.tokens -= buffer;
+			// 限制透支
+			final long minTokens = -maxLimitBuffer * MAX_WAIT_MILLIS / SystemConfig.ONE_SECOND_MILLIS;
+			if(this.tokens < minTokens) {
+				this.tokens = minTokens;
+			}
+			if(this.tokens >= 0L) {
+				return 0L;
+			}
+			// 向上取整：防止等待结束时令牌依然不足
+			return (-this.tokens * SystemConfig.ONE_SECOND_MILLIS + maxLimitBuffer - 1) / maxLimitBuffer;
+		}
 	}
 	
 	/**
 	 * <p>限制速度</p>
+	 * <p>令牌不足时休眠等待</p>
+	 * <p>注意：会阻塞线程，只能在独立下载线程使用，网络线程使用{@link #acquire(long)}。</p>
 	 * 
 	 * @param buffer 数据大小
 	 */
 	public void limit(long buffer) {
-		final long interval = System.currentTimeMillis() - this.lastLimitTime;
-		final long limitBuffer = this.limitBuffer.addAndGet(buffer);
-		final long maxLimitBuffer = this.maxLimitBuffer();
-		if(limitBuffer >= maxLimitBuffer || interval >= SystemConfig.ONE_SECOND_MILLIS) { // 限速控制
-			synchronized (this.limitBuffer) { // 阻塞其他线程
-				if(limitBuffer == this.limitBuffer.get()) { // 验证
-					// 直接使用一秒：如果缓存较大就会出现误差
-//					final long expectTime = SystemConfig.ONE_SECOND_MILLIS;
-					// 通过实际下载大小计算
-//					final long expectTime = BigDecimal.valueOf(limitBuffer)
-//						.multiply(BigDecimal.valueOf(SystemConfig.ONE_SECOND_MILLIS))
-//						.divide(BigDecimal.valueOf(maxLimitBuffer), RoundingMode.HALF_UP)
-//						.longValue();
-					// 通过实际下载大小计算
-					final long expectTime = limitBuffer * SystemConfig.ONE_SECOND_MILLIS / maxLimitBuffer;
-					if(interval < expectTime) { // 限速时间
-						ThreadUtils.sleep(expectTime - interval);
-					}
-					this.limitBuffer.set(0); // 清零：不能在休眠前清零
-					this.lastLimitTime = System.currentTimeMillis();
-				} else { // 防止误差
-					this.limitBuffer.addAndGet(buffer);
-				}
-			}
+		final long wait = this.acquire(buffer);
+		if(wait > 0L) {
+			ThreadUtils.sleep(wait);
 		}
 	}
 	
 	/**
-	 * <p>获取限制速度</p>
-	 * <p>不能初始化成常量，否者设置限速后需要重启才生效。</p>
+	 * <p>生成令牌</p>
 	 * 
-	 * @return 限制速度
+	 * @param maxLimitBuffer 限制速度
+	 * @param now 当前时间（纳秒）
 	 */
-	private long maxLimitBuffer() {
-		if(this.type == Type.UPLOAD) {
-			return DownloadConfig.getUploadBufferByte();
-		} else {
-			return DownloadConfig.getDownloadBufferByte();
+	private void refill(long maxLimitBuffer, long now) {
+		// 防止溢出：透支令牌和令牌桶容量都不超过一秒
+		final long interval = Math.min(now - this.lastRefillTime, 2 * ONE_SECOND_NANOS);
+		final long tokens = interval * maxLimitBuffer / ONE_SECOND_NANOS;
+		if(tokens <= 0L) {
+			// 时间间隔太短：累计时间
+			return;
 		}
+		this.lastRefillTime = now;
+		final long maxTokens = maxLimitBuffer * BURST_MILLIS / SystemConfig.ONE_SECOND_MILLIS;
+		this.tokens = Math.min(maxTokens, this.tokens + tokens);
 	}
 	
 }
@@ -10,6 +10,17 @@ import com.acgist.snail.utils.ObjectUtils;
  */
 public final class NodeSession implements Comparable<NodeSession> {
 
+	/**
+	 * <p>良好节点活跃时间（毫秒）：{@value}</p>
+	 * <p>超过时间没有收到响应变为可疑节点</p>
+	 */
+	public static final long GOOD_ACTIVE_TIME = 15L * 60 * 1000;
+	/**
+	 * <p>坏节点失败次数：{@value}</p>
+	 * <p>连续多次没有收到响应变为坏节点</p>
+	 */
+	public static final int BAD_FAIL_TIMES = 3;
+
 	/**
 	 * <p>DHT节点状态</p>
 	 * 
@@ -42,6 +53,14 @@ public final class NodeSession implements Comparable<NodeSession> {
 	 * <p>节点状态</p>
 	 */
 	private Status status;
+	/**
+	 * <p>最后收到响应时间（毫秒）</p>
+	 */
+	private long activeTime;
+	/**
+	 * <p>连续失败次数</p>
+	 */
+	private int failTimes;
 
 	/**
 	 * @param id 节点ID
@@ -74,7 +93,7 @@ public final class NodeSession implements Comparable<NodeSession> {
 	 * @return 是否可以保存
 	 */
 	public boolean persistentable() {
-		return this.status != Status.VERIFY;
+		return this.status != Status.VERIFY && !this.bad();
 	}
 	
 	/**
@@ -122,6 +141,65 @@ public final class NodeSession implements Comparable<NodeSession> {
 		this.status = status;
 	}
 	
+	/**
+	 * <p>收到响应</p>
+	 * <p>设置可用状态、重置失败次数</p>
+	 */
+	public void active() {
+		this.status = Status.AVAILABLE;
+		this.failTimes = 0;
+		this.activeTime = System.currentTimeMillis();
+	}
+	
+	/**
+	 * <p>没有收到响应</p>
+	 * <p>增加失败次数：验证状态恢复未知状态（可以再次验证）</p>
+	 */
+	public void fail() {
+		this.failTimes++;
+		if(this.status == Status.VERIFY) {
+			this.status = Status.UNUSE;
+		}
+	}
+	
+	/**
+	 * <p>判断是否是良好节点</p>
+	 * <p>良好节点：最近{@value #GOOD_ACTIVE_TIME}毫秒收到响应</p>
+	 * 
+	 * @return 是否是良好节点
+	 */
+	public boolean good() {
+		return this.status == Status.AVAILABLE && System.currentTimeMillis() - this.activeTime < GOOD_ACTIVE_TIME;
+	}
+	
+	/**
+	 * <p>判断是否是坏节点</p>
+	 * <p>坏节点：连续{@value #BAD_FAIL_TIMES}次没有收到响应</p>
+	 * 
+	 * @return 是否是坏节点
+	 */
+	public boolean bad() {
+		return this.failTimes >= BAD_FAIL_TIMES;
+	}
+	
+	/**
+	 * <p>获取最后收到响应时间（毫秒）</p>
+	 * 
+	 * @return 最后收到响应时间（毫秒）
+	 */
+	public long getActiveTime() {
+		return activeTime;
+	}
+	
+	/**
+	 * <p>获取连续失败次数</p>
+	 * 
+	 * @return 连续失败次数
+	 */
+	public int getFailTimes() {
+		return failTimes;
+	}
+	
 	@Override
 	public int compareTo(NodeSession target) {
 		final byte[] sourceId = this.id;
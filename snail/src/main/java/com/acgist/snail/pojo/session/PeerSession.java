@@ -57,6 +57,19 @@ public final class PeerSession implements IStatisticsSessionGetter {
 	 * <p>失败次数</p>
 	 */
 	private volatile byte failTimes = 0;
+	/**
+	 * <p>最后失败时间（毫秒）</p>
+	 */
+	private volatile long failTime = 0L;
+	/**
+	 * <p>连接方式</p>
+	 * <p>记录上次连接成功的方式，再次连接时直接使用。</p>
+	 * 
+	 * @see PeerConfig#DIAL_NONE
+	 * @see PeerConfig#DIAL_TCP
+	 * @see PeerConfig#DIAL_UTP
+	 */
+	private volatile byte dial = PeerConfig.DIAL_NONE;
 	/**
 	 * <p>Peer地址</p>
 	 */
@@ -388,9 +401,51 @@ public final class PeerSession implements IStatisticsSessionGetter {
 	 * <p>握手失败增加失败次数，超过{@linkplain PeerConfig#MAX_FAIL_TIMES 最大失败次数}后不可用。</p>
 	 */
 	public void fail() {
+		this.failTime = System.currentTimeMillis();
 		this.failTimes++;
 	}
 	
+	/**
+	 * <p>判断是否可以连接</p>
+	 * <p>连接失败后{@linkplain PeerConfig#DIAL_FAIL_CACHE_TIME 缓存时间}乘以失败次数内不再连接</p>
+	 * 
+	 * @return true-可以连接；false-不能连接；
+	 */
+	public boolean dialable() {
+		return this.dialTime() <= System.currentTimeMillis();
+	}
+	
+	/**
+	 * <p>获取可以连接时间</p>
+	 * <p>最后连接失败时间加上{@linkplain PeerConfig#DIAL_FAIL_CACHE_TIME 缓存时间}乘以失败次数</p>
+	 * 
+	 * @return 可以连接时间（毫秒）：0-没有连接失败
+	 */
+	public long dialTime() {
+		if(this.failTimes == 0) {
+			return 0L;
+		}
+		return this.failTime + (long) PeerConfig.DIAL_FAIL_CACHE_TIME * this.failTimes;
+	}
+	
+	/**
+	 * <p>获取连接方式</p>
+	 * 
+	 * @return 连接方式
+	 */
+	public byte dial() {
+		return this.dial;
+	}
+	
+	/**
+	 * <p>设置连接方式</p>
+	 * 
+	 * @param dial 连接方式
+	 */
+	public void dial(byte dial) {
+		this.dial = dial;
+	}
+	
 	/**
 	 * <dl>
 	 * 	<dt>判断是否可用</dt>
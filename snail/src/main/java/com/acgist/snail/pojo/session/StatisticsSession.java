@@ -101,6 +101,25 @@ public final class StatisticsSession implements IStatisticsSession {
 		}
 	}
 
+	/**
+	 * <p>统计信息（自定义限速）</p>
+	 * 
+	 * @param uploadLimit 上传限速
+	 * @param downloadLimit 下载限速
+	 * @param parent 上级统计信息
+	 */
+	public StatisticsSession(LimitSession uploadLimit, LimitSession downloadLimit, IStatisticsSession parent) {
+		this.limit = true;
+		this.speed = true;
+		this.parent = parent;
+		this.uploadSize = new AtomicLong(0);
+		this.downloadSize = new AtomicLong(0);
+		this.uploadLimit = uploadLimit;
+		this.downloadLimit = downloadLimit;
+		this.uploadSpeed = new SpeedSession();
+		this.downloadSpeed = new SpeedSession();
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 * 
@@ -130,37 +149,41 @@ public final class StatisticsSession implements IStatisticsSession {
 	/**
 	 * {@inheritDoc}
 	 * 
-	 * <p>更新上级信息</p>
+	 * <p>更新上级信息：等待时间取所有层级（系统、任务、Peer）最大等待时间</p>
 	 */
 	@Override
-	public void uploadLimit(int buffer) {
+	public long uploadLimit(int buffer) {
+		long wait = 0L;
 		if(this.parent != null) {
-			this.parent.uploadLimit(buffer);
+			wait = this.parent.uploadLimit(buffer);
 		}
 		if(this.limit) {
-			this.uploadLimit.limit(buffer);
+			wait = Math.max(wait, this.uploadLimit.acquire(buffer));
 		}
 		if(this.speed) {
 			this.uploadSpeed.buffer(buffer);
 		}
+		return wait;
 	}
 	
 	/**
 	 * {@inheritDoc}
 	 * 
-	 * <p>更新上级信息</p>
+	 * <p>更新上级信息：等待时间取所有层级（系统、任务、Peer）最大等待时间</p>
 	 */
 	@Override
-	public void downloadLimit(int buffer) {
+	public long downloadLimit(int buffer) {
+		long wait = 0L;
 		if(this.parent != null) {
-			this.parent.downloadLimit(buffer);
+			wait = this.parent.downloadLimit(buffer);
 		}
 		if(this.limit) {
-			this.downloadLimit.limit(buffer);
+			wait = Math.max(wait, this.downloadLimit.acquire(buffer));
 		}
 		if(this.speed) {
 			this.downloadSpeed.buffer(buffer);
 		}
+		return wait;
 	}
 	
 	@Override
@@ -8,7 +8,9 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.stream.Collectors;
 
-import com.acgist.snail.context.SystemStatistics;
+import com.acgist.snail.config.BandwidthConfig;
+import com.acgist.snail.config.BandwidthConfig.TaskBandwidth;
+import com.acgist.snail.context.BandwidthContext;
 import com.acgist.snail.context.exception.DownloadException;
 import com.acgist.snail.downloader.DownloaderManager;
 import com.acgist.snail.downloader.IDownloader;
@@ -51,6 +53,10 @@ public final class TaskSession implements ITaskSession {
 	 * <p>统计</p>
 	 */
 	private final IStatisticsSession statistics;
+	/**
+	 * <p>任务带宽配置</p>
+	 */
+	private volatile TaskBandwidth bandwidth;
 	
 	/**
 	 * @param entity 任务
@@ -62,7 +68,8 @@ public final class TaskSession implements ITaskSession {
 			throw new DownloadException("创建TaskSession失败（任务不存在）");
 		}
 		this.entity = entity;
-		this.statistics = new StatisticsSession(true, SystemStatistics.getInstance().statistics());
+		this.bandwidth = BandwidthConfig.getTaskBandwidth(entity.getId(), entity.getType());
+		this.statistics = BandwidthContext.getInstance().newTaskStatistics(this);
 	}
 	
 	/**
@@ -119,6 +126,16 @@ public final class TaskSession implements ITaskSession {
 		}
 	}
 	
+	@Override
+	public TaskBandwidth bandwidth() {
+		return this.bandwidth;
+	}
+	
+	@Override
+	public void bandwidth(BandwidthConfig.Type type, int weight) {
+		this.bandwidth = BandwidthConfig.setTaskBandwidth(this.getId(), type, weight);
+	}
+	
 	@Override
 	public IStatisticsSession statistics() {
 		return this.statistics;
@@ -235,6 +252,7 @@ public final class TaskSession implements ITaskSession {
 	public void delete() {
 		final TaskRepository repository = new TaskRepository();
 		repository.delete(this.entity);
+		BandwidthConfig.removeTaskBandwidth(this.getId());
 	}
 
 	@Override
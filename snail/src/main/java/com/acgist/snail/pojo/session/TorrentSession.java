@@ -265,6 +265,7 @@ public final class TorrentSession {
 				this.loadDhtLauncherTimer();
 			}
 		}
+		this.loadPeerHistory();
 		this.loadPeerDownloaderGroup();
 		this.loadPeerDownloaderGroupTimer();
 		this.loadPeerUploaderDownload();
@@ -311,6 +312,14 @@ public final class TorrentSession {
 		);
 	}
 
+	/**
+	 * <p>加载历史Peer</p>
+	 * <p>历史Peer优先连接，不用等待Tracker、DHT查找Peer。</p>
+	 */
+	private void loadPeerHistory() {
+		PeerManager.getInstance().restore(this.infoHashHex(), this.statistics());
+	}
+	
 	/**
 	 * <p>加载PeerDownloader</p>
 	 */
@@ -546,6 +555,7 @@ public final class TorrentSession {
 		SystemThreadContext.shutdownNow(this.peerDownloaderGroupTimer);
 		if(this.peerDownloaderGroup != null) {
 			this.peerDownloaderGroup.release();
+			PeerManager.getInstance().history(this.infoHashHex());
 		}
 		SystemThreadContext.shutdownNow(this.dhtLauncherTimer);
 		SystemThreadContext.shutdownNow(this.trackerLauncherGroupTimer);
@@ -605,7 +615,7 @@ public final class TorrentSession {
 	 * 
 	 * @param index Piece索引
 	 * 
-	 * TODO：优化have消息，使用异步线程发送，防止部分Peer通知过慢，导致所有线程卡死。
+	 * @see PeerManager#have(String, int)
 	 */
 	public void have(int index) {
 		PeerManager.getInstance().have(this.infoHashHex(), index);
@@ -905,4 +915,33 @@ public final class TorrentSession {
 		return this.peerUploaderGroup.newPeerUploader(peerSession, peerSubMessageHandler);
 	}
 	
+	/**
+	 * <p>获取PeerDownloader数量</p>
+	 * 
+	 * @return PeerDownloader数量
+	 */
+	public int peerDownloaderSize() {
+		final var peerDownloaderGroup = this.peerDownloaderGroup;
+		return peerDownloaderGroup == null ? 0 : peerDownloaderGroup.size();
+	}
+	
+	/**
+	 * <p>获取PeerUploader数量</p>
+	 * 
+	 * @return PeerUploader数量
+	 */
+	public int peerUploaderSize() {
+		final var peerUploaderGroup = this.peerUploaderGroup;
+		return peerUploaderGroup == null ? 0 : peerUploaderGroup.size();
+	}
+	
+	/**
+	 * <p>获取Peer连接数量（下载、上传）</p>
+	 * 
+	 * @return Peer连接数量
+	 */
+	public int connectSize() {
+		return this.peerDownloaderSize() + this.peerUploaderSize();
+	}
+	
 }
@@ -126,6 +126,30 @@ public final class ArrayUtils {
 		}
 	}
 	
+	/**
+	 * <p>相同前缀长度（位）</p>
+	 * 
+	 * @param sources 原始数据
+	 * @param targets 比较数据
+	 * 
+	 * @return 相同前缀长度
+	 */
+	public static final int prefixLength(byte[] sources, byte[] targets) {
+		Objects.requireNonNull(sources, "相同前缀参数错误");
+		Objects.requireNonNull(targets, "相同前缀参数错误");
+		if (sources.length != targets.length) {
+			throw new IllegalArgumentException("相同前缀参数错误（长度）");
+		} else {
+			final int length = sources.length;
+			for (int index = 0; index < length; index++) {
+				if(sources[index] != targets[index]) {
+					return index * Byte.SIZE + Integer.numberOfLeadingZeros((sources[index] ^ targets[index]) & 0xFF) - (Integer.SIZE - Byte.SIZE);
+				}
+			}
+			return length * Byte.SIZE;
+		}
+	}
+	
 	/**
 	 * <p>数组是否为空</p>
 	 * 
@@ -1,7 +1,7 @@
 package com.acgist.snail.utils;
 
 import java.nio.ByteBuffer;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import com.acgist.snail.config.SystemConfig;
@@ -45,6 +45,7 @@ public final class PeerUtils {
 	
 	/**
 	 * <p>读取IP和端口</p>
+	 * <p>读取顺序和数据顺序一致</p>
 	 * 
 	 * @param buffer 数据
 	 * 
@@ -54,7 +55,7 @@ public final class PeerUtils {
 		if(buffer == null) {
 			return null;
 		}
-		final Map<String, Integer> data = new HashMap<>();
+		final Map<String, Integer> data = new LinkedHashMap<>();
 		while (buffer.remaining() >= SystemConfig.IP_PORT_LENGTH) {
 			final String ip = NetUtils.intToIP(buffer.getInt());
 			final int port = NetUtils.portToInt(buffer.getShort());
@@ -63,6 +64,46 @@ public final class PeerUtils {
 		return data;
 	}
 	
+	/**
+	 * @param bytes 数据
+	 * 
+	 * @return IP=端口
+	 * 
+	 * @see #readIPv6(ByteBuffer)
+	 */
+	public static final Map<String, Integer> readIPv6(byte[] bytes) {
+		if(bytes == null) {
+			return null;
+		}
+		final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		return readIPv6(buffer);
+	}
+	
+	/**
+	 * <p>读取IPv6和端口</p>
+	 * <p>读取顺序和数据顺序一致</p>
+	 * 
+	 * @param buffer 数据
+	 * 
+	 * @return IP=端口
+	 */
+	public static final Map<String, Integer> readIPv6(ByteBuffer buffer) {
+		if(buffer == null) {
+			return null;
+		}
+		final byte[] bytes = new byte[SystemConfig.IPV6_LENGTH];
+		final Map<String, Integer> data = new LinkedHashMap<>();
+		while (buffer.remaining() >= SystemConfig.IPV6_PORT_LENGTH) {
+			buffer.get(bytes);
+			final String ip = NetUtils.ipToBytes(bytes);
+			final int port = NetUtils.portToInt(buffer.getShort());
+			if(ip != null) {
+				data.put(ip, port);
+			}
+		}
+		return data;
+	}
+	
 	/**
 	 * <p>计算快速允许Piece索引</p>
 	 * <p>协议链接：http://www.bittorrent.org/beps/bep_0006.html</p>
@@ -0,0 +1,45 @@
+package com.acgist.snail.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import org.junit.jupiter.api.Test;
+
+import com.acgist.snail.context.initializer.impl.DatabaseInitializer;
+import com.acgist.snail.protocol.Protocol;
+import com.acgist.snail.utils.Performance;
+
+public class BandwidthConfigTest extends Performance {
+
+	@Test
+	public void testBandwidth() {
+		for (BandwidthConfig.Type type : BandwidthConfig.Type.values()) {
+			final var bandwidth = BandwidthConfig.getBandwidth(type);
+			assertNotNull(bandwidth);
+			this.log("带宽类型：{}-{}", type, bandwidth);
+		}
+		assertEquals(BandwidthConfig.Type.BT, BandwidthConfig.Type.of(Protocol.Type.MAGNET));
+		assertEquals(BandwidthConfig.Type.BT, BandwidthConfig.Type.of(Protocol.Type.TORRENT));
+		assertEquals(BandwidthConfig.Type.HLS, BandwidthConfig.Type.of(Protocol.Type.HLS));
+		assertEquals(BandwidthConfig.Type.HTTP, BandwidthConfig.Type.of(Protocol.Type.THUNDER));
+	}
+	
+	@Test
+	public void testTaskBandwidth() {
+		DatabaseInitializer.newInstance().sync(); // 初始化数据库
+		final String id = "bandwidth-config-test";
+		var taskBandwidth = BandwidthConfig.getTaskBandwidth(id, Protocol.Type.TORRENT);
+		assertEquals(BandwidthConfig.Type.BT, taskBandwidth.type());
+		assertEquals(BandwidthConfig.DEFAULT_WEIGHT, taskBandwidth.weight());
+		BandwidthConfig.setTaskBandwidth(id, BandwidthConfig.Type.HTTP, 8);
+		taskBandwidth = BandwidthConfig.getTaskBandwidth(id, Protocol.Type.TORRENT);
+		this.log("任务带宽配置：{}", taskBandwidth);
+		assertEquals(BandwidthConfig.Type.HTTP, taskBandwidth.type());
+		assertEquals(8, taskBandwidth.weight());
+		BandwidthConfig.removeTaskBandwidth(id);
+		taskBandwidth = BandwidthConfig.getTaskBandwidth(id, Protocol.Type.TORRENT);
+		assertEquals(BandwidthConfig.Type.BT, taskBandwidth.type());
+		assertEquals(BandwidthConfig.DEFAULT_WEIGHT, taskBandwidth.weight());
+	}
+	
+}
@@ -0,0 +1,46 @@
+package com.acgist.snail.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.acgist.snail.net.torrent.peer.bootstrap.PeerManager;
+import com.acgist.snail.utils.Performance;
+
+public class PeerHistoryConfigTest extends Performance {
+	
+	@Test
+	public void testPeers() {
+		final String infoHashHex = "0000000000000000000000000000000000001234";
+		final PeerHistoryConfig config = PeerHistoryConfig.getInstance();
+		final PeerManager manager = PeerManager.getInstance();
+		// 连接成功的Peer记录历史
+		manager.newPeerSession(infoHashHex, null, "192.168.1.1", 18888, PeerConfig.Source.TRACKER).dial(PeerConfig.DIAL_TCP);
+		manager.newPeerSession(infoHashHex, null, "fe80::1", 18888, PeerConfig.Source.DHT).dial(PeerConfig.DIAL_UTP);
+		// 没有连接的Peer不记录历史
+		manager.newPeerSession(infoHashHex, null, "192.168.1.2", 18888, PeerConfig.Source.TRACKER);
+		manager.history(infoHashHex);
+		final List<String> peers = config.peers(infoHashHex);
+		this.log("历史Peer：{}", peers);
+		assertEquals(2, peers.size());
+		assertTrue(peers.contains("192.168.1.1:18888"));
+		assertTrue(peers.contains("fe80::1:18888"));
+		// 重新加载历史Peer
+		manager.remove(infoHashHex);
+		assertNull(manager.findPeerSession(infoHashHex, "192.168.1.1", 18888));
+		manager.restore(infoHashHex, null);
+		assertEquals(2, manager.listPeerSession(infoHashHex).size());
+		assertNotNull(manager.findPeerSession(infoHashHex, "192.168.1.1", 18888));
+		assertNotNull(manager.findPeerSession(infoHashHex, "fe80::1", 18888));
+		assertNull(manager.findPeerSession(infoHashHex, "192.168.1.2", 18888));
+		manager.remove(infoHashHex);
+		config.remove(infoHashHex);
+		assertTrue(config.peers(infoHashHex).isEmpty());
+	}
+	
+}
@@ -0,0 +1,63 @@
+package com.acgist.snail.context;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.acgist.snail.config.BandwidthConfig.Bandwidth;
+import com.acgist.snail.utils.Performance;
+
+public class BandwidthContextTest extends Performance {
+	
+	@Test
+	public void testAllocate() {
+		final Map<String, Bandwidth> bandwidths = new LinkedHashMap<>();
+		bandwidths.put("a", Bandwidth.newInstance(4, 0, 0));
+		bandwidths.put("b", Bandwidth.newInstance(2, 0, 0));
+		bandwidths.put("c", Bandwidth.newInstance(2, 0, 0));
+		// 全部空闲：按照权重
+		var allocations = BandwidthContext.allocate(8000, bandwidths, Map.of());
+		this.log("带宽分配：{}", allocations);
+		assertEquals(4000L, allocations.get("a"));
+		assertEquals(2000L, allocations.get("b"));
+		assertEquals(2000L, allocations.get("c"));
+		// 需要速度小于分配速度：剩余带宽分配给其他传输中
+		allocations = BandwidthContext.allocate(8000, bandwidths, Map.of("a", 1000L, "b", 10000L));
+		this.log("带宽分配：{}", allocations);
+		assertEquals(2000L, allocations.get("a"));
+		assertEquals(6000L, allocations.get("b"));
+		assertEquals(2000L, allocations.get("c"));
+		// 全部传输：按照权重
+		allocations = BandwidthContext.allocate(8000, bandwidths, Map.of("a", 10000L, "b", 10000L, "c", 10000L));
+		this.log("带宽分配：{}", allocations);
+		assertEquals(4000L, allocations.get("a"));
+		assertEquals(2000L, allocations.get("b"));
+		assertEquals(2000L, allocations.get("c"));
+	}
+	
+	@Test
+	public void testAllocateMinMax() {
+		final Map<String, Bandwidth> bandwidths = new LinkedHashMap<>();
+		bandwidths.put("a", Bandwidth.newInstance(1, 2000, 0));
+		bandwidths.put("b", Bandwidth.newInstance(1, 0, 3000));
+		// 最大速度：剩余带宽分配给其他
+		var allocations = BandwidthContext.allocate(10000, bandwidths, Map.of("a", 10000L, "b", 10000L));
+		this.log("带宽分配：{}", allocations);
+		assertEquals(7000L, allocations.get("a"));
+		assertEquals(3000L, allocations.get("b"));
+		// 最小速度
+		allocations = BandwidthContext.allocate(4000, bandwidths, Map.of("a", 10000L, "b", 10000L));
+		this.log("带宽分配：{}", allocations);
+		assertEquals(3000L, allocations.get("a"));
+		assertEquals(1024L, allocations.get("b"));
+		// 不限速：只限制最大速度
+		allocations = BandwidthContext.allocate(0, bandwidths, Map.of("a", 10000L, "b", 10000L));
+		this.log("带宽分配：{}", allocations);
+		assertEquals(0L, allocations.get("a"));
+		assertEquals(3000L, allocations.get("b"));
+	}
+	
+}
@@ -0,0 +1,41 @@
+package com.acgist.snail.net;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+
+import com.acgist.snail.utils.Performance;
+
+public class ByteBufferPoolTest extends Performance {
+
+	@Test
+	public void testBorrow() {
+		final ByteBufferPool pool = ByteBufferPool.newInstance(1024, 1);
+		final ByteBuffer buffer = pool.borrow();
+		assertTrue(buffer.isDirect());
+		buffer.put((byte) 1);
+		pool.giveBack(buffer);
+		assertEquals(1, pool.size());
+		final ByteBuffer reuse = pool.borrow();
+		assertSame(buffer, reuse);
+		assertEquals(0, reuse.position());
+		assertEquals(0, pool.size());
+		pool.giveBack(reuse);
+		pool.giveBack(ByteBuffer.allocateDirect(1024));
+		assertEquals(1, pool.size());
+		pool.borrow();
+		assertNotSame(reuse, pool.borrow());
+	}
+	
+	@Test
+	public void testCosted() {
+		final ByteBufferPool pool = ByteBufferPool.newInstance(16 * 1024, 16);
+		this.costed(100000, () -> pool.giveBack(pool.borrow()));
+	}
+	
+}
@@ -0,0 +1,63 @@
+package com.acgist.snail.net;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousSocketChannel;
+
+import org.junit.jupiter.api.Test;
+
+import com.acgist.snail.utils.Performance;
+import com.acgist.snail.utils.ThreadUtils;
+
+public class TcpMessageHandlerTest extends Performance {
+	
+	@Test
+	public void testSendTimeout() throws Exception {
+		try(final ServerSocket server = new ServerSocket(0)) {
+			final AsynchronousSocketChannel channel = AsynchronousSocketChannel.open();
+			channel.connect(new InetSocketAddress("127.0.0.1", server.getLocalPort())).get();
+			// 对端不会读取数据
+			try(final Socket socket = server.accept()) {
+				final TcpMessageHandler handler = new TcpMessageHandler() {
+				};
+				handler.handle(channel);
+				assertTrue(handler.available());
+				handler.send(ByteBuffer.allocate(64 * 1024 * 1024), 1);
+				assertFalse(handler.writable());
+				// 超时关闭连接
+				long wait = 0L;
+				while(handler.available() && wait < 5000L) {
+					ThreadUtils.sleep(100);
+					wait += 100L;
+				}
+				this.log("发送超时关闭：{}", wait);
+				assertFalse(handler.available());
+			}
+		}
+	}
+	
+	@Test
+	public void testReceiveFailed() throws Exception {
+		try(final ServerSocket server = new ServerSocket(0)) {
+			final AsynchronousSocketChannel channel = AsynchronousSocketChannel.open();
+			channel.connect(new InetSocketAddress("127.0.0.1", server.getLocalPort())).get();
+			try(final Socket socket = server.accept()) {
+				final TcpMessageHandler handler = new TcpMessageHandler() {
+				};
+				handler.handle(channel);
+				assertTrue(handler.available());
+				// 读取失败：关闭通道
+				handler.failed(new IOException("读取失败"), ByteBuffer.allocate(1));
+				assertFalse(handler.available());
+				assertFalse(channel.isOpen());
+			}
+		}
+	}
+	
+}
@@ -0,0 +1,75 @@
+package com.acgist.snail.net;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.acgist.snail.utils.Performance;
+
+public class UdpPacketQueueTest extends Performance {
+	
+	@Test
+	public void testOrder() throws InterruptedException {
+		final int size = 10000;
+		final CountDownLatch latch = new CountDownLatch(size);
+		final List<Integer> result = Collections.synchronizedList(new ArrayList<>());
+		final ByteBufferPool pool = ByteBufferPool.newInstance(4, 16);
+		final UdpPacketQueue queue = UdpPacketQueue.newInstance("UDP-Test", size, packet -> {
+			result.add(packet.buffer().getInt(0));
+			latch.countDown();
+		});
+		final InetSocketAddress socketAddress = new InetSocketAddress("127.0.0.1", 18888);
+		for (int index = 0; index < size; index++) {
+			final ByteBuffer buffer = pool.borrow();
+			buffer.putInt(index);
+			assertTrue(queue.offer(UdpPacket.newInstance(null, buffer, socketAddress, pool)));
+		}
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+		for (int index = 0; index < size; index++) {
+			assertEquals(index, result.get(index));
+		}
+		// 处理完成归还缓冲
+		assertTrue(pool.size() > 0);
+		this.log("处理数量：{}，丢弃数量：{}", queue.count(), queue.dropped());
+		queue.shutdown();
+	}
+	
+	@Test
+	public void testDrop() throws InterruptedException {
+		final CountDownLatch block = new CountDownLatch(1);
+		final ByteBufferPool pool = ByteBufferPool.newInstance(4, 16);
+		final UdpPacketQueue queue = UdpPacketQueue.newInstance("UDP-Test", 2, packet -> {
+			try {
+				block.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		final InetSocketAddress socketAddress = new InetSocketAddress("127.0.0.1", 18888);
+		int success = 0;
+		for (int index = 0; index < 10; index++) {
+			if(queue.offer(UdpPacket.newInstance(null, pool.borrow(), socketAddress, pool))) {
+				success++;
+			}
+		}
+		// 处理线程阻塞一个数据包：队列最多再放两个数据包
+		assertTrue(success <= 3);
+		assertEquals(10 - success, queue.dropped());
+		// 丢弃数据包归还缓冲
+		assertTrue(pool.size() > 0);
+		block.countDown();
+		queue.shutdown();
+		assertFalse(queue.size() > 0);
+	}
+	
+}
@@ -0,0 +1,211 @@
+package com.acgist.snail.net.codec.impl;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.acgist.snail.config.PeerConfig;
+import com.acgist.snail.context.exception.NetException;
+import com.acgist.snail.net.codec.IMessageCodec;
+import com.acgist.snail.utils.ArrayUtils;
+import com.acgist.snail.utils.Performance;
+
+public class PeerUnpackMessageCodecTest extends Performance {
+	
+	/**
+	 * <p>处理完成的消息</p>
+	 */
+	private final List<byte[]> messages = new ArrayList<>();
+	/**
+	 * <p>心跳消息数量</p>
+	 */
+	private final AtomicInteger keepAlives = new AtomicInteger(0);
+	/**
+	 * <p>是否已经握手</p>
+	 */
+	private final AtomicBoolean handshake = new AtomicBoolean(true);
+	/**
+	 * <p>拆包处理器</p>
+	 */
+	private final PeerUnpackMessageCodec codec = new PeerUnpackMessageCodec(
+		new IMessageCodec<ByteBuffer>() {
+			@Override
+			public void onMessage(ByteBuffer message) {
+				message.flip();
+				final byte[] bytes = new byte[message.remaining()];
+				message.get(bytes);
+				PeerUnpackMessageCodecTest.this.messages.add(bytes);
+			}
+		},
+		this.handshake::get,
+		this.keepAlives::incrementAndGet
+	);
+	
+	@Test
+	public void testHandshake() throws NetException {
+		this.handshake.set(false);
+		final byte[] handshake = ArrayUtils.random(PeerConfig.HANDSHAKE_LENGTH);
+		final byte[] message = {1, 2, 3};
+		// 握手消息没有长度
+		this.decode(handshake, 0, 30);
+		this.decode(handshake, 30, PeerConfig.HANDSHAKE_LENGTH);
+		assertEquals(1, this.messages.size());
+		assertArrayEquals(handshake, this.messages.get(0));
+		this.handshake.set(true);
+		this.decode(frame(message));
+		assertEquals(2, this.messages.size());
+		assertArrayEquals(message, this.messages.get(1));
+	}
+	
+	@Test
+	public void testSplitLength() throws NetException {
+		final byte[] message = {4, 0, 0, 0, 1};
+		final byte[] frame = frame(message);
+		// 长度分成多次读取
+		this.decode(frame, 0, 1);
+		this.decode(frame, 1, 3);
+		assertTrue(this.messages.isEmpty());
+		this.decode(frame, 3, frame.length);
+		assertEquals(1, this.messages.size());
+		assertArrayEquals(message, this.messages.get(0));
+		// 长度和消息分开读取
+		this.decode(frame, 0, 4);
+		this.decode(frame, 4, frame.length);
+		assertEquals(2, this.messages.size());
+		assertArrayEquals(message, this.messages.get(1));
+	}
+	
+	@Test
+	public void testSpanReads() throws NetException {
+		final byte[] message = ArrayUtils.random(16 * 1024 + 9);
+		final byte[] frame = frame(message);
+		// 一条消息跨越多次读取
+		int position = 0;
+		while(position < frame.length) {
+			final int limit = Math.min(frame.length, position + 1000);
+			this.decode(frame, position, limit);
+			position = limit;
+			if(position < frame.length) {
+				assertTrue(this.messages.isEmpty());
+			}
+		}
+		assertEquals(1, this.messages.size());
+		assertArrayEquals(message, this.messages.get(0));
+	}
+	
+	@Test
+	public void testMultiFrames() throws NetException {
+		final byte[] a = {0};
+		final byte[] b = {4, 0, 0, 0, 2};
+		final byte[] c = ArrayUtils.random(100);
+		final ByteBuffer buffer = ByteBuffer.allocate(3 * 4 + a.length + b.length + c.length);
+		buffer.put(frame(a)).put(frame(b)).put(frame(c));
+		// 一次读取多条消息
+		this.decode(buffer.array());
+		assertEquals(3, this.messages.size());
+		assertArrayEquals(a, this.messages.get(0));
+		assertArrayEquals(b, this.messages.get(1));
+		assertArrayEquals(c, this.messages.get(2));
+		// 最后一条消息不完整
+		final byte[] bytes = buffer.array();
+		this.decode(bytes, 0, bytes.length - 10);
+		assertEquals(5, this.messages.size());
+		this.decode(bytes, bytes.length - 10, bytes.length);
+		assertEquals(6, this.messages.size());
+		assertArrayEquals(c, this.messages.get(5));
+	}
+	
+	@Test
+	public void testKeepAlive() throws NetException {
+		final byte[] a = {1};
+		final byte[] b = {2};
+		final ByteBuffer buffer = ByteBuffer.allocate(4 * 5 + a.length + b.length);
+		buffer.putInt(0).put(frame(a)).putInt(0).putInt(0).put(frame(b));
+		// 消息之间的心跳消息
+		this.decode(buffer.array());
+		assertEquals(3, this.keepAlives.get());
+		assertEquals(2, this.messages.size());
+		assertArrayEquals(a, this.messages.get(0));
+		assertArrayEquals(b, this.messages.get(1));
+		// 心跳消息分开读取
+		final byte[] bytes = buffer.array();
+		this.decode(bytes, 0, 2);
+		this.decode(bytes, 2, 7);
+		this.decode(bytes, 7, bytes.length);
+		assertEquals(6, this.keepAlives.get());
+		assertEquals(4, this.messages.size());
+	}
+	
+	@Test
+	public void testCosted() {
+		final byte[] frame = frame(ArrayUtils.random(1024));
+		final ByteBuffer buffer = ByteBuffer.allocate(frame.length * 16);
+		for (int index = 0; index < 16; index++) {
+			buffer.put(frame);
+		}
+		final byte[] bytes = buffer.array();
+		this.costed(10000, () -> {
+			try {
+				this.decode(bytes, 0, 3000);
+				this.decode(bytes, 3000, bytes.length);
+			} catch (NetException e) {
+				this.log("拆包异常", e);
+			}
+		});
+		assertEquals(16 * 10000, this.messages.size());
+	}
+	
+	/**
+	 * <p>读取数据</p>
+	 * 
+	 * @param bytes 数据
+	 * 
+	 * @throws NetException 网络异常
+	 */
+	private void decode(byte[] bytes) throws NetException {
+		this.decode(bytes, 0, bytes.length);
+	}
+	
+	/**
+	 * <p>读取部分数据</p>
+	 * <p>模拟接收缓冲：处理完成后复用</p>
+	 * 
+	 * @param bytes 数据
+	 * @param from 开始位置
+	 * @param to 结束位置
+	 * 
+	 * @throws NetException 网络异常
+	 */
+	private void decode(byte[] bytes, int from, int to) throws NetException {
+		final ByteBuffer buffer = ByteBuffer.allocate(to - from);
+		buffer.put(bytes, from, to - from);
+		buffer.flip();
+		this.codec.decode(buffer);
+		// 接收缓冲复用：覆盖数据
+		buffer.clear();
+		buffer.put(new byte[buffer.capacity()]);
+	}
+	
+	/**
+	 * <p>创建消息：长度 + 消息</p>
+	 * 
+	 * @param message 消息
+	 * 
+	 * @return 消息
+	 */
+	private static final byte[] frame(byte[] message) {
+		final ByteBuffer buffer = ByteBuffer.allocate(4 + message.length);
+		buffer.putInt(message.length);
+		buffer.put(message);
+		return buffer.array();
+	}
+	
+}
@@ -0,0 +1,87 @@
+package com.acgist.snail.net.torrent.bootstrap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.acgist.snail.utils.Performance;
+
+public class PeerConnectManagerTest extends Performance {
+	
+	@Test
+	public void testAllocate() {
+		final List<String> infoHashHexs = List.of("download", "stall", "upload");
+		final Map<String, Integer> weights = Map.of("download", 4, "stall", 2, "upload", 1);
+		final Map<String, Integer> demands = Map.of("download", 40, "stall", 40, "upload", 20);
+		// 保留最小分配数量后按照权重分配
+		var allocations = PeerConnectManager.allocate(infoHashHexs, weights, demands, 20);
+		this.log("分配数量：{}", allocations);
+		assertEquals(Map.of("download", 10, "stall", 6, "upload", 4), allocations);
+		// 连接总数不足最小分配数量：平均分配后按照权重分配
+		allocations = PeerConnectManager.allocate(infoHashHexs, weights, demands, 3);
+		assertEquals(Map.of("download", 1, "stall", 1, "upload", 1), allocations);
+		allocations = PeerConnectManager.allocate(infoHashHexs, weights, demands, 2);
+		assertEquals(Map.of("download", 1, "stall", 0, "upload", 0), allocations);
+		// 需要数量满足后剩余数量分配给其他任务
+		allocations = PeerConnectManager.allocate(infoHashHexs, weights, Map.of("download", 4, "stall", 40, "upload", 20), 20);
+		assertEquals(Map.of("download", 4, "stall", 10, "upload", 6), allocations);
+	}
+	
+	@Test
+	public void testAllocateTotal() {
+		final List<String> infoHashHexs = List.of("a", "b", "c", "d", "e");
+		final Map<String, Integer> weights = Map.of("a", 4, "b", 4, "c", 2, "d", 1, "e", 1);
+		final Map<String, Integer> demands = Map.of("a", 100, "b", 3, "c", 100, "d", 50, "e", 50);
+		for (int total = 0; total <= 200; total++) {
+			final var allocations = PeerConnectManager.allocate(infoHashHexs, weights, demands, total);
+			final int sum = allocations.values().stream().mapToInt(Integer::intValue).sum();
+			assertTrue(sum <= total, "分配数量超过连接总数：" + total + "-" + allocations);
+			assertEquals(infoHashHexs.size(), allocations.size());
+		}
+	}
+	
+	@Test
+	public void testPeerSize() {
+		for (int allocation = 0; allocation <= 40; allocation++) {
+			// PeerUploader保留一半分配数量，PeerDownloader保留剩余分配数量。
+			assertEquals(allocation - allocation / 2, PeerConnectManager.peerDownloaderSize(allocation, allocation));
+			assertEquals(allocation / 2, PeerConnectManager.peerUploaderSize(allocation, allocation));
+			assertEquals(allocation, PeerConnectManager.peerDownloaderSize(allocation, 0));
+			assertEquals(allocation, PeerConnectManager.peerUploaderSize(allocation, 0));
+			for (int downloader = 0; downloader <= allocation; downloader++) {
+				for (int uploader = 0; uploader <= allocation; uploader++) {
+					if(
+						downloader <= PeerConnectManager.peerDownloaderSize(allocation, uploader) &&
+						uploader <= PeerConnectManager.peerUploaderSize(allocation, downloader)
+					) {
+						assertTrue(downloader + uploader <= allocation);
+					}
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void testDownloadWeight() {
+		// 第一次分配：下载中
+		assertEquals(4, PeerConnectManager.downloadWeight(null, 0L));
+		// 已下载大小没有变化：下载停滞
+		assertEquals(2, PeerConnectManager.downloadWeight(1024L, 1024L));
+		assertEquals(4, PeerConnectManager.downloadWeight(1024L, 2048L));
+	}
+	
+	@Test
+	public void testProvisionalAllocation() {
+		final PeerConnectManager manager = PeerConnectManager.getInstance();
+		final String infoHashHex = "0000000000000000000000000000000000000028";
+		// 没有分配：临时分配数量，不会立即重新分配。
+		assertEquals(2, manager.allocation(infoHashHex));
+		assertFalse(manager.allocations().containsKey(infoHashHex));
+	}
+	
+}
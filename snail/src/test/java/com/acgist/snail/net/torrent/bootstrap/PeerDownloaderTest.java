@@ -0,0 +1,40 @@
+package com.acgist.snail.net.torrent.bootstrap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import org.junit.jupiter.api.Test;
+
+import com.acgist.snail.config.PeerConfig;
+import com.acgist.snail.context.exception.DownloadException;
+import com.acgist.snail.pojo.bean.InfoHash;
+import com.acgist.snail.pojo.session.PeerSession;
+import com.acgist.snail.pojo.session.StatisticsSession;
+import com.acgist.snail.pojo.session.TorrentSession;
+import com.acgist.snail.utils.Performance;
+
+public class PeerDownloaderTest extends Performance {
+	
+	@Test
+	public void testRaceConnect() throws DownloadException, IOException {
+		final var torrentSession = TorrentSession.newInstance(InfoHash.newInstance("0000000000000000000000000000000000000027"), null);
+		try(final ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+			final var peerSession = PeerSession.newInstance(new StatisticsSession(), "127.0.0.1", server.getLocalPort());
+			peerSession.flags(PeerConfig.PEX_UTP); // 同时使用TCP和UTP连接
+			final var downloader = PeerDownloader.newInstance(peerSession, torrentSession);
+			// UTP没有监听：TCP连接成功
+			assertTrue(downloader.handshake());
+			try(final Socket socket = server.accept()) {
+				assertEquals(PeerConfig.DIAL_TCP, peerSession.dial());
+				assertTrue(downloader.available());
+				downloader.release();
+			}
+		}
+	}
+	
+}
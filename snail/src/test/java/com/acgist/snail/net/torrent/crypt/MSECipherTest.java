@@ -0,0 +1,97 @@
+package com.acgist.snail.net.torrent.crypt;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.jupiter.api.Test;
+
+import com.acgist.snail.context.exception.DownloadException;
+import com.acgist.snail.context.exception.NetException;
+import com.acgist.snail.pojo.bean.InfoHash;
+import com.acgist.snail.utils.Performance;
+
+public class MSECipherTest extends Performance {
+	
+	@Test
+	public void testARC4() throws Exception {
+		final Random random = new Random();
+		final byte[] key = new byte[20];
+		random.nextBytes(key);
+		final byte[] data = new byte[16 * 1024];
+		random.nextBytes(data);
+		final Cipher cipher = Cipher.getInstance("ARCFOUR/ECB/NoPadding");
+		cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "ARCFOUR"));
+		cipher.update(new byte[1024]);
+		final byte[] expect = cipher.update(data);
+		final ARC4 arc4 = ARC4.newInstance(key, 1024);
+		final byte[] array = data.clone();
+		// 分段加密
+		arc4.crypt(array, 0, 100);
+		arc4.crypt(array, 100, array.length - 100);
+		assertArrayEquals(expect, array);
+		// 直接内存
+		final ARC4 direct = ARC4.newInstance(key, 1024);
+		final ByteBuffer buffer = ByteBuffer.allocateDirect(data.length);
+		buffer.put(data);
+		direct.crypt(buffer, 0, buffer.position());
+		assertEquals(data.length, buffer.position());
+		buffer.flip();
+		final byte[] value = new byte[buffer.remaining()];
+		buffer.get(value);
+		assertArrayEquals(expect, value);
+	}
+	
+	@Test
+	public void testCipher() throws NetException, DownloadException {
+		final byte[] S = new byte[96];
+		new Random().nextBytes(S);
+		final InfoHash infoHash = InfoHash.newInstance("902ffaa29ee632c8dc966ed9ab573409ba9a518e");
+		final MSECipher sender = MSECipher.newSender(S, infoHash);
+		final MSECipher recver = MSECipher.newRecver(S, infoHash);
+		// 写模式
+		final ByteBuffer buffer = ByteBuffer.allocate(1024);
+		buffer.put("acgist".getBytes());
+		sender.encrypt(buffer);
+		assertEquals(6, buffer.position());
+		recver.decrypt(buffer);
+		buffer.flip();
+		assertEquals("acgist", new String(buffer.array(), 0, buffer.limit()));
+		// 读模式
+		sender.encrypt(buffer);
+		assertEquals(0, buffer.position());
+		assertEquals(6, buffer.limit());
+		recver.decrypt(buffer);
+		assertEquals("acgist", new String(buffer.array(), 0, buffer.limit()));
+		// 数组
+		assertArrayEquals("snail".getBytes(), sender.decrypt(recver.encrypt("snail".getBytes())));
+	}
+	
+	@Test
+	public void testCosted() throws Exception {
+		final byte[] key = new byte[20];
+		new Random().nextBytes(key);
+		final ByteBuffer buffer = ByteBuffer.allocate(16 * 1024);
+		final Cipher cipher = Cipher.getInstance("ARCFOUR/ECB/NoPadding");
+		cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "ARCFOUR"));
+		final long jce = this.costed(10000, () -> {
+			buffer.clear().position(buffer.capacity());
+			buffer.flip();
+			final byte[] value = new byte[buffer.remaining()];
+			buffer.get(value);
+			buffer.clear().put(cipher.update(value));
+		});
+		final ARC4 arc4 = ARC4.newInstance(key, 1024);
+		final long local = this.costed(10000, () -> {
+			buffer.clear().position(buffer.capacity());
+			arc4.crypt(buffer, 0, buffer.position());
+		});
+		this.log("JCE：{}，ARC4：{}", jce, local);
+	}
+	
+}
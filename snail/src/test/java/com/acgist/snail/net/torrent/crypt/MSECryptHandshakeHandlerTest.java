@@ -0,0 +1,169 @@
+package com.acgist.snail.net.torrent.crypt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.acgist.snail.config.CryptConfig;
+import com.acgist.snail.net.codec.impl.PeerUnpackMessageCodec;
+import com.acgist.snail.net.torrent.IMessageEncryptSender;
+import com.acgist.snail.net.torrent.peer.bootstrap.PeerSubMessageHandler;
+import com.acgist.snail.pojo.bean.InfoHash;
+import com.acgist.snail.pojo.session.PeerSession;
+import com.acgist.snail.pojo.session.StatisticsSession;
+import com.acgist.snail.pojo.session.TorrentSession;
+import com.acgist.snail.utils.NumberUtils;
+import com.acgist.snail.utils.Performance;
+
+public class MSECryptHandshakeHandlerTest extends Performance {
+	
+	/**
+	 * <p>握手完成前等待的消息数量</p>
+	 */
+	private static final int PENDING_SIZE = 2;
+	/**
+	 * <p>握手完成时并发发送的线程数量</p>
+	 */
+	private static final int THREAD_SIZE = 4;
+	/**
+	 * <p>握手完成后每个线程继续发送的消息数量</p>
+	 */
+	private static final int MESSAGE_SIZE = 100;
+	
+	@Test
+	public void testPendings() throws Exception {
+		final InfoHash infoHash = InfoHash.newInstance("0000000000000000000000000000000000000039");
+		final TorrentSession torrentSession = TorrentSession.newInstance(infoHash, null);
+		final PeerSession peerSession = PeerSession.newInstance(new StatisticsSession(), "127.0.0.1", 18888);
+		final PeerSubMessageHandler peerSubMessageHandler = PeerSubMessageHandler.newInstance(peerSession, torrentSession);
+		// 记录发送消息
+		final List<byte[]> sends = new ArrayList<>();
+		peerSubMessageHandler.messageEncryptSender(new IMessageEncryptSender() {
+			@Override
+			public boolean available() {
+				return true;
+			}
+			@Override
+			public void send(ByteBuffer buffer, int timeout) {
+				if(buffer.position() != 0) {
+					buffer.flip();
+				}
+				final byte[] bytes = new byte[buffer.remaining()];
+				buffer.get(bytes);
+				synchronized (sends) {
+					sends.add(bytes);
+				}
+			}
+			@Override
+			public void sendEncrypt(ByteBuffer buffer, int timeout) {
+			}
+			@Override
+			public InetSocketAddress remoteSocketAddress() {
+				return null;
+			}
+			@Override
+			public void close() {
+			}
+		});
+		final MSECryptHandshakeHandler handler = MSECryptHandshakeHandler.newInstance(new PeerUnpackMessageCodec(peerSubMessageHandler), peerSubMessageHandler);
+		// 发送握手：消息等待握手完成（不会阻塞）
+		handler.handshake();
+		for (int index = 0; index < PENDING_SIZE; index++) {
+			this.sendEncrypt(handler, peerSubMessageHandler, index);
+		}
+		assertEquals(1, sends.size());
+		// 远程：接收公钥、发送公钥
+		final KeyPair keyPair = MSEKeyPairBuilder.newInstance().buildKeyPair();
+		final var publicKey = NumberUtils.decodeBigInteger(ByteBuffer.wrap(sends.get(0)), CryptConfig.PUBLIC_KEY_LENGTH);
+		final byte[] dhSecret = NumberUtils.encodeBigInteger(MSEKeyPairBuilder.buildDHSecret(publicKey, keyPair.getPrivate()), CryptConfig.PUBLIC_KEY_LENGTH);
+		final MSECipher cipher = MSECipher.newRecver(dhSecret, infoHash);
+		handler.handshake(ByteBuffer.wrap(keyPair.getPublic().getEncoded()));
+		// 本地发送加密协议协商：HASH、ENCRYPT(VC, crypto_provide, len(PadC), PadC, len(IA))
+		assertEquals(3, sends.size());
+		cipher.decrypt(sends.get(2));
+		// 远程：确认加密协议，同时本地并发发送消息。
+		final ByteBuffer confirm = ByteBuffer.allocate(CryptConfig.VC_LENGTH + 4 + 2);
+		confirm.put(CryptConfig.VC);
+		confirm.putInt(CryptConfig.CryptAlgo.ARC4.provide());
+		confirm.putShort((short) 0);
+		confirm.flip();
+		cipher.encrypt(confirm);
+		final CountDownLatch start = new CountDownLatch(THREAD_SIZE);
+		final AtomicInteger counter = new AtomicInteger(PENDING_SIZE);
+		final ExecutorService executor = Executors.newFixedThreadPool(THREAD_SIZE);
+		for (int thread = 0; thread < THREAD_SIZE; thread++) {
+			executor.submit(() -> {
+				start.countDown();
+				// 持续发送：握手完成后继续发送指定数量消息
+				int remaining = MESSAGE_SIZE;
+				while(remaining > 0) {
+					if(handler.complete()) {
+						remaining--;
+					}
+					this.sendEncrypt(handler, peerSubMessageHandler, counter.getAndIncrement());
+				}
+			});
+		}
+		start.await();
+		handler.handshake(confirm);
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+		assertTrue(handler.complete());
+		// 远程：按照接收顺序解密
+		final ByteArrayOutputStream output = new ByteArrayOutputStream();
+		sends.stream().skip(3).forEach(bytes -> output.write(bytes, 0, bytes.length));
+		final ByteBuffer messages = ByteBuffer.wrap(cipher.decrypt(output.toByteArray()));
+		final Set<Integer> indexes = new HashSet<>();
+		int order = 0;
+		while(messages.hasRemaining()) {
+			assertEquals(4, messages.getInt());
+			final int index = messages.getInt();
+			if(order < PENDING_SIZE) {
+				// 等待消息最先发送
+				assertEquals(order, index);
+			}
+			indexes.add(index);
+			order++;
+		}
+		assertEquals(counter.get(), order);
+		assertEquals(counter.get(), indexes.size());
+	}
+	
+	/**
+	 * <p>加密发送消息</p>
+	 * <p>和{@code PeerMessageHandler#sendEncrypt}一致：使用编码器锁保证加密顺序和发送顺序一致</p>
+	 * 
+	 * @param handler 加密握手代理
+	 * @param peerSubMessageHandler Peer消息代理
+	 * @param index 消息序号
+	 */
+	private void sendEncrypt(MSECryptHandshakeHandler handler, PeerSubMessageHandler peerSubMessageHandler, int index) {
+		final ByteBuffer buffer = ByteBuffer.allocate(8);
+		buffer.putInt(4);
+		buffer.putInt(index);
+		synchronized (handler) {
+			if(handler.complete()) {
+				handler.encrypt(buffer);
+				peerSubMessageHandler.send(buffer);
+			} else if(handler.encryptOrPending(buffer)) {
+				peerSubMessageHandler.send(buffer);
+			}
+		}
+	}
+	
+}
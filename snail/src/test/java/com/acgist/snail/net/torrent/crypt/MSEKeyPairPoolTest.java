@@ -0,0 +1,30 @@
+package com.acgist.snail.net.torrent.crypt;
+
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.security.KeyPair;
+
+import org.junit.jupiter.api.Test;
+
+import com.acgist.snail.utils.Performance;
+import com.acgist.snail.utils.ThreadUtils;
+
+public class MSEKeyPairPoolTest extends Performance {
+	
+	@Test
+	public void testKeyPair() {
+		final MSEKeyPairPool pool = MSEKeyPairPool.getInstance();
+		pool.register();
+		int count = 0;
+		while(pool.size() < 64 && count++ < 100) {
+			ThreadUtils.sleep(100);
+		}
+		this.log("密钥对数量：{}", pool.size());
+		assertTrue(pool.size() > 0);
+		final KeyPair a = pool.keyPair();
+		final KeyPair b = pool.keyPair();
+		assertNotEquals(a.getPublic().toString(), b.getPublic().toString());
+	}
+	
+}
@@ -22,7 +22,7 @@ public class DhtClientTest extends Performance {
 	@Test
 	public void testPing() {
 		final var client = DhtClient.newInstance(HOST, PORT);
-		final var node = client.ping();
+		final var node = client.ping().join();
 		this.log("节点信息：{}", node);
 	}
 	
@@ -18,14 +18,13 @@ public class DhtServerTest extends Performance {
 	@Test
 	public void testPing() {
 		final var client = DhtClient.newInstance(HOST, PORT);
-		final var node = client.ping();
+		final var node = client.ping().join();
 		this.log("节点信息：{}", node);
 	}
 	
 	@Test
 	public void testFindNode() {
 		NodeManager.getInstance().newNodeSession("12345678901234567890".getBytes(), "192.168.1.100", 1234);
-		NodeManager.getInstance().sortNodes();
 		final var client = DhtClient.newInstance(HOST, PORT);
 		client.findNode(HASH);
 		this.pause();
@@ -34,7 +33,6 @@ public class DhtServerTest extends Performance {
 	@Test
 	public void testGetPeers() throws DownloadException {
 		NodeManager.getInstance().newNodeSession("12345678901234567890".getBytes(), "192.168.1.100", 1234);
-		NodeManager.getInstance().sortNodes();
 		final var client = DhtClient.newInstance(HOST, PORT);
 		final var infoHash = InfoHash.newInstance(HASH);
 		client.getPeers(infoHash);
@@ -0,0 +1,75 @@
+package com.acgist.snail.net.torrent.dht.bootstrap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.acgist.snail.config.DhtConfig;
+import com.acgist.snail.config.SystemConfig;
+import com.acgist.snail.pojo.session.NodeSession;
+import com.acgist.snail.utils.ArrayUtils;
+import com.acgist.snail.utils.Performance;
+import com.acgist.snail.utils.ThreadUtils;
+
+public class DhtLookupTest extends Performance {
+	
+	@BeforeAll
+	public static final void init() {
+		DhtManager.getInstance().register();
+	}
+	
+	@Test
+	public void testLookup() {
+		final List<NodeSession> nodes = new ArrayList<>();
+		// 本地服务：响应
+		nodes.add(NodeSession.newInstance(ArrayUtils.random(20), "127.0.0.1", SystemConfig.getTorrentPort()));
+		// 不可达节点：超时
+		for (int index = 1; index < 12; index++) {
+			nodes.add(NodeSession.newInstance(ArrayUtils.random(20), "127.0.0.1", index));
+		}
+		final DhtLookup lookup = DhtLookup.newInstance(DhtConfig.QType.FIND_NODE, ArrayUtils.random(20), DhtLookup.MAX_ALPHA);
+		lookup.lookup(nodes);
+		// 并发数量
+		assertTrue(lookup.requestCount() <= DhtLookup.MAX_ALPHA);
+		final long timeout = System.currentTimeMillis() + 4L * DhtConfig.DHT_TIMEOUT;
+		while(!lookup.done() && System.currentTimeMillis() < timeout) {
+			ThreadUtils.sleep(100);
+		}
+		assertTrue(lookup.done());
+		this.log("请求数量：{}，响应节点：{}", lookup.requestCount(), lookup.closest());
+		assertTrue(lookup.requestCount() >= nodes.size());
+		assertEquals(1, lookup.closest().size());
+		assertEquals(SystemConfig.getTorrentPort(), lookup.closest().get(0).getPort());
+	}
+	
+	@Test
+	public void testTimeout() {
+		final List<NodeSession> nodes = new ArrayList<>();
+		// 不可达节点：超时
+		for (int index = 1; index < 4; index++) {
+			nodes.add(NodeSession.newInstance(ArrayUtils.random(20), "127.0.0.1", index));
+		}
+		final DhtLookup lookup = DhtLookup.newInstance(DhtConfig.QType.GET_PEERS, ArrayUtils.random(20));
+		lookup.lookup(nodes);
+		assertFalse(lookup.done());
+		// 查找超时：强制结束
+		lookup.timeout();
+		assertTrue(lookup.done());
+		final int requestCount = lookup.requestCount();
+		// 超时以后的响应直接忽略
+		final long timeout = System.currentTimeMillis() + 2L * DhtConfig.DHT_TIMEOUT;
+		while(DhtManager.getInstance().size() > 0 && System.currentTimeMillis() < timeout) {
+			ThreadUtils.sleep(100);
+		}
+		assertTrue(lookup.done());
+		assertEquals(requestCount, lookup.requestCount());
+		assertEquals(0, lookup.closest().size());
+	}
+	
+}
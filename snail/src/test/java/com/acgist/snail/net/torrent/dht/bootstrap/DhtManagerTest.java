@@ -0,0 +1,64 @@
+package com.acgist.snail.net.torrent.dht.bootstrap;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.acgist.snail.config.DhtConfig;
+import com.acgist.snail.net.torrent.dht.bootstrap.request.PingRequest;
+import com.acgist.snail.net.torrent.dht.bootstrap.response.PingResponse;
+import com.acgist.snail.utils.Performance;
+
+public class DhtManagerTest extends Performance {
+	
+	@BeforeAll
+	public static final void init() {
+		DhtManager.getInstance().register();
+	}
+	
+	@Test
+	public void testResponse() {
+		final DhtManager manager = DhtManager.getInstance();
+		final DhtRequest request = PingRequest.newRequest();
+		request.setSocketAddress(new InetSocketAddress("127.0.0.1", 18888));
+		manager.request(request);
+		final DhtResponse response = PingResponse.newInstance(request);
+		assertSame(request, manager.response(response));
+		// 已经响应
+		assertNull(manager.response(response));
+		request.complete(response);
+		assertSame(response, request.future().join());
+	}
+	
+	@Test
+	public void testTimeout() throws Exception {
+		final DhtManager manager = DhtManager.getInstance();
+		final DhtRequest request = PingRequest.newRequest();
+		request.setSocketAddress(new InetSocketAddress("127.0.0.1", 18888));
+		manager.request(request);
+		assertNull(request.future().get(DhtConfig.DHT_TIMEOUT * 2, TimeUnit.MILLISECONDS));
+		final long cost = System.currentTimeMillis() - request.getTimestamp();
+		this.log("超时时间：{}", cost);
+		assertTrue(cost >= DhtConfig.DHT_TIMEOUT);
+		assertNull(manager.response(PingResponse.newInstance(request)));
+	}
+	
+	@Test
+	public void testCosted() {
+		final DhtManager manager = DhtManager.getInstance();
+		final int size = manager.size();
+		this.costed(100000, () -> {
+			final DhtRequest request = PingRequest.newRequest();
+			manager.request(request);
+			manager.response(PingResponse.newInstance(request));
+		});
+		assertTrue(manager.size() <= size);
+	}
+	
+}
@@ -0,0 +1,91 @@
+package com.acgist.snail.net.torrent.dht.bootstrap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.acgist.snail.pojo.session.NodeSession;
+import com.acgist.snail.utils.ArrayUtils;
+import com.acgist.snail.utils.Performance;
+
+public class NodeBucketTest extends Performance {
+	
+	@Test
+	public void testPut() {
+		final NodeBucket bucket = NodeBucket.newInstance();
+		final List<NodeSession> nodes = new ArrayList<>();
+		for (int index = 0; index < NodeBucket.BUCKET_SIZE + NodeBucket.REPLACEMENT_SIZE + 4; index++) {
+			final NodeSession node = NodeSession.newInstance(ArrayUtils.random(20), "127.0.0.1", index);
+			nodes.add(node);
+			assertSame(node, bucket.put(node));
+		}
+		assertEquals(NodeBucket.BUCKET_SIZE, bucket.size());
+		assertEquals(NodeBucket.REPLACEMENT_SIZE, bucket.replacementSize());
+		// 已经存在返回旧节点
+		assertSame(nodes.get(0), bucket.put(NodeSession.newInstance(nodes.get(0).getId(), "127.0.0.1", 0)));
+		// 替换缓存删除最久没有活跃的节点
+		assertNull(bucket.select(nodes.get(NodeBucket.BUCKET_SIZE).getId()));
+		assertNotNull(bucket.select(nodes.get(nodes.size() - 1).getId()));
+	}
+	
+	@Test
+	public void testLru() {
+		final NodeBucket bucket = NodeBucket.newInstance();
+		final List<NodeSession> nodes = new ArrayList<>();
+		for (int index = 0; index < NodeBucket.BUCKET_SIZE; index++) {
+			final NodeSession node = NodeSession.newInstance(ArrayUtils.random(20), "127.0.0.1", index);
+			nodes.add(node);
+			bucket.put(node);
+		}
+		bucket.active(nodes.get(0));
+		assertSame(nodes.get(0), bucket.nodes().get(NodeBucket.BUCKET_SIZE - 1));
+		assertSame(nodes.get(1), bucket.nodes().get(0));
+		// 最久没有活跃的可疑节点
+		assertSame(nodes.get(1), bucket.questionable());
+	}
+	
+	@Test
+	public void testFail() {
+		final NodeBucket bucket = NodeBucket.newInstance();
+		final List<NodeSession> nodes = new ArrayList<>();
+		for (int index = 0; index < NodeBucket.BUCKET_SIZE + 2; index++) {
+			final NodeSession node = NodeSession.newInstance(ArrayUtils.random(20), "127.0.0.1", index);
+			nodes.add(node);
+			bucket.put(node);
+		}
+		final NodeSession bad = nodes.get(0);
+		for (int index = 0; index < NodeSession.BAD_FAIL_TIMES; index++) {
+			bucket.fail(bad);
+		}
+		// 坏节点使用最近活跃的替换节点替换
+		assertNull(bucket.select(bad.getId()));
+		assertEquals(NodeBucket.BUCKET_SIZE, bucket.size());
+		assertEquals(1, bucket.replacementSize());
+		assertSame(nodes.get(nodes.size() - 1), bucket.nodes().get(NodeBucket.BUCKET_SIZE - 1));
+		// 没有替换节点：坏节点保留，新节点直接替换坏节点
+		final NodeBucket fullBucket = NodeBucket.newInstance();
+		for (int index = 0; index < NodeBucket.BUCKET_SIZE; index++) {
+			fullBucket.put(nodes.get(index + 1));
+		}
+		final NodeSession fullBad = nodes.get(1);
+		for (int index = 0; index < NodeSession.BAD_FAIL_TIMES; index++) {
+			fullBucket.fail(fullBad);
+		}
+		assertSame(fullBad, fullBucket.select(fullBad.getId()));
+		final List<NodeSession> list = new ArrayList<>();
+		fullBucket.collect(list);
+		assertEquals(NodeBucket.BUCKET_SIZE - 1, list.size());
+		final NodeSession node = NodeSession.newInstance(ArrayUtils.random(20), "127.0.0.1", 0);
+		fullBucket.put(node);
+		assertNull(fullBucket.select(fullBad.getId()));
+		assertSame(node, fullBucket.select(node.getId()));
+		assertEquals(0, fullBucket.replacementSize());
+	}
+	
+}
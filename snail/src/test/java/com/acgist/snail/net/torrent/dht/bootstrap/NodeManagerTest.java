@@ -1,8 +1,15 @@
 package com.acgist.snail.net.torrent.dht.bootstrap;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import java.util.stream.Collectors;
 
 import org.junit.jupiter.api.Test;
 
@@ -32,7 +39,6 @@ public class NodeManagerTest extends Performance {
 		}
 		String id = "0000000000000000000000000000000000613709"; // 查找ID
 		nodes.add(NodeManager.getInstance().newNodeSession(StringUtils.unhex(id), "0", 0));
-		NodeManager.getInstance().sortNodes();
 		this.log("查找ID：{}", id);
 		this.cost();
 		var list = NodeManager.getInstance().findNode(id);
@@ -50,6 +56,86 @@ public class NodeManagerTest extends Performance {
 		});
 	}
 
+	@Test
+	public void testPrefixLength() {
+		assertEquals(0, ArrayUtils.prefixLength(StringUtils.unhex("80"), StringUtils.unhex("00")));
+		assertEquals(7, ArrayUtils.prefixLength(StringUtils.unhex("01"), StringUtils.unhex("00")));
+		assertEquals(8, ArrayUtils.prefixLength(StringUtils.unhex("0100"), StringUtils.unhex("0180")));
+		assertEquals(16, ArrayUtils.prefixLength(StringUtils.unhex("0100"), StringUtils.unhex("0100")));
+	}
+	
+	@Test
+	public void testFindNodeExact() {
+		final NodeManager manager = NodeManager.getInstance();
+		final byte[] nodeId = manager.nodeId();
+		for (int index = 0; index < 100000; index++) {
+			final byte[] id = ArrayUtils.random(20);
+			// 随机相同前缀：节点分布到不同节点桶
+			final int prefix = index % 24;
+			System.arraycopy(nodeId, 0, id, 0, prefix / 8);
+			manager.newNodeSession(id, "0", 0);
+		}
+		// 节点数量有上限
+		assertTrue(manager.size() <= 160 * NodeBucket.BUCKET_SIZE);
+		this.log("节点数量：{}", manager.size());
+		for (int index = 0; index < 10; index++) {
+			final byte[] target = ArrayUtils.random(20);
+			if(index % 2 == 0) {
+				System.arraycopy(nodeId, 0, target, 0, 2);
+			}
+			final var expected = manager.nodes().stream()
+				.filter(node -> node.getStatus() != NodeSession.Status.VERIFY && !node.bad())
+				.sorted((a, b) -> ArrayUtils.compareUnsigned(ArrayUtils.xor(a.getId(), target), ArrayUtils.xor(b.getId(), target)))
+				.limit(8)
+				.collect(Collectors.toList());
+			final var list = manager.findNode(target);
+			assertEquals(expected.size(), list.size());
+			for (int jndex = 0; jndex < list.size(); jndex++) {
+				assertArrayEquals(expected.get(jndex).getId(), list.get(jndex).getId());
+			}
+		}
+		final byte[] target = ArrayUtils.random(20);
+		this.costed(10000, () -> manager.findNode(target));
+	}
+	
+	@Test
+	public void testFindNodeRepeat() {
+		final NodeManager manager = NodeManager.getInstance();
+		final byte[] nodeId = manager.nodeId();
+		for (int index = 0; index < 64; index++) {
+			final byte[] id = ArrayUtils.random(20);
+			id[0] = (byte) (nodeId[0] ^ 0x80);
+			manager.newNodeSession(id, "0", 0);
+		}
+		final byte[] target = ArrayUtils.random(20);
+		final var list = manager.findNode(target);
+		assertEquals(8, list.size());
+		// 响应远程查询不会修改节点状态：重复查找依然返回相同节点
+		for (int index = 0; index < 100; index++) {
+			final var repeat = manager.findNode(target);
+			assertEquals(list.size(), repeat.size());
+			for (int jndex = 0; jndex < list.size(); jndex++) {
+				assertArrayEquals(list.get(jndex).getId(), repeat.get(jndex).getId());
+				assertNotEquals(NodeSession.Status.VERIFY, repeat.get(jndex).getStatus());
+			}
+		}
+	}
+	
+	@Test
+	public void testToken() {
+		final NodeManager manager = NodeManager.getInstance();
+		final byte[] token = manager.token("192.168.1.100");
+		assertTrue(manager.verifyToken("192.168.1.100", token));
+		assertFalse(manager.verifyToken("192.168.1.101", token));
+		// 上一代密钥依然有效
+		manager.rotateSecret();
+		assertTrue(manager.verifyToken("192.168.1.100", token));
+		manager.rotateSecret();
+		assertFalse(manager.verifyToken("192.168.1.100", token));
+		assertFalse(manager.verifyToken("192.168.1.100", null));
+		this.costed(100000, () -> manager.verifyToken("192.168.1.100", token));
+	}
+	
 	private String buildId() {
 		long value;
 		final Random random = new Random();
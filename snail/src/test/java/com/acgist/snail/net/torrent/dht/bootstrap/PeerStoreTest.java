@@ -0,0 +1,71 @@
+package com.acgist.snail.net.torrent.dht.bootstrap;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+
+import com.acgist.snail.config.SystemConfig;
+import com.acgist.snail.utils.ArrayUtils;
+import com.acgist.snail.utils.NetUtils;
+import com.acgist.snail.utils.Performance;
+
+public class PeerStoreTest extends Performance {
+	
+	@Test
+	public void testAnnounce() {
+		final PeerStore store = PeerStore.getInstance();
+		final byte[] infoHash = ArrayUtils.random(20);
+		assertTrue(store.announce(infoHash, "192.168.1.100", 18888));
+		assertTrue(store.announce(infoHash, "192.168.1.101", 18888));
+		// 重复声明
+		assertTrue(store.announce(infoHash, "192.168.1.100", 18888));
+		// IPv6
+		assertFalse(store.announce(infoHash, "fe80::1", 18888));
+		final var peers = store.peers(infoHash, 10);
+		assertEquals(2, peers.size());
+		// 最近声明的Peer优先
+		assertArrayEquals(compact("192.168.1.100", 18888), peers.get(0));
+		assertArrayEquals(compact("192.168.1.101", 18888), peers.get(1));
+		assertEquals(1, store.peers(infoHash, 1).size());
+		assertTrue(store.peers(ArrayUtils.random(20), 10).isEmpty());
+	}
+	
+	@Test
+	public void testMaxPeerSize() {
+		final PeerStore store = PeerStore.getInstance();
+		final byte[] infoHash = ArrayUtils.random(20);
+		for (int index = 0; index < PeerStore.MAX_PEER_SIZE + 10; index++) {
+			store.announce(infoHash, "10.0." + (index / 256) + "." + (index % 256), 18888);
+		}
+		final var peers = store.peers(infoHash, Integer.MAX_VALUE);
+		assertEquals(PeerStore.MAX_PEER_SIZE, peers.size());
+		// 最久没有声明的Peer已经删除
+		assertTrue(peers.stream().noneMatch(value -> ArrayUtils.equals(value, compact("10.0.0.0", 18888))));
+	}
+	
+	@Test
+	public void testCosted() {
+		final PeerStore store = PeerStore.getInstance();
+		this.costed(100000, () -> {
+			final byte[] infoHash = ArrayUtils.random(20);
+			store.announce(infoHash, "192.168.1.100", 18888);
+			store.peers(infoHash, 8);
+		});
+		assertTrue(store.size() <= PeerStore.MAX_INFO_HASH_SIZE);
+		assertTrue(store.peerSize() <= PeerStore.MAX_TOTAL_PEER_SIZE);
+		this.log("InfoHash数量：{}，Peer数量：{}", store.size(), store.peerSize());
+	}
+	
+	private byte[] compact(String host, int port) {
+		final ByteBuffer buffer = ByteBuffer.allocate(SystemConfig.IP_PORT_LENGTH);
+		buffer.putInt(NetUtils.ipToInt(host));
+		buffer.putShort(NetUtils.portToShort(port));
+		return buffer.array();
+	}
+	
+}
@@ -0,0 +1,61 @@
+package com.acgist.snail.net.torrent.peer.bootstrap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.acgist.snail.pojo.session.PeerSession;
+import com.acgist.snail.utils.Performance;
+
+public class PeerExchangeLogTest extends Performance {
+	
+	@Test
+	public void testChanges() {
+		final PeerExchangeLog exchangeLog = PeerExchangeLog.newInstance();
+		final PeerSession a = PeerSession.newInstance(null, "127.0.0.1", 1);
+		final PeerSession b = PeerSession.newInstance(null, "127.0.0.1", 2);
+		final PeerSession c = PeerSession.newInstance(null, "127.0.0.1", 3);
+		exchangeLog.update(List.of(a, b));
+		assertEquals(2, exchangeLog.sequence());
+		exchangeLog.update(List.of(b, c));
+		assertEquals(4, exchangeLog.sequence());
+		// 没有变化
+		exchangeLog.update(List.of(b, c));
+		assertEquals(4, exchangeLog.sequence());
+		final var changes = exchangeLog.changes(2);
+		assertEquals(2, changes.size());
+		assertTrue(changes.get(0).added());
+		assertTrue(changes.get(0).peerSession() == c);
+		assertFalse(changes.get(1).added());
+		assertTrue(changes.get(1).peerSession() == a);
+		assertTrue(exchangeLog.changes(4).isEmpty());
+		assertEquals(List.of("127.0.0.1:2", "127.0.0.1:3"), new ArrayList<>(exchangeLog.peers().keySet()));
+		// 没有端口：不发送
+		exchangeLog.update(List.of(b, c, PeerSession.newInstance(null, "127.0.0.1", null)));
+		assertEquals(4, exchangeLog.sequence());
+	}
+	
+	@Test
+	public void testTruncate() {
+		final PeerExchangeLog exchangeLog = PeerExchangeLog.newInstance();
+		final List<PeerSession> peers = new ArrayList<>();
+		for (int index = 0; index < 2000; index++) {
+			peers.add(PeerSession.newInstance(null, "127.0.0.1", index + 1));
+		}
+		exchangeLog.update(peers);
+		assertEquals(2000, exchangeLog.sequence());
+		// 变化记录已经删除：全量同步
+		assertNull(exchangeLog.changes(0));
+		assertNull(exchangeLog.changes(2001));
+		assertEquals(10, exchangeLog.changes(1990).size());
+		assertEquals(2000, exchangeLog.peers().size());
+		this.costed(10000, () -> exchangeLog.changes(exchangeLog.sequence() - 10));
+	}
+	
+}
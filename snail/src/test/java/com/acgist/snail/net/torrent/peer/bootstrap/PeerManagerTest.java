@@ -0,0 +1,194 @@
+package com.acgist.snail.net.torrent.peer.bootstrap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.acgist.snail.config.PeerConfig;
+import com.acgist.snail.config.SystemConfig;
+import com.acgist.snail.pojo.session.PeerSession;
+import com.acgist.snail.utils.Performance;
+import com.acgist.snail.utils.ThreadUtils;
+
+public class PeerManagerTest extends Performance {
+
+	@Test
+	public void testNewPeerSession() {
+		final String infoHashHex = "0000000000000000000000000000000000000001";
+		final PeerManager manager = PeerManager.getInstance();
+		final var a = manager.newPeerSession(infoHashHex, null, "127.0.0.1", 18888, PeerConfig.Source.TRACKER);
+		final var b = manager.newPeerSession(infoHashHex, null, "127.0.0.1", 18888, PeerConfig.Source.DHT);
+		assertTrue(a == b);
+		assertEquals(2, a.sources().size());
+		assertNotNull(manager.findPeerSession(infoHashHex, "127.0.0.1", 18888));
+		assertNull(manager.findPeerSession(infoHashHex, "127.0.0.1", 18889));
+		manager.remove(infoHashHex);
+	}
+	
+	@Test
+	public void testPick() {
+		final String infoHashHex = "0000000000000000000000000000000000000002";
+		final PeerManager manager = PeerManager.getInstance();
+		final var tracker = manager.newPeerSession(infoHashHex, null, "127.0.0.1", 1, PeerConfig.Source.TRACKER);
+		final var pex = manager.newPeerSession(infoHashHex, null, "127.0.0.1", 2, PeerConfig.Source.PEX);
+		final var connect = manager.newPeerSession(infoHashHex, null, "127.0.0.2", null, PeerConfig.Source.CONNECT);
+		assertTrue(pex == manager.pick(infoHashHex));
+		assertTrue(tracker == manager.pick(infoHashHex));
+		assertNull(manager.pick(infoHashHex));
+		manager.inferior(infoHashHex, tracker);
+		manager.preference(infoHashHex, pex);
+		manager.port(infoHashHex, connect, 3);
+		assertTrue(connect == manager.findPeerSession(infoHashHex, "127.0.0.2", 3));
+		assertTrue(pex == manager.pick(infoHashHex));
+		assertTrue(connect == manager.pick(infoHashHex));
+		assertTrue(tracker == manager.pick(infoHashHex));
+		manager.remove(infoHashHex);
+	}
+	
+	@Test
+	public void testEvict() {
+		final String infoHashHex = "0000000000000000000000000000000000000003";
+		final PeerManager manager = PeerManager.getInstance();
+		final int size = SystemConfig.getPeerStorageSize() * 10;
+		this.cost();
+		for (int index = 0; index < size; index++) {
+			manager.newPeerSession(infoHashHex, null, "127.0.0.1", index, PeerConfig.Source.TRACKER);
+		}
+		this.costed();
+		assertEquals(SystemConfig.getPeerStorageSize(), manager.listPeerSession(infoHashHex).size());
+		manager.remove(infoHashHex);
+	}
+	
+	@Test
+	public void testEvictSession() {
+		final String infoHashHex = "0000000000000000000000000000000000000004";
+		final PeerManager manager = PeerManager.getInstance();
+		final int size = SystemConfig.getPeerStorageSize();
+		for (int index = 0; index < size; index++) {
+			manager.newPeerSession(infoHashHex, null, "127.0.0.1", index, PeerConfig.Source.TRACKER);
+		}
+		// 下载队列为空：淘汰存档队列
+		final List<PeerSession> picks = new ArrayList<>();
+		PeerSession pick;
+		while((pick = manager.pick(infoHashHex)) != null) {
+			picks.add(pick);
+		}
+		for (int index = size; index < size * 2; index++) {
+			manager.newPeerSession(infoHashHex, null, "127.0.0.2", index, PeerConfig.Source.CONNECT);
+		}
+		assertEquals(size, manager.listPeerSession(infoHashHex).size());
+		// 连接中（已经取出）的Peer不会淘汰
+		assertTrue(manager.listPeerSession(infoHashHex).containsAll(picks));
+		// 放回下载队列后可以淘汰
+		picks.forEach(session -> manager.inferior(infoHashHex, session));
+		manager.newPeerSession(infoHashHex, null, "127.0.0.3", 1, PeerConfig.Source.CONNECT);
+		assertEquals(size, manager.listPeerSession(infoHashHex).size());
+		manager.remove(infoHashHex);
+	}
+	
+	@Test
+	public void testPortExist() {
+		final String infoHashHex = "0000000000000000000000000000000000000007";
+		final PeerManager manager = PeerManager.getInstance();
+		final var exist = manager.newPeerSession(infoHashHex, null, "127.0.0.1", 1, PeerConfig.Source.TRACKER);
+		final var connect = manager.newPeerSession(infoHashHex, null, "127.0.0.1", null, PeerConfig.Source.CONNECT);
+		connect.status(PeerConfig.STATUS_UPLOAD);
+		// 相同地址的Peer没有连接：使用接入的Peer替换
+		manager.port(infoHashHex, connect, 1);
+		assertTrue(connect == manager.findPeerSession(infoHashHex, "127.0.0.1", 1));
+		assertTrue(manager.listPeerSession(infoHashHex).stream().noneMatch(session -> session == exist));
+		assertTrue(connect == manager.pick(infoHashHex));
+		assertNull(manager.pick(infoHashHex));
+		// 相同地址的Peer连接中：保留原有索引
+		final var other = manager.newPeerSession(infoHashHex, null, "127.0.0.1", null, PeerConfig.Source.CONNECT);
+		other.status(PeerConfig.STATUS_UPLOAD);
+		manager.port(infoHashHex, other, 1);
+		assertTrue(connect == manager.findPeerSession(infoHashHex, "127.0.0.1", 1));
+		assertTrue(other == manager.findPeerSession(infoHashHex, "127.0.0.1", null));
+		manager.remove(infoHashHex);
+	}
+	
+	@Test
+	public void testRemove() {
+		final String infoHashHex = "0000000000000000000000000000000000000005";
+		final PeerManager manager = PeerManager.getInstance();
+		final var peerSession = manager.newPeerSession(infoHashHex, null, "127.0.0.1", 18888, PeerConfig.Source.TRACKER);
+		manager.remove(infoHashHex);
+		// 任务删除后不会重新创建Peer列表
+		assertNull(manager.findPeerSession(infoHashHex, "127.0.0.1", 18888));
+		manager.have(infoHashHex, 1);
+		manager.inferior(infoHashHex, peerSession);
+		manager.preference(infoHashHex, peerSession);
+		manager.port(infoHashHex, peerSession, 18889);
+		assertEquals(18889, peerSession.port());
+		assertNull(manager.pick(infoHashHex));
+		assertFalse(manager.hasPeerSession(infoHashHex));
+		assertTrue(manager.listPeerSession(infoHashHex).isEmpty());
+	}
+	
+	@Test
+	public void testDialFail() {
+		final String infoHashHex = "0000000000000000000000000000000000000006";
+		final PeerManager manager = PeerManager.getInstance();
+		final var fail = manager.newPeerSession(infoHashHex, null, "127.0.0.1", 1, PeerConfig.Source.PEX);
+		final var tracker = manager.newPeerSession(infoHashHex, null, "127.0.0.1", 2, PeerConfig.Source.TRACKER);
+		fail.fail();
+		assertTrue(fail.available());
+		assertFalse(fail.dialable());
+		// 连接失败缓存时间内跳过
+		assertTrue(tracker == manager.pick(infoHashHex));
+		assertNull(manager.pick(infoHashHex));
+		// 没有移出下载队列
+		manager.inferior(infoHashHex, fail);
+		assertNull(manager.pick(infoHashHex));
+		manager.remove(infoHashHex);
+	}
+	
+	@Test
+	public void testDialFailEvict() {
+		final String infoHashHex = "0000000000000000000000000000000000000008";
+		final PeerManager manager = PeerManager.getInstance();
+		final int size = SystemConfig.getPeerStorageSize();
+		final List<PeerSession> fails = new ArrayList<>();
+		for (int index = 0; index < size; index++) {
+			final var session = manager.newPeerSession(infoHashHex, null, "127.0.0.1", index, PeerConfig.Source.CONNECT);
+			if(index % 2 == 0) {
+				session.fail();
+				fails.add(session);
+			}
+		}
+		// 连接失败的Peer在等待队列：多次获取不会重复排序（其他Peer全部取出）
+		this.costed(1000, () -> manager.pick(infoHashHex));
+		// 优先淘汰连接失败的Peer
+		for (int index = 0; index < fails.size(); index++) {
+			manager.newPeerSession(infoHashHex, null, "127.0.0.2", index, PeerConfig.Source.TRACKER);
+		}
+		assertEquals(size, manager.listPeerSession(infoHashHex).size());
+		assertTrue(manager.listPeerSession(infoHashHex).stream().noneMatch(session -> fails.stream().anyMatch(fail -> fail == session)));
+		manager.remove(infoHashHex);
+	}
+	
+	@Test
+	public void testHave() {
+		final String infoHashHex = "0000000000000000000000000000000000000009";
+		final PeerManager manager = PeerManager.getInstance();
+		manager.newPeerSession(infoHashHex, null, "127.0.0.1", 1, PeerConfig.Source.TRACKER);
+		// 合并周期内的have消息合并发送
+		for (int index = 0; index < 100; index++) {
+			manager.have(infoHashHex, index);
+		}
+		assertEquals(100, manager.haves(infoHashHex).length);
+		ThreadUtils.sleep(500);
+		assertEquals(0, manager.haves(infoHashHex).length);
+		manager.remove(infoHashHex);
+		assertEquals(0, manager.haves(infoHashHex).length);
+	}
+	
+}
@@ -0,0 +1,93 @@
+package com.acgist.snail.net.torrent.peer.bootstrap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.acgist.snail.config.PeerConfig;
+import com.acgist.snail.pojo.session.PeerSession;
+import com.acgist.snail.utils.Performance;
+
+public class PeerSubMessageHandlerTest extends Performance {
+	
+	@Test
+	public void testBuildHave() {
+		final PeerSession peerSession = PeerSession.newInstance(null, "127.0.0.1", 18888);
+		final BitSet piggybackHaves = new BitSet();
+		// 合并发送
+		var buffer = PeerSubMessageHandler.buildHave(peerSession, new int[] {1, 2, 3}, piggybackHaves, false);
+		assertEquals(List.of(1, 2, 3), readHave(buffer));
+		// Peer已经含有的Piece不发送
+		peerSession.piece(2);
+		buffer = PeerSubMessageHandler.buildHave(peerSession, new int[] {1, 2, 3}, piggybackHaves, false);
+		assertEquals(List.of(1, 3), readHave(buffer));
+		assertTrue(piggybackHaves.isEmpty());
+		// 做种Peer不发送
+		final BitSet pieces = new BitSet();
+		pieces.set(0, 10);
+		peerSession.pieces(pieces);
+		assertNull(PeerSubMessageHandler.buildHave(peerSession, new int[] {1, 2, 3}, piggybackHaves, false));
+	}
+	
+	@Test
+	public void testPiggybackHave() {
+		final PeerSession peerSession = PeerSession.newInstance(null, "127.0.0.1", 18888);
+		final BitSet piggybackHaves = new BitSet();
+		// 随其他消息发送：记录Piece索引
+		var buffer = PeerSubMessageHandler.buildHave(peerSession, new int[] {1, 2}, piggybackHaves, true);
+		assertEquals(List.of(1, 2), readHave(buffer));
+		assertTrue(piggybackHaves.get(1));
+		assertTrue(piggybackHaves.get(2));
+		// 再次发送其他消息：不会重复发送
+		buffer = PeerSubMessageHandler.buildHave(peerSession, new int[] {1, 2, 3}, piggybackHaves, true);
+		assertEquals(List.of(3), readHave(buffer));
+		// 定时发送：跳过已经合并发送的Piece并且清除
+		assertNull(PeerSubMessageHandler.buildHave(peerSession, new int[] {1, 2, 3}, piggybackHaves, false));
+		assertTrue(piggybackHaves.isEmpty());
+	}
+	
+	@Test
+	public void testMerge() {
+		final PeerSession peerSession = PeerSession.newInstance(null, "127.0.0.1", 18888);
+		final ByteBuffer haves = PeerSubMessageHandler.buildHave(peerSession, new int[] {1}, new BitSet(), true);
+		final ByteBuffer message = ByteBuffer.allocate(5);
+		message.putInt(1);
+		message.put(PeerConfig.Type.INTERESTED.id());
+		final ByteBuffer buffer = PeerSubMessageHandler.merge(haves, message);
+		assertFalse(buffer.hasRemaining());
+		buffer.flip();
+		assertEquals(9 + 5, buffer.remaining());
+		assertEquals(5, buffer.getInt());
+		assertEquals(PeerConfig.Type.HAVE.id(), buffer.get());
+		assertEquals(1, buffer.getInt());
+		assertEquals(1, buffer.getInt());
+		assertEquals(PeerConfig.Type.INTERESTED.id(), buffer.get());
+	}
+	
+	/**
+	 * <p>读取have消息</p>
+	 * 
+	 * @param buffer have消息
+	 * 
+	 * @return Piece索引
+	 */
+	private static final List<Integer> readHave(ByteBuffer buffer) {
+		final List<Integer> list = new ArrayList<>();
+		buffer.flip();
+		while(buffer.hasRemaining()) {
+			assertEquals(5, buffer.getInt());
+			assertEquals(PeerConfig.Type.HAVE.id(), buffer.get());
+			list.add(buffer.getInt());
+		}
+		return list;
+	}
+	
+}
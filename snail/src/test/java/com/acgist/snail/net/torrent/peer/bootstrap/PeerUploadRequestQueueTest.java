@@ -0,0 +1,83 @@
+package com.acgist.snail.net.torrent.peer.bootstrap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import com.acgist.snail.config.PeerConfig;
+import com.acgist.snail.net.torrent.peer.bootstrap.PeerUploadRequestQueue.Offer;
+import com.acgist.snail.utils.Performance;
+
+public class PeerUploadRequestQueueTest extends Performance {
+	
+	@Test
+	public void testOffer() {
+		final PeerUploadRequestQueue queue = new PeerUploadRequestQueue();
+		// 第一个请求创建处理任务
+		assertEquals(Offer.START, queue.offer(0, 0, 16384));
+		assertEquals(Offer.QUEUE, queue.offer(0, 16384, 16384));
+		assertEquals(Offer.QUEUE, queue.offer(1, 0, 16384));
+		// 按照请求顺序处理
+		var request = queue.poll();
+		assertEquals(0, request.index);
+		assertEquals(0, request.begin);
+		request = queue.poll();
+		assertEquals(0, request.index);
+		assertEquals(16384, request.begin);
+		// 处理任务没有结束：不会创建新的处理任务
+		assertEquals(Offer.QUEUE, queue.offer(2, 0, 16384));
+		assertEquals(1, queue.poll().index);
+		assertEquals(2, queue.poll().index);
+		// 处理任务结束
+		assertNull(queue.poll());
+		assertEquals(Offer.START, queue.offer(3, 0, 16384));
+	}
+	
+	@Test
+	public void testReject() {
+		final PeerUploadRequestQueue queue = new PeerUploadRequestQueue();
+		for (int index = 0; index < PeerConfig.MAX_REQUEST_SIZE; index++) {
+			assertTrue(queue.offer(index, 0, 16384) != Offer.REJECT);
+		}
+		assertEquals(PeerConfig.MAX_REQUEST_SIZE, queue.size());
+		assertEquals(Offer.REJECT, queue.offer(PeerConfig.MAX_REQUEST_SIZE, 0, 16384));
+		assertEquals(PeerConfig.MAX_REQUEST_SIZE, queue.size());
+		queue.poll();
+		assertEquals(Offer.QUEUE, queue.offer(PeerConfig.MAX_REQUEST_SIZE, 0, 16384));
+	}
+	
+	@Test
+	public void testCancel() {
+		final PeerUploadRequestQueue queue = new PeerUploadRequestQueue();
+		queue.offer(0, 0, 16384);
+		queue.offer(0, 16384, 16384);
+		queue.offer(1, 0, 16384);
+		assertTrue(queue.cancel(0, 16384, 16384));
+		assertEquals(2, queue.size());
+		// 没有匹配请求：已经发送或者没有请求
+		assertFalse(queue.cancel(0, 16384, 16384));
+		assertFalse(queue.cancel(1, 0, 1024));
+		assertEquals(0, queue.poll().index);
+		assertEquals(1, queue.poll().index);
+		assertNull(queue.poll());
+	}
+	
+	@Test
+	public void testClear() {
+		final PeerUploadRequestQueue queue = new PeerUploadRequestQueue();
+		assertTrue(queue.clear().isEmpty());
+		queue.offer(0, 0, 16384);
+		queue.offer(1, 0, 16384);
+		final var requests = queue.clear();
+		assertEquals(2, requests.size());
+		assertEquals(0, requests.get(0).index);
+		assertEquals(1, requests.get(1).index);
+		assertEquals(0, queue.size());
+		assertNull(queue.poll());
+		assertEquals(Offer.START, queue.offer(2, 0, 16384));
+	}
+	
+}
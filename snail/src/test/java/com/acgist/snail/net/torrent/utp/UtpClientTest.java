@@ -0,0 +1,44 @@
+package com.acgist.snail.net.torrent.utp;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.IOException;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+
+import org.junit.jupiter.api.Test;
+
+import com.acgist.snail.context.exception.DownloadException;
+import com.acgist.snail.net.torrent.peer.bootstrap.PeerSubMessageHandler;
+import com.acgist.snail.pojo.bean.InfoHash;
+import com.acgist.snail.pojo.session.PeerSession;
+import com.acgist.snail.pojo.session.StatisticsSession;
+import com.acgist.snail.pojo.session.TorrentSession;
+import com.acgist.snail.utils.Performance;
+
+public class UtpClientTest extends Performance {
+	
+	@Test
+	public void testConnectAsync() throws DownloadException, IOException {
+		final int port;
+		// 获取没有监听的端口
+		try(final DatagramSocket socket = new DatagramSocket(0, InetAddress.getLoopbackAddress())) {
+			port = socket.getLocalPort();
+		}
+		final var torrentSession = TorrentSession.newInstance(InfoHash.newInstance("0000000000000000000000000000000000000027"), null);
+		final var peerSession = PeerSession.newInstance(new StatisticsSession(), "127.0.0.1", port);
+		final var client = UtpClient.newInstance(peerSession, PeerSubMessageHandler.newInstance(peerSession, torrentSession));
+		final var first = client.connectAsync();
+		// 正在连接：返回相同连接结果
+		assertSame(first, client.connectAsync());
+		assertFalse(first.join());
+		// 连接失败：重新连接
+		final var second = client.connectAsync();
+		assertNotSame(first, second);
+		assertFalse(second.isDone());
+		assertFalse(second.join());
+	}
+	
+}
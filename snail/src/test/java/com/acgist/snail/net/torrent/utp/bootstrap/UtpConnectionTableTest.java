@@ -0,0 +1,105 @@
+package com.acgist.snail.net.torrent.utp.bootstrap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.acgist.snail.config.UtpConfig;
+import com.acgist.snail.net.torrent.utp.UtpMessageHandler;
+import com.acgist.snail.utils.NetUtils;
+import com.acgist.snail.utils.Performance;
+
+public class UtpConnectionTableTest extends Performance {
+	
+	@Test
+	public void testTable() {
+		final UtpConnectionTable table = UtpConnectionTable.newInstance();
+		final Map<Long, UtpMessageHandler> map = new HashMap<>();
+		final UtpMessageHandler[] handlers = new UtpMessageHandler[256];
+		for (int index = 0; index < handlers.length; index++) {
+			handlers[index] = new UtpMessageHandler((short) index, NetUtils.buildSocketAddress("127.0.0.1", 18888));
+		}
+		final Random random = new Random(0);
+		for (int index = 0; index < 100000; index++) {
+			// 小范围key：制造冲突
+			final long key = random.nextInt(512);
+			final UtpMessageHandler handler = handlers[random.nextInt(handlers.length)];
+			if(random.nextBoolean()) {
+				assertSame(map.put(key, handler), table.put(key, handler));
+			} else {
+				final UtpMessageHandler old = map.get(key);
+				if(old == handler) {
+					map.remove(key);
+					assertTrue(table.remove(key, handler));
+				} else {
+					assertFalse(table.remove(key, handler));
+				}
+			}
+			assertEquals(map.size(), table.size());
+		}
+		for (long key = 0; key < 512; key++) {
+			assertSame(map.get(key), table.get(key));
+		}
+		assertEquals(map.size(), table.values().size());
+	}
+	
+	@Test
+	public void testKey() {
+		final UtpService service = UtpService.getInstance();
+		final InetSocketAddress address = NetUtils.buildSocketAddress("192.168.1.100", 18888);
+		final long key = service.buildKey((short) 1, address);
+		this.log("key：{}", Long.toHexString(key));
+		assertEquals(0xC0A80164_49C80001L, key);
+		assertEquals(key, service.buildKey((short) 1, NetUtils.buildSocketAddress("192.168.1.100", 18888)));
+		assertEquals(0xC0A80164_49C8FFFFL, service.buildKey((short) -1, address));
+	}
+	
+	@Test
+	public void testGet() {
+		final UtpService service = UtpService.getInstance();
+		final InetSocketAddress address = NetUtils.buildSocketAddress("192.168.1.100", 18888);
+		final ByteBuffer buffer = ByteBuffer.allocate(20);
+		buffer.put(0, UtpConfig.Type.DATA.typeVersion());
+		buffer.putShort(2, (short) 100);
+		buffer.position(20);
+		// 未知连接数据消息：丢弃
+		assertNull(service.get(buffer, address));
+		buffer.put(0, UtpConfig.Type.SYN.typeVersion());
+		final int halfOpen = service.halfOpen();
+		final var handler = service.get(buffer, address);
+		assertEquals(halfOpen + 1, service.halfOpen());
+		buffer.put(0, UtpConfig.Type.DATA.typeVersion());
+		// 服务端接收连接ID = 连接ID + 1
+		buffer.putShort(2, (short) 101);
+		assertSame(handler, service.get(buffer, address));
+		handler.close();
+		assertEquals(halfOpen, service.halfOpen());
+	}
+	
+	@Test
+	public void testCosted() {
+		final UtpService service = UtpService.getInstance();
+		final InetSocketAddress address = NetUtils.buildSocketAddress("192.168.1.100", 18888);
+		final UtpConnectionTable table = UtpConnectionTable.newInstance();
+		final Map<String, UtpMessageHandler> map = new HashMap<>();
+		for (int index = 0; index < 1024; index++) {
+			final UtpMessageHandler handler = new UtpMessageHandler((short) index, address);
+			table.put(service.buildKey((short) index, address), handler);
+			map.put(address.getHostString() + address.getPort() + index, handler);
+		}
+		final long mapCosted = this.costed(1000000, () -> map.get(address.getHostString() + address.getPort() + 100));
+		final long tableCosted = this.costed(1000000, () -> table.get(service.buildKey((short) 100, address)));
+		this.log("String key：{}；long key：{}", mapCosted, tableCosted);
+	}
+	
+}
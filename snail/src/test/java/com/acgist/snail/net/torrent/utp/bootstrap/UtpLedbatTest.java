@@ -0,0 +1,97 @@
+package com.acgist.snail.net.torrent.utp.bootstrap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import com.acgist.snail.config.UtpConfig;
+import com.acgist.snail.utils.Performance;
+
+public class UtpLedbatTest extends Performance {
+	
+	private static final int MSS = UtpConfig.UTP_PACKET_MAX_LENGTH;
+	
+	@Test
+	public void testSlowStart() {
+		final UtpLedbat ledbat = UtpLedbat.newInstance();
+		int timestamp = 0;
+		// 延迟没有变化：慢启动每个RTT窗口翻倍
+		for (int rtt = 0; rtt < 5; rtt++) {
+			final int cwnd = ledbat.cwnd();
+			for (int acked = 0; acked < cwnd; acked += MSS) {
+				timestamp += 1000;
+				ledbat.ack(MSS, ledbat.cwnd(), 50 * 1000, timestamp);
+			}
+			this.log("窗口大小：{}", ledbat.cwnd());
+			assertTrue(ledbat.cwnd() >= cwnd * 2 - MSS);
+		}
+		assertTrue(ledbat.slowStart());
+		// 排队延迟超过目标延迟：退出慢启动、减小窗口
+		final int cwnd = ledbat.cwnd();
+		for (int index = 0; index < 100; index++) {
+			timestamp += 1000;
+			ledbat.ack(MSS, cwnd, 50 * 1000 + 200 * 1000, timestamp);
+		}
+		this.log("窗口大小：{}-{}", ledbat.cwnd(), ledbat.queueDelay());
+		assertFalse(ledbat.slowStart());
+		assertTrue(ledbat.cwnd() < cwnd);
+	}
+	
+	@Test
+	public void testTarget() {
+		final UtpLedbat ledbat = UtpLedbat.newInstance();
+		int timestamp = 0;
+		ledbat.ack(MSS, MSS, 10 * 1000, timestamp);
+		// 排队延迟稳定在目标延迟附近：窗口不再变化
+		for (int index = 0; index < 1000; index++) {
+			timestamp += 1000;
+			final int delay = 10 * 1000 + (ledbat.cwnd() > 64 * MSS ? 150 * 1000 : 50 * 1000);
+			ledbat.ack(MSS, ledbat.cwnd(), delay, timestamp);
+		}
+		this.log("窗口大小：{}", ledbat.cwnd());
+		assertTrue(ledbat.cwnd() > 32 * MSS);
+		assertTrue(ledbat.cwnd() < 96 * MSS);
+	}
+	
+	@Test
+	public void testLimited() {
+		final UtpLedbat ledbat = UtpLedbat.newInstance();
+		int timestamp = 0;
+		// 应用受限：传输中数据较少时窗口不会无限增大
+		for (int index = 0; index < 1000; index++) {
+			timestamp += 1000;
+			ledbat.ack(MSS, MSS, 10 * 1000, timestamp);
+		}
+		assertEquals(3 * MSS, ledbat.cwnd());
+	}
+	
+	@Test
+	public void testLoss() {
+		final UtpLedbat ledbat = UtpLedbat.newInstance();
+		int timestamp = 0;
+		for (int index = 0; index < 100; index++) {
+			timestamp += 1000;
+			ledbat.ack(MSS, ledbat.cwnd(), 10 * 1000, timestamp);
+		}
+		final int cwnd = ledbat.cwnd();
+		ledbat.loss(timestamp, 50 * 1000);
+		assertEquals(cwnd / 2, ledbat.cwnd());
+		assertFalse(ledbat.slowStart());
+		// 同一个RTT内多次丢包只减小一次
+		ledbat.loss(timestamp + 1000, 50 * 1000);
+		assertEquals(cwnd / 2, ledbat.cwnd());
+		ledbat.timeout();
+		assertEquals(MSS, ledbat.cwnd());
+		assertTrue(ledbat.slowStart());
+	}
+	
+	@Test
+	public void testCosted() {
+		final UtpLedbat ledbat = UtpLedbat.newInstance();
+		final long costed = this.costed(100000, () -> ledbat.ack(MSS, ledbat.cwnd(), 10 * 1000, (int) System.nanoTime() / 1000));
+		assertTrue(costed < 1000);
+	}
+	
+}
@@ -0,0 +1,70 @@
+package com.acgist.snail.net.torrent.utp.bootstrap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.acgist.snail.config.UtpConfig;
+import com.acgist.snail.utils.Performance;
+
+public class UtpMtuTest extends Performance {
+	
+	@Test
+	public void testProbe() {
+		final UtpMtu mtu = UtpMtu.newInstance();
+		assertEquals(UtpConfig.UTP_PACKET_MIN_LENGTH, mtu.floor());
+		short seqnr = 0;
+		int length;
+		// 全部确认：探测到最大包长度
+		while((length = mtu.length(Integer.MAX_VALUE)) > mtu.floor()) {
+			mtu.send(++seqnr, length);
+			// 探测中使用可用大小
+			assertEquals(mtu.floor(), mtu.length(Integer.MAX_VALUE));
+			mtu.ack(seqnr);
+		}
+		this.log("探测次数：{}，数据包大小：{}", seqnr, mtu.floor());
+		assertTrue(UtpConfig.UTP_PACKET_MAX_LENGTH - mtu.floor() <= 16);
+		// 小消息不受影响
+		assertEquals(10, mtu.length(10));
+	}
+	
+	@Test
+	public void testLoss() {
+		final UtpMtu mtu = UtpMtu.newInstance();
+		short seqnr = 0;
+		int length;
+		while((length = mtu.length(Integer.MAX_VALUE)) > mtu.floor()) {
+			mtu.send(++seqnr, length);
+			if(length > 1000) {
+				// 路径最大包长度：1000
+				mtu.loss(seqnr);
+			} else {
+				mtu.ack(seqnr);
+			}
+		}
+		this.log("探测次数：{}，数据包大小：{}", seqnr, mtu.floor());
+		assertTrue(mtu.floor() <= 1000);
+		assertTrue(1000 - mtu.floor() <= 16);
+	}
+	
+	@Test
+	public void testFallback() {
+		final UtpMtu mtu = UtpMtu.newInstance();
+		short seqnr = 0;
+		int length;
+		while((length = mtu.length(Integer.MAX_VALUE)) > mtu.floor()) {
+			mtu.send(++seqnr, length);
+			mtu.ack(seqnr);
+		}
+		final UtpWindowData windowData = UtpWindowData.newInstance(++seqnr, 0, new byte[mtu.floor()]);
+		for (int index = 0; index < 3; index++) {
+			windowData.pushUpdateGetTimestamp();
+		}
+		mtu.timeout(List.of(windowData));
+		assertEquals(UtpConfig.UTP_PACKET_MIN_LENGTH, mtu.floor());
+	}
+	
+}
@@ -0,0 +1,87 @@
+package com.acgist.snail.net.torrent.utp.bootstrap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.acgist.snail.net.codec.IMessageCodec;
+import com.acgist.snail.utils.Performance;
+import com.acgist.snail.utils.ThreadUtils;
+
+public class UtpRequestQueueTest extends Performance {
+	
+	@Test
+	public void testOrder() throws InterruptedException {
+		final int size = 10000;
+		final int connections = 8;
+		final CountDownLatch latch = new CountDownLatch(size * connections);
+		final List<List<Integer>> results = new ArrayList<>();
+		final List<UtpConnectionQueue> queues = new ArrayList<>();
+		final List<IMessageCodec<ByteBuffer>> codecs = new ArrayList<>();
+		for (int index = 0; index < connections; index++) {
+			final List<Integer> result = Collections.synchronizedList(new ArrayList<>());
+			results.add(result);
+			queues.add(UtpRequestQueue.getInstance().newQueue());
+			codecs.add(new IMessageCodec<ByteBuffer>() {
+				@Override
+				public void decode(ByteBuffer message) {
+					result.add(message.getInt(0));
+					latch.countDown();
+				}
+			});
+		}
+		for (int index = 0; index < size; index++) {
+			for (int jndex = 0; jndex < connections; jndex++) {
+				final ByteBuffer buffer = ByteBuffer.allocate(4);
+				buffer.putInt(index);
+				assertTrue(queues.get(jndex).offer(UtpRequest.newInstance(buffer, codecs.get(jndex))));
+			}
+		}
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+		for (List<Integer> result : results) {
+			assertEquals(size, result.size());
+			for (int index = 0; index < size; index++) {
+				assertEquals(index, result.get(index));
+			}
+		}
+		for (UtpConnectionQueue queue : queues) {
+			this.log("请求数量：{}，处理延迟：{}，最大处理延迟：{}", queue.size(), queue.latency(), queue.maxLatency());
+		}
+		this.log("请求数量：{}，处理数量：{}，平均处理延迟：{}", UtpRequestQueue.getInstance().size(), UtpRequestQueue.getInstance().count(), UtpRequestQueue.getInstance().latency());
+	}
+	
+	@Test
+	public void testSlow() throws InterruptedException {
+		final CountDownLatch latch = new CountDownLatch(1);
+		final UtpConnectionQueue slowQueue = UtpRequestQueue.getInstance().newQueue();
+		final UtpConnectionQueue fastQueue = UtpRequestQueue.getInstance().newQueue();
+		final IMessageCodec<ByteBuffer> slowCodec = new IMessageCodec<ByteBuffer>() {
+			@Override
+			public void decode(ByteBuffer message) {
+				ThreadUtils.sleep(100);
+			}
+		};
+		final IMessageCodec<ByteBuffer> fastCodec = new IMessageCodec<ByteBuffer>() {
+			@Override
+			public void decode(ByteBuffer message) {
+				latch.countDown();
+			}
+		};
+		for (int index = 0; index < 20; index++) {
+			slowQueue.offer(UtpRequest.newInstance(ByteBuffer.allocate(0), slowCodec));
+		}
+		fastQueue.offer(UtpRequest.newInstance(ByteBuffer.allocate(0), fastCodec));
+		// 慢连接不会阻塞其他连接
+		assertTrue(latch.await(1, TimeUnit.SECONDS));
+		assertTrue(slowQueue.size() > 0);
+	}
+	
+}
@@ -0,0 +1,137 @@
+package com.acgist.snail.net.torrent.utp.bootstrap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.acgist.snail.net.codec.IMessageCodec;
+import com.acgist.snail.utils.Performance;
+import com.acgist.snail.utils.ThreadUtils;
+
+public class UtpWindowTest extends Performance {
+	
+	@Test
+	public void testSack() {
+		final UtpWindow recvWindow = UtpWindow.newRecvInstance(new IMessageCodec<ByteBuffer>() {
+		});
+		recvWindow.connect(0, (short) 0);
+		assertNull(recvWindow.sack());
+		// 丢失：1、2
+		recvWindow.receive(0, (short) 3, ByteBuffer.wrap(new byte[10]));
+		recvWindow.receive(0, (short) 4, ByteBuffer.wrap(new byte[10]));
+		recvWindow.receive(0, (short) 40, ByteBuffer.wrap(new byte[10]));
+		final byte[] sack = recvWindow.sack();
+		this.log("选择确认：{}", sack);
+		assertEquals(8, sack.length);
+		assertEquals(0b110, sack[0]);
+		assertEquals(0b0100_0000, sack[4]);
+	}
+	
+	@Test
+	public void testReceive() {
+		final List<String> messages = Collections.synchronizedList(new ArrayList<>());
+		final IMessageCodec<ByteBuffer> codec = new IMessageCodec<ByteBuffer>() {
+			@Override
+			public void decode(ByteBuffer message) {
+				message.flip();
+				messages.add(new String(message.array(), message.position(), message.remaining()));
+			}
+		};
+		final UtpWindow recvWindow = UtpWindow.newRecvInstance(codec);
+		recvWindow.connect(0, (short) 0);
+		recvWindow.receive(0, (short) 1, ByteBuffer.wrap("1".getBytes()));
+		recvWindow.receive(0, (short) 3, ByteBuffer.wrap("3".getBytes()));
+		recvWindow.receive(0, (short) 4, ByteBuffer.wrap("4".getBytes()));
+		// 重复数据
+		recvWindow.receive(0, (short) 1, ByteBuffer.wrap("1".getBytes()));
+		recvWindow.receive(0, (short) 3, ByteBuffer.wrap("3".getBytes()));
+		assertEquals(1, recvWindow.seqnr());
+		recvWindow.receive(0, (short) 2, ByteBuffer.wrap("2".getBytes()));
+		assertEquals(4, recvWindow.seqnr());
+		assertNull(recvWindow.sack());
+		// 超出窗口
+		recvWindow.receive(0, (short) 4000, ByteBuffer.wrap("4000".getBytes()));
+		assertNull(recvWindow.sack());
+		ThreadUtils.sleep(100);
+		this.log("消息：{}", messages);
+		assertEquals(List.of("1", "234"), messages);
+	}
+	
+	@Test
+	public void testSendSack() {
+		final UtpWindow sendWindow = UtpWindow.newSendInstance();
+		for (int index = 0; index < 10; index++) {
+			sendWindow.build(new byte[100]).pushUpdateGetTimestamp();
+		}
+		ThreadUtils.sleep(10);
+		// 确认：1；丢失：2；选择确认：3、4、5、6；
+		assertFalse(sendWindow.ack((short) 1, 1024 * 1024, 0));
+		final List<UtpWindowData> losts = sendWindow.sack((short) 1, new byte[] {0b1111, 0, 0, 0});
+		assertEquals(1, losts.size());
+		assertEquals(2, losts.get(0).getSeqnr());
+		// 已经选择确认的数据不会重传
+		assertEquals(2, sendWindow.unack((short) 1).getSeqnr());
+		assertTrue(sendWindow.hasUnack());
+		// 重复响应
+		assertTrue(sendWindow.ack((short) 1, 1024 * 1024, 0));
+		assertFalse(sendWindow.ack((short) 10, 1024 * 1024, 0));
+		assertFalse(sendWindow.hasUnack());
+		// 没有未确认数据：不是丢包
+		assertFalse(sendWindow.ack((short) 10, 1024 * 1024, 0));
+	}
+	
+	@Test
+	public void testSendable() {
+		final UtpWindow sendWindow = UtpWindow.newSendInstance();
+		// 没有传输中数据：直接发送
+		assertTrue(sendWindow.sendable(1024 * 1024));
+		sendWindow.build(new byte[1000]).pushUpdateGetTimestamp();
+		assertTrue(sendWindow.sendable(1000));
+		sendWindow.build(new byte[1000]).pushUpdateGetTimestamp();
+		// 超过阻塞窗口：不能发送（不会阻塞）
+		assertFalse(sendWindow.sendable(1000));
+		// 接收端剩余窗口
+		sendWindow.ack((short) 1, 0, 0);
+		assertFalse(sendWindow.sendable(1000));
+		sendWindow.ack((short) 1, 1024 * 1024, 0);
+		assertTrue(sendWindow.sendable(1000));
+		sendWindow.build(new byte[1000]).pushUpdateGetTimestamp();
+		sendWindow.build(new byte[1000]).pushUpdateGetTimestamp();
+		assertFalse(sendWindow.sendable(1000));
+		// 关闭窗口：直接发送
+		sendWindow.close();
+		assertTrue(sendWindow.sendable(1000));
+	}
+	
+	@Test
+	public void testTimeout() {
+		final UtpWindow sendWindow = UtpWindow.newSendInstance();
+		final int timeout = sendWindow.timeout();
+		sendWindow.build(new byte[100]).pushUpdateGetTimestamp();
+		assertTrue(sendWindow.timeoutWindowData().isEmpty());
+		ThreadUtils.sleep(timeout / 1000 + 100);
+		assertEquals(1, sendWindow.timeoutWindowData().size());
+		// 指数退避
+		assertEquals(timeout * 2, sendWindow.timeout());
+	}
+	
+	@Test
+	public void testCosted() {
+		final UtpWindow sendWindow = UtpWindow.newSendInstance();
+		final byte[] data = new byte[100];
+		this.costed(100000, () -> {
+			final UtpWindowData windowData = sendWindow.build(data);
+			sendWindow.ack(windowData.getSeqnr(), 1024 * 1024, 0);
+		});
+		assertFalse(sendWindow.hasUnack());
+	}
+	
+}
@@ -0,0 +1,47 @@
+package com.acgist.snail.pojo.session;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.acgist.snail.config.SystemConfig;
+import com.acgist.snail.utils.Performance;
+
+public class LimitSessionTest extends Performance {
+
+	@Test
+	public void testAcquire() {
+		// 限速：1000B/s
+		final long buffer = 1000L;
+		final long start = 0L;
+		final LimitSession limitSession = new LimitSession(() -> buffer, start);
+		// 透支一半：等待半秒
+		assertEquals(500L, limitSession.acquire(buffer / 2, start));
+		// 经过100毫秒：生成100个令牌
+		assertEquals(400L, limitSession.acquire(0L, start + TimeUnit.MILLISECONDS.toNanos(100)));
+		// 透支超过一秒：最多等待一秒
+		assertEquals(SystemConfig.ONE_SECOND_MILLIS, limitSession.acquire(buffer * 4, start + TimeUnit.MILLISECONDS.toNanos(100)));
+		// 等待一秒：还清透支
+		final long repaid = start + TimeUnit.MILLISECONDS.toNanos(1100);
+		assertEquals(0L, limitSession.acquire(0L, repaid));
+		// 空闲五秒：最多积累两百毫秒令牌
+		final long idle = repaid + TimeUnit.SECONDS.toNanos(5);
+		assertEquals(0L, limitSession.acquire(200L, idle));
+		assertEquals(1L, limitSession.acquire(1L, idle));
+	}
+	
+	@Test
+	public void testUnlimited() {
+		final LimitSession limitSession = new LimitSession(() -> 0L, 0L);
+		assertEquals(0L, limitSession.acquire(SystemConfig.ONE_MB, 0L));
+	}
+	
+	@Test
+	public void testCosted() {
+		final LimitSession limitSession = new LimitSession(LimitSession.Type.UPLOAD);
+		this.costed(100000, () -> limitSession.acquire(SystemConfig.ONE_KB));
+	}
+	
+}
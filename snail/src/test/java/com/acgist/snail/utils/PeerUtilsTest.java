@@ -0,0 +1,36 @@
+package com.acgist.snail.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class PeerUtilsTest extends Performance {
+
+	@Test
+	public void testRead() {
+		final ByteBuffer buffer = ByteBuffer.allocate(12);
+		buffer.putInt(NetUtils.ipToInt("192.168.1.2"));
+		buffer.putShort(NetUtils.portToShort(18888));
+		buffer.putInt(NetUtils.ipToInt("192.168.1.1"));
+		buffer.putShort(NetUtils.portToShort(28888));
+		final var peers = PeerUtils.read(buffer.array());
+		this.log(peers);
+		assertEquals(List.of("192.168.1.2", "192.168.1.1"), List.copyOf(peers.keySet()));
+		assertEquals(28888, peers.get("192.168.1.1"));
+	}
+	
+	@Test
+	public void testReadIPv6() {
+		final String ipv6 = "fe80:0:0:0:f84b:bc3a:9556:683d";
+		final ByteBuffer buffer = ByteBuffer.allocate(18);
+		buffer.put(NetUtils.bytesToIP(ipv6));
+		buffer.putShort(NetUtils.portToShort(18888));
+		final var peers = PeerUtils.readIPv6(buffer.array());
+		this.log(peers);
+		assertEquals(18888, peers.get(ipv6));
+	}
+	
+}